@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Reads elements from a source stream on a dedicated reader thread and transforms them using a fixed number of
+ * workers, running on the given executor. <p>
+ *
+ * The stages are connected through bounded queues. A slow consumer stalls the workers, and slow workers stall
+ * the reader which in turn stops pulling from the source. Hence the number of elements held in memory is
+ * bounded regardless of how fast the source can be read. <p>
+ *
+ * Transformed elements are handed over to the consuming thread in no particular order. If the source or any
+ * transformation fails, the pipeline is aborted and the failure is rethrown to the consumer.
+ */
+final class BoundedPipeline<S, R> implements Iterator<R>, AutoCloseable {
+
+	private static final Object END_OF_INPUT = new Object();
+	private static final Object WORKER_DONE = new Object();
+	private static final long QUEUE_TIMEOUT_MILLIS = 100;
+
+	private final BlockingQueue<Object> inputQueue;
+	private final BlockingQueue<Object> outputQueue;
+	private final ExecutorService readerExecutor;
+	private final Function<? super S, Optional<? extends R>> transformation;
+	private final int numWorkers;
+	private final LongAdder numRead = new LongAdder();
+	private final LongAdder numTransformed = new LongAdder();
+	private final LongAdder numConsumed = new LongAdder();
+	private final LongAdder sourceWaitNanos = new LongAdder();
+	private final LongAdder inputBlockedNanos = new LongAdder();
+	private final LongAdder outputBlockedNanos = new LongAdder();
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+	private volatile boolean closed = false;
+	private int numCompletedWorkers = 0;
+	private R next;
+
+	BoundedPipeline(Stream<? extends S> source,
+					Function<? super S, Optional<? extends R>> transformation,
+					Executor workerExecutor,
+					int numWorkers,
+					int queueCapacity,
+					String readerThreadNamePrefix) {
+		if (numWorkers < 1) {
+			throw new IllegalArgumentException("numWorkers must be a positive integer, was numWorkers=" + numWorkers + "!");
+		}
+		this.transformation = transformation;
+		this.numWorkers = numWorkers;
+		this.inputQueue = new ArrayBlockingQueue<>(queueCapacity);
+		this.outputQueue = new ArrayBlockingQueue<>(queueCapacity);
+		this.readerExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(readerThreadNamePrefix));
+		readerExecutor.execute(() -> read(source));
+		readerExecutor.shutdown();
+		for (int i = 0; i < numWorkers; i++) {
+			workerExecutor.execute(this::transform);
+		}
+	}
+
+	private void read(Stream<? extends S> source) {
+		long[] lastPutCompletedNanos = { System.nanoTime() };
+		try (source) {
+			source.forEach(element -> {
+				long readNanos = System.nanoTime();
+				sourceWaitNanos.add(readNanos - lastPutCompletedNanos[0]);
+				put(inputQueue, element);
+				numRead.increment();
+				lastPutCompletedNanos[0] = System.nanoTime();
+				inputBlockedNanos.add(lastPutCompletedNanos[0] - readNanos);
+			});
+			sourceWaitNanos.add(System.nanoTime() - lastPutCompletedNanos[0]);
+		} catch (RuntimeException e) {
+			fail(e);
+		} finally {
+			try {
+				for (int i = 0; i < numWorkers; i++) {
+					put(inputQueue, END_OF_INPUT);
+				}
+			} catch (CancellationException ignored) {
+				// Consumer is gone, workers are stopped by close()
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void transform() {
+		try {
+			Object element;
+			while ((element = poll(inputQueue)) != END_OF_INPUT) {
+				Optional<? extends R> result = transformation.apply((S) element);
+				numTransformed.increment();
+				if (result.isPresent()) {
+					long startNanos = System.nanoTime();
+					put(outputQueue, result.get());
+					outputBlockedNanos.add(System.nanoTime() - startNanos);
+				}
+			}
+		} catch (RuntimeException e) {
+			fail(e);
+		} finally {
+			try {
+				put(outputQueue, WORKER_DONE);
+			} catch (CancellationException ignored) {
+				// Consumer is gone, nobody is waiting for this worker to complete
+			}
+		}
+	}
+
+	private void fail(RuntimeException e) {
+		if (!closed) {
+			failure.compareAndSet(null, e);
+		}
+	}
+
+	private void put(BlockingQueue<Object> queue, Object element) {
+		try {
+			while (!closed) {
+				if (queue.offer(element, QUEUE_TIMEOUT_MILLIS, MILLISECONDS)) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		throw new CancellationException("Pipeline was aborted");
+	}
+
+	private Object poll(BlockingQueue<Object> queue) {
+		try {
+			while (!closed) {
+				Object element = queue.poll(QUEUE_TIMEOUT_MILLIS, MILLISECONDS);
+				if (element != null) {
+					return element;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		throw new CancellationException("Pipeline was aborted");
+	}
+
+	private Object take(BlockingQueue<Object> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new CancellationException("Interrupted while waiting for pipeline");
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean hasNext() {
+		while (next == null) {
+			if (numCompletedWorkers == numWorkers) {
+				close();
+				return false;
+			}
+			Object element = take(outputQueue);
+			if (element == WORKER_DONE) {
+				numCompletedWorkers++;
+				rethrowFailure();
+			} else {
+				next = (R) element;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public R next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		R result = next;
+		next = null;
+		numConsumed.increment();
+		return result;
+	}
+
+	private void rethrowFailure() {
+		RuntimeException e = failure.get();
+		if (e != null) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of elements read from the source but not yet picked up by a worker.
+	 */
+	int getInputQueueDepth() {
+		return inputQueue.size();
+	}
+
+	/**
+	 * Returns the number of transformed elements not yet picked up by the consumer.
+	 */
+	int getOutputQueueDepth() {
+		return outputQueue.size();
+	}
+
+	long getNumRead() {
+		return numRead.sum();
+	}
+
+	long getNumTransformed() {
+		return numTransformed.sum();
+	}
+
+	/**
+	 * Returns the time the reader has spent waiting for the source to produce elements.
+	 */
+	long getSourceWaitNanos() {
+		return sourceWaitNanos.sum();
+	}
+
+	/**
+	 * Returns the time the reader has spent blocked on a full input queue, i.e. waiting for the workers.
+	 */
+	long getInputBlockedNanos() {
+		return inputBlockedNanos.sum();
+	}
+
+	/**
+	 * Returns the total time the workers have spent blocked on a full output queue, i.e. waiting for the consumer.
+	 */
+	long getOutputBlockedNanos() {
+		return outputBlockedNanos.sum();
+	}
+
+	long getNumConsumed() {
+		return numConsumed.sum();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		readerExecutor.shutdownNow();
+		inputQueue.clear();
+		outputQueue.clear();
+	}
+
+}
@@ -28,4 +28,19 @@ class CouldNotCreateMongoQueryException extends RuntimeException {
 	public CouldNotCreateMongoQueryException(Exception e) {
 		super(e);
 	}
+
+	/**
+	 * @param message description of why the query could not be created
+	 */
+	public CouldNotCreateMongoQueryException(String message) {
+		super(message);
+	}
+
+	/**
+	 * @param message description of why the query could not be created
+	 * @param e source error
+	 */
+	public CouldNotCreateMongoQueryException(String message, Exception e) {
+		super(message, e);
+	}
 }
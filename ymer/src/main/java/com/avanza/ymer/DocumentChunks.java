@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+
+/**
+ * Splits documents to be written into consecutive chunks bounded by number of documents and by encoded bson
+ * size, so that a large batch is written in several requests and a failing request only fails its own chunk.
+ */
+final class DocumentChunks {
+
+	private DocumentChunks() {
+	}
+
+	/**
+	 * Splits the elements into chunks of at most {@code maxDocuments} elements, whose documents are at most
+	 * {@code maxBytes} bytes in total. A document larger than {@code maxBytes} is put in a chunk of its own.
+	 * Documents are only encoded to measure their size if {@code maxBytes} is less than {@link Long#MAX_VALUE}.
+	 */
+	static <T> List<List<T>> split(List<T> elements, Function<T, Document> toDocument, int maxDocuments, long maxBytes) {
+		if (elements.size() <= 1 || (elements.size() <= maxDocuments && maxBytes == Long.MAX_VALUE)) {
+			return elements.isEmpty() ? List.of() : List.of(elements);
+		}
+		List<List<T>> chunks = new ArrayList<>();
+		int chunkStart = 0;
+		long chunkBytes = 0;
+		for (int i = 0; i < elements.size(); i++) {
+			long documentBytes = maxBytes == Long.MAX_VALUE ? 0 : encodedSize(toDocument.apply(elements.get(i)));
+			boolean full = i - chunkStart == maxDocuments || (i > chunkStart && chunkBytes + documentBytes > maxBytes);
+			if (full) {
+				chunks.add(elements.subList(chunkStart, i));
+				chunkStart = i;
+				chunkBytes = 0;
+			}
+			chunkBytes += documentBytes;
+		}
+		chunks.add(elements.subList(chunkStart, elements.size()));
+		return chunks;
+	}
+
+	static int encodedSize(Document document) {
+		return new RawBsonDocument(document, DocumentCodecs.DEFAULT).getByteBuffer().remaining();
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import javax.annotation.Nullable;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+
+import com.mongodb.MongoClient;
+
+/**
+ * Codecs shared by the classes encoding documents to bson, or decoding them, outside of a mongo collection.
+ */
+final class DocumentCodecs {
+
+	/**
+	 * Encodes and decodes documents like a mongo client using the default codec registry.
+	 */
+	static final Codec<Document> DEFAULT = MongoClient.getDefaultCodecRegistry().get(Document.class);
+
+	/**
+	 * Decodes a single field of the given raw document, the same way as it is decoded along with the whole
+	 * document by {@link #DEFAULT}. Returns null if the document has no such field.
+	 */
+	@Nullable
+	static Object decodeField(RawBsonDocument document, String fieldName) {
+		BsonValue value = document.get(fieldName);
+		if (value == null) {
+			return null;
+		}
+		return DEFAULT.decode(new BsonDocumentReader(new BsonDocument(fieldName, value)), DecoderContext.builder().build()).get(fieldName);
+	}
+
+	private DocumentCodecs() {
+	}
+
+}
@@ -15,12 +15,17 @@
  */
 package com.avanza.ymer;
 
+import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.data.mongodb.core.query.Query;
 
@@ -35,6 +40,17 @@ import com.mongodb.client.model.IndexOptions;
  */
 interface DocumentCollection {
 
+	/**
+	 * Returns the name of the database and of the underlying mongo collection, separated by a dot. <p>
+	 */
+	String getNamespace();
+
+	/**
+	 * Returns the codec registry of the underlying mongo collection, which encodes values the way they are stored,
+	 * for instance UUIDs in the configured representation.
+	 */
+	CodecRegistry getCodecRegistry();
+
 	/**
 	 * Reads all documents from the underlying mongo collection. <p>
 	 */
@@ -50,8 +66,30 @@ interface DocumentCollection {
 	 */
 	Document findById(Object id);
 
+	/**
+	 * Reads the documents with the given ids in a single request to the underlying mongo collection. Ids without a
+	 * matching document are ignored. The returned documents are owned by the caller, i.e. they are not shared with
+	 * the collection and may be modified. <p>
+	 */
+	Stream<Document> findByIds(List<Object> ids);
+
+	/**
+	 * Reads the documents with the given ids in a single request without decoding them, see
+	 * {@link #findByIds(List)}. <p>
+	 */
+	Stream<RawBsonDocument> findRawByIds(List<Object> ids);
+
+	/**
+	 * Reads all documents matching the given query. The returned documents are owned by the caller, i.e.
+	 * they are not shared with the collection and may be modified. <p>
+	 */
 	Stream<Document> findByQuery(Query query);
 
+	/**
+	 * Reads all documents matching the given query without decoding them. <p>
+	 */
+	Stream<RawBsonDocument> findRawByQuery(Query query);
+
 	/**
 	 * Replaces a given document in the underlying mongo collection with a new
 	 * document. <p>
@@ -62,11 +100,27 @@ interface DocumentCollection {
 	 */
 	void replace(Document oldVersion, Document newVersion);
 
+	/**
+	 * Replaces the old version of each given document with its new version, see {@link #replace(Document, Document)}.
+	 * The replacements are written unordered and in as few round trips as possible. A failure to replace a document
+	 * does not prevent the remaining documents from being replaced, instead each failure is reported to the given
+	 * failure handler. <p>
+	 */
+	void replaceAll(List<PatchedDocument> patchedDocuments, BiConsumer<PatchedDocument, RuntimeException> failureHandler);
+
 	/**
 	 * Updates a given document (identified by id) in the underlying mongo collection. <p>
 	 */
 	void update(Document document);
 
+	/**
+	 * Executes the given writes in as few round trips as possible, see {@link DocumentWrite}. Writes are sent
+	 * unordered, except that writes to the same document are applied in the given order. A failing write does
+	 * not prevent the remaining writes from being executed, instead each failure is reported to the given
+	 * failure handler. An exception thrown by the failure handler aborts all remaining writes. <p>
+	 */
+	void writeAll(List<DocumentWrite> writes, BiConsumer<DocumentWrite, RuntimeException> failureHandler);
+
 	/**
 	 * Perform multiple write operations in bulk
 	 */
@@ -79,11 +133,47 @@ interface DocumentCollection {
 
 	void delete(Document document);
 
+	/**
+	 * Deletes the documents with the given ids in a single request to the underlying mongo collection. <p>
+	 */
+	void deleteAll(List<Object> ids);
+
+	/**
+	 * Deletes the documents with the given ids, of which the given existing ids are already known to exist, so
+	 * no lookup is made to tell which documents were missing. <p>
+	 */
+	void deleteAll(List<Object> ids, Set<Object> existingIds);
+
 	/**
 	 * Inserts all documents in a single batch to the underlying mongo collection. <p>
 	 */
 	void insertAll(Document... documents);
 
+	/**
+	 * Returns at most numRanges - 1 distinct ids, in ascending order, that splits the collection
+	 * into ranges of roughly the same size. The split points are estimated from a random sample
+	 * of the collection. <p>
+	 *
+	 * An empty list is returned if the collection is too small to be split.
+	 */
+	List<Object> findIdSplitPoints(int numRanges);
+
+	/**
+	 * Returns an estimate of the total size of the documents in this collection, as reported by the
+	 * collection statistics. Only meant to be compared with the estimates of other collections in the
+	 * same database, for instance when deciding in which order collections are loaded. <p>
+	 *
+	 * Empty if the collection statistics are unavailable, in which case {@link #estimateDocumentCount()} is the
+	 * only estimate that can be compared across collections.
+	 */
+	OptionalLong estimateDataSize();
+
+	/**
+	 * Returns an estimate of the number of documents in this collection, as reported by the collection
+	 * metadata. <p>
+	 */
+	long estimateDocumentCount();
+
 	Stream<IndexInfo> getIndexes();
 
 	void dropIndex(String name);
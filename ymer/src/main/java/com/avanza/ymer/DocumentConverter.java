@@ -72,6 +72,22 @@ final class DocumentConverter {
         return provider.toQuery(template);
     }
 
+    /**
+     * Initializes the mapping metadata of the given type, so that the type can then be converted concurrently.
+     */
+    void initialize(Class<?> type) {
+        provider.initialize(type);
+    }
+
+    /**
+     * Translates the where clause of a GigaSpaces SQLQuery against the given type into a mongo query.
+     *
+     * @throws CouldNotCreateMongoQueryException if the query cannot be translated
+     */
+    Query toQuery(Class<?> type, String sqlQuery, Object[] parameters) {
+        return provider.toQuery(type, sqlQuery, parameters);
+    }
+
     interface Provider {
 
         /**
@@ -93,6 +109,16 @@ final class DocumentConverter {
         Object convert(Object type);
 
         Query toQuery(Object template);
+
+        default Query toQuery(Class<?> type, String sqlQuery, Object[] parameters) {
+            throw new CouldNotCreateMongoQueryException("SQL queries are not supported by " + getClass().getName());
+        }
+
+        /**
+         * Initializes the mapping metadata of the given type, if it is created lazily.
+         */
+        default void initialize(Class<?> type) {
+        }
     }
 
     /**
@@ -129,6 +155,17 @@ final class DocumentConverter {
             return new MongoQueryFactory(mongoConverter).createMongoQueryFromTemplate(template);
         }
 
+        @Override
+        public Query toQuery(Class<?> type, String sqlQuery, Object[] parameters) {
+            return new MongoQueryFactory(mongoConverter).createMongoQueryFromSql(type, sqlQuery, parameters);
+        }
+
+        @Override
+        public void initialize(Class<?> type) {
+            // The persistent entities are added lazily, and AbstractMappingContext.addPersistentEntity() is not thread-safe
+            mongoConverter.getMappingContext().getPersistentEntity(type);
+        }
+
     }
 
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.Nullable;
+
+import org.bson.Document;
+
+/**
+ * A single mirrored write of a document, see {@link DocumentCollection#writeAll}. <p>
+ *
+ * An {@link MirrorOperation#INSERT} inserts the document, an {@link MirrorOperation#UPDATE} replaces
+ * the document with the same id, or inserts it if no such document exists, and a {@link MirrorOperation#REMOVE}
+ * deletes the document with the same id. An upserting {@link MirrorOperation#INSERT} replaces the document with
+ * the same id if it already exists, rather than failing, so that an insert that is written again has no effect. <p>
+ *
+ * A partial update is an {@link MirrorOperation#UPDATE} that only sets the fields of the given document on the
+ * stored document, provided that the stored document has the same {@link MirroredObject#DOCUMENT_FORMAT_VERSION_PROPERTY}.
+ * A stored document of another version is patched before the fields are set, and a missing document is inserted.
+ */
+final class DocumentWrite {
+	private final MirrorOperation operation;
+	private final Document document;
+	private final UnaryOperator<Document> patch;
+	private final boolean upsert;
+
+	private DocumentWrite(MirrorOperation operation, Document document, @Nullable UnaryOperator<Document> patch, boolean upsert) {
+		this.operation = Objects.requireNonNull(operation);
+		this.document = Objects.requireNonNull(document);
+		this.patch = patch;
+		this.upsert = upsert;
+	}
+
+	private DocumentWrite(MirrorOperation operation, Document document) {
+		this(operation, document, null, false);
+	}
+
+	static DocumentWrite insert(Document document) {
+		return new DocumentWrite(MirrorOperation.INSERT, document);
+	}
+
+	static DocumentWrite upsert(Document document) {
+		return new DocumentWrite(MirrorOperation.INSERT, document, null, true);
+	}
+
+	static DocumentWrite update(Document document) {
+		return new DocumentWrite(MirrorOperation.UPDATE, document);
+	}
+
+	/**
+	 * @param fields the fields to set, including the id and the current document format version
+	 * @param patch patches a stored document of an older version to the current version
+	 */
+	static DocumentWrite partialUpdate(Document fields, UnaryOperator<Document> patch) {
+		return new DocumentWrite(MirrorOperation.UPDATE, fields, Objects.requireNonNull(patch), false);
+	}
+
+	static DocumentWrite remove(Object id) {
+		return new DocumentWrite(MirrorOperation.REMOVE, new Document("_id", id));
+	}
+
+	MirrorOperation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * The document to write. For a {@link MirrorOperation#REMOVE} the document only contains the id.
+	 */
+	Document getDocument() {
+		return document;
+	}
+
+	Object getId() {
+		return document.get("_id");
+	}
+
+	boolean isPartialUpdate() {
+		return patch != null;
+	}
+
+	/**
+	 * Whether this is an insert replacing any document with the same id.
+	 */
+	boolean isUpsert() {
+		return upsert;
+	}
+
+	/**
+	 * Applies this partial update to the given stored document, patching it to the current version first if needed.
+	 */
+	Document applyPartialUpdate(Document storedDocument) {
+		Document updated = getDocumentVersion(storedDocument) == getDocumentVersion(document) ? storedDocument : patch.apply(storedDocument);
+		updated.putAll(document);
+		return updated;
+	}
+
+	int getDocumentVersion() {
+		return getDocumentVersion(document);
+	}
+
+	private static int getDocumentVersion(Document document) {
+		return document.getInteger(MirroredObject.DOCUMENT_FORMAT_VERSION_PROPERTY, 1);
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentWrite [operation=" + operation + ", id=" + getId() + (isPartialUpdate() ? ", partial" : "") + (isUpsert() ? ", upsert" : "") + "]";
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Answers whether a document with a given id may exist in a single collection, using an {@link IdBloomFilter}
+ * built by reading all ids of the collection. Until the filter has been built, all ids may exist. <p>
+ *
+ * Ids written after the filter has been built are {@link #added(Object) added} by the mirror, see
+ * {@link ExistenceFilters}. Ids added while the filter is being built are added to both the current and the
+ * new filter, so that none is lost when the new filter replaces the current one. <p>
+ *
+ * Ids written by a mirror in another JVM are never added, hence all ids may exist unless a mirror in this JVM
+ * {@link ExistenceFilters#isWritten(String) writes the collection}. The filter is only built once such a mirror
+ * has registered, and is discarded when the last one unregisters.
+ */
+final class ExistenceFilter implements ExistenceFilterMBean {
+
+	private static final Logger log = LoggerFactory.getLogger(ExistenceFilter.class);
+	private static final long MIN_EXPECTED_IDS = 1_024;
+
+	private final DocumentCollection documentCollection;
+	private final String namespace;
+	private final Codec<Document> documentCodec;
+	private final double falsePositiveRate;
+	private final DaemonThreadFactory threadFactory;
+	private volatile IdBloomFilter filter;
+	private final List<IdBloomFilter> building = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean rebuilding = new AtomicBoolean();
+	private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+	private final AtomicLong generation = new AtomicLong();
+	private final LongAdder numAbsentIds = new LongAdder();
+	private final LongAdder numFalsePositives = new LongAdder();
+
+	ExistenceFilter(DocumentCollection documentCollection, double falsePositiveRate) {
+		this.documentCollection = documentCollection;
+		this.namespace = documentCollection.getNamespace();
+		this.documentCodec = documentCollection.getCodecRegistry().get(Document.class);
+		this.falsePositiveRate = falsePositiveRate;
+		this.threadFactory = new DaemonThreadFactory("Ymer-Existence-Filter-" + namespace + "-");
+	}
+
+	/**
+	 * Returns false if the collection definitely has no document with the given id.
+	 */
+	boolean mightExist(Object documentId) {
+		IdBloomFilter current = filter;
+		if (current == null || !ExistenceFilters.isWritten(namespace) || current.mightContainHash(idHash(documentId))) {
+			return true;
+		}
+		numAbsentIds.increment();
+		return false;
+	}
+
+	/**
+	 * Records that an id that {@link #mightExist(Object) might exist} had no document.
+	 */
+	void notFound() {
+		if (filter != null && ExistenceFilters.isWritten(namespace)) {
+			numFalsePositives.increment();
+		}
+	}
+
+	/**
+	 * Adds the given id, since a document with the id has been written.
+	 */
+	void added(Object documentId) {
+		long idHash = idHash(documentId);
+		IdBloomFilter current = filter;
+		if (current != null) {
+			current.addHash(idHash);
+		}
+		building.forEach(next -> next.addHash(idHash));
+	}
+
+	/**
+	 * Discards the current filter, since it may lack ids written to the collection, and builds a new one in the
+	 * background. A filter being built meanwhile is discarded as well.
+	 */
+	void invalidate() {
+		discard();
+		rebuild();
+	}
+
+	/**
+	 * Discards the current filter, and any filter being built meanwhile, without building a new one.
+	 */
+	void discard() {
+		synchronized (generation) {
+			generation.incrementAndGet();
+			filter = null;
+		}
+	}
+
+	/**
+	 * Builds a new filter by reading all ids of the collection, and replaces the current filter with it unless
+	 * it has been {@link #invalidate() invalidated} meanwhile.
+	 */
+	void build() {
+		long buildGeneration = generation.get();
+		long expectedIds = Math.max(MIN_EXPECTED_IDS, 2 * documentCollection.estimateDocumentCount());
+		IdBloomFilter next = new IdBloomFilter(expectedIds, falsePositiveRate);
+		building.add(next);
+		long startNanos = System.nanoTime();
+		Query idsOnly = new Query();
+		idsOnly.fields().include("_id");
+		try (Stream<RawBsonDocument> ids = documentCollection.findRawByQuery(idsOnly)) {
+			ids.forEach(id -> next.addHash(idHash(id)));
+			synchronized (generation) {
+				if (generation.get() != buildGeneration) {
+					log.info("Discarded existence filter for {}, it was invalidated while being built", namespace);
+					return;
+				}
+				filter = next;
+			}
+		} finally {
+			building.remove(next);
+		}
+		log.info("Built existence filter for {} with {} ids using {} bytes in {} ms", namespace, next.getNumAddedIds(),
+				next.getSizeBytes(), (System.nanoTime() - startNanos) / 1_000_000);
+	}
+
+	/**
+	 * Hashes the given id as encoded by the codec registry of the collection, so that it matches the hash of the
+	 * id as stored.
+	 */
+	private long idHash(Object documentId) {
+		return WriteDeduplicator.idHash(documentId, documentCodec);
+	}
+
+	/**
+	 * A document holding nothing but an _id is encoded just like the document hashed by {@link #idHash(Object)},
+	 * hence hashed without being decoded.
+	 */
+	private long idHash(RawBsonDocument document) {
+		if (document.size() == 1) {
+			return WriteDeduplicator.hash(document.getByteBuffer().asNIO());
+		}
+		return idHash(document.decode(documentCodec).get("_id"));
+	}
+
+	@Override
+	public void rebuild() {
+		if (!ExistenceFilters.isWritten(namespace)) {
+			log.info("No mirror in this JVM writes {}, its existence filter is built once one does", namespace);
+			return;
+		}
+		rebuildRequested.set(true);
+		if (!rebuilding.compareAndSet(false, true)) {
+			log.info("Existence filter for {} is already being built, it will be built again", namespace);
+			return;
+		}
+		threadFactory.newThread(() -> {
+			try {
+				while (rebuildRequested.getAndSet(false)) {
+					build();
+				}
+			} catch (RuntimeException e) {
+				log.warn("Failed to build existence filter for {}", namespace, e);
+			} finally {
+				rebuilding.set(false);
+			}
+			if (rebuildRequested.get()) {
+				// Requested after the last build, but before the rebuilding flag was cleared
+				rebuild();
+			}
+		}).start();
+	}
+
+	String getNamespace() {
+		return namespace;
+	}
+
+	@Override
+	public boolean isBuilt() {
+		return filter != null;
+	}
+
+	@Override
+	public boolean isActive() {
+		return filter != null && ExistenceFilters.isWritten(namespace);
+	}
+
+	@Override
+	public long getNumIds() {
+		IdBloomFilter current = filter;
+		return current != null ? current.getNumAddedIds() : 0;
+	}
+
+	@Override
+	public long getSizeBytes() {
+		IdBloomFilter current = filter;
+		return current != null ? current.getSizeBytes() : 0;
+	}
+
+	@Override
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	@Override
+	public long getNumAbsentIds() {
+		return numAbsentIds.sum();
+	}
+
+	@Override
+	public long getNumFalsePositives() {
+		return numFalsePositives.sum();
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+/**
+ * The existence filter over the ids of a single collection, see {@link MirroredObjectDefinition#existenceFilter(double)}.
+ */
+public interface ExistenceFilterMBean {
+
+	/**
+	 * Whether the filter has been built. All loads query mongo until it has.
+	 */
+	boolean isBuilt();
+
+	/**
+	 * Whether the filter has been built and a mirror in this JVM writes the collection. Ids written by a mirror
+	 * in another JVM are never added to the filter, hence it rules out no ids unless active.
+	 */
+	boolean isActive();
+
+	/**
+	 * The number of ids added to the current filter, when it was built and since.
+	 */
+	long getNumIds();
+
+	/**
+	 * The size of the bit array of the current filter, which is kept in direct memory.
+	 */
+	long getSizeBytes();
+
+	/**
+	 * The configured false positive rate.
+	 */
+	double getFalsePositiveRate();
+
+	/**
+	 * The number of ids answered as definitely absent, without querying mongo.
+	 */
+	long getNumAbsentIds();
+
+	/**
+	 * The number of ids that the filter could not rule out, but that had no document in mongo.
+	 */
+	long getNumFalsePositives();
+
+	/**
+	 * Rebuilds the filter in the background by reading all ids of the collection, for instance when the collection
+	 * has grown beyond what the filter was sized for.
+	 * The current filter is used until the new one has been built. Does nothing unless a mirror in this JVM writes
+	 * the collection.
+	 */
+	void rebuild();
+
+}
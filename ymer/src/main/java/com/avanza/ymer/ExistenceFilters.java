@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the {@link ExistenceFilter existence filters} of this JVM by collection, so that a mirror running
+ * in the same JVM as a space can add the ids it writes, see {@link ReadThroughCaches}. Also keeps track of the
+ * mirrors writing each collection, since a filter can only rule out ids while every id written to its collection
+ * is added to it. Filters and writers are held weakly. <p>
+ *
+ * Collections are identified by their {@link DocumentCollection#getNamespace() namespace}, since spaces using
+ * different databases may run in the same JVM.
+ */
+final class ExistenceFilters {
+
+	private static final Map<String, Set<ExistenceFilter>> filtersByCollection = new ConcurrentHashMap<>();
+	private static final Map<String, Set<Object>> writersByCollection = new ConcurrentHashMap<>();
+
+	private ExistenceFilters() {
+	}
+
+	static void register(ExistenceFilter filter) {
+		filtersByCollection.computeIfAbsent(filter.getNamespace(), k -> weakSet())
+				.add(filter);
+	}
+
+	static void unregister(ExistenceFilter filter) {
+		Set<ExistenceFilter> filters = filtersByCollection.get(filter.getNamespace());
+		if (filters != null) {
+			filters.remove(filter);
+		}
+	}
+
+	/**
+	 * Registers a mirror in this JVM writing the given collection. When it is the first one, the filters of the
+	 * collection are discarded, since ids may have been written by a mirror in another JVM until now, and are
+	 * built again.
+	 */
+	static void registerWriter(String namespace, Object writer) {
+		Set<Object> writers = writersByCollection.computeIfAbsent(namespace, k -> weakSet());
+		synchronized (writers) {
+			if (!writers.isEmpty()) {
+				writers.add(writer);
+				return;
+			}
+			List<ExistenceFilter> filters = filters(namespace);
+			filters.forEach(ExistenceFilter::discard);
+			writers.add(writer);
+			filters.forEach(ExistenceFilter::rebuild);
+		}
+	}
+
+	/**
+	 * Unregisters a mirror in this JVM writing the given collection. When it is the last one, the filters of the
+	 * collection are discarded, since they can no longer rule out any id.
+	 */
+	static void unregisterWriter(String namespace, Object writer) {
+		Set<Object> writers = writersByCollection.get(namespace);
+		if (writers == null) {
+			return;
+		}
+		synchronized (writers) {
+			if (writers.remove(writer) && writers.isEmpty()) {
+				filters(namespace).forEach(ExistenceFilter::discard);
+			}
+		}
+	}
+
+	/**
+	 * Whether a mirror in this JVM writes the collection with the given namespace, i.e. whether its filters get all written ids,
+	 * and its {@link ReadThroughCache read through caches} all invalidations.
+	 */
+	static boolean isWritten(String namespace) {
+		Set<Object> writers = writersByCollection.get(namespace);
+		return writers != null && !writers.isEmpty();
+	}
+
+	/**
+	 * Whether any filter of this JVM covers the given collection, i.e. whether ids written to it need to be added.
+	 */
+	static boolean isFiltered(String namespace) {
+		Set<ExistenceFilter> filters = filtersByCollection.get(namespace);
+		return filters != null && !filters.isEmpty();
+	}
+
+	/**
+	 * Adds the given document ids to all filters of the given collection.
+	 */
+	static void added(String namespace, Collection<Object> documentIds) {
+		for (ExistenceFilter filter : filters(namespace)) {
+			documentIds.forEach(filter::added);
+		}
+	}
+
+	/**
+	 * Adds the new id of each given patched document whose patch changed its id, since replacing such a document
+	 * writes a document with the new id.
+	 */
+	static void replaced(DocumentCollection documentCollection, Collection<PatchedDocument> patchedDocuments) {
+		List<Object> newIds = patchedDocuments.stream()
+				.filter(patchedDocument -> !Objects.equals(patchedDocument.getOldVersion().get("_id"), patchedDocument.getNewVersion().get("_id")))
+				.map(patchedDocument -> patchedDocument.getNewVersion().get("_id"))
+				.collect(Collectors.toList());
+		if (!newIds.isEmpty() && isFiltered(documentCollection.getNamespace())) {
+			added(documentCollection.getNamespace(), newIds);
+		}
+	}
+
+	private static List<ExistenceFilter> filters(String namespace) {
+		Set<ExistenceFilter> filters = filtersByCollection.get(namespace);
+		if (filters == null) {
+			return Collections.emptyList();
+		}
+		synchronized (filters) {
+			return new ArrayList<>(filters);
+		}
+	}
+
+	private static <T> Set<T> weakSet() {
+		return Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+	}
+
+}
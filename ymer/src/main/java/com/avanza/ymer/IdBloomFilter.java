@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Bloom filter over document ids, hashed the same way as by {@link WriteDeduplicator}, with its bits kept in
+ * direct (off-heap) memory. Ids may be added and looked up concurrently without locking. <p>
+ *
+ * The number of bits and hash functions are chosen for the given false positive rate when holding the expected
+ * number of ids. The k bit positions of an id are derived from its 64 bit hash using double hashing.
+ */
+final class IdBloomFilter {
+
+	private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	private static final long MAX_WORDS = Integer.MAX_VALUE / Long.BYTES;
+
+	private final ByteBuffer words;
+	private final long numBits;
+	private final int numHashFunctions;
+	private final LongAdder numAddedIds = new LongAdder();
+
+	IdBloomFilter(long expectedIds, double falsePositiveRate) {
+		if (expectedIds < 1) {
+			throw new IllegalArgumentException("expectedIds must be a positive integer, was expectedIds=" + expectedIds + "!");
+		}
+		if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+			throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1, was falsePositiveRate=" + falsePositiveRate + "!");
+		}
+		double optimalBits = -expectedIds * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		long numWords = Math.min(MAX_WORDS, Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE)));
+		this.numBits = numWords * Long.SIZE;
+		this.numHashFunctions = (int) Math.max(1, Math.min(30, Math.round((double) numBits / expectedIds * Math.log(2))));
+		// Aligned, since the words are updated atomically
+		this.words = ByteBuffer.allocateDirect((int) (numWords * Long.BYTES) + Long.BYTES - 1).alignedSlice(Long.BYTES);
+	}
+
+	void add(Object documentId) {
+		addHash(WriteDeduplicator.idHash(documentId));
+	}
+
+	/**
+	 * Adds the id with the given hash, see {@link WriteDeduplicator#idHash(Object)}.
+	 */
+	void addHash(long idHash) {
+		int h1 = (int) idHash;
+		int h2 = (int) (idHash >>> 32);
+		for (int i = 1; i <= numHashFunctions; i++) {
+			long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+			WORDS.getAndBitwiseOr(words, (int) (bit >>> 6) * Long.BYTES, 1L << bit);
+		}
+		numAddedIds.increment();
+	}
+
+	/**
+	 * Returns false if the given id has definitely not been added, or true if it may have been added.
+	 */
+	boolean mightContain(Object documentId) {
+		return mightContainHash(WriteDeduplicator.idHash(documentId));
+	}
+
+	/**
+	 * Returns false if the id with the given hash has definitely not been added, see {@link #addHash(long)}.
+	 */
+	boolean mightContainHash(long idHash) {
+		int h1 = (int) idHash;
+		int h2 = (int) (idHash >>> 32);
+		for (int i = 1; i <= numHashFunctions; i++) {
+			long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+			long word = (long) WORDS.getVolatile(words, (int) (bit >>> 6) * Long.BYTES);
+			if ((word & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The number of ids added, counting ids added more than once each time.
+	 */
+	long getNumAddedIds() {
+		return numAddedIds.sum();
+	}
+
+	long getSizeBytes() {
+		return numBits / Byte.SIZE;
+	}
+
+	int getNumHashFunctions() {
+		return numHashFunctions;
+	}
+
+}
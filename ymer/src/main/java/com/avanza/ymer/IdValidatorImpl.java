@@ -15,6 +15,11 @@
  */
 package com.avanza.ymer;
 
+import static java.util.stream.Collectors.toList;
+
+import java.util.List;
+import java.util.Set;
+
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,6 +90,34 @@ class IdValidatorImpl implements MongoDocumentCollection.IdValidator {
 		return result.getDeletedCount() == 0;
 	}
 
+	@Override
+	public void validateDeletedExistingDocuments(
+			String operation,
+			DeleteResult result,
+			List<Object> ids,
+			Set<Object> existingIds
+	) {
+		if (!result.wasAcknowledged()) {
+			// No way to validate when using WriteConcern.UNACKNOWLEDGED
+			return;
+		}
+		if (result.getDeletedCount() < ids.size()) {
+			List<Object> missingIds = ids.stream().filter(id -> !existingIds.contains(id)).collect(toList());
+			if (!missingIds.isEmpty()) {
+				warnAboutNoDocumentsMatch(operation, missingIds);
+			}
+		}
+	}
+
+	void warnAboutNoDocumentsMatch(String operation, List<Object> ids) {
+		LOG.warn("Tried to {} documents on collection={} with ids={} , and no such documents were found! "
+						+ "Is the @Id field missing for objects of this type?",
+				operation,
+				collectionName,
+				ids
+		);
+	}
+
 	void warnAboutNoDocumentMatch(String operation, Object id) {
 		LOG.warn("Tried to {} a document on collection={} with id={} , and no such document was found! "
 						+ "Is the @Id field missing for objects of this type?",
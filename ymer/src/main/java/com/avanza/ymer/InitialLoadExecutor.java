@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread pool dedicated to the cpu intensive work during InitialLoad, i.e. patching and converting documents. <p>
+ *
+ * The pool is separate from the common ForkJoinPool in order to isolate InitialLoad from other work in the
+ * same JVM, and it keeps track of the cpu time spent by each of its threads.
+ */
+final class InitialLoadExecutor implements Executor, AutoCloseable {
+
+	static final String THREAD_NAME_PREFIX = "Ymer-Loader-";
+
+	private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	private final ExecutorService executor;
+	private final int parallelism;
+	private final boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+	private final Map<String, LongAdder> cpuTimeNanosByThread = new ConcurrentHashMap<>();
+
+	InitialLoadExecutor(int parallelism, int threadPriority) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be a positive integer, was parallelism=" + parallelism + "!");
+		}
+		DaemonThreadFactory threadFactory = new DaemonThreadFactory(THREAD_NAME_PREFIX);
+		threadFactory.setThreadPriority(threadPriority);
+		this.executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+		this.parallelism = parallelism;
+	}
+
+	static InitialLoadExecutor create(InitialLoadProperties initialLoadProperties) {
+		return new InitialLoadExecutor(initialLoadProperties.getParallelism(), initialLoadProperties.getThreadPriority());
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		executor.execute(() -> runAndAccountCpuTime(task));
+	}
+
+	private void runAndAccountCpuTime(Runnable task) {
+		long startCpuTimeNanos = currentThreadCpuTimeNanos();
+		try {
+			task.run();
+		} finally {
+			if (cpuTimeSupported) {
+				cpuTimeNanosByThread.computeIfAbsent(Thread.currentThread().getName(), threadName -> new LongAdder())
+						.add(currentThreadCpuTimeNanos() - startCpuTimeNanos);
+			}
+		}
+	}
+
+	private long currentThreadCpuTimeNanos() {
+		return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+	}
+
+	int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Returns the total cpu time spent in completed tasks, or 0 if cpu time measurement is not supported by the JVM.
+	 */
+	long getCpuTimeNanos() {
+		return cpuTimeNanosByThread.values().stream()
+				.mapToLong(LongAdder::sum)
+				.sum();
+	}
+
+	/**
+	 * Returns the cpu time spent in completed tasks for each thread in the pool, ordered by thread name.
+	 */
+	Map<String, Long> getCpuTimeNanosByThread() {
+		return cpuTimeNanosByThread.entrySet().stream()
+				.collect(toMap(Map.Entry::getKey, entry -> entry.getValue().sum(), Long::sum, TreeMap::new));
+	}
+
+	String cpuTimeSummary() {
+		if (!cpuTimeSupported) {
+			return "cpu time measurement not supported";
+		}
+		Map<String, Long> cpuTimeMillisByThread = getCpuTimeNanosByThread().entrySet().stream()
+				.collect(toMap(Map.Entry::getKey, entry -> TimeUnit.NANOSECONDS.toMillis(entry.getValue()), Long::sum, TreeMap::new));
+		return "total=" + TimeUnit.NANOSECONDS.toMillis(getCpuTimeNanos()) + " ms, byThread=" + cpuTimeMillisByThread;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
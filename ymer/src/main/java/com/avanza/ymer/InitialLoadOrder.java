@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+/**
+ * The order in which collections are loaded during InitialLoad.
+ */
+public enum InitialLoadOrder {
+	/**
+	 * Collections are loaded in alphabetical order by collection name. All partitions load the
+	 * collections in the same order, which reduces cache misses in mongo.
+	 */
+	ALPHABETICAL,
+	/**
+	 * Collections are loaded in descending order by their estimated data size, read from the collection
+	 * statistics before loading starts. When several collections are loaded in parallel this avoids
+	 * ending the load with a single large collection loading on its own, which reduces the total load time.
+	 * Collections of the same size are loaded in alphabetical order.
+	 */
+	LARGEST_FIRST
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.Objects;
+
+/**
+ * Settings used when loading documents during InitialLoad.
+ */
+final class InitialLoadProperties {
+
+	private final int numParallelCollections;
+	private final int parallelism;
+	private final int threadPriority;
+	private final int queueCapacity;
+	private final int writeBackBatchSize;
+	private final int writeBackConcurrency;
+	private final InitialLoadOrder order;
+
+	private InitialLoadProperties(Builder builder) {
+		this.numParallelCollections = builder.numParallelCollections;
+		this.parallelism = builder.parallelism;
+		this.threadPriority = builder.threadPriority;
+		this.queueCapacity = builder.queueCapacity;
+		this.writeBackBatchSize = builder.writeBackBatchSize;
+		this.writeBackConcurrency = builder.writeBackConcurrency;
+		this.order = builder.order;
+	}
+
+	static InitialLoadProperties defaults() {
+		return builder().build();
+	}
+
+	static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The number of collections that are loaded concurrently.
+	 */
+	int getNumParallelCollections() {
+		return numParallelCollections;
+	}
+
+	/**
+	 * The number of threads patching and converting documents, shared by all collections loaded concurrently.
+	 */
+	int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * The number of threads patching and converting documents for each loaded collection.
+	 */
+	int getNumWorkersPerCollection() {
+		return Math.max(1, parallelism / numParallelCollections);
+	}
+
+	int getThreadPriority() {
+		return threadPriority;
+	}
+
+	/**
+	 * The maximum number of documents buffered between each stage of the load pipeline.
+	 */
+	int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * The maximum number of patched documents written back to mongo in a single bulk write.
+	 */
+	int getWriteBackBatchSize() {
+		return writeBackBatchSize;
+	}
+
+	/**
+	 * The maximum number of bulk writes of patched documents in progress at the same time.
+	 */
+	int getWriteBackConcurrency() {
+		return writeBackConcurrency;
+	}
+
+	/**
+	 * The order in which collections are loaded.
+	 */
+	InitialLoadOrder getOrder() {
+		return order;
+	}
+
+	static final class Builder {
+		private int numParallelCollections = 1;
+		private int parallelism = Runtime.getRuntime().availableProcessors();
+		private int threadPriority = Thread.NORM_PRIORITY;
+		private int queueCapacity = ParallelCollectionLoader.DEFAULT_QUEUE_CAPACITY;
+		private int writeBackBatchSize = PatchedDocumentWriteBack.DEFAULT_BATCH_SIZE;
+		private int writeBackConcurrency = PatchedDocumentWriteBack.DEFAULT_CONCURRENCY;
+		private InitialLoadOrder order = InitialLoadOrder.ALPHABETICAL;
+
+		private Builder() {
+		}
+
+		Builder numParallelCollections(int numParallelCollections) {
+			this.numParallelCollections = numParallelCollections;
+			return this;
+		}
+
+		Builder parallelism(int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		Builder threadPriority(int threadPriority) {
+			this.threadPriority = threadPriority;
+			return this;
+		}
+
+		Builder queueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		Builder writeBackBatchSize(int writeBackBatchSize) {
+			this.writeBackBatchSize = writeBackBatchSize;
+			return this;
+		}
+
+		Builder writeBackConcurrency(int writeBackConcurrency) {
+			this.writeBackConcurrency = writeBackConcurrency;
+			return this;
+		}
+
+		Builder order(InitialLoadOrder order) {
+			this.order = Objects.requireNonNull(order);
+			return this;
+		}
+
+		InitialLoadProperties build() {
+			return new InitialLoadProperties(this);
+		}
+	}
+
+}
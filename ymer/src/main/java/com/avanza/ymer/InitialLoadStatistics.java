@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collects {@link InitialLoadStatisticsMBean statistics} about InitialLoad of a single collection.
+ */
+final class InitialLoadStatistics implements InitialLoadStatisticsMBean {
+
+	private final Set<BoundedPipeline<?, ?>> activePipelines = ConcurrentHashMap.newKeySet();
+	private final LongAdder numDocumentsRead = new LongAdder();
+	private final LongAdder cursorWaitNanos = new LongAdder();
+	private final LongAdder waitingForConversionNanos = new LongAdder();
+	private final LongAdder waitingForSpaceNanos = new LongAdder();
+	private final LongAdder numBytesRead = new LongAdder();
+	private final Map<Integer, LongAdder> numDocumentsPatchedByVersion = new ConcurrentHashMap<>();
+	private final LongAdder numDocumentsRejectedByFilter = new LongAdder();
+	private final LongAdder patchNanos = new LongAdder();
+	private final LongAdder convertNanos = new LongAdder();
+	private final LongAdder filterNanos = new LongAdder();
+	private final LongAdder numDocumentsWrittenBack = new LongAdder();
+	private final LongAdder numWriteBackFailures = new LongAdder();
+	private final LongAdder numWriteBackBatches = new LongAdder();
+	private final LongAdder writeBackNanos = new LongAdder();
+	private final LongAccumulator maxWriteBackBatchNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Includes the statistics of the given pipeline, which reads and converts documents of the collection,
+	 * until it is closed.
+	 */
+	void pipelineStarted(BoundedPipeline<?, ?> pipeline) {
+		activePipelines.add(pipeline);
+	}
+
+	void pipelineClosed(BoundedPipeline<?, ?> pipeline) {
+		if (activePipelines.remove(pipeline)) {
+			numDocumentsRead.add(pipeline.getNumRead());
+			cursorWaitNanos.add(pipeline.getSourceWaitNanos());
+			waitingForConversionNanos.add(pipeline.getInputBlockedNanos());
+			waitingForSpaceNanos.add(pipeline.getOutputBlockedNanos());
+		}
+	}
+
+	void documentRead(int numBytes) {
+		numBytesRead.add(numBytes);
+	}
+
+	void documentPatched(int fromVersion, long nanos) {
+		numDocumentsPatchedByVersion.computeIfAbsent(fromVersion, version -> new LongAdder()).increment();
+		patchNanos.add(nanos);
+	}
+
+	void documentConverted(long nanos) {
+		convertNanos.add(nanos);
+	}
+
+	void documentFiltered(boolean accepted, long nanos) {
+		if (!accepted) {
+			numDocumentsRejectedByFilter.increment();
+		}
+		filterNanos.add(nanos);
+	}
+
+	void writeBackCompleted(int numWritten, int numFailed, long nanos) {
+		numDocumentsWrittenBack.add(numWritten);
+		numWriteBackFailures.add(numFailed);
+		numWriteBackBatches.increment();
+		writeBackNanos.add(nanos);
+		maxWriteBackBatchNanos.accumulate(nanos);
+	}
+
+	private long sum(LongAdder completed, ToLongFunction<BoundedPipeline<?, ?>> active) {
+		return completed.sum() + activePipelines.stream().mapToLong(active).sum();
+	}
+
+	@Override
+	public long getNumDocumentsRead() {
+		return sum(numDocumentsRead, BoundedPipeline::getNumRead);
+	}
+
+	@Override
+	public long getNumBytesRead() {
+		return numBytesRead.sum();
+	}
+
+	@Override
+	public Map<Integer, Long> getNumDocumentsPatchedByVersion() {
+		Map<Integer, Long> result = new TreeMap<>();
+		numDocumentsPatchedByVersion.forEach((version, numPatched) -> result.put(version, numPatched.sum()));
+		return result;
+	}
+
+	@Override
+	public long getNumDocumentsRejectedByFilter() {
+		return numDocumentsRejectedByFilter.sum();
+	}
+
+	@Override
+	public long getCursorWaitNanos() {
+		return sum(cursorWaitNanos, BoundedPipeline::getSourceWaitNanos);
+	}
+
+	@Override
+	public long getWaitingForConversionNanos() {
+		return sum(waitingForConversionNanos, BoundedPipeline::getInputBlockedNanos);
+	}
+
+	@Override
+	public long getPatchNanos() {
+		return patchNanos.sum();
+	}
+
+	@Override
+	public long getConvertNanos() {
+		return convertNanos.sum();
+	}
+
+	@Override
+	public long getFilterNanos() {
+		return filterNanos.sum();
+	}
+
+	@Override
+	public long getWaitingForSpaceNanos() {
+		return sum(waitingForSpaceNanos, BoundedPipeline::getOutputBlockedNanos);
+	}
+
+	@Override
+	public long getNumDocumentsWrittenBack() {
+		return numDocumentsWrittenBack.sum();
+	}
+
+	@Override
+	public long getNumWriteBackFailures() {
+		return numWriteBackFailures.sum();
+	}
+
+	@Override
+	public long getNumWriteBackBatches() {
+		return numWriteBackBatches.sum();
+	}
+
+	@Override
+	public long getWriteBackNanos() {
+		return writeBackNanos.sum();
+	}
+
+	@Override
+	public long getMaxWriteBackBatchNanos() {
+		return maxWriteBackBatchNanos.get();
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.Map;
+
+/**
+ * Statistics about InitialLoad of a single collection. Times are cumulative over all threads, hence they might
+ * exceed the wall clock time of the load. <p>
+ *
+ * Comparing the time spent waiting for mongo, patching and converting documents, and waiting for the space
+ * shows what limits the throughput of InitialLoad.
+ */
+public interface InitialLoadStatisticsMBean {
+
+	/**
+	 * The number of documents read from mongo.
+	 */
+	long getNumDocumentsRead();
+
+	/**
+	 * The size in bytes of the documents read from mongo. Only measured for collections read as raw bson, see
+	 * {@link MirroredObjectDefinition#lazyDocumentDecoding(boolean)}, since the size is not known once a
+	 * document is decoded.
+	 */
+	long getNumBytesRead();
+
+	/**
+	 * The number of documents patched, by the document version before patching.
+	 */
+	Map<Integer, Long> getNumDocumentsPatchedByVersion();
+
+	/**
+	 * The number of documents rejected by the partition filter, i.e. belonging to other partitions.
+	 */
+	long getNumDocumentsRejectedByFilter();
+
+	/**
+	 * The time spent waiting for documents from mongo.
+	 */
+	long getCursorWaitNanos();
+
+	/**
+	 * The time the reading of documents was blocked waiting for documents to be patched and converted.
+	 */
+	long getWaitingForConversionNanos();
+
+	/**
+	 * The time spent post-processing and patching documents.
+	 */
+	long getPatchNanos();
+
+	/**
+	 * The time spent converting documents to space objects.
+	 */
+	long getConvertNanos();
+
+	/**
+	 * The time spent filtering space objects.
+	 */
+	long getFilterNanos();
+
+	/**
+	 * The time the conversion of documents was blocked waiting for space objects to be written to the space.
+	 */
+	long getWaitingForSpaceNanos();
+
+	/**
+	 * The number of patched documents written back to mongo.
+	 */
+	long getNumDocumentsWrittenBack();
+
+	/**
+	 * The number of patched documents that could not be written back to mongo.
+	 */
+	long getNumWriteBackFailures();
+
+	/**
+	 * The number of bulk writes used to write back patched documents.
+	 */
+	long getNumWriteBackBatches();
+
+	/**
+	 * The time spent writing back patched documents.
+	 */
+	long getWriteBackNanos();
+
+	/**
+	 * The longest time spent writing back a single batch of patched documents.
+	 */
+	long getMaxWriteBackBatchNanos();
+
+}
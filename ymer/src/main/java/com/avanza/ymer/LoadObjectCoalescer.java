@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.RawBsonDocument;
+
+import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
+
+/**
+ * Merges concurrent loads of single objects of one type into batched $in queries. <p>
+ *
+ * The first caller of a batch waits for the given window, or until the batch holds the max number of ids,
+ * and then reads the documents of all ids in the batch on its own thread. A caller loading an id that is
+ * already part of a pending batch waits for that batch rather than reading the document again. <p>
+ *
+ * Each caller patches and converts its own copy of the document, hence gets its own object. Only the
+ * caller that added the id to the batch gets the patched document, so that it is written back once.
+ */
+final class LoadObjectCoalescer<T> {
+
+	private final MirroredObjectLoader<T> documentLoader;
+	private final long windowNanos;
+	private final int maxIds;
+	private final Map<Object, CompletableFuture<Optional<RawBsonDocument>>> pendingLoads = new LinkedHashMap<>();
+	private Batch collecting;
+
+	LoadObjectCoalescer(MirroredObjectLoader<T> documentLoader, long windowNanos, int maxIds) {
+		if (maxIds < 1) {
+			throw new IllegalArgumentException("maxIds must be a positive integer, was maxIds=" + maxIds + "!");
+		}
+		this.documentLoader = documentLoader;
+		this.windowNanos = windowNanos;
+		this.maxIds = maxIds;
+	}
+
+	/**
+	 * Loads the object with the given id, see {@link MirroredObjectLoader#loadById(Object)}.
+	 */
+	Optional<LoadedDocument<T>> loadById(Object id) {
+		Object documentId = documentLoader.toDocumentId(id);
+		CompletableFuture<Optional<RawBsonDocument>> load;
+		Batch leading = null;
+		boolean shared;
+		synchronized (this) {
+			load = pendingLoads.get(documentId);
+			shared = load != null;
+			if (!shared) {
+				if (collecting == null) {
+					collecting = new Batch();
+					leading = collecting;
+				}
+				load = new CompletableFuture<>();
+				pendingLoads.put(documentId, load);
+				collecting.loads.put(documentId, load);
+				if (collecting.loads.size() >= maxIds) {
+					collecting = null;
+					notifyAll();
+				}
+			}
+		}
+		if (leading != null) {
+			awaitWindow(leading);
+			read(leading);
+		}
+		Optional<LoadedDocument<T>> loaded = documentLoader.loadById(id, await(load).orElse(null));
+		if (shared) {
+			return loaded.map(loadedDocument -> new LoadedDocument<>(loadedDocument.getDocument(), null));
+		}
+		return loaded;
+	}
+
+	private synchronized void awaitWindow(Batch batch) {
+		long deadline = System.nanoTime() + windowNanos;
+		long remaining = windowNanos;
+		while (collecting == batch && remaining > 0) {
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			} catch (InterruptedException e) {
+				// The other callers of the batch depend on it being read
+				Thread.currentThread().interrupt();
+				break;
+			}
+			remaining = deadline - System.nanoTime();
+		}
+		if (collecting == batch) {
+			collecting = null;
+		}
+	}
+
+	private void read(Batch batch) {
+		try {
+			Map<Object, RawBsonDocument> documents = documentLoader.findRawByIds(new ArrayList<>(batch.loads.keySet()));
+			batch.loads.forEach((documentId, load) -> load.complete(Optional.ofNullable(documents.get(documentId))));
+		} catch (RuntimeException | Error e) {
+			batch.loads.values().forEach(load -> load.completeExceptionally(e));
+		} finally {
+			synchronized (this) {
+				batch.loads.forEach(pendingLoads::remove);
+			}
+		}
+	}
+
+	private static Optional<RawBsonDocument> await(CompletableFuture<Optional<RawBsonDocument>> load) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static final class Batch {
+		private final Map<Object, CompletableFuture<Optional<RawBsonDocument>>> loads = new LinkedHashMap<>();
+	}
+
+}
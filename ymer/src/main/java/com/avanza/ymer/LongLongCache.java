@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A fixed size cache mapping primitive long keys to long values, stored as key/value pairs in a single
+ * {@link LongBuffer} either on the heap or in direct (off-heap) memory. <p>
+ *
+ * The cache is direct mapped: each key has a single slot, and putting a key replaces whatever entry occupied
+ * its slot. Memory use is 16 bytes per slot regardless of the number of entries. The key 0 is reserved to mark
+ * empty slots and is stored as 1 instead.
+ */
+final class LongLongCache {
+
+	static final int MAX_CAPACITY = 1 << 26;
+
+	private static final long EMPTY = 0;
+
+	private final LongBuffer entries;
+	private final int mask;
+	private int size = 0;
+	private long numEvictions = 0;
+
+	LongLongCache(int capacity, boolean offHeap) {
+		if (capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY + ", was capacity=" + capacity + "!");
+		}
+		int numSlots = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.entries = offHeap
+				? ByteBuffer.allocateDirect(numSlots * 2 * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+				: LongBuffer.allocate(numSlots * 2);
+		this.mask = numSlots - 1;
+	}
+
+	/**
+	 * Maps the key to the value, evicting any other key occupying its slot.
+	 *
+	 * @return true if the key was already mapped to the value
+	 */
+	synchronized boolean put(long key, long value) {
+		key = nonEmpty(key);
+		int index = indexOf(key);
+		long storedKey = entries.get(index);
+		if (storedKey == key) {
+			boolean unchanged = entries.get(index + 1) == value;
+			entries.put(index + 1, value);
+			return unchanged;
+		}
+		if (storedKey == EMPTY) {
+			size++;
+		} else {
+			numEvictions++;
+		}
+		entries.put(index, key);
+		entries.put(index + 1, value);
+		return false;
+	}
+
+	synchronized void remove(long key) {
+		key = nonEmpty(key);
+		int index = indexOf(key);
+		if (entries.get(index) == key) {
+			entries.put(index, EMPTY);
+			entries.put(index + 1, 0);
+			size--;
+		}
+	}
+
+	synchronized void clear() {
+		for (int i = 0; i < entries.capacity(); i++) {
+			entries.put(i, EMPTY);
+		}
+		size = 0;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	synchronized long getNumEvictions() {
+		return numEvictions;
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+	private int indexOf(long key) {
+		// Keys are expected to be hashes already, spread them anyway in case the low bits are poorly distributed
+		long spread = key * 0x9E3779B97F4A7C15L;
+		return ((int) (spread ^ (spread >>> 32)) & mask) * 2;
+	}
+
+	private static long nonEmpty(long key) {
+		return key == EMPTY ? 1 : key;
+	}
+
+}
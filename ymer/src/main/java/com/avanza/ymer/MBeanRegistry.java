@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers MBeans in the platform MBeanServer and keeps track of them so they can be unregistered.
+ * Failures to register or unregister are logged but otherwise ignored.
+ */
+final class MBeanRegistry implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(MBeanRegistry.class);
+
+	private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+	private final Set<ObjectName> registeredMbeans = ConcurrentHashMap.newKeySet();
+
+	void register(Object object, String name) {
+		log.debug("Registering MBean with name {}", name);
+		try {
+			ObjectName objectName = ObjectName.getInstance(name);
+			mBeanServer.registerMBean(object, objectName);
+			registeredMbeans.add(objectName);
+		} catch (Exception e) {
+			log.warn("Failed to register MBean with objectName='{}'", name, e);
+		}
+	}
+
+	/**
+	 * Registers the given MBean, replacing any MBean already registered with the same name.
+	 */
+	void replace(Object object, String name) {
+		try {
+			ObjectName objectName = ObjectName.getInstance(name);
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+		} catch (Exception e) {
+			log.warn("Failed to unregister MBean with objectName='{}'", name, e);
+		}
+		register(object, name);
+	}
+
+	@Override
+	public void close() {
+		for (ObjectName registeredMbean : registeredMbeans) {
+			try {
+				mBeanServer.unregisterMBean(registeredMbean);
+			} catch (Exception e) {
+				log.warn("Failed to unregister MBean with objectName='{}'", registeredMbean, e);
+			}
+		}
+		registeredMbeans.clear();
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings used when writing mirrored operations to mongo. <p>
+ */
+final class MirrorWriteProperties {
+
+	private final boolean bulkWrite;
+	private final boolean coalesceOperations;
+	private final int numLanes;
+	private final int numConversionThreads;
+	private final int parallelConversionThreshold;
+	private final int maxChunkDocuments;
+	private final long maxChunkBytes;
+	private final int numConcurrentChunks;
+	private final boolean idempotentInserts;
+	private final int maxWriteAttempts;
+	private final Duration retryInitialBackoff;
+	private final Duration retryMaxBackoff;
+
+	private MirrorWriteProperties(Builder builder) {
+		this.bulkWrite = builder.bulkWrite;
+		this.coalesceOperations = builder.coalesceOperations;
+		this.numLanes = builder.numLanes;
+		this.numConversionThreads = builder.numConversionThreads;
+		this.parallelConversionThreshold = builder.parallelConversionThreshold;
+		this.maxChunkDocuments = builder.maxChunkDocuments;
+		this.maxChunkBytes = builder.maxChunkBytes;
+		this.numConcurrentChunks = builder.numConcurrentChunks;
+		this.idempotentInserts = builder.idempotentInserts;
+		this.maxWriteAttempts = builder.maxWriteAttempts;
+		this.retryInitialBackoff = builder.retryInitialBackoff;
+		this.retryMaxBackoff = builder.retryMaxBackoff;
+	}
+
+	static MirrorWriteProperties defaults() {
+		return builder().build();
+	}
+
+	static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Whether all operations in a mirrored batch are written using a single bulk write per collection,
+	 * rather than one round trip per update and remove.
+	 */
+	boolean isBulkWrite() {
+		return bulkWrite;
+	}
+
+	/**
+	 * Whether the operations on each space object within a mirrored batch are reduced to their net effect
+	 * before they are written, see {@link OperationsCoalescer}.
+	 */
+	boolean isCoalesceOperations() {
+		return coalesceOperations;
+	}
+
+	/**
+	 * The number of lanes the operations of a mirrored batch are written in concurrently. Operations are
+	 * assigned to lanes by space object, and the operations within a lane are written in order.
+	 */
+	int getNumLanes() {
+		return numLanes;
+	}
+
+	/**
+	 * The number of threads converting the objects of large mirrored batches to documents concurrently,
+	 * see {@link #getParallelConversionThreshold()}.
+	 */
+	int getNumConversionThreads() {
+		return numConversionThreads;
+	}
+
+	/**
+	 * The minimum number of objects written together for them to be converted to documents concurrently.
+	 * Smaller batches are converted on the writing thread.
+	 */
+	int getParallelConversionThreshold() {
+		return parallelConversionThreshold;
+	}
+
+	/**
+	 * The maximum number of documents written to a collection in a single request, see {@link DocumentChunks}.
+	 */
+	int getMaxChunkDocuments() {
+		return maxChunkDocuments;
+	}
+
+	/**
+	 * The maximum total encoded size of the documents written to a collection in a single request, see
+	 * {@link DocumentChunks}.
+	 */
+	long getMaxChunkBytes() {
+		return maxChunkBytes;
+	}
+
+	/**
+	 * The number of chunks of inserted documents written concurrently.
+	 */
+	int getNumConcurrentChunks() {
+		return numConcurrentChunks;
+	}
+
+	/**
+	 * Whether mirrored inserts replace any document with the same id, see {@link DocumentWrite#upsert}, rather
+	 * than failing with a duplicate key.
+	 */
+	boolean isIdempotentInserts() {
+		return idempotentInserts;
+	}
+
+	/**
+	 * The maximum number of times a write failing with a transient failure is attempted, see {@link WriteRetryPolicy}.
+	 */
+	int getMaxWriteAttempts() {
+		return maxWriteAttempts;
+	}
+
+	Duration getRetryInitialBackoff() {
+		return retryInitialBackoff;
+	}
+
+	Duration getRetryMaxBackoff() {
+		return retryMaxBackoff;
+	}
+
+	static final class Builder {
+		private boolean bulkWrite = false;
+		private boolean coalesceOperations = false;
+		private int numLanes = 1;
+		private int numConversionThreads = 1;
+		private int parallelConversionThreshold = 256;
+		private int maxChunkDocuments = Integer.MAX_VALUE;
+		private long maxChunkBytes = Long.MAX_VALUE;
+		private int numConcurrentChunks = 1;
+		private boolean idempotentInserts = false;
+		private int maxWriteAttempts = 1;
+		private Duration retryInitialBackoff = Duration.ofMillis(100);
+		private Duration retryMaxBackoff = Duration.ofSeconds(5);
+
+		private Builder() {
+		}
+
+		Builder bulkWrite(boolean bulkWrite) {
+			this.bulkWrite = bulkWrite;
+			return this;
+		}
+
+		Builder coalesceOperations(boolean coalesceOperations) {
+			this.coalesceOperations = coalesceOperations;
+			return this;
+		}
+
+		Builder numLanes(int numLanes) {
+			this.numLanes = numLanes;
+			return this;
+		}
+
+		Builder numConversionThreads(int numConversionThreads) {
+			this.numConversionThreads = numConversionThreads;
+			return this;
+		}
+
+		Builder parallelConversionThreshold(int parallelConversionThreshold) {
+			this.parallelConversionThreshold = parallelConversionThreshold;
+			return this;
+		}
+
+		Builder maxChunkDocuments(int maxChunkDocuments) {
+			this.maxChunkDocuments = maxChunkDocuments;
+			return this;
+		}
+
+		Builder maxChunkBytes(long maxChunkBytes) {
+			this.maxChunkBytes = maxChunkBytes;
+			return this;
+		}
+
+		Builder numConcurrentChunks(int numConcurrentChunks) {
+			this.numConcurrentChunks = numConcurrentChunks;
+			return this;
+		}
+
+		Builder idempotentInserts(boolean idempotentInserts) {
+			this.idempotentInserts = idempotentInserts;
+			return this;
+		}
+
+		Builder maxWriteAttempts(int maxWriteAttempts) {
+			this.maxWriteAttempts = maxWriteAttempts;
+			return this;
+		}
+
+		Builder retryBackoff(Duration initialBackoff, Duration maxBackoff) {
+			this.retryInitialBackoff = Objects.requireNonNull(initialBackoff);
+			this.retryMaxBackoff = Objects.requireNonNull(maxBackoff);
+			return this;
+		}
+
+		MirrorWriteProperties build() {
+			return new MirrorWriteProperties(this);
+		}
+	}
+
+}
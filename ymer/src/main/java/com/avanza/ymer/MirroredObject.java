@@ -46,6 +46,12 @@ final class MirroredObject<T> {
 	private final boolean excludeFromInitialLoad;
 	private final boolean writeBackPatchedDocuments;
 	private final boolean loadDocumentsRouted;
+	private final int loadDocumentsInIdRanges;
+	private final boolean lazyDocumentDecoding;
+	private final boolean partialUpdateFields;
+	private final int skipUnchangedWrites;
+	private final boolean skipUnchangedWritesOffHeap;
+	private final double existenceFilterFalsePositiveRate;
 	private final boolean persistInstanceId;
 	private final boolean triggerInstanceIdCalculationOnStartup;
 	private final Duration triggerInstanceIdCalculationWithDelay;
@@ -60,6 +66,12 @@ final class MirroredObject<T> {
 		this.excludeFromInitialLoad = override.excludeFromInitialLoad(definition);
         this.writeBackPatchedDocuments = override.writeBackPatchedDocuments(definition);
         this.loadDocumentsRouted = override.loadDocumentsRouted(definition);
+        this.loadDocumentsInIdRanges = override.loadDocumentsInIdRanges(definition);
+        this.lazyDocumentDecoding = override.lazyDocumentDecoding(definition);
+        this.partialUpdateFields = override.partialUpdateFields(definition);
+        this.skipUnchangedWrites = override.skipUnchangedWrites(definition);
+        this.skipUnchangedWritesOffHeap = override.skipUnchangedWritesOffHeap(definition);
+        this.existenceFilterFalsePositiveRate = override.existenceFilterFalsePositiveRate(definition);
 
 		PersistInstanceIdDefinition persistInstanceId = override.persistInstanceId(definition);
         this.persistInstanceId = persistInstanceId.isEnabled();
@@ -130,6 +142,19 @@ final class MirroredObject<T> {
 		}
 	}
 
+	/**
+	 * Sets the document attributes of a document converted from a partially updated space object. The routing
+	 * key and instance id fields are only set if the routing key is part of the partial update, otherwise the
+	 * stored values are kept. <p>
+	 */
+	void setPartialDocumentAttributes(Document document, T spaceObject, InstanceMetadata metadata) {
+		if (getRoutingKey(spaceObject) != null) {
+			setDocumentAttributes(document, spaceObject, metadata);
+		} else {
+			setDocumentVersion(document);
+		}
+	}
+
 	private void setDocumentVersion(Document document) {
 		document.put(DOCUMENT_FORMAT_VERSION_PROPERTY, getCurrentVersion());
 	}
@@ -221,6 +246,33 @@ final class MirroredObject<T> {
 		return loadDocumentsRouted;
 	}
 
+	int loadDocumentsInIdRanges() {
+		return loadDocumentsInIdRanges;
+	}
+
+	boolean lazyDocumentDecoding() {
+		return lazyDocumentDecoding;
+	}
+
+	boolean partialUpdateFields() {
+		return partialUpdateFields;
+	}
+
+	int skipUnchangedWrites() {
+		return skipUnchangedWrites;
+	}
+
+	boolean skipUnchangedWritesOffHeap() {
+		return skipUnchangedWritesOffHeap;
+	}
+
+	/**
+	 * The false positive rate of the existence filter of this type, or zero if it has none.
+	 */
+	double existenceFilterFalsePositiveRate() {
+		return existenceFilterFalsePositiveRate;
+	}
+
 	boolean persistInstanceId() {
 		return persistInstanceId;
 	}
@@ -53,6 +53,12 @@ public final class MirroredObjectDefinition<T> {
 	private boolean excludeFromInitialLoad = false;
 	private boolean writeBackPatchedDocuments = true;
 	private boolean loadDocumentsRouted = false;
+	private int loadDocumentsInIdRanges = 1;
+	private boolean lazyDocumentDecoding = false;
+	private boolean partialUpdateFields = false;
+	private int skipUnchangedWrites = 0;
+	private boolean skipUnchangedWritesOffHeap = false;
+	private double existenceFilterFalsePositiveRate = 0;
 	private final PersistInstanceIdDefinition persistInstanceId = new PersistInstanceIdDefinition();
 	private boolean keepPersistent = false;
 	private TemplateFactory customInitialLoadTemplateFactory;
@@ -133,6 +139,138 @@ public final class MirroredObjectDefinition<T> {
 		return this;
 	}
 
+	/**
+	 * Splits the collection into the given number of _id ranges during InitialLoad, where each range is read
+	 * concurrently using a separate cursor. The ranges are combined with any routing or instance id filtering
+	 * that is used for the collection. <br>
+	 * <br>
+	 * The range boundaries are estimated from a random sample of the collection ids. Intended for very large collections
+	 * where reading all documents using a single cursor is the bottleneck during InitialLoad.
+	 *
+	 * Default value is 1, indicating that all documents are read using a single cursor.
+	 */
+	public MirroredObjectDefinition<T> loadDocumentsInIdRanges(int numIdRanges) {
+		if (numIdRanges < 1) {
+			throw new IllegalArgumentException("numIdRanges must be a positive integer, was numIdRanges=" + numIdRanges + "!");
+		}
+		this.loadDocumentsInIdRanges = numIdRanges;
+		return this;
+	}
+
+	int loadDocumentsInIdRanges() {
+		return this.loadDocumentsInIdRanges;
+	}
+
+	/**
+	 * Reads documents as raw bson during InitialLoad when loading using {@link #persistInstanceId(boolean)} but its
+	 * index is missing, in which case documents of all partitions are read. Documents whose persisted routing key
+	 * belongs to another partition are then skipped without being decoded. <br>
+	 * <br>
+	 * Every other document is still decoded once, since the MongoConverter and the
+	 * {@link com.avanza.ymer.plugin.PostReadProcessor PostReadProcessor} only read decoded documents. Otherwise,
+	 * for instance when the index exists or when using {@link #loadDocumentsRouted(boolean)}, mongo already leaves
+	 * out the documents of other partitions and the documents are read decoded as usual.
+	 *
+	 * Default value is false.
+	 */
+	public MirroredObjectDefinition<T> lazyDocumentDecoding(boolean lazyDocumentDecoding) {
+		this.lazyDocumentDecoding = lazyDocumentDecoding;
+		return this;
+	}
+
+	boolean lazyDocumentDecoding() {
+		return this.lazyDocumentDecoding;
+	}
+
+	/**
+	 * Writes partial updates of this type as a $set of the partially updated properties, rather than replacing
+	 * the whole document with the partially updated object. GigaSpaces leaves the properties that were not
+	 * updated null, so only use this when all properties that may be left out of a partial update are nullable,
+	 * since primitive properties would otherwise be overwritten. <br>
+	 * <br>
+	 * A stored document of an older version is patched before the updated properties are applied, and a missing
+	 * document is inserted with the updated properties only, as before.
+	 *
+	 * Default value is false.
+	 */
+	public MirroredObjectDefinition<T> partialUpdateFields(boolean partialUpdateFields) {
+		this.partialUpdateFields = partialUpdateFields;
+		return this;
+	}
+
+	boolean partialUpdateFields() {
+		return this.partialUpdateFields;
+	}
+
+	/**
+	 * Skips mirrored updates writing a document that is unchanged since it was last written by this mirror, such
+	 * as updates only touching properties that are not persisted. A 64 bit hash of each written document, after any
+	 * {@link com.avanza.ymer.plugin.PreWriteProcessor} has run, is tracked for at most the given number of documents,
+	 * using 16 bytes per document. When a document is evicted its next update is written. <br>
+	 * <br>
+	 * Only use this when the mirror is the only writer of the collection, since a document changed by someone else
+	 * is not overwritten by an update that matches what the mirror last wrote.
+	 *
+	 * Default value is 0, i.e. all updates are written.
+	 */
+	public MirroredObjectDefinition<T> skipUnchangedWrites(int maxTrackedDocuments) {
+		if (maxTrackedDocuments < 0 || maxTrackedDocuments > LongLongCache.MAX_CAPACITY) {
+			throw new IllegalArgumentException("maxTrackedDocuments must be between 0 and " + LongLongCache.MAX_CAPACITY
+					+ ", was maxTrackedDocuments=" + maxTrackedDocuments + "!");
+		}
+		this.skipUnchangedWrites = maxTrackedDocuments;
+		return this;
+	}
+
+	int skipUnchangedWrites() {
+		return this.skipUnchangedWrites;
+	}
+
+	/**
+	 * Keeps the hashes tracked by {@link #skipUnchangedWrites(int)} in direct memory rather than on the heap.
+	 *
+	 * Default value is false.
+	 */
+	public MirroredObjectDefinition<T> skipUnchangedWritesOffHeap(boolean offHeap) {
+		this.skipUnchangedWritesOffHeap = offHeap;
+		return this;
+	}
+
+	boolean skipUnchangedWritesOffHeap() {
+		return this.skipUnchangedWritesOffHeap;
+	}
+
+	/**
+	 * Keeps a Bloom filter over the ids of the collection, so that loads of objects by an id that has no
+	 * document are answered without querying mongo. Intended for collections that are {@link #excludeFromInitialLoad(boolean)
+	 * excluded from InitialLoad}, where most loads are for ids that have never been persisted. <br>
+	 * <br>
+	 * This option only has an effect when the mirror runs in the same JVM as the space, since the filter has to
+	 * get every id written to the collection. In a deployment where the mirror runs in a processing unit of its
+	 * own, no filter is ever built and all loads query mongo. <br>
+	 * <br>
+	 * The filter is built by reading all ids of the collection in the background once a mirror in the same JVM
+	 * writes the collection, during which all loads query mongo, and is sized for twice the number of documents at
+	 * the time. Its bits are kept in direct memory, using about 2.4 bytes per document for a false positive rate of
+	 * 1%. The filter is discarded if no mirror in the same JVM writes the collection anymore. <br>
+	 * <br>
+	 * The given rate is the expected share of loads of missing ids that still query mongo, and must be between
+	 * 0 and 1.
+	 *
+	 * Default value is 0, i.e. no existence filter is kept.
+	 */
+	public MirroredObjectDefinition<T> existenceFilter(double falsePositiveRate) {
+		if (!(falsePositiveRate >= 0 && falsePositiveRate < 1)) {
+			throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1, was falsePositiveRate=" + falsePositiveRate + "!");
+		}
+		this.existenceFilterFalsePositiveRate = falsePositiveRate;
+		return this;
+	}
+
+	double existenceFilterFalsePositiveRate() {
+		return this.existenceFilterFalsePositiveRate;
+	}
+
 	/**
 	 * Sets the read preference for queries against documents in this collection.
 	 */
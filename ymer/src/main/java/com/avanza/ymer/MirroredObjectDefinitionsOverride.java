@@ -29,6 +29,12 @@ public interface MirroredObjectDefinitionsOverride {
     boolean writeBackPatchedDocuments(MirroredObjectDefinition<?> definition);
     boolean loadDocumentsRouted(MirroredObjectDefinition<?> definition);
     PersistInstanceIdDefinition persistInstanceId(MirroredObjectDefinition<?> definition);
+    int loadDocumentsInIdRanges(MirroredObjectDefinition<?> definition);
+    boolean lazyDocumentDecoding(MirroredObjectDefinition<?> definition);
+    boolean partialUpdateFields(MirroredObjectDefinition<?> definition);
+    int skipUnchangedWrites(MirroredObjectDefinition<?> definition);
+    boolean skipUnchangedWritesOffHeap(MirroredObjectDefinition<?> definition);
+    double existenceFilterFalsePositiveRate(MirroredObjectDefinition<?> definition);
 
     static MirroredObjectDefinitionsOverride noOverride() {
         return new MirroredObjectDefinitionsOverrideNone();
@@ -58,6 +64,36 @@ public interface MirroredObjectDefinitionsOverride {
         public PersistInstanceIdDefinition persistInstanceId(MirroredObjectDefinition<?> definition) {
             return definition.getPersistInstanceId();
         }
+
+        @Override
+        public int loadDocumentsInIdRanges(MirroredObjectDefinition<?> definition) {
+            return definition.loadDocumentsInIdRanges();
+        }
+
+        @Override
+        public boolean lazyDocumentDecoding(MirroredObjectDefinition<?> definition) {
+            return definition.lazyDocumentDecoding();
+        }
+
+        @Override
+        public boolean partialUpdateFields(MirroredObjectDefinition<?> definition) {
+            return definition.partialUpdateFields();
+        }
+
+        @Override
+        public int skipUnchangedWrites(MirroredObjectDefinition<?> definition) {
+            return definition.skipUnchangedWrites();
+        }
+
+        @Override
+        public boolean skipUnchangedWritesOffHeap(MirroredObjectDefinition<?> definition) {
+            return definition.skipUnchangedWritesOffHeap();
+        }
+
+        @Override
+        public double existenceFilterFalsePositiveRate(MirroredObjectDefinition<?> definition) {
+            return definition.existenceFilterFalsePositiveRate();
+        }
     }
 
     class MirroredObjectDefinitionsOverrideSystemProperties implements MirroredObjectDefinitionsOverride {
@@ -90,6 +126,46 @@ public interface MirroredObjectDefinitionsOverride {
             return persistInstanceId;
         }
 
+        @Override
+        public int loadDocumentsInIdRanges(MirroredObjectDefinition<?> definition) {
+            return getIntProperty(definition, "loadDocumentsInIdRanges")
+                    .filter(numIdRanges -> isValid(numIdRanges >= 1, "loadDocumentsInIdRanges", numIdRanges))
+                    .orElse(definition.loadDocumentsInIdRanges());
+        }
+
+        @Override
+        public boolean lazyDocumentDecoding(MirroredObjectDefinition<?> definition) {
+            return getProperty(definition, "lazyDocumentDecoding")
+                    .orElse(definition.lazyDocumentDecoding());
+        }
+
+        @Override
+        public boolean partialUpdateFields(MirroredObjectDefinition<?> definition) {
+            return getProperty(definition, "partialUpdateFields")
+                    .orElse(definition.partialUpdateFields());
+        }
+
+        @Override
+        public int skipUnchangedWrites(MirroredObjectDefinition<?> definition) {
+            return getIntProperty(definition, "skipUnchangedWrites")
+                    .filter(maxTrackedDocuments -> isValid(maxTrackedDocuments >= 0 && maxTrackedDocuments <= LongLongCache.MAX_CAPACITY,
+                            "skipUnchangedWrites", maxTrackedDocuments))
+                    .orElse(definition.skipUnchangedWrites());
+        }
+
+        @Override
+        public boolean skipUnchangedWritesOffHeap(MirroredObjectDefinition<?> definition) {
+            return getProperty(definition, "skipUnchangedWritesOffHeap")
+                    .orElse(definition.skipUnchangedWritesOffHeap());
+        }
+
+        @Override
+        public double existenceFilterFalsePositiveRate(MirroredObjectDefinition<?> definition) {
+            return getDoubleProperty(definition, "existenceFilter")
+                    .filter(falsePositiveRate -> isValid(falsePositiveRate >= 0 && falsePositiveRate < 1, "existenceFilter", falsePositiveRate))
+                    .orElse(definition.existenceFilterFalsePositiveRate());
+        }
+
         private Optional<Boolean> getProperty(MirroredObjectDefinition<?> definition, String setting) {
             return Optional.ofNullable(System.getProperty(getPropertyName(definition, setting)))
                     .filter(s -> s.equals("true") || s.equals("false"))
@@ -108,6 +184,25 @@ public interface MirroredObjectDefinitionsOverride {
                     });
         }
 
+        private Optional<Double> getDoubleProperty(MirroredObjectDefinition<?> definition, String setting) {
+            return Optional.ofNullable(System.getProperty(getPropertyName(definition, setting)))
+                    .flatMap(s -> {
+                        try {
+                            return Optional.of(Double.valueOf(s));
+                        } catch (NumberFormatException e) {
+                            log.warn("Could not parse setting {} with value [{}] as double", setting, s);
+                            return Optional.empty();
+                        }
+                    });
+        }
+
+        private static boolean isValid(boolean valid, String setting, Object value) {
+            if (!valid) {
+                log.warn("Ignoring setting {} with invalid value [{}]", setting, value);
+            }
+            return valid;
+        }
+
         public static String getPropertyName(MirroredObjectDefinition<?> definition, String setting) {
             return "ymer." + definition.getMirroredType().getCanonicalName() + "." + setting;
         }
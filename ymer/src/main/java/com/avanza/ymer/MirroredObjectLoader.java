@@ -18,22 +18,40 @@ package com.avanza.ymer;
 import static com.avanza.ymer.MirroredObject.DOCUMENT_ROUTING_KEY;
 import static com.avanza.ymer.PersistedInstanceIdUtil.getInstanceIdFieldName;
 import static com.avanza.ymer.PersistedInstanceIdUtil.isIndexForNumberOfPartitions;
+import static java.util.Collections.emptyList;
+import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.Nullable;
 
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 
@@ -42,11 +60,12 @@ import com.avanza.ymer.plugin.PostReadProcessor;
 /**
  * Loads mirrored objects from an external (persistent) source.
  * <p>
- * Implementation note: multithreaded patching to increase throughput.
+ * Implementation note: multithreaded patching to increase throughput, see {@link BoundedPipeline}.
  *
  * @author Elias Lindholm (elilin), Kristoffer Erlandsson, Andreas Skoog
  */
 final class MirroredObjectLoader<T> {
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final MirroredObject<T> mirroredObject;
@@ -56,6 +75,8 @@ final class MirroredObjectLoader<T> {
     private final LongAdder numLoadedObjects = new LongAdder();
     private final MirrorContextProperties contextProperties;
     private final PostReadProcessor postReadProcessor;
+    private final InitialLoadProperties initialLoadProperties;
+    private final InitialLoadStatistics initialLoadStatistics;
 
     MirroredObjectLoader(DocumentCollection documentCollection,
                          DocumentConverter documentConverter,
@@ -63,6 +84,29 @@ final class MirroredObjectLoader<T> {
                          SpaceObjectFilter<T> spaceObjectFilter,
                          MirrorContextProperties contextProperties,
                          PostReadProcessor postReadProcessor) {
+        this(documentCollection, documentConverter, mirroredObject, spaceObjectFilter, contextProperties, postReadProcessor, InitialLoadProperties.defaults());
+    }
+
+    MirroredObjectLoader(DocumentCollection documentCollection,
+                         DocumentConverter documentConverter,
+                         MirroredObject<T> mirroredObject,
+                         SpaceObjectFilter<T> spaceObjectFilter,
+                         MirrorContextProperties contextProperties,
+                         PostReadProcessor postReadProcessor,
+                         InitialLoadProperties initialLoadProperties) {
+        this(documentCollection, documentConverter, mirroredObject, spaceObjectFilter, contextProperties, postReadProcessor, initialLoadProperties, new InitialLoadStatistics());
+    }
+
+    MirroredObjectLoader(DocumentCollection documentCollection,
+                         DocumentConverter documentConverter,
+                         MirroredObject<T> mirroredObject,
+                         SpaceObjectFilter<T> spaceObjectFilter,
+                         MirrorContextProperties contextProperties,
+                         PostReadProcessor postReadProcessor,
+                         InitialLoadProperties initialLoadProperties,
+                         InitialLoadStatistics initialLoadStatistics) {
+        this.initialLoadProperties = initialLoadProperties;
+        this.initialLoadStatistics = initialLoadStatistics;
         this.documentConverter = documentConverter;
         this.spaceObjectFilter = spaceObjectFilter;
         this.documentCollection = documentCollection;
@@ -71,28 +115,116 @@ final class MirroredObjectLoader<T> {
         this.postReadProcessor = postReadProcessor;
     }
 
-    List<LoadedDocument<T>> loadAllObjects() {
-        return streamAllObjects().collect(toList());
+    List<LoadedDocument<T>> loadAllObjects(InitialLoadExecutor loaderExecutor) {
+        try (Stream<LoadedDocument<T>> objects = streamAllObjects(loaderExecutor)) {
+            return objects.collect(toList());
+        }
     }
 
-    Stream<LoadedDocument<T>> streamAllObjects() {
-        RepeatingTask progressLogger = new RepeatingTask(Duration.ofSeconds(30), () ->
-                log.info("Status: loaded {} records for collection {}", numLoadedObjects.sum(), mirroredObject.getCollectionName()));
+    /**
+     * Streams all objects for the collection. Documents are read from the collection on a dedicated thread
+     * and patched and converted on the given executor, see {@link BoundedPipeline}. The returned stream
+     * must be closed in order to release the underlying cursor if not fully consumed.
+     */
+    Stream<LoadedDocument<T>> streamAllObjects(InitialLoadExecutor loaderExecutor) {
+        if (mirroredObject.lazyDocumentDecoding() && loadsDocumentsRoutedToOtherPartitions()) {
+            return streamAllObjects(loadDocuments(documentCollection::findRawByQuery), this::tryDecodePatchAndConvert, loaderExecutor);
+        }
+        return streamAllObjects(loadDocuments(documentCollection::findByQuery), this::tryPatchAndConvert, loaderExecutor);
+    }
+
+    private <D> Stream<LoadedDocument<T>> streamAllObjects(Stream<D> documents,
+                                                           Function<D, Optional<LoadedDocument<T>>> patchAndConvert,
+                                                           InitialLoadExecutor loaderExecutor) {
+        BoundedPipeline<D, LoadedDocument<T>> pipeline = new BoundedPipeline<>(
+                documents,
+                patchAndConvert::apply,
+                loaderExecutor,
+                initialLoadProperties.getNumWorkersPerCollection(),
+                initialLoadProperties.getQueueCapacity(),
+                "Ymer-Read-" + mirroredObject.getCollectionName() + "-");
+        initialLoadStatistics.pipelineStarted(pipeline);
+        long startNanos = System.nanoTime();
+        RepeatingTask progressLogger = new RepeatingTask(Duration.ofSeconds(30), () -> {
+            double elapsedSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos));
+            log.info("Status: loaded {} records for collection {}. Read {} documents ({}/s), converted {} documents ({}/s), "
+                            + "{} documents waiting for conversion, {} objects waiting to be written to space",
+                    numLoadedObjects.sum(), mirroredObject.getCollectionName(),
+                    pipeline.getNumRead(), Math.round(pipeline.getNumRead() / elapsedSeconds),
+                    pipeline.getNumTransformed(), Math.round(pipeline.getNumTransformed() / elapsedSeconds),
+                    pipeline.getInputQueueDepth(), pipeline.getOutputQueueDepth());
+        });
 
-        return loadDocuments()
-                .parallel() // We run patching and conversions in parallel as this is a cpu-intensive task
-                .flatMap(document -> tryPatchAndConvert(document).stream())
+        return StreamSupport.stream(spliteratorUnknownSize(pipeline, Spliterator.NONNULL), false)
+                .onClose(pipeline::close)
+                .onClose(() -> initialLoadStatistics.pipelineClosed(pipeline))
                 .onClose(progressLogger::close);
     }
 
-    private Stream<Document> loadDocuments() {
+    @SuppressWarnings("unchecked")
+    private <D> Stream<D> loadDocuments(Function<Query, Stream<D>> find) {
+        if (mirroredObject.loadDocumentsInIdRanges() > 1) {
+            List<Criteria> idRanges = createIdRanges(documentCollection.findIdSplitPoints(mirroredObject.loadDocumentsInIdRanges()));
+            if (idRanges.size() > 1) {
+                log.info("Loading collection {} using {} parallel id ranges", mirroredObject.getCollectionName(), idRanges.size());
+                List<Supplier<Stream<D>>> rangeLoaders = idRanges.stream()
+                        .map(idRange -> (Supplier<Stream<D>>) () -> find.apply(createInitialLoadQuery(idRange)))
+                        .collect(toList());
+                ParallelCollectionLoader rangeLoader = new ParallelCollectionLoader(rangeLoaders, rangeLoaders.size(), initialLoadProperties.getQueueCapacity());
+                return StreamSupport.stream(spliteratorUnknownSize(rangeLoader, 0), false)
+                        .map(document -> (D) document)
+                        .onClose(rangeLoader::close);
+            }
+            log.info("Could not split collection {} into id ranges. Loading using a single cursor.", mirroredObject.getCollectionName());
+        }
+        return find.apply(createInitialLoadQuery(null));
+    }
+
+    /**
+     * Creates one _id range per interval between the given split points. Range queries in mongo only match
+     * ids of the same type as the range boundaries, hence the first range matches everything that is not
+     * in any of the following ranges. Falls back to a single range if the split points are of mixed types.
+     */
+    private List<Criteria> createIdRanges(List<Object> splitPoints) {
+        if (splitPoints.isEmpty() || splitPoints.stream().map(Object::getClass).distinct().count() > 1) {
+            return emptyList();
+        }
+        List<Criteria> idRanges = new ArrayList<>();
+        idRanges.add(where("_id").not().gte(splitPoints.get(0)));
+        for (int i = 1; i < splitPoints.size(); i++) {
+            idRanges.add(where("_id").gte(splitPoints.get(i - 1)).lt(splitPoints.get(i)));
+        }
+        idRanges.add(where("_id").gte(splitPoints.get(splitPoints.size() - 1)));
+        return idRanges;
+    }
+
+    /**
+     * Whether the InitialLoad query reads documents containing a routing key for another partition. That is only
+     * the case when loading using persistInstanceId without its index, since mongo otherwise either filters on the
+     * routing key itself or the query excludes the routing key from the loaded documents.
+     */
+    private boolean loadsDocumentsRoutedToOtherPartitions() {
+        return spaceObjectFilter.hasPartitionFilter()
+                && mirroredObject.persistInstanceId()
+                && !mirroredObject.loadDocumentsRouted()
+                && !mirroredObject.hasCustomInitialLoadTemplate()
+                && documentCollection.getIndexes()
+                        .filter(PersistedInstanceIdUtil::isPersistedInstanceIdIndex)
+                        .noneMatch(isIndexForNumberOfPartitions(contextProperties.getPartitionCount()));
+    }
+
+    private Query createInitialLoadQuery(@Nullable Criteria idRange) {
+        String rangeDescription = idRange == null ? "" : " in id range " + idRange.getCriteriaObject().toJson();
         if (mirroredObject.hasCustomInitialLoadTemplate()) {
             Document template = mirroredObject.getCustomInitialLoadTemplateFactory()
                                                    .create(contextProperties.getPartitionCount(),
                                                            contextProperties.getInstanceId());
-            log.info("Begin loading objects for collection {}. Loading using custom initial load template.",
-                    mirroredObject.getCollectionName());
-            return documentCollection.findByTemplate(template);
+            log.info("Begin loading objects for collection {}{}. Loading using custom initial load template.",
+                    mirroredObject.getCollectionName(), rangeDescription);
+            if (idRange != null) {
+                template = new Document("$and", Arrays.asList(template, idRange.getCriteriaObject()));
+            }
+            return new BasicQuery(template);
         }
         if (mirroredObject.persistInstanceId()) {
             String instanceIdField = getInstanceIdFieldName(contextProperties.getPartitionCount());
@@ -103,50 +235,131 @@ final class MirroredObjectLoader<T> {
                     .anyMatch(isIndexForNumberOfPartitions(contextProperties.getPartitionCount()));
             if (indexExists) {
                 Query query = query(new Criteria().orOperator(where(instanceIdField).is(contextProperties.getInstanceId()), where(instanceIdField).exists(false)));
+                if (idRange != null) {
+                    query.addCriteria(idRange);
+                }
 
                 // exclude fields that are only needed in db while loading the data and are not used in code
                 instanceIdIndices.forEach(index -> query.fields().exclude(index.getIndexFields().get(0).getKey()));
                 query.fields().exclude(DOCUMENT_ROUTING_KEY);
 
-                log.info("Begin loading objects for collection {}. Loading using persistInstanceId.", mirroredObject.getCollectionName());
-                return documentCollection.findByQuery(query);
+                log.info("Begin loading objects for collection {}{}. Loading using persistInstanceId.", mirroredObject.getCollectionName(), rangeDescription);
+                return query;
             } else {
                 log.warn("Configured to load using persisted instance id for collection {}, but no index exists for field {}. Will not use instance id when loading.",
                         mirroredObject.getCollectionName(), instanceIdField);
             }
         }
+        Query query = new Query();
         if (mirroredObject.loadDocumentsRouted()) {
-            log.info("Begin loading objects for collection {}. Loading using loadDocumentsRouted.", mirroredObject.getCollectionName());
-            return documentCollection.findAll(spaceObjectFilter);
+            log.info("Begin loading objects for collection {}{}. Loading using loadDocumentsRouted.", mirroredObject.getCollectionName(), rangeDescription);
+            if (MongoPartitionFilter.canCreateFrom(spaceObjectFilter)) {
+                query = new BasicQuery(MongoPartitionFilter.createDocument(spaceObjectFilter));
+            }
         } else {
-            log.info("Begin loading objects for collection {}. Loading ALL documents.", mirroredObject.getCollectionName());
-            return documentCollection.findAll();
+            log.info("Begin loading objects for collection {}{}. Loading ALL documents.", mirroredObject.getCollectionName(), rangeDescription);
         }
+        if (idRange != null) {
+            query.addCriteria(idRange);
+        }
+        return query;
     }
 
     private Optional<LoadedDocument<T>> tryPatchAndConvert(Document document) {
+        return tryPatchAndConvert(document, document);
+    }
+
+    /**
+     * Decodes a raw document read during InitialLoad. Documents containing a routing key for another partition
+     * are rejected without being decoded. Other documents are decoded whether or not they need patching, since
+     * both the PostReadProcessor and the DocumentConverter read decoded documents.
+     */
+    private Optional<LoadedDocument<T>> tryDecodePatchAndConvert(RawBsonDocument rawDocument) {
+        if (!isRoutedToThisPartition(rawDocument)) {
+            numLoadedObjects.increment();
+            return Optional.empty();
+        }
+        initialLoadStatistics.documentRead(rawDocument.getByteBuffer().remaining());
+        return tryPatchAndConvert(rawDocument.decode(DocumentCodecs.DEFAULT), rawDocument);
+    }
+
+    private boolean isRoutedToThisPartition(RawBsonDocument rawDocument) {
+        BsonValue routingKey = rawDocument.get(DOCUMENT_ROUTING_KEY);
+        if (routingKey == null || !routingKey.isInt32()) {
+            return true;
+        }
+        // The routing key is persisted as the hash code of the actual routing key, which routes to the same partition
+        return spaceObjectFilter.getPartitionFilter().routesToThisPartition(routingKey.asInt32().getValue());
+    }
+
+    private Optional<LoadedDocument<T>> tryPatchAndConvert(Document document, Object loggedDocument) {
         try {
-            Optional<LoadedDocument<T>> result;
-            try {
-                result = patchAndConvert(new Document(document));
-            } catch (RuntimeException e) {
-                // MongoConverter is not thread-safe due to a bug in AbstractMappingContext.addPersistentEntity().
-                // The bug occurs at most once or twice per collection but will produce objects without any properties set
-                // Resolve it temporarily by retrying.
-                log.warn("Failed to load dbObject={}. Retrying.", document, e);
-                result = patchAndConvert(new Document(document));
-            }
+            Optional<LoadedDocument<T>> result = patchAndConvert(document, this::patchRecordingStatistics, this::convertAndFilterWithRetry);
             numLoadedObjects.increment();
 
             return result;
         } catch (RuntimeException e) {
-            log.error("Unable to load document={}", document, e);
+            log.error("Unable to load document={}", loggedDocument, e);
             throw e;
         }
     }
 
+    private Document patchRecordingStatistics(Document document) {
+        int fromVersion = mirroredObject.getDocumentVersion(document);
+        long startNanos = System.nanoTime();
+        Document patched = patch(document);
+        initialLoadStatistics.documentPatched(fromVersion, System.nanoTime() - startNanos);
+        return patched;
+    }
+
+    private Optional<T> convertAndFilterWithRetry(Document document) {
+        return convertWithRetry(document, this::convertAndFilterRecordingStatistics);
+    }
+
+    private <R> R convertWithRetry(Document document, Function<Document, R> convert) {
+        try {
+            return convert.apply(document);
+        } catch (RuntimeException e) {
+            // MongoConverter is not thread-safe due to a bug in AbstractMappingContext.addPersistentEntity().
+            // The bug occurs at most once or twice per collection but will produce objects without any properties set
+            // Resolve it temporarily by retrying. Conversion does not modify the document, hence it can be reused.
+            log.warn("Failed to load dbObject={}. Retrying.", document, e);
+            return convert.apply(document);
+        }
+    }
+
+    private Optional<T> convertAndFilterRecordingStatistics(Document document) {
+        long startNanos = System.nanoTime();
+        T mirroredObject = documentConverter.convert(this.mirroredObject.getMirroredType(), document);
+        long convertedNanos = System.nanoTime();
+        boolean accepted = spaceObjectFilter.accept(mirroredObject);
+        initialLoadStatistics.documentConverted(convertedNanos - startNanos);
+        initialLoadStatistics.documentFiltered(accepted, System.nanoTime() - convertedNanos);
+        return accepted ? Optional.of(mirroredObject) : Optional.empty();
+    }
+
     Optional<LoadedDocument<T>> loadById(Object id) {
-        Document document = findById(id);
+        return loadFoundById(id, findById(id));
+    }
+
+    /**
+     * Loads the object with the given id from a copy of the given document, previously read using
+     * {@link #findRawByIds(List)}, the same way as {@link #loadById(Object)}.
+     */
+    Optional<LoadedDocument<T>> loadById(Object id, @Nullable RawBsonDocument rawDocument) {
+        return loadFoundById(id, rawDocument != null ? rawDocument.decode(DocumentCodecs.DEFAULT) : null);
+    }
+
+    /**
+     * Loads an object from a document of the current version cached by a {@link ReadThroughCache}. The document
+     * needs no patching and was accepted by the filter when read, hence it is only converted.
+     */
+    LoadedDocument<T> loadCached(Document document) {
+        T mirroredObject = convertWithRetry(document, currentVersion -> documentConverter.convert(this.mirroredObject.getMirroredType(), currentVersion));
+        return new LoadedDocument<>(postProcess(mirroredObject), null);
+    }
+
+    private Optional<LoadedDocument<T>> loadFoundById(Object id, @Nullable Document document) {
         if (document == null) {
             return Optional.empty();
         }
@@ -155,27 +368,116 @@ final class MirroredObjectLoader<T> {
         return Optional.of(result);
     }
 
+    /**
+     * Converts the id of a space object into the _id of its document.
+     */
+    Object toDocumentId(Object id) {
+        return documentConverter.convertToMongoObject(id);
+    }
+
+    /**
+     * Reads the documents with the given document ids using a single $in query, keyed by _id. The documents are
+     * kept as raw bson, so that independent copies of a document can be loaded by several callers.
+     */
+    Map<Object, RawBsonDocument> findRawByIds(List<Object> documentIds) {
+        try (Stream<RawBsonDocument> documents = documentCollection.findRawByIds(documentIds)) {
+            return documents.collect(toMap(document -> DocumentCodecs.decodeField(document, "_id"), Function.identity()));
+        }
+    }
+
     List<LoadedDocument<T>> loadByQuery(T template) {
         return documentCollection.findByQuery(documentConverter.toQuery(template))
                 .flatMap(document -> patchAndConvert(document).stream())
                 .collect(toList());
     }
 
+    /**
+     * Loads the objects with the given ids, looking up at most {@link ReadThroughProperties#getBatchSize()} ids
+     * using a single $in query. Ids without a document, and objects rejected by the filter, are left out. When
+     * enough documents are found they are patched and converted concurrently on the given executor.
+     */
+    List<LoadedDocument<T>> loadByIds(Collection<?> ids, ReadThroughProperties readThroughProperties, @Nullable ExecutorService executor) {
+        List<Object> convertedIds = ids.stream()
+                .map(documentConverter::convertToMongoObject)
+                .distinct()
+                .collect(toList());
+        List<Document> documents = new ArrayList<>(convertedIds.size());
+        int batchSize = readThroughProperties.getBatchSize();
+        for (int start = 0; start < convertedIds.size(); start += batchSize) {
+            try (Stream<Document> batch = documentCollection.findByIds(convertedIds.subList(start, Math.min(start + batchSize, convertedIds.size())))) {
+                batch.forEach(documents::add);
+            }
+        }
+        if (executor == null || documents.size() < readThroughProperties.getParallelConversionThreshold()) {
+            return patchAndConvertAll(documents);
+        }
+        try {
+            return ParallelChunks.map(documents, this::patchAndConvertAll, executor, readThroughProperties.getNumConversionThreads());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for documents to be converted");
+        }
+    }
+
+    /**
+     * Streams the objects matching the given filter, which is combined with the partition filter of collections
+     * {@link MirroredObjectDefinition#loadDocumentsRouted(boolean) loaded routed}. Documents are read using the
+     * given cursor batch size, unless 0, and are patched and converted as the stream is consumed. The returned
+     * stream must be closed in order to release the underlying cursor if not fully consumed.
+     */
+    Stream<LoadedDocument<T>> streamByFilter(Document filter, int batchSize) {
+        List<Document> filters = new ArrayList<>();
+        if (!filter.isEmpty()) {
+            filters.add(filter);
+        }
+        if (mirroredObject.loadDocumentsRouted() && MongoPartitionFilter.canCreateFrom(spaceObjectFilter)) {
+            filters.add(MongoPartitionFilter.createDocument(spaceObjectFilter));
+        }
+        Query query = filters.isEmpty() ? new Query() : new BasicQuery(filters.size() == 1 ? filters.get(0) : new Document("$and", filters));
+        if (batchSize > 0) {
+            query.cursorBatchSize(batchSize);
+        }
+        if (!mirroredObject.writeBackPatchedDocuments()) {
+            // exclude fields that are only needed in db, unless the documents may replace the stored ones when patched
+            query.fields().exclude(DOCUMENT_ROUTING_KEY);
+            if (mirroredObject.persistInstanceId()) {
+                query.fields().exclude(getInstanceIdFieldName(contextProperties.getPartitionCount()));
+            }
+        }
+        return documentCollection.findByQuery(query)
+                .flatMap(document -> patchAndConvert(document).stream());
+    }
+
+    private List<LoadedDocument<T>> patchAndConvertAll(List<Document> documents) {
+        return documents.stream()
+                .flatMap(document -> patchAndConvert(document).stream())
+                .collect(toList());
+    }
+
     private Document findById(Object id) {
-        final Object convertedId = documentConverter.convertToMongoObject(id);
-        final Document document = documentCollection.findById(convertedId);
-        return document != null ? new Document(document) : null;
+        return documentCollection.findById(documentConverter.convertToMongoObject(id));
     }
 
     private Optional<LoadedDocument<T>> patchAndConvert(Document document) {
+        return patchAndConvert(document, this::patch, this::convertAndFilter);
+    }
+
+    /**
+     * Patches and converts a document owned by the caller, i.e. it may be modified. A copy is only made if
+     * the document is patched and the original version is needed to write back the patched document.
+     */
+    private Optional<LoadedDocument<T>> patchAndConvert(Document document,
+                                                        UnaryOperator<Document> patch,
+                                                        Function<Document, Optional<T>> convertAndFilter) {
         Document currentVersion = document;
         boolean patched = false;
         if (this.mirroredObject.requiresPatching(document)) {
             patched = true;
             try {
-                currentVersion = new Document(document);
-                postReadProcessor.postRead(currentVersion);
-                currentVersion = this.mirroredObject.patch(currentVersion);
+                if (this.mirroredObject.writeBackPatchedDocuments()) {
+                    currentVersion = new Document(document);
+                }
+                currentVersion = patch.apply(currentVersion);
             } catch (RuntimeException e) {
                 log.error("Patch of document failed! document={}currentVersion={}", mirroredObject, currentVersion, e);
                 throw e;
@@ -183,15 +485,28 @@ final class MirroredObjectLoader<T> {
         } else {
             postReadProcessor.postRead(currentVersion);
         }
-        T mirroredObject = documentConverter.convert(this.mirroredObject.getMirroredType(), currentVersion);
-        if (!spaceObjectFilter.accept(mirroredObject)) {
+        Optional<T> mirroredObject = convertAndFilter.apply(currentVersion);
+        if (mirroredObject.isEmpty()) {
             return Optional.empty();
         }
-        if (patched) {
-            return Optional.of(new LoadedDocument<>(postProcess(mirroredObject), new PatchedDocument(document, currentVersion)));
+        if (patched && this.mirroredObject.writeBackPatchedDocuments()) {
+            return Optional.of(new LoadedDocument<>(postProcess(mirroredObject.get()), new PatchedDocument(document, currentVersion)));
         } else {
-            return Optional.of(new LoadedDocument<>(postProcess(mirroredObject), null));
+            return Optional.of(new LoadedDocument<>(postProcess(mirroredObject.get()), null));
+        }
+    }
+
+    private Document patch(Document document) {
+        postReadProcessor.postRead(document);
+        return mirroredObject.patch(document);
+    }
+
+    private Optional<T> convertAndFilter(Document document) {
+        T mirroredObject = documentConverter.convert(this.mirroredObject.getMirroredType(), document);
+        if (!spaceObjectFilter.accept(mirroredObject)) {
+            return Optional.empty();
         }
+        return Optional.of(mirroredObject);
     }
 
     private T postProcess(T mirroredObject) {
@@ -16,11 +16,23 @@
 package com.avanza.ymer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -37,45 +49,471 @@ import com.gigaspaces.sync.OperationsBatchData;
  * @author Elias Lindholm (elilin)
  *
  */
-final class MirroredObjectWriter {
+final class MirroredObjectWriter implements AutoCloseable {
 
 	private static final Logger logger = LoggerFactory.getLogger(MirroredObjectWriter.class);
 
 	private final SpaceMirrorContext mirror;
 	private final DocumentWriteExceptionHandler exceptionHandler;
+	private final MirrorWriteProperties writeProperties;
+	private final ExecutorService laneExecutor;
+	private final ExecutorService conversionExecutor;
+	private final ExecutorService chunkExecutor;
+	private final WriteRetryPolicy retryPolicy;
 
 	MirroredObjectWriter(SpaceMirrorContext mirror, DocumentWriteExceptionHandler exceptionHandler) {
+		this(mirror, exceptionHandler, MirrorWriteProperties.defaults());
+	}
+
+	MirroredObjectWriter(SpaceMirrorContext mirror, DocumentWriteExceptionHandler exceptionHandler, MirrorWriteProperties writeProperties) {
 		this.mirror = Objects.requireNonNull(mirror);
 		this.exceptionHandler = Objects.requireNonNull(exceptionHandler);
+		this.writeProperties = Objects.requireNonNull(writeProperties);
+		this.laneExecutor = writeProperties.getNumLanes() > 1
+				? Executors.newFixedThreadPool(writeProperties.getNumLanes(), new DaemonThreadFactory("Ymer-Mirror-Writer-"))
+				: null;
+		this.conversionExecutor = writeProperties.getNumConversionThreads() > 1
+				? Executors.newFixedThreadPool(writeProperties.getNumConversionThreads(), new DaemonThreadFactory("Ymer-Mirror-Converter-"))
+				: null;
+		if (conversionExecutor != null) {
+			// Converting a type concurrently before its mapping metadata is initialized may yield documents without properties
+			mirror.getMirroredDocuments().forEach(mirroredObject -> mirror.getDocumentConverter().initialize(mirroredObject.getMirroredType()));
+		}
+		this.chunkExecutor = writeProperties.getNumConcurrentChunks() > 1
+				? Executors.newFixedThreadPool(writeProperties.getNumConcurrentChunks(), new DaemonThreadFactory("Ymer-Mirror-Inserter-"))
+				: null;
+		this.retryPolicy = new WriteRetryPolicy(writeProperties.getMaxWriteAttempts(),
+				writeProperties.getRetryInitialBackoff(), writeProperties.getRetryMaxBackoff());
+		mirror.getMirroredDocuments().forEach(mirroredObject -> ExistenceFilters.registerWriter(mirror.getDocumentCollection(mirroredObject).getNamespace(), this));
+	}
+
+	WriteRetryStatisticsMBean getRetryStatistics() {
+		return retryPolicy;
 	}
 
 	public void executeBulk(InstanceMetadata metadata, OperationsBatchData batch) {
+		Collection<DataSyncOperation> mirroredItems = filterSpaceObjects(batch.getBatchDataItems());
+		Collection<DataSyncOperation> bulkItems = mirroredItems;
+		if (writeProperties.isCoalesceOperations()) {
+			bulkItems = coalesce(bulkItems);
+		}
+		try {
+			if (laneExecutor != null && bulkItems.size() > 1) {
+				executeInLanes(metadata, bulkItems);
+			} else {
+				execute(metadata, bulkItems);
+			}
+		} finally {
+			invalidateReadThroughCaches(mirroredItems);
+		}
+	}
+
+	/**
+	 * Adds the ids of documents written to the given collection to the {@link ExistenceFilters existence filters}
+	 * of this JVM. Done both before the documents are written, so that they are not reported as missing once
+	 * written, and after, so that filters being built while they are written get their ids as well.
+	 */
+	private static void addToExistenceFilters(DocumentCollection documentCollection, List<Object> documentIds) {
+		if (!documentIds.isEmpty() && ExistenceFilters.isFiltered(documentCollection.getNamespace())) {
+			ExistenceFilters.added(documentCollection.getNamespace(), documentIds);
+		}
+	}
+
+	/**
+	 * Invalidates the written objects in the {@link ReadThroughCaches read through caches} of this JVM. Done
+	 * after the writes, whether they succeeded or not, so that the objects are not cached as read before them.
+	 */
+	private void invalidateReadThroughCaches(Collection<DataSyncOperation> bulkItems) {
+		for (DataSyncOperation bulkItem : bulkItems) {
+			Class<?> type = bulkItem.getDataAsObject().getClass();
+			if (!mirror.isMirroredType(type)) {
+				continue;
+			}
+			String namespace = mirror.getDocumentCollection(type).getNamespace();
+			if (!ReadThroughCaches.isCached(namespace)) {
+				continue;
+			}
+			if (bulkItem.supportsGetSpaceId() && bulkItem.getSpaceId() != null) {
+				ReadThroughCaches.invalidate(namespace, mirror.getDocumentConverter().convertToMongoObject(bulkItem.getSpaceId()));
+			} else {
+				ReadThroughCaches.invalidateAll(namespace);
+			}
+		}
+	}
+
+	/**
+	 * Writes the operations in concurrent lanes, each lane holding all operations on a given space object. Waits
+	 * for all lanes to complete. If any lane fails, the failure is rethrown, preferring a
+	 * {@link TransientDocumentWriteException} so that the batch is retried. <p>
+	 */
+	private void executeInLanes(InstanceMetadata metadata, Collection<DataSyncOperation> bulkItems) {
+		int numLanes = writeProperties.getNumLanes();
+		List<List<DataSyncOperation>> lanes = new ArrayList<>(numLanes);
+		for (int i = 0; i < numLanes; i++) {
+			lanes.add(new ArrayList<>());
+		}
+		for (DataSyncOperation bulkItem : bulkItems) {
+			lanes.get(laneOf(bulkItem, numLanes)).add(bulkItem);
+		}
+		List<Future<?>> laneWrites = new ArrayList<>(numLanes);
+		for (List<DataSyncOperation> lane : lanes) {
+			if (!lane.isEmpty()) {
+				laneWrites.add(laneExecutor.submit(() -> execute(metadata, lane)));
+			}
+		}
+		awaitAll(laneWrites);
+	}
+
+	/**
+	 * Waits for all the given writes to complete, and rethrows any failure, preferring a
+	 * {@link TransientDocumentWriteException}.
+	 */
+	private static void awaitAll(List<Future<?>> writes) {
+		RuntimeException failure = null;
+		for (Future<?> write : writes) {
+			try {
+				write.get();
+			} catch (ExecutionException e) {
+				failure = combine(failure, e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				writes.forEach(w -> w.cancel(true));
+				throw new TransientDocumentWriteException(e);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static int laneOf(DataSyncOperation bulkItem, int numLanes) {
+		// Operations without a space id are assigned by type only, which keeps them in order
+		Object spaceId = bulkItem.supportsGetSpaceId() ? bulkItem.getSpaceId() : null;
+		return Math.floorMod(Objects.hash(bulkItem.getDataAsObject().getClass(), spaceId), numLanes);
+	}
+
+	private static RuntimeException combine(RuntimeException failure, Throwable laneFailure) {
+		if (laneFailure instanceof Error) {
+			throw (Error) laneFailure;
+		}
+		RuntimeException e = laneFailure instanceof RuntimeException ? (RuntimeException) laneFailure : new RuntimeException(laneFailure);
+		if (failure == null) {
+			return e;
+		}
+		if (e instanceof TransientDocumentWriteException && !(failure instanceof TransientDocumentWriteException)) {
+			e.addSuppressed(failure);
+			return e;
+		}
+		failure.addSuppressed(e);
+		return failure;
+	}
+
+	private void execute(InstanceMetadata metadata, Collection<DataSyncOperation> bulkItems) {
+		if (writeProperties.isBulkWrite()) {
+			writeAll(metadata, bulkItems);
+			return;
+		}
+		// Consecutive inserts, and consecutive removes, are written together
 		List<Object> pendingWrites = new ArrayList<>();
-		for (DataSyncOperation bulkItem : filterSpaceObjects(batch.getBatchDataItems())) {
+		List<Object> pendingRemoves = new ArrayList<>();
+		for (DataSyncOperation bulkItem : bulkItems) {
 			if (!mirror.isMirroredType(bulkItem.getDataAsObject().getClass())) {
 				logger.debug("Ignored {}, not a mirrored class", bulkItem.getDataAsObject().getClass().getName());
 				continue;
 			}
 			switch (bulkItem.getDataSyncOperationType()) {
 				case WRITE:
+					removeAll(metadata, pendingRemoves);
+					pendingRemoves = new ArrayList<>();
 					pendingWrites.add(bulkItem.getDataAsObject());
 					break;
 				case UPDATE:
 				case PARTIAL_UPDATE:
 					insertAll(metadata, pendingWrites);
 					pendingWrites = new ArrayList<>();
-					update(metadata, bulkItem.getDataAsObject());
+					removeAll(metadata, pendingRemoves);
+					pendingRemoves = new ArrayList<>();
+					if (isPartialUpdateFields(bulkItem)) {
+						partialUpdate(metadata, bulkItem.getDataAsObject());
+					} else {
+						update(metadata, bulkItem.getDataAsObject());
+					}
 					break;
 				case REMOVE:
 					insertAll(metadata, pendingWrites);
 					pendingWrites = new ArrayList<>();
-					remove(metadata, bulkItem.getDataAsObject());
+					pendingRemoves.add(bulkItem.getDataAsObject());
 					break;
 				default:
 					throw new UnsupportedOperationException("Bulkoperation " + bulkItem.getDataSyncOperationType() + " is not supported");
 			}
 		}
 		insertAll(metadata, pendingWrites);
+		removeAll(metadata, pendingRemoves);
+	}
+
+	private static Collection<DataSyncOperation> coalesce(Collection<DataSyncOperation> bulkItems) {
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(bulkItems);
+		if (coalesced.size() < bulkItems.size()) {
+			logger.debug("Coalesced {} operations into {}", bulkItems.size(), coalesced.size());
+		}
+		return coalesced;
+	}
+
+	/**
+	 * Writes all operations using a single bulk write per collection, see {@link DocumentCollection#writeAll}.
+	 * Each failed operation is reported separately.
+	 */
+	private void writeAll(InstanceMetadata metadata, Collection<DataSyncOperation> bulkItems) {
+		List<DataSyncOperation> mirroredItems = new ArrayList<>(bulkItems.size());
+		for (DataSyncOperation bulkItem : bulkItems) {
+			if (mirror.isMirroredType(bulkItem.getDataAsObject().getClass())) {
+				mirroredItems.add(bulkItem);
+			} else {
+				logger.debug("Ignored {}, not a mirrored class", bulkItem.getDataAsObject().getClass().getName());
+			}
+		}
+		List<Conversion> conversions = convertAll(mirroredItems, bulkItem -> isPartialUpdateFields(bulkItem)
+				? toPartialDocument(bulkItem.getDataAsObject(), metadata)
+				: toDocument(bulkItem.getDataAsObject(), metadata));
+		Map<String, List<DocumentWrite>> writesByCollection = new LinkedHashMap<>();
+		Map<DocumentWrite, Object> itemByWrite = new IdentityHashMap<>();
+		for (int i = 0; i < mirroredItems.size(); i++) {
+			DataSyncOperation bulkItem = mirroredItems.get(i);
+			Object item = bulkItem.getDataAsObject();
+			MirrorOperation operation = toMirrorOperation(bulkItem.getDataSyncOperationType());
+			boolean partialUpdate = isPartialUpdateFields(bulkItem);
+			Conversion conversion = conversions.get(i);
+			if (conversion.failure != null) {
+				onException(conversion.failure, operation, item);
+				continue;
+			}
+			Document document = conversion.document;
+			DocumentWrite write = partialUpdate
+					? DocumentWrite.partialUpdate(document, patchToCurrentVersion(item))
+					: toDocumentWrite(operation, document);
+			if (!track(item, write)) {
+				logger.debug("Skipped update of {}, the document is unchanged", item);
+				continue;
+			}
+			writesByCollection.computeIfAbsent(mirror.getCollectionName(item.getClass()), k -> new ArrayList<>()).add(write);
+			itemByWrite.put(write, item);
+		}
+		writesByCollection.forEach((collectionName, writes) -> {
+			DocumentCollection documentCollection = getDocumentCollection(itemByWrite.get(writes.get(0)));
+			List<Object> writtenIds = writes.stream()
+					.filter(write -> write.getOperation() != MirrorOperation.REMOVE)
+					.map(DocumentWrite::getId)
+					.collect(Collectors.toList());
+			addToExistenceFilters(documentCollection, writtenIds);
+			try {
+				for (List<DocumentWrite> chunk : DocumentChunks.split(writes, DocumentWrite::getDocument,
+						writeProperties.getMaxChunkDocuments(), writeProperties.getMaxChunkBytes())) {
+					writeChunk(documentCollection, chunk, itemByWrite);
+				}
+			} finally {
+				addToExistenceFilters(documentCollection, writtenIds);
+			}
+		});
+	}
+
+	private void writeChunk(DocumentCollection documentCollection, List<DocumentWrite> writes, Map<DocumentWrite, Object> itemByWrite) {
+		try {
+			List<DocumentWrite> remaining = writes;
+			for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+				remaining = writeAttempt(documentCollection, remaining, itemByWrite, attempt);
+				if (!remaining.isEmpty()) {
+					retryPolicy.backoff(attempt, remaining.size());
+					remaining = withoutAppliedInserts(documentCollection, remaining);
+				}
+			}
+		} catch (TransientDocumentWriteException e) {
+			// The batch is retried, including the writes of chunks and collections not yet written
+			itemByWrite.forEach((write, item) -> forget(item, write.getId()));
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the given writes and reports the failed ones, except those that are retried according to the
+	 * {@link WriteRetryPolicy}. Returns the writes to attempt again: the retried writes along with any later
+	 * writes of the same documents, so that the writes of each document are still applied in order.
+	 */
+	private List<DocumentWrite> writeAttempt(DocumentCollection documentCollection, List<DocumentWrite> writes,
+			Map<DocumentWrite, Object> itemByWrite, int attempt) {
+		Set<DocumentWrite> retried = Collections.newSetFromMap(new IdentityHashMap<>());
+		Set<DocumentWrite> reported = Collections.newSetFromMap(new IdentityHashMap<>());
+		try {
+			documentCollection.writeAll(writes, (write, e) -> {
+				if (retryPolicy.isRetryable(e, attempt)) {
+					retried.add(write);
+					return;
+				}
+				reported.add(write);
+				forget(itemByWrite.get(write), write.getId());
+				onException(e, write.getOperation(), itemByWrite.get(write));
+			});
+		} catch (TransientDocumentWriteException e) {
+			throw e;
+		} catch (Exception e) {
+			if (retryPolicy.isRetryable(e, attempt)) {
+				return writes;
+			}
+			writes.forEach(write -> forget(itemByWrite.get(write), write.getId()));
+			// The bulk write failed as a whole, report all operations as failed
+			writes.stream()
+					.collect(Collectors.groupingBy(DocumentWrite::getOperation, LinkedHashMap::new,
+							Collectors.mapping(itemByWrite::get, Collectors.toList())))
+					.forEach((operation, items) -> onException(e, operation, items.toArray()));
+			return List.of();
+		}
+		if (retried.isEmpty()) {
+			return List.of();
+		}
+		List<DocumentWrite> nextAttempt = new ArrayList<>(retried.size());
+		Set<Object> retriedIds = new HashSet<>();
+		for (DocumentWrite write : writes) {
+			boolean laterWriteOfRetriedDocument = write.getId() != null && retriedIds.contains(write.getId()) && !reported.contains(write);
+			if (retried.contains(write) || laterWriteOfRetriedDocument) {
+				nextAttempt.add(write);
+				if (write.getId() != null) {
+					retriedIds.add(write.getId());
+				}
+			}
+		}
+		return nextAttempt;
+	}
+
+	/**
+	 * Returns the given writes, except the inserts of documents that now exist. A failed bulk write may have
+	 * applied some of its inserts before failing, and inserting them again would fail on their duplicate ids.
+	 * If the existing documents cannot be looked up, all writes are returned.
+	 */
+	private static List<DocumentWrite> withoutAppliedInserts(DocumentCollection documentCollection, List<DocumentWrite> writes) {
+		List<Object> insertedIds = writes.stream()
+				.filter(write -> write.getOperation() == MirrorOperation.INSERT && !write.isUpsert() && write.getId() != null)
+				.map(DocumentWrite::getId)
+				.collect(Collectors.toList());
+		if (insertedIds.isEmpty()) {
+			return writes;
+		}
+		Set<Object> existingIds;
+		try {
+			existingIds = findExistingIds(documentCollection, insertedIds);
+		} catch (RuntimeException e) {
+			logger.debug("Failed to look up the documents inserted by the failed write, retrying all writes", e);
+			return writes;
+		}
+		return writes.stream()
+				.filter(write -> write.getOperation() != MirrorOperation.INSERT || write.isUpsert() || !existingIds.contains(write.getId()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Converts the given inputs to documents, concurrently on the conversion threads if there are at least
+	 * {@link MirrorWriteProperties#getParallelConversionThreshold()} of them. The conversions are returned in
+	 * the order of the inputs, each holding either the document or the failure converting it.
+	 */
+	private <T> List<Conversion> convertAll(List<T> inputs, Function<T, Document> converter) {
+		Function<List<T>, List<Conversion>> convertChunk = chunk -> chunk.stream()
+				.map(input -> Conversion.of(input, converter))
+				.collect(Collectors.toList());
+		if (conversionExecutor == null || inputs.size() < writeProperties.getParallelConversionThreshold()) {
+			return convertChunk.apply(inputs);
+		}
+		try {
+			return ParallelChunks.map(inputs, convertChunk, conversionExecutor, writeProperties.getNumConversionThreads());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TransientDocumentWriteException(e);
+		}
+	}
+
+	/**
+	 * Tracks the document written by the given write, if {@link MirroredObjectDefinition#skipUnchangedWrites(int)
+	 * skipping unchanged writes}. Returns false if the write is an update of an unchanged document, which need
+	 * not be written.
+	 */
+	private boolean track(Object item, DocumentWrite write) {
+		WriteDeduplicator writeDeduplicator = mirror.getWriteDeduplicator(item.getClass());
+		if (writeDeduplicator == null) {
+			return true;
+		}
+		if (write.isPartialUpdate() || write.getOperation() == MirrorOperation.REMOVE) {
+			writeDeduplicator.forget(write.getId());
+			return true;
+		}
+		if (write.getOperation() == MirrorOperation.INSERT) {
+			writeDeduplicator.written(write.getDocument());
+			return true;
+		}
+		return !writeDeduplicator.isUnchanged(write.getDocument());
+	}
+
+	/**
+	 * Forgets the tracked document after a write that failed, or may have changed it without it being tracked.
+	 */
+	private void forget(Object item, Object id) {
+		WriteDeduplicator writeDeduplicator = mirror.getWriteDeduplicator(item.getClass());
+		if (writeDeduplicator != null) {
+			writeDeduplicator.forget(id);
+		}
+	}
+
+	private static MirrorOperation toMirrorOperation(DataSyncOperationType operationType) {
+		switch (operationType) {
+			case WRITE:
+				return MirrorOperation.INSERT;
+			case UPDATE:
+			case PARTIAL_UPDATE:
+				return MirrorOperation.UPDATE;
+			case REMOVE:
+				return MirrorOperation.REMOVE;
+			default:
+				throw new UnsupportedOperationException("Bulkoperation " + operationType + " is not supported");
+		}
+	}
+
+	private DocumentWrite toDocumentWrite(MirrorOperation operation, Document document) {
+		switch (operation) {
+			case INSERT:
+				return toInsert(document);
+			case UPDATE:
+				return DocumentWrite.update(document);
+			case REMOVE:
+				return DocumentWrite.remove(document.get("_id"));
+			default:
+				throw new UnsupportedOperationException("Operation " + operation + " is not supported");
+		}
+	}
+
+	private boolean isPartialUpdateFields(DataSyncOperation bulkItem) {
+		return bulkItem.getDataSyncOperationType() == DataSyncOperationType.PARTIAL_UPDATE
+				&& mirror.getMirroredDocument(bulkItem.getDataAsObject().getClass()).partialUpdateFields();
+	}
+
+	private UnaryOperator<Document> patchToCurrentVersion(Object item) {
+		return mirror.getMirroredDocument(item.getClass())::patch;
+	}
+
+	private Document toPartialDocument(Object item, InstanceMetadata metadata) {
+		Document versionedDocument = mirror.toPartialVersionedDocument(item, metadata);
+		mirror.getPreWriteProcessing(item.getClass()).preWrite(versionedDocument);
+		return versionedDocument;
+	}
+
+	private Document toDocument(Object item, InstanceMetadata metadata) {
+		Document versionedDocument = mirror.toVersionedDocument(item, metadata);
+		mirror.getPreWriteProcessing(item.getClass()).preWrite(versionedDocument);
+		return versionedDocument;
+	}
+
+	private void onException(Exception exception, MirrorOperation operation, Object... objects) {
+		mirror.onMirrorException(exception, operation, objects);
+		Map<String, List<Object>> objectsPerType = Stream.of(objects)
+				.collect(Collectors.groupingBy(o -> o.getClass().getSimpleName()));
+		exceptionHandler.handleException(exception,
+				"Operation: " + operation + ", objects: " + objectsPerType);
 	}
 
 	private Collection<DataSyncOperation> filterSpaceObjects(DataSyncOperation[] batchDataItems) {
@@ -106,6 +544,7 @@ final class MirroredObjectWriter {
 			protected void execute(Document... documents) {
 				Document id = new Document();
 				id.put("_id", documents[0].get("_id"));
+				forget(item, id.get("_id"));
 				getDocumentCollection(item).delete(id);
 			}
 
@@ -113,11 +552,82 @@ final class MirroredObjectWriter {
 		mongoCommand.execute(item);
 	}
 
+	/**
+	 * Removes the given objects using a single request per collection. A single object is removed as before,
+	 * see {@link #remove(InstanceMetadata, Object)}.
+	 */
+	private void removeAll(InstanceMetadata metadata, List<Object> items) {
+		if (items.size() == 1) {
+			remove(metadata, items.get(0));
+			return;
+		}
+		Map<String, List<Object>> pendingItemsByCollection = new LinkedHashMap<>();
+		for (Object item : items) {
+			pendingItemsByCollection.computeIfAbsent(mirror.getCollectionName(item.getClass()), k -> new ArrayList<>()).add(item);
+		}
+		for (List<Object> pendingObjects : pendingItemsByCollection.values()) {
+			if (pendingObjects.size() == 1) {
+				remove(metadata, pendingObjects.get(0));
+				continue;
+			}
+			new MongoCommand(MirrorOperation.REMOVE, metadata, pendingObjects.toArray()) {
+				private List<Object> remainingIds;
+
+				@Override
+				protected void execute(Document... documents) {
+					DocumentCollection documentCollection = getDocumentCollection(pendingObjects.get(0));
+					if (remainingIds == null) {
+						// The objects belong to the same collection but may be of different mirrored types
+						remainingIds = new ArrayList<>(documents.length);
+						for (int i = 0; i < documents.length; i++) {
+							Object id = documents[i].get("_id");
+							forget(pendingObjects.get(i), id);
+							remainingIds.add(id);
+						}
+						documentCollection.deleteAll(remainingIds);
+					} else {
+						// Attempted again, the documents deleted by the failed attempt must not be reported as missing
+						Set<Object> existingIds = findExistingIds(documentCollection, remainingIds);
+						remainingIds = remainingIds.stream().filter(existingIds::contains).collect(Collectors.toList());
+						documentCollection.deleteAll(remainingIds, existingIds);
+					}
+				}
+			}.execute(pendingObjects.toArray());
+		}
+	}
+
+	private void partialUpdate(InstanceMetadata metadata, final Object item) {
+		new MongoCommand(MirrorOperation.UPDATE, metadata, item) {
+			@Override
+			protected Document toDocument(Object item, InstanceMetadata metadata) {
+				return toPartialDocument(item, metadata);
+			}
+
+			@Override
+			protected void execute(Document... documents) {
+				DocumentWrite write = DocumentWrite.partialUpdate(documents[0], patchToCurrentVersion(item));
+				forget(item, write.getId());
+				getDocumentCollection(item).writeAll(List.of(write), (failedWrite, e) -> {
+					throw e;
+				});
+			}
+		}.execute(item);
+	}
+
 	private void update(InstanceMetadata metadata, final Object item) {
 		new MongoCommand(MirrorOperation.UPDATE, metadata, item) {
 			@Override
 			protected void execute(Document... documents) {
-				getDocumentCollection(item).update(documents[0]);
+				if (!track(item, DocumentWrite.update(documents[0]))) {
+					logger.debug("Skipped update of {}, the document is unchanged", item);
+					return;
+				}
+				try {
+					getDocumentCollection(item).update(documents[0]);
+				} catch (RuntimeException e) {
+					forget(item, documents[0].get("_id"));
+					throw e;
+				}
 			}
 		}.execute(item);
 	}
@@ -130,14 +640,120 @@ final class MirroredObjectWriter {
 					pendingItemsByCollection.computeIfAbsent(collectionName, k -> new ArrayList<>());
 			documentToBeWrittenToCollection.add(item);
 		}
+		List<Runnable> chunkInserts = new ArrayList<>();
+		Map<DocumentCollection, List<Object>> insertedIdsByCollection = new HashMap<>();
 		for (final List<Object> pendingObjects : pendingItemsByCollection.values()) {
-			new MongoCommand(MirrorOperation.INSERT, metadata, pendingObjects) {
-				@Override
-				protected void execute(Document... documents) {
-					DocumentCollection documentCollection = getDocumentCollection(pendingObjects.get(0));
-					documentCollection.insertAll(documents);
+			List<Conversion> conversions = convertAll(pendingObjects, item -> toDocument(item, metadata));
+			List<Object> convertedObjects = new ArrayList<>(pendingObjects.size());
+			List<Document> documents = new ArrayList<>(pendingObjects.size());
+			for (int i = 0; i < pendingObjects.size(); i++) {
+				Conversion conversion = conversions.get(i);
+				if (conversion.failure != null) {
+					onException(conversion.failure, MirrorOperation.INSERT, pendingObjects.get(i));
+				} else {
+					convertedObjects.add(pendingObjects.get(i));
+					documents.add(conversion.document);
 				}
-			}.execute(pendingObjects.toArray());
+			}
+			insertedIdsByCollection.put(getDocumentCollection(pendingObjects.get(0)), documents.stream().map(document -> document.get("_id")).collect(Collectors.toList()));
+			int chunkStart = 0;
+			for (List<Document> chunk : DocumentChunks.split(documents, Function.identity(),
+					writeProperties.getMaxChunkDocuments(), writeProperties.getMaxChunkBytes())) {
+				List<Object> chunkObjects = convertedObjects.subList(chunkStart, chunkStart + chunk.size());
+				chunkStart += chunk.size();
+				chunkInserts.add(() -> insertChunk(chunkObjects, chunk));
+			}
+		}
+		insertedIdsByCollection.forEach(MirroredObjectWriter::addToExistenceFilters);
+		try {
+			if (chunkExecutor != null && chunkInserts.size() > 1) {
+				awaitAll(chunkInserts.stream().map(chunkExecutor::submit).collect(Collectors.toList()));
+			} else {
+				chunkInserts.forEach(Runnable::run);
+			}
+		} finally {
+			insertedIdsByCollection.forEach(MirroredObjectWriter::addToExistenceFilters);
+		}
+	}
+
+	private DocumentWrite toInsert(Document document) {
+		return writeProperties.isIdempotentInserts() ? DocumentWrite.upsert(document) : DocumentWrite.insert(document);
+	}
+
+	/**
+	 * Inserts the documents converted from the given items, which belong to the same collection but may be of
+	 * different mirrored types.
+	 */
+	private void insertChunk(List<Object> items, List<Document> documents) {
+		for (int i = 0; i < documents.size(); i++) {
+			track(items.get(i), DocumentWrite.insert(documents.get(i)));
+		}
+		if (writeProperties.isIdempotentInserts()) {
+			// Written as a bulk write, so each failed insert is reported separately
+			Map<DocumentWrite, Object> itemByWrite = new IdentityHashMap<>();
+			List<DocumentWrite> writes = new ArrayList<>(documents.size());
+			for (int i = 0; i < documents.size(); i++) {
+				DocumentWrite write = toInsert(documents.get(i));
+				writes.add(write);
+				itemByWrite.put(write, items.get(i));
+			}
+			writeChunk(getDocumentCollection(items.get(0)), writes, itemByWrite);
+			return;
+		}
+		DocumentCollection documentCollection = getDocumentCollection(items.get(0));
+		List<Document> remaining = documents;
+		try {
+			for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+				try {
+					documentCollection.insertAll(remaining.toArray(new Document[0]));
+					return;
+				} catch (RuntimeException e) {
+					if (!retryPolicy.isRetryable(e, attempt)) {
+						throw e;
+					}
+					retryPolicy.backoff(attempt, remaining.size());
+					remaining = notInserted(documentCollection, remaining);
+				}
+			}
+		} catch (Exception e) {
+			Map<Document, Object> itemByDocument = new IdentityHashMap<>();
+			for (int i = 0; i < documents.size(); i++) {
+				itemByDocument.put(documents.get(i), items.get(i));
+			}
+			remaining.forEach(document -> forget(itemByDocument.get(document), document.get("_id")));
+			onException(e, MirrorOperation.INSERT, remaining.stream().map(itemByDocument::get).toArray());
+		}
+	}
+
+	/**
+	 * Returns the given documents that were not inserted. A failed insert may have inserted some of the documents
+	 * before failing, and inserting them again would fail on their duplicate ids.
+	 */
+	private static List<Document> notInserted(DocumentCollection documentCollection, List<Document> documents) {
+		Set<Object> insertedIds = findExistingIds(documentCollection,
+				documents.stream().map(document -> document.get("_id")).collect(Collectors.toList()));
+		return documents.stream()
+				.filter(document -> !insertedIds.contains(document.get("_id")))
+				.collect(Collectors.toList());
+	}
+
+	private static Set<Object> findExistingIds(DocumentCollection documentCollection, List<Object> ids) {
+		try (Stream<Document> documents = documentCollection.findByIds(ids)) {
+			return documents.map(document -> document.get("_id")).collect(Collectors.toSet());
+		}
+	}
+
+	@Override
+	public void close() {
+		mirror.getMirroredDocuments().forEach(mirroredObject -> ExistenceFilters.unregisterWriter(mirror.getDocumentCollection(mirroredObject).getNamespace(), this));
+		if (laneExecutor != null) {
+			laneExecutor.shutdownNow();
+		}
+		if (conversionExecutor != null) {
+			conversionExecutor.shutdownNow();
+		}
+		if (chunkExecutor != null) {
+			chunkExecutor.shutdownNow();
 		}
 	}
 
@@ -145,6 +761,36 @@ final class MirroredObjectWriter {
 		return this.mirror.getDocumentCollection(item.getClass());
 	}
 
+	/**
+	 * The document converted from a single object, or the failure converting it.
+	 */
+	private static final class Conversion {
+
+		private final Document document;
+		private final RuntimeException failure;
+
+		private Conversion(Document document, RuntimeException failure) {
+			this.document = document;
+			this.failure = failure;
+		}
+
+		static <T> Conversion of(T input, Function<T, Document> converter) {
+			try {
+				return new Conversion(converter.apply(input), null);
+			} catch (RuntimeException e) {
+				return new Conversion(null, e);
+			}
+		}
+
+		Document get() {
+			if (failure != null) {
+				throw failure;
+			}
+			return document;
+		}
+
+	}
+
 	abstract class MongoCommand {
 
 		private final MirrorOperation operation;
@@ -159,24 +805,28 @@ final class MirroredObjectWriter {
 
 		final void execute(Object... items) {
 			try {
+				List<Conversion> conversions = convertAll(Arrays.asList(items), item -> toDocument(item, metadata));
 				Document[] documents = new Document[items.length];
 				for (int i = 0; i < documents.length; i++) {
-					Document versionedDocument = MirroredObjectWriter.this.mirror.toVersionedDocument(items[i], metadata);
-					MirroredObjectWriter.this.mirror.getPreWriteProcessing(items[i].getClass()).preWrite(versionedDocument);
-					documents[i] = versionedDocument;
+					documents[i] = conversions.get(i).get();
+				}
+				DocumentCollection documentCollection = getDocumentCollection(items[0]);
+				List<Object> writtenIds = operation != MirrorOperation.REMOVE
+						? Stream.of(documents).map(document -> document.get("_id")).collect(Collectors.toList())
+						: List.of();
+				addToExistenceFilters(documentCollection, writtenIds);
+				try {
+					retryPolicy.run(() -> execute(documents));
+				} finally {
+					addToExistenceFilters(documentCollection, writtenIds);
 				}
-				execute(documents);
 			} catch (Exception e) {
-				onException(e);
+				onException(e, operation, objects);
 			}
 		}
 
-		private void onException(final Exception exception) {
-			mirror.onMirrorException(exception, operation, objects);
-			Map<String, List<Object>> objectsPerType = Stream.of(this.objects)
-					.collect(Collectors.groupingBy(o -> o.getClass().getSimpleName()));
-			exceptionHandler.handleException(exception,
-					"Operation: " + operation + ", objects: " + objectsPerType);
+		protected Document toDocument(Object item, InstanceMetadata metadata) {
+			return MirroredObjectWriter.this.toDocument(item, metadata);
 		}
 
 		protected abstract void execute(Document... documents);
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nullable;
+
+import com.mongodb.client.MongoCursor;
+
+/**
+ * Spliterator over a {@link MongoCursor}. <p>
+ *
+ * {@link #trySplit()} hands off one cursor batch at a time as an array, rather than the ever growing arrays of
+ * {@link Spliterators#spliteratorUnknownSize}, so parallel consumers get work in units matching the round trips
+ * to mongo. The size is estimated from an optional estimate of the number of documents read by the cursor, such
+ * as {@link com.mongodb.client.MongoCollection#estimatedDocumentCount()}, which is only requested when the
+ * size is asked for. <p>
+ *
+ * The estimate is not exact, hence the spliterator never reports {@link #SIZED}. Batches handed off by
+ * {@link #trySplit()} are exactly sized.
+ */
+final class MongoCursorSpliterator<T> implements Spliterator<T> {
+
+	/**
+	 * Used when the cursor batch size is left to the server, which returns 101 documents in the first batch
+	 * and then as many documents as fit in 16 MB.
+	 */
+	static final int DEFAULT_BATCH_SIZE = 1024;
+
+	private final MongoCursor<T> cursor;
+	private final int batchSize;
+	@Nullable
+	private final LongSupplier estimatedNumDocuments;
+	private long estimatedSize = -1;
+	private long numConsumed = 0;
+
+	MongoCursorSpliterator(MongoCursor<T> cursor, int batchSize, @Nullable LongSupplier estimatedNumDocuments) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be a positive integer, was batchSize=" + batchSize + "!");
+		}
+		this.cursor = cursor;
+		this.batchSize = batchSize;
+		this.estimatedNumDocuments = estimatedNumDocuments;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if (!cursor.hasNext()) {
+			return false;
+		}
+		T next = cursor.next();
+		numConsumed++;
+		action.accept(next);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		while (cursor.hasNext()) {
+			T next = cursor.next();
+			numConsumed++;
+			action.accept(next);
+		}
+	}
+
+	@Override
+	@Nullable
+	public Spliterator<T> trySplit() {
+		Object[] batch = new Object[batchSize];
+		int size = 0;
+		while (size < batchSize && cursor.hasNext()) {
+			batch[size++] = cursor.next();
+		}
+		if (size == 0) {
+			return null;
+		}
+		numConsumed += size;
+		return Spliterators.spliterator(batch, 0, size, NONNULL);
+	}
+
+	@Override
+	public long estimateSize() {
+		if (estimatedNumDocuments == null) {
+			return Long.MAX_VALUE;
+		}
+		if (estimatedSize < 0) {
+			estimatedSize = estimatedNumDocuments.getAsLong();
+		}
+		return Math.max(0, estimatedSize - numConsumed);
+	}
+
+	@Override
+	public int characteristics() {
+		return NONNULL;
+	}
+
+}
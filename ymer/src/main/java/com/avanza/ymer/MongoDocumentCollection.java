@@ -16,37 +16,60 @@
 package com.avanza.ymer;
 
 import static com.mongodb.ErrorCategory.DUPLICATE_KEY;
-import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import javax.annotation.Nullable;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.data.mongodb.core.query.Query;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteConcernException;
 import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
@@ -58,6 +81,7 @@ import com.mongodb.client.result.UpdateResult;
  *
  */
 final class MongoDocumentCollection implements DocumentCollection {
+	private static final int SAMPLED_IDS_PER_RANGE = 100;
 	private final Logger log = LoggerFactory.getLogger(getClass());
 	private final MongoCollection<Document> collection;
 	private final IdValidator idValidator;
@@ -66,6 +90,7 @@ final class MongoDocumentCollection implements DocumentCollection {
 		void validateHasIdField(String operation, Document obj);
 		void validateUpdatedExistingDocument(String operation, UpdateResult result, Document obj);
 		void validateDeletedExistingDocument(String operation, DeleteResult result, Document obj);
+		void validateDeletedExistingDocuments(String operation, DeleteResult result, List<Object> ids, Set<Object> existingIds);
 	}
 
 	public MongoDocumentCollection(MongoCollection<Document> collection) {
@@ -86,9 +111,19 @@ final class MongoDocumentCollection implements DocumentCollection {
 		return findAll();
 	}
 
+	@Override
+	public String getNamespace() {
+		return collection.getNamespace().getFullName();
+	}
+
+	@Override
+	public CodecRegistry getCodecRegistry() {
+		return collection.getCodecRegistry();
+	}
+
 	@Override
 	public Stream<Document> findAll() {
-		return toStream(collection.find());
+		return toStream(collection.find(), MongoCursorSpliterator.DEFAULT_BATCH_SIZE, collection::estimatedDocumentCount);
 	}
 
 
@@ -97,9 +132,48 @@ final class MongoDocumentCollection implements DocumentCollection {
 		return collection.find(Filters.eq(id)).first();
 	}
 
+	@Override
+	public Stream<Document> findByIds(List<Object> ids) {
+		if (ids.isEmpty()) {
+			return Stream.empty();
+		}
+		return toStream(collection.find(Filters.in("_id", ids)).batchSize(ids.size()), ids.size(), null);
+	}
+
+	@Override
+	public Stream<RawBsonDocument> findRawByIds(List<Object> ids) {
+		if (ids.isEmpty()) {
+			return Stream.empty();
+		}
+		return toStream(collection.withDocumentClass(RawBsonDocument.class).find(Filters.in("_id", ids)).batchSize(ids.size()), ids.size(), null);
+	}
+
 	@Override
 	public Stream<Document> findByQuery(Query query) {
-		FindIterable<Document> iterable = collection.find(query.getQueryObject());
+		return toStream(find(collection, query), batchSize(query), estimatedNumDocuments(query));
+	}
+
+	@Override
+	public Stream<RawBsonDocument> findRawByQuery(Query query) {
+		return toStream(find(collection.withDocumentClass(RawBsonDocument.class), query), batchSize(query), estimatedNumDocuments(query));
+	}
+
+	private static int batchSize(Query query) {
+		Integer batchSize = query.getMeta().getCursorBatchSize();
+		return batchSize != null && batchSize > 0 ? batchSize : MongoCursorSpliterator.DEFAULT_BATCH_SIZE;
+	}
+
+	/**
+	 * The number of documents can only be estimated cheaply for queries matching all documents.
+	 */
+	@Nullable
+	private LongSupplier estimatedNumDocuments(Query query) {
+		return query.getQueryObject().isEmpty() ? collection::estimatedDocumentCount : null;
+	}
+
+	private static <T> FindIterable<T> find(MongoCollection<T> collection, Query query) {
+		Document queryObject = query.getQueryObject();
+		FindIterable<T> iterable = queryObject.isEmpty() ? collection.find() : collection.find(queryObject);
 		Document fieldsObject = query.getFieldsObject();
 		if (!fieldsObject.isEmpty()) {
 			iterable = iterable.projection(fieldsObject);
@@ -108,8 +182,7 @@ final class MongoDocumentCollection implements DocumentCollection {
 		if (batchSize != null) {
 			iterable = iterable.batchSize(batchSize);
 		}
-
-		return toStream(iterable);
+		return iterable;
 	}
 
 	@Override
@@ -131,6 +204,42 @@ final class MongoDocumentCollection implements DocumentCollection {
 		}
 	}
 
+	@Override
+	public void replaceAll(List<PatchedDocument> patchedDocuments, BiConsumer<PatchedDocument, RuntimeException> failureHandler) {
+		List<PatchedDocument> bulkReplaced = new ArrayList<>(patchedDocuments.size());
+		List<WriteModel<Document>> writeModels = new ArrayList<>(patchedDocuments.size());
+		for (PatchedDocument patchedDocument : patchedDocuments) {
+			Document oldVersion = patchedDocument.getOldVersion();
+			Document newVersion = patchedDocument.getNewVersion();
+			if (Objects.equals(oldVersion.get("_id"), newVersion.get("_id"))) {
+				idValidator.validateHasIdField("replace", newVersion);
+				bulkReplaced.add(patchedDocument);
+				writeModels.add(new ReplaceOneModel<>(Filters.eq(oldVersion.get("_id")), newVersion));
+			} else {
+				// Changing the id requires an insert and a delete, which cannot be expressed as a single replacement
+				try {
+					replace(oldVersion, newVersion);
+				} catch (RuntimeException e) {
+					failureHandler.accept(patchedDocument, e);
+				}
+			}
+		}
+		if (writeModels.isEmpty()) {
+			return;
+		}
+		try {
+			BulkWriteResult result = collection.bulkWrite(writeModels, new BulkWriteOptions().ordered(false));
+			if (result.wasAcknowledged() && result.getMatchedCount() < writeModels.size()) {
+				log.warn("Replaced {} documents in collection={}, but {} of them did not match any document",
+						writeModels.size(), collection.getNamespace().getCollectionName(), writeModels.size() - result.getMatchedCount());
+			}
+		} catch (MongoBulkWriteException e) {
+			for (BulkWriteError error : e.getWriteErrors()) {
+				failureHandler.accept(bulkReplaced.get(error.getIndex()), new MongoWriteException(error, e.getServerAddress()));
+			}
+		}
+	}
+
 	@Override
 	public void update(Document newVersion) {
 		idValidator.validateHasIdField("update", newVersion);
@@ -140,6 +249,139 @@ final class MongoDocumentCollection implements DocumentCollection {
 		idValidator.validateUpdatedExistingDocument("update", updateResult, newVersion);
 	}
 
+	@Override
+	public void writeAll(List<DocumentWrite> writes, BiConsumer<DocumentWrite, RuntimeException> failureHandler) {
+		// An unordered bulk write may apply its writes in any order, so each bulk write contains at most
+		// one write per document and later writes to the same document are deferred to the next bulk write
+		List<DocumentWrite> remaining = writes;
+		while (!remaining.isEmpty()) {
+			Set<Object> ids = new HashSet<>();
+			List<DocumentWrite> bulk = new ArrayList<>(remaining.size());
+			List<DocumentWrite> deferred = new ArrayList<>();
+			for (DocumentWrite write : remaining) {
+				if (write.getId() == null || ids.add(write.getId())) {
+					bulk.add(write);
+				} else {
+					deferred.add(write);
+				}
+			}
+			writeUnordered(bulk, failureHandler);
+			remaining = deferred;
+		}
+	}
+
+	private void writeUnordered(List<DocumentWrite> writes, BiConsumer<DocumentWrite, RuntimeException> failureHandler) {
+		List<WriteModel<Document>> writeModels = new ArrayList<>(writes.size());
+		List<DocumentWrite> partialUpdates = new ArrayList<>();
+		int numUpdates = 0;
+		int numRemoves = 0;
+		for (DocumentWrite write : writes) {
+			String operation = write.getOperation().name().toLowerCase();
+			idValidator.validateHasIdField(operation, write.getDocument());
+			writeModels.add(toWriteModel(write));
+			if (write.getOperation() == MirrorOperation.UPDATE || write.isUpsert()) {
+				numUpdates++;
+				if (write.isPartialUpdate()) {
+					partialUpdates.add(write);
+				}
+			} else if (write.getOperation() == MirrorOperation.REMOVE) {
+				numRemoves++;
+			}
+		}
+		BulkWriteResult result;
+		try {
+			result = collection.bulkWrite(writeModels, new BulkWriteOptions().ordered(false));
+		} catch (MongoBulkWriteException e) {
+			Set<DocumentWrite> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (BulkWriteError error : e.getWriteErrors()) {
+				failed.add(writes.get(error.getIndex()));
+				failureHandler.accept(writes.get(error.getIndex()), new MongoWriteException(error, e.getServerAddress()));
+			}
+			partialUpdates.removeIf(failed::contains);
+			completePartialUpdates(partialUpdates, failureHandler);
+			if (e.getWriteConcernError() != null) {
+				throw new MongoWriteConcernException(e.getWriteConcernError(), e.getServerAddress());
+			}
+			return;
+		}
+		if (!result.wasAcknowledged()) {
+			return;
+		}
+		for (BulkWriteUpsert upsert : result.getUpserts()) {
+			idValidator.validateUpdatedExistingDocument("update",
+					UpdateResult.acknowledged(0, 0L, upsert.getId()),
+					writes.get(upsert.getIndex()).getDocument());
+		}
+		// Replacements either match or upsert, so any update that did neither is a partial update
+		if (numUpdates - result.getUpserts().size() > result.getMatchedCount()) {
+			completePartialUpdates(partialUpdates, failureHandler);
+		}
+		if (result.getDeletedCount() < numRemoves) {
+			log.warn("Tried to delete {} documents on collection={}, but {} of them were not found",
+					numRemoves, collection.getNamespace().getCollectionName(), numRemoves - result.getDeletedCount());
+		}
+	}
+
+	/**
+	 * A partial update only matches a stored document of the same version. Partial updates of missing documents,
+	 * or of documents of another version, are instead applied by replacing the whole document.
+	 */
+	private void completePartialUpdates(List<DocumentWrite> partialUpdates, BiConsumer<DocumentWrite, RuntimeException> failureHandler) {
+		if (partialUpdates.isEmpty()) {
+			return;
+		}
+		Map<Object, Integer> storedVersionById = new HashMap<>();
+		List<Object> ids = partialUpdates.stream().map(DocumentWrite::getId).collect(toList());
+		for (Document stored : collection.find(Filters.in("_id", ids))
+				.projection(Projections.include("_id", MirroredObject.DOCUMENT_FORMAT_VERSION_PROPERTY))
+				.into(new ArrayList<>())) {
+			storedVersionById.put(stored.get("_id"), stored.getInteger(MirroredObject.DOCUMENT_FORMAT_VERSION_PROPERTY, 1));
+		}
+		for (DocumentWrite partialUpdate : partialUpdates) {
+			Integer storedVersion = storedVersionById.get(partialUpdate.getId());
+			if (storedVersion == null || storedVersion != partialUpdate.getDocumentVersion()) {
+				try {
+					Document stored = collection.find(Filters.eq(partialUpdate.getId())).first();
+					update(stored == null ? partialUpdate.getDocument() : partialUpdate.applyPartialUpdate(stored));
+				} catch (RuntimeException e) {
+					failureHandler.accept(partialUpdate, e);
+				}
+			}
+		}
+	}
+
+	private static WriteModel<Document> toWriteModel(DocumentWrite write) {
+		switch (write.getOperation()) {
+			case INSERT:
+				if (write.isUpsert()) {
+					return new ReplaceOneModel<>(Filters.eq(write.getId()), write.getDocument(), new ReplaceOptions().upsert(true));
+				}
+				return new InsertOneModel<>(write.getDocument());
+			case UPDATE:
+				if (write.isPartialUpdate()) {
+					Document fields = new Document(write.getDocument());
+					fields.remove("_id");
+					return new UpdateOneModel<>(
+							Filters.and(Filters.eq(write.getId()), documentVersionFilter(write.getDocumentVersion())),
+							toUpdates(fields));
+				}
+				return new ReplaceOneModel<>(Filters.eq(write.getId()), write.getDocument(), new ReplaceOptions().upsert(true));
+			case REMOVE:
+				return new DeleteOneModel<>(write.getDocument());
+			default:
+				throw new UnsupportedOperationException("Operation " + write.getOperation() + " is not supported");
+		}
+	}
+
+	private static Bson documentVersionFilter(int version) {
+		if (version == 1) {
+			// Documents without a format version are of version 1
+			return Filters.or(Filters.eq(MirroredObject.DOCUMENT_FORMAT_VERSION_PROPERTY, 1),
+					Filters.exists(MirroredObject.DOCUMENT_FORMAT_VERSION_PROPERTY, false));
+		}
+		return Filters.eq(MirroredObject.DOCUMENT_FORMAT_VERSION_PROPERTY, version);
+	}
+
 	@Override
 	public void bulkWrite(Consumer<BulkWriter> bulkWriter) {
 		List<WriteModel<Document>> writeModels = new ArrayList<>();
@@ -196,6 +438,33 @@ final class MongoDocumentCollection implements DocumentCollection {
 		idValidator.validateDeletedExistingDocument("delete", deleteResult, document);
 	}
 
+	@Override
+	public void deleteAll(List<Object> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		if (ids.stream().anyMatch(Objects::isNull)) {
+			idValidator.validateHasIdField("delete", new Document());
+		}
+		// The deleted count does not tell which documents were missing, so look up the existing ids first
+		Set<Object> existingIds = collection.getWriteConcern().isAcknowledged()
+				? collection.find(Filters.in("_id", ids))
+						.projection(Projections.include("_id"))
+						.map(document -> document.get("_id"))
+						.into(new HashSet<>())
+				: Set.of();
+		deleteAll(ids, existingIds);
+	}
+
+	@Override
+	public void deleteAll(List<Object> ids, Set<Object> existingIds) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		DeleteResult deleteResult = collection.deleteMany(Filters.in("_id", ids));
+		idValidator.validateDeletedExistingDocuments("delete", deleteResult, ids, existingIds);
+	}
+
 	@Override
 	public void insertAll(Document... documents) {
 		if (documents.length != 0) {
@@ -204,6 +473,55 @@ final class MongoDocumentCollection implements DocumentCollection {
 		collection.insertMany(Arrays.asList(documents)); // TODO: test for this method
 	}
 
+	@Override
+	public List<Object> findIdSplitPoints(int numRanges) {
+		long numDocuments = collection.estimatedDocumentCount();
+		if (numRanges < 2 || numDocuments < numRanges) {
+			return emptyList();
+		}
+		int sampleSize = (int) Math.min(numDocuments, (long) numRanges * SAMPLED_IDS_PER_RANGE);
+		// $sample is used rather than splitVector since the latter requires cluster management privileges
+		List<Object> sampledIds = collection.aggregate(Arrays.asList(
+						Aggregates.sample(sampleSize),
+						Aggregates.project(Projections.include("_id")),
+						Aggregates.sort(Sorts.ascending("_id"))))
+				.allowDiskUse(true)
+				.map(document -> document.get("_id"))
+				.into(new ArrayList<>());
+		List<Object> splitPoints = new ArrayList<>();
+		for (int range = 1; range < numRanges && !sampledIds.isEmpty(); range++) {
+			Object splitPoint = sampledIds.get(range * sampledIds.size() / numRanges);
+			if (splitPoints.isEmpty() || !splitPoints.get(splitPoints.size() - 1).equals(splitPoint)) {
+				splitPoints.add(splitPoint);
+			}
+		}
+		return splitPoints;
+	}
+
+	@Override
+	public OptionalLong estimateDataSize() {
+		try {
+			Document stats = collection.aggregate(Arrays.asList(
+							new Document("$collStats", new Document("storageStats", new Document()))))
+					.first();
+			if (stats != null && stats.get("storageStats") instanceof Document) {
+				Number size = stats.get("storageStats", Document.class).get("size", Number.class);
+				if (size != null) {
+					return OptionalLong.of(size.longValue());
+				}
+			}
+		} catch (MongoException e) {
+			// $collStats requires mongo 3.4 and the collStats privilege
+			log.debug("Failed to read collection statistics for {}", collection.getNamespace(), e);
+		}
+		return OptionalLong.empty();
+	}
+
+	@Override
+	public long estimateDocumentCount() {
+		return collection.estimatedDocumentCount();
+	}
+
 	@Override
 	public Stream<IndexInfo> getIndexes() {
 		return toStream(collection.listIndexes().map(IndexInfo::indexInfoOf));
@@ -236,8 +554,12 @@ final class MongoDocumentCollection implements DocumentCollection {
 	}
 
 	private static <T> Stream<T> toStream(MongoIterable<T> mongoIterable) {
-		MongoCursor<T> iterator = mongoIterable.iterator();
-		return StreamSupport.stream(spliteratorUnknownSize(iterator, 0), false)
-				.onClose(iterator::close);
+		return toStream(mongoIterable, MongoCursorSpliterator.DEFAULT_BATCH_SIZE, null);
+	}
+
+	private static <T> Stream<T> toStream(MongoIterable<T> mongoIterable, int batchSize, @Nullable LongSupplier estimatedNumDocuments) {
+		MongoCursor<T> cursor = mongoIterable.iterator();
+		return StreamSupport.stream(new MongoCursorSpliterator<>(cursor, batchSize, estimatedNumDocuments), false)
+				.onClose(cursor::close);
 	}
 }
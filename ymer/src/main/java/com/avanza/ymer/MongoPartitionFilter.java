@@ -18,6 +18,7 @@ package com.avanza.ymer;
 import java.util.Arrays;
 import java.util.Objects;
 
+import org.bson.Document;
 import org.bson.conversions.Bson;
 import com.avanza.ymer.SpaceObjectFilter.PartitionFilter;
 import com.mongodb.BasicDBObject;
@@ -39,6 +40,10 @@ class MongoPartitionFilter {
 		return new MongoPartitionFilter(buildBsonFilter(spaceObjectFilter.getPartitionFilter()));
 	}
 
+	public static Document createDocument(SpaceObjectFilter<?> spaceObjectFilter) {
+		return new Document(buildFilter(spaceObjectFilter.getPartitionFilter()));
+	}
+
 	public static boolean canCreateFrom(SpaceObjectFilter<?> spaceObjectFilter) {
 		return spaceObjectFilter.hasPartitionFilter();
 	}
@@ -79,6 +79,21 @@ class MongoQueryFactory {
 		}
 	}
 
+	/**
+	 * @param type The mirrored type queried
+	 * @param sqlQuery Where clause of a GigaSpaces SQLQuery, see {@link SqlQueryTranslator}
+	 * @param parameters Values of the ? parameters of the query
+	 * @return A Spring mongo {@link Query}
+	 * @throws CouldNotCreateMongoQueryException if the query cannot be translated
+	 */
+	public Query createMongoQueryFromSql(Class<?> type, String sqlQuery, @Nullable Object[] parameters) {
+		MongoPersistentEntity<?> pe = mongoMappingContext.getRequiredPersistentEntity(type);
+		SqlQueryTranslator translator = new SqlQueryTranslator(
+				propertyName -> pe.getRequiredPersistentProperty(propertyName).getFieldName(),
+				mongoConverter::convertToMongoType);
+		return new Query(translator.translate(sqlQuery, parameters));
+	}
+
 	private Criteria addCriteria(@Nullable Criteria c, String fieldName, Object mongoValue) {
 		if (c == null) {
 			return Criteria.where(fieldName).is(mongoValue);
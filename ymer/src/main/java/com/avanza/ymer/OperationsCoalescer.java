@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.sync.DataSyncOperation;
+import com.gigaspaces.sync.DataSyncOperationType;
+
+/**
+ * Reduces the operations on each space object within a mirrored batch to their net effect, so that
+ * intermediate states are neither converted nor written to mongo. <p>
+ *
+ * <ul>
+ * <li>An UPDATE replaces all earlier operations on the same object</li>
+ * <li>A WRITE followed by a REMOVE cancels out</li>
+ * <li>A REMOVE followed by a WRITE becomes an UPDATE, i.e. a replace</li>
+ * </ul>
+ *
+ * A PARTIAL_UPDATE does not replace earlier operations, and operations on objects whose space id is not
+ * available are kept as they are. Each coalesced operation takes the position in the batch of the last
+ * operation it coalesces, so that it is still written after the operations on other objects that preceded
+ * it. <p>
+ */
+final class OperationsCoalescer {
+
+	private OperationsCoalescer() {
+	}
+
+	static List<DataSyncOperation> coalesce(Collection<DataSyncOperation> operations) {
+		Map<Object, ObjectOperations> operationsByObject = new HashMap<>();
+		int position = 0;
+		for (DataSyncOperation operation : operations) {
+			Object key = operation.supportsGetSpaceId() && operation.getSpaceId() != null
+					? List.of(operation.getDataAsObject().getClass(), operation.getSpaceId())
+					: new Object(); // Unique key, never coalesced
+			operationsByObject.computeIfAbsent(key, k -> new ObjectOperations(operation)).add(operation, position++);
+		}
+		DataSyncOperation[] positioned = new DataSyncOperation[operations.size()];
+		for (ObjectOperations objectOperations : operationsByObject.values()) {
+			for (int i = 0; i < objectOperations.operations.size(); i++) {
+				positioned[objectOperations.positions.get(i)] = objectOperations.operations.get(i);
+			}
+		}
+		List<DataSyncOperation> result = new ArrayList<>(operationsByObject.size());
+		for (DataSyncOperation operation : positioned) {
+			if (operation != null) {
+				result.add(operation);
+			}
+		}
+		return result;
+	}
+
+	private static final class ObjectOperations {
+		/**
+		 * Whether the object did not exist before this batch, i.e. it was first written in this batch
+		 */
+		private final boolean createdInBatch;
+		private final List<DataSyncOperation> operations = new ArrayList<>(1);
+		/**
+		 * The position in the batch of the last operation coalesced into each of the operations
+		 */
+		private final List<Integer> positions = new ArrayList<>(1);
+
+		private ObjectOperations(DataSyncOperation first) {
+			this.createdInBatch = first.getDataSyncOperationType() == DataSyncOperationType.WRITE;
+		}
+
+		void add(DataSyncOperation operation, int position) {
+			switch (operation.getDataSyncOperationType()) {
+				case UPDATE:
+					clear();
+					append(createdInBatch ? withType(operation, DataSyncOperationType.WRITE) : operation, position);
+					return;
+				case REMOVE:
+					clear();
+					if (!createdInBatch) {
+						append(operation, position);
+					}
+					return;
+				case WRITE:
+					if (!operations.isEmpty() && isLast(DataSyncOperationType.REMOVE)) {
+						clear();
+						append(withType(operation, DataSyncOperationType.UPDATE), position);
+					} else {
+						append(operation, position);
+					}
+					return;
+				default:
+					append(operation, position);
+			}
+		}
+
+		private void append(DataSyncOperation operation, int position) {
+			operations.add(operation);
+			positions.add(position);
+		}
+
+		private void clear() {
+			operations.clear();
+			positions.clear();
+		}
+
+		private boolean isLast(DataSyncOperationType type) {
+			return operations.get(operations.size() - 1).getDataSyncOperationType() == type;
+		}
+	}
+
+	private static DataSyncOperation withType(DataSyncOperation operation, DataSyncOperationType type) {
+		if (operation.getDataSyncOperationType() == type) {
+			return operation;
+		}
+		return new CoalescedOperation(operation, type);
+	}
+
+	private static final class CoalescedOperation implements DataSyncOperation {
+		private final DataSyncOperation operation;
+		private final DataSyncOperationType type;
+
+		private CoalescedOperation(DataSyncOperation operation, DataSyncOperationType type) {
+			this.operation = operation;
+			this.type = type;
+		}
+
+		@Override
+		public DataSyncOperationType getDataSyncOperationType() {
+			return type;
+		}
+
+		@Override
+		public Object getDataAsObject() {
+			return operation.getDataAsObject();
+		}
+
+		@Override
+		public SpaceDocument getDataAsDocument() {
+			return operation.getDataAsDocument();
+		}
+
+		@Override
+		public SpaceTypeDescriptor getTypeDescriptor() {
+			return operation.getTypeDescriptor();
+		}
+
+		@Override
+		public String getUid() {
+			return operation.getUid();
+		}
+
+		@Override
+		public Object getSpaceId() {
+			return operation.getSpaceId();
+		}
+
+		@Override
+		public boolean supportsDataAsObject() {
+			return operation.supportsDataAsObject();
+		}
+
+		@Override
+		public boolean supportsDataAsDocument() {
+			return operation.supportsDataAsDocument();
+		}
+
+		@Override
+		public boolean supportsGetTypeDescriptor() {
+			return operation.supportsGetTypeDescriptor();
+		}
+
+		@Override
+		public boolean supportsGetSpaceId() {
+			return operation.supportsGetSpaceId();
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Maps a list concurrently by splitting it into consecutive chunks, each mapped by a task on an executor.
+ */
+final class ParallelChunks {
+
+	private ParallelChunks() {
+	}
+
+	/**
+	 * Maps the given elements in chunks on the given executor, and returns the results of all chunks in the
+	 * order of the elements. The elements are split into several chunks per thread, so that threads mapping
+	 * cheaper elements help out with the rest. A failure mapping a chunk cancels the others and is rethrown.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the chunks, which are then cancelled
+	 */
+	static <T, R> List<R> map(List<T> elements, Function<List<T>, List<R>> chunkMapper, ExecutorService executor, int numThreads)
+			throws InterruptedException {
+		int numChunks = Math.min(elements.size(), numThreads * 4);
+		if (numChunks == 0) {
+			return new ArrayList<>();
+		}
+		int chunkSize = (elements.size() + numChunks - 1) / numChunks;
+		List<Future<List<R>>> chunks = new ArrayList<>(numChunks);
+		for (int start = 0; start < elements.size(); start += chunkSize) {
+			List<T> chunk = elements.subList(start, Math.min(start + chunkSize, elements.size()));
+			chunks.add(executor.submit(() -> chunkMapper.apply(chunk)));
+		}
+		List<R> result = new ArrayList<>(elements.size());
+		try {
+			for (Future<List<R>> chunk : chunks) {
+				result.addAll(chunk.get());
+			}
+		} catch (ExecutionException e) {
+			chunks.forEach(c -> c.cancel(true));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException("Failed to map chunk", e.getCause());
+		} catch (InterruptedException e) {
+			chunks.forEach(c -> c.cancel(true));
+			throw e;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Loads several collections concurrently and merges the loaded objects into a single iterator. Also used to
+ * read several id ranges of a single collection concurrently. <p>
+ *
+ * At most {@code numParallelCollections} collections are read at the same time, in the order the
+ * loaders are given. Loaded objects are handed over to the consuming thread through a bounded queue,
+ * so a slow consumer stalls the loading threads rather than filling up the heap. <p>
+ *
+ * Each collection stream is closed by the thread that loaded it, as soon as it is exhausted. If any
+ * collection fails to load, the remaining loads are aborted and the failure is rethrown to the consumer.
+ */
+final class ParallelCollectionLoader implements Iterator<Object>, AutoCloseable {
+
+	static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+	private static final Object COLLECTION_DONE = new Object();
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+	private final BlockingQueue<Object> queue;
+	private final ExecutorService executor;
+	private final int numCollections;
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+	private volatile boolean closed = false;
+	private int numCompletedCollections = 0;
+	private Object next;
+
+	ParallelCollectionLoader(List<? extends Supplier<? extends Stream<?>>> collectionLoaders, int numParallelCollections) {
+		this(collectionLoaders, numParallelCollections, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	ParallelCollectionLoader(List<? extends Supplier<? extends Stream<?>>> collectionLoaders, int numParallelCollections, int queueCapacity) {
+		if (numParallelCollections < 1) {
+			throw new IllegalArgumentException("numParallelCollections must be a positive integer, was numParallelCollections=" + numParallelCollections + "!");
+		}
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.numCollections = collectionLoaders.size();
+		this.executor = Executors.newFixedThreadPool(numParallelCollections, new DaemonThreadFactory("Ymer-Initial-Load-"));
+		collectionLoaders.forEach(loader -> executor.execute(() -> load(loader)));
+		executor.shutdown();
+	}
+
+	private void load(Supplier<? extends Stream<?>> collectionLoader) {
+		try (Stream<?> objects = collectionLoader.get()) {
+			objects.forEach(this::put);
+		} catch (RuntimeException e) {
+			if (!closed) {
+				failure.compareAndSet(null, e);
+			}
+		} finally {
+			try {
+				put(COLLECTION_DONE);
+			} catch (CancellationException ignored) {
+				// Consumer is gone, nobody is waiting for this collection to complete
+			}
+		}
+	}
+
+	private void put(Object object) {
+		try {
+			while (!closed) {
+				if (queue.offer(object, OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		throw new CancellationException("Initial load was aborted");
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null) {
+			if (numCompletedCollections == numCollections) {
+				close();
+				return false;
+			}
+			Object object = take();
+			if (object == COLLECTION_DONE) {
+				numCompletedCollections++;
+				rethrowFailure();
+			} else {
+				next = object;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Object next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Object result = next;
+		next = null;
+		return result;
+	}
+
+	private Object take() {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new CancellationException("Interrupted while waiting for documents to be loaded");
+		}
+	}
+
+	private void rethrowFailure() {
+		RuntimeException e = failure.get();
+		if (e != null) {
+			close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		executor.shutdownNow();
+		queue.clear();
+	}
+
+}
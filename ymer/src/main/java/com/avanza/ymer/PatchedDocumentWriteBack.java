@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.ymer.plugin.PreWriteProcessor;
+
+/**
+ * Writes documents patched during InitialLoad back to mongo in the background. <p>
+ *
+ * Patched documents are grouped into batches per collection, and each batch is written using a single unordered
+ * bulk write. At most {@code concurrency} batches are written at the same time, when all of them are in progress
+ * adding another patched document blocks until one of them completes, i.e. InitialLoad is throttled rather
+ * than buffering an unbounded number of patched documents. <p>
+ *
+ * A failure to write back a patched document is logged and counted, but does not abort InitialLoad. The document is
+ * patched again the next time it is loaded.
+ */
+final class PatchedDocumentWriteBack implements AutoCloseable {
+
+	static final int DEFAULT_BATCH_SIZE = 1000;
+	static final int DEFAULT_CONCURRENCY = 4;
+
+	private static final Logger log = LoggerFactory.getLogger(PatchedDocumentWriteBack.class);
+
+	private final int batchSize;
+	private final int concurrency;
+	private final ExecutorService executor;
+	private final Semaphore batchesInProgress;
+	private final List<CollectionWriteBack> collectionWriteBacks = new CopyOnWriteArrayList<>();
+
+	PatchedDocumentWriteBack(int batchSize, int concurrency) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be a positive integer, was batchSize=" + batchSize + "!");
+		}
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be a positive integer, was concurrency=" + concurrency + "!");
+		}
+		this.executor = Executors.newFixedThreadPool(concurrency, new DaemonThreadFactory("Ymer-Write-Back-"));
+		this.batchesInProgress = new Semaphore(concurrency);
+		this.batchSize = batchSize;
+		this.concurrency = concurrency;
+	}
+
+	static PatchedDocumentWriteBack create(InitialLoadProperties initialLoadProperties) {
+		return new PatchedDocumentWriteBack(initialLoadProperties.getWriteBackBatchSize(), initialLoadProperties.getWriteBackConcurrency());
+	}
+
+	/**
+	 * Returns the write back of patched documents to the given collection.
+	 */
+	CollectionWriteBack forCollection(String collectionName,
+									  DocumentCollection documentCollection,
+									  PreWriteProcessor preWriteProcessor,
+									  InitialLoadStatistics initialLoadStatistics) {
+		CollectionWriteBack collectionWriteBack = new CollectionWriteBack(collectionName, documentCollection, preWriteProcessor, initialLoadStatistics);
+		collectionWriteBacks.add(collectionWriteBack);
+		return collectionWriteBack;
+	}
+
+	/**
+	 * Writes all pending patched documents and waits until they are written.
+	 */
+	void drain() {
+		if (executor.isShutdown()) {
+			return;
+		}
+		collectionWriteBacks.forEach(CollectionWriteBack::flush);
+		batchesInProgress.acquireUninterruptibly(concurrency);
+		batchesInProgress.release(concurrency);
+	}
+
+	private void submit(CollectionWriteBack collectionWriteBack, List<PatchedDocument> batch) {
+		try {
+			batchesInProgress.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Initial load was aborted");
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					collectionWriteBack.write(batch);
+				} finally {
+					batchesInProgress.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			batchesInProgress.release();
+			log.warn("Write back of {} patched documents to collection {} was aborted", batch.size(), collectionWriteBack.collectionName);
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	final class CollectionWriteBack {
+		private final String collectionName;
+		private final DocumentCollection documentCollection;
+		private final PreWriteProcessor preWriteProcessor;
+		private final InitialLoadStatistics initialLoadStatistics;
+		private final LongAdder numWritten = new LongAdder();
+		private final LongAdder numFailed = new LongAdder();
+		private List<PatchedDocument> batch;
+
+		private CollectionWriteBack(String collectionName,
+									DocumentCollection documentCollection,
+									PreWriteProcessor preWriteProcessor,
+									InitialLoadStatistics initialLoadStatistics) {
+			this.collectionName = collectionName;
+			this.documentCollection = documentCollection;
+			this.preWriteProcessor = preWriteProcessor;
+			this.initialLoadStatistics = initialLoadStatistics;
+			this.batch = new ArrayList<>(batchSize);
+		}
+
+		void add(PatchedDocument patchedDocument) {
+			List<PatchedDocument> fullBatch = null;
+			synchronized (this) {
+				batch.add(patchedDocument);
+				if (batch.size() >= batchSize) {
+					fullBatch = takeBatch();
+				}
+			}
+			if (fullBatch != null) {
+				submit(this, fullBatch);
+			}
+		}
+
+		void flush() {
+			List<PatchedDocument> remaining;
+			synchronized (this) {
+				remaining = takeBatch();
+			}
+			if (!remaining.isEmpty()) {
+				submit(this, remaining);
+			}
+		}
+
+		private List<PatchedDocument> takeBatch() {
+			List<PatchedDocument> result = batch;
+			batch = new ArrayList<>(batchSize);
+			return result;
+		}
+
+		private void write(List<PatchedDocument> batch) {
+			List<PatchedDocument> replacements = new ArrayList<>(batch.size());
+			for (PatchedDocument patchedDocument : batch) {
+				try {
+					Document newVersion = preWriteProcessor.preWrite(patchedDocument.getNewVersion());
+					replacements.add(new PatchedDocument(patchedDocument.getOldVersion(), newVersion));
+				} catch (RuntimeException e) {
+					reportFailure(patchedDocument, e);
+				}
+			}
+			LongAdder numFailedReplacements = new LongAdder();
+			long startNanos = System.nanoTime();
+			ExistenceFilters.replaced(documentCollection, replacements);
+			try {
+				documentCollection.replaceAll(replacements, (patchedDocument, e) -> {
+					numFailedReplacements.increment();
+					reportFailure(patchedDocument, e);
+				});
+			} catch (RuntimeException e) {
+				long numNotReplaced = replacements.size() - numFailedReplacements.sum();
+				log.warn("Failed to write back {} patched documents to collection {}", numNotReplaced, collectionName, e);
+				numFailed.add(numNotReplaced);
+				numFailedReplacements.add(numNotReplaced);
+			} finally {
+				// Added again in case a filter started being built after the ids were added, but read before they were written
+				ExistenceFilters.replaced(documentCollection, replacements);
+			}
+			int numReplaced = (int) (replacements.size() - numFailedReplacements.sum());
+			numWritten.add(numReplaced);
+			initialLoadStatistics.writeBackCompleted(numReplaced, batch.size() - numReplaced, System.nanoTime() - startNanos);
+		}
+
+		private void reportFailure(PatchedDocument patchedDocument, RuntimeException e) {
+			log.warn("Failed to write back patched document with id={} to collection {}", patchedDocument.getOldVersion().get("_id"), collectionName, e);
+			numFailed.increment();
+		}
+
+		/**
+		 * Returns the number of patched documents written back to the collection.
+		 */
+		long getNumWritten() {
+			return numWritten.sum();
+		}
+
+		/**
+		 * Returns the number of patched documents that could not be written back to the collection.
+		 */
+		long getNumFailed() {
+			return numFailed.sum();
+		}
+	}
+
+}
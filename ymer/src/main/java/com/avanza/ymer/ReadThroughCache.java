@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+
+import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
+
+/**
+ * Caches objects of a single type loaded by id, including ids without a document, which are cached for a
+ * shorter time. At most the given number of entries are cached, evicting the least recently used. <p>
+ *
+ * Objects are cached as the raw bson of their current document version, so each load converts an object of
+ * its own, which needs not be patched or written back. Cached documents are converted by the given loader, see
+ * {@link MirroredObjectLoader#loadCached(Document)}. Entries are invalidated by writes of a mirror running in
+ * the same JVM, see {@link ReadThroughCaches}. Objects read while an object is invalidated are not cached,
+ * since they may have been read before the write. <p>
+ *
+ * Objects are only cached, and served from the cache, while a mirror in this JVM
+ * {@link ExistenceFilters#isWritten(String) writes the collection}, since nothing invalidates entries of objects
+ * written by a mirror in another JVM. Ids without a document are cached regardless, for the shorter time.
+ */
+final class ReadThroughCache<T> implements ReadThroughCacheMBean {
+
+	private final Function<Document, LoadedDocument<T>> cachedDocumentLoader;
+	private final String namespace;
+	private final DocumentConverter documentConverter;
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final long negativeTtlNanos;
+	private final LongSupplier nanoTime;
+	private final Map<Object, CacheEntry> entries;
+	private long generation;
+	private final LongAdder numHits = new LongAdder();
+	private final LongAdder numNegativeHits = new LongAdder();
+	private final LongAdder numMisses = new LongAdder();
+	private final LongAdder numEvictions = new LongAdder();
+	private final LongAdder numExpirations = new LongAdder();
+	private final LongAdder numInvalidations = new LongAdder();
+
+	ReadThroughCache(Function<Document, LoadedDocument<T>> cachedDocumentLoader, String namespace, DocumentConverter documentConverter,
+			ReadThroughProperties readThroughProperties) {
+		this(cachedDocumentLoader, namespace, documentConverter, readThroughProperties.getCacheMaxEntries(),
+				readThroughProperties.getCacheTtl().toNanos(), readThroughProperties.getCacheNegativeTtl().toNanos(), System::nanoTime);
+	}
+
+	ReadThroughCache(Function<Document, LoadedDocument<T>> cachedDocumentLoader, String namespace, DocumentConverter documentConverter, int maxEntries, long ttlNanos, long negativeTtlNanos, LongSupplier nanoTime) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be a positive integer, was maxEntries=" + maxEntries + "!");
+		}
+		this.cachedDocumentLoader = cachedDocumentLoader;
+		this.namespace = namespace;
+		this.documentConverter = documentConverter;
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlNanos;
+		this.negativeTtlNanos = negativeTtlNanos;
+		this.nanoTime = nanoTime;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest) {
+				if (size() > ReadThroughCache.this.maxEntries) {
+					numEvictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached object with the given document id, or loads it using the given loader and caches the
+	 * result. A failed load is not cached.
+	 */
+	Optional<LoadedDocument<T>> loadById(Object documentId, Supplier<Optional<LoadedDocument<T>>> loader) {
+		CacheEntry entry;
+		long loadGeneration;
+		synchronized (this) {
+			entry = entries.get(documentId);
+			if (entry != null && entry.expiresAtNanos - nanoTime.getAsLong() <= 0) {
+				entries.remove(documentId);
+				numExpirations.increment();
+				entry = null;
+			} else if (entry != null && entry.document != null && !ExistenceFilters.isWritten(namespace)) {
+				// Cached while written in this JVM, but may have been written by a mirror in another JVM since
+				entries.remove(documentId);
+				entry = null;
+			}
+			loadGeneration = generation;
+		}
+		if (entry != null) {
+			numHits.increment();
+			if (entry.document == null) {
+				numNegativeHits.increment();
+				return Optional.empty();
+			}
+			return Optional.of(cachedDocumentLoader.apply(entry.document.decode(DocumentCodecs.DEFAULT)));
+		}
+		numMisses.increment();
+		Optional<LoadedDocument<T>> loaded = loader.get();
+		RawBsonDocument document = loaded.map(loadedDocument -> toRawDocument(loadedDocument.getDocument())).orElse(null);
+		put(documentId, document, loadGeneration);
+		return loaded;
+	}
+
+	/**
+	 * Loads objects using the given loader, rather than from the cache, and caches the loaded objects.
+	 */
+	List<LoadedDocument<T>> loadAll(Supplier<List<LoadedDocument<T>>> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			loadGeneration = generation;
+		}
+		List<LoadedDocument<T>> loaded = loader.get();
+		for (LoadedDocument<T> loadedDocument : loaded) {
+			Document document = documentConverter.convertToBsonDocument(loadedDocument.getDocument());
+			put(document.get("_id"), new RawBsonDocument(document, DocumentCodecs.DEFAULT), loadGeneration);
+		}
+		return loaded;
+	}
+
+	private synchronized void put(Object documentId, @Nullable RawBsonDocument document, long loadGeneration) {
+		long ttl = document != null ? ttlNanos : negativeTtlNanos;
+		if (ttl <= 0 || loadGeneration != generation || (document != null && !ExistenceFilters.isWritten(namespace))) {
+			return;
+		}
+		entries.put(documentId, new CacheEntry(document, nanoTime.getAsLong() + ttl));
+	}
+
+	private RawBsonDocument toRawDocument(T object) {
+		Document document = documentConverter.convertToBsonDocument(object);
+		return new RawBsonDocument(document, DocumentCodecs.DEFAULT);
+	}
+
+	String getNamespace() {
+		return namespace;
+	}
+
+	/**
+	 * Removes the entry with the given document id, since its document has been written.
+	 */
+	synchronized void invalidate(Object documentId) {
+		generation++;
+		entries.remove(documentId);
+		numInvalidations.increment();
+	}
+
+	/**
+	 * Removes all entries, since documents with unknown ids have been written.
+	 */
+	synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+		numInvalidations.increment();
+	}
+
+	@Override
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	@Override
+	public long getNumHits() {
+		return numHits.sum();
+	}
+
+	@Override
+	public long getNumNegativeHits() {
+		return numNegativeHits.sum();
+	}
+
+	@Override
+	public long getNumMisses() {
+		return numMisses.sum();
+	}
+
+	@Override
+	public long getNumEvictions() {
+		return numEvictions.sum();
+	}
+
+	@Override
+	public long getNumExpirations() {
+		return numExpirations.sum();
+	}
+
+	@Override
+	public long getNumInvalidations() {
+		return numInvalidations.sum();
+	}
+
+	private static final class CacheEntry {
+
+		private final RawBsonDocument document;
+		private final long expiresAtNanos;
+
+		private CacheEntry(@Nullable RawBsonDocument document, long expiresAtNanos) {
+			this.document = document;
+			this.expiresAtNanos = expiresAtNanos;
+		}
+
+	}
+
+}
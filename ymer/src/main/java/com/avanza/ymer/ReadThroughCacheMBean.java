@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+/**
+ * Statistics about the cache in front of objects of a single collection loaded by id, see
+ * {@link SpaceObjectLoader#loadObject(Class, Object)}. Objects are only cached while a mirror in the same JVM
+ * writes the collection, otherwise only ids without a document are cached.
+ */
+public interface ReadThroughCacheMBean {
+
+	/**
+	 * The number of cached objects, including the ones cached as missing.
+	 */
+	int getSize();
+
+	/**
+	 * The number of loads served from the cache, including the ones of objects cached as missing.
+	 */
+	long getNumHits();
+
+	/**
+	 * The number of loads served from the cache of objects cached as missing.
+	 */
+	long getNumNegativeHits();
+
+	/**
+	 * The number of loads read from mongo since the object was not cached, or its entry had expired.
+	 */
+	long getNumMisses();
+
+	/**
+	 * The number of entries evicted to keep the cache within its max number of entries.
+	 */
+	long getNumEvictions();
+
+	/**
+	 * The number of entries removed since they had expired.
+	 */
+	long getNumExpirations();
+
+	/**
+	 * The number of invalidations due to objects written by a mirror in the same JVM.
+	 */
+	long getNumInvalidations();
+
+	/**
+	 * Removes all entries, so that all objects are read from mongo again.
+	 */
+	void clear();
+
+}
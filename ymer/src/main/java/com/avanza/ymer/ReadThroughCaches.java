@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the {@link ReadThroughCache read through caches} of this JVM by collection, so that a mirror
+ * running in the same JVM as a space can invalidate the cached objects it writes. Caches of other JVMs are not
+ * invalidated, which is why caches only hold objects of collections written by a mirror in their own JVM. <p>
+ *
+ * Collections are identified by their {@link DocumentCollection#getNamespace() namespace}, since spaces using
+ * different databases may run in the same JVM. Caches are held weakly, so that the caches of a discarded space
+ * data source need not be unregistered.
+ */
+final class ReadThroughCaches {
+
+	private static final Map<String, Set<ReadThroughCache<?>>> cachesByNamespace = new ConcurrentHashMap<>();
+
+	private ReadThroughCaches() {
+	}
+
+	static void register(ReadThroughCache<?> cache) {
+		cachesByNamespace.computeIfAbsent(cache.getNamespace(), k -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())))
+				.add(cache);
+	}
+
+	static void unregister(ReadThroughCache<?> cache) {
+		Set<ReadThroughCache<?>> caches = cachesByNamespace.get(cache.getNamespace());
+		if (caches != null) {
+			caches.remove(cache);
+		}
+	}
+
+	/**
+	 * Whether any cache of this JVM holds objects of the collection with the given namespace, i.e. whether writes to it need to
+	 * be invalidated.
+	 */
+	static boolean isCached(String namespace) {
+		Set<ReadThroughCache<?>> caches = cachesByNamespace.get(namespace);
+		return caches != null && !caches.isEmpty();
+	}
+
+	/**
+	 * Invalidates the object with the given document id in all caches of the collection with the given namespace.
+	 */
+	static void invalidate(String namespace, Object documentId) {
+		getCaches(namespace).forEach(cache -> cache.invalidate(documentId));
+	}
+
+	/**
+	 * Invalidates all objects in all caches of the collection with the given namespace.
+	 */
+	static void invalidateAll(String namespace) {
+		getCaches(namespace).forEach(ReadThroughCache::invalidateAll);
+	}
+
+	private static List<ReadThroughCache<?>> getCaches(String namespace) {
+		Set<ReadThroughCache<?>> caches = cachesByNamespace.get(namespace);
+		if (caches == null) {
+			return Collections.emptyList();
+		}
+		synchronized (caches) {
+			return new ArrayList<>(caches);
+		}
+	}
+
+}
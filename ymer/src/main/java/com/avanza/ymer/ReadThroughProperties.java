@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings used when space objects are read through from mongo after InitialLoad, i.e. when GigaSpaces asks
+ * the space data source for objects by id. <p>
+ */
+final class ReadThroughProperties {
+
+	static final int DEFAULT_BATCH_SIZE = 1_000;
+	static final int DEFAULT_PARALLEL_CONVERSION_THRESHOLD = 64;
+	static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(1);
+	static final Duration DEFAULT_CACHE_NEGATIVE_TTL = Duration.ofSeconds(10);
+
+	private final int batchSize;
+	private final int numConversionThreads;
+	private final int parallelConversionThreshold;
+	private final Duration loadObjectCoalescingWindow;
+	private final int cacheMaxEntries;
+	private final Duration cacheTtl;
+	private final Duration cacheNegativeTtl;
+
+	private ReadThroughProperties(Builder builder) {
+		this.batchSize = builder.batchSize;
+		this.numConversionThreads = builder.numConversionThreads;
+		this.parallelConversionThreshold = builder.parallelConversionThreshold;
+		this.loadObjectCoalescingWindow = builder.loadObjectCoalescingWindow;
+		this.cacheMaxEntries = builder.cacheMaxEntries;
+		this.cacheTtl = builder.cacheTtl;
+		this.cacheNegativeTtl = builder.cacheNegativeTtl;
+	}
+
+	static ReadThroughProperties defaults() {
+		return builder().build();
+	}
+
+	static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * The maximum number of ids looked up in a single query.
+	 */
+	int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * The number of threads patching and converting read through documents, shared by all types.
+	 */
+	int getNumConversionThreads() {
+		return numConversionThreads;
+	}
+
+	/**
+	 * The minimum number of documents read together for them to be patched and converted concurrently.
+	 */
+	int getParallelConversionThreshold() {
+		return parallelConversionThreshold;
+	}
+
+	/**
+	 * The time that concurrent loads of single objects are collected into a batch read using a single query,
+	 * see {@link LoadObjectCoalescer}. A batch is read early when it holds {@link #getBatchSize()} ids.
+	 * Loads are not coalesced if zero.
+	 */
+	Duration getLoadObjectCoalescingWindow() {
+		return loadObjectCoalescingWindow;
+	}
+
+	/**
+	 * The maximum number of objects per type cached in front of loads of single objects, see
+	 * {@link ReadThroughCache}. Objects are not cached if zero.
+	 */
+	int getCacheMaxEntries() {
+		return cacheMaxEntries;
+	}
+
+	/**
+	 * The time that a cached object is served before it is read from mongo again.
+	 */
+	Duration getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/**
+	 * The time that an id without a document is served as missing before it is looked up in mongo again.
+	 * Missing objects are not cached if zero.
+	 */
+	Duration getCacheNegativeTtl() {
+		return cacheNegativeTtl;
+	}
+
+	static final class Builder {
+		private int batchSize = DEFAULT_BATCH_SIZE;
+		private int numConversionThreads = Runtime.getRuntime().availableProcessors();
+		private int parallelConversionThreshold = DEFAULT_PARALLEL_CONVERSION_THRESHOLD;
+		private Duration loadObjectCoalescingWindow = Duration.ZERO;
+		private int cacheMaxEntries = 0;
+		private Duration cacheTtl = DEFAULT_CACHE_TTL;
+		private Duration cacheNegativeTtl = DEFAULT_CACHE_NEGATIVE_TTL;
+
+		private Builder() {
+		}
+
+		Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		Builder numConversionThreads(int numConversionThreads) {
+			this.numConversionThreads = numConversionThreads;
+			return this;
+		}
+
+		Builder parallelConversionThreshold(int parallelConversionThreshold) {
+			this.parallelConversionThreshold = parallelConversionThreshold;
+			return this;
+		}
+
+		Builder loadObjectCoalescingWindow(Duration loadObjectCoalescingWindow) {
+			this.loadObjectCoalescingWindow = Objects.requireNonNull(loadObjectCoalescingWindow);
+			return this;
+		}
+
+		Builder cacheMaxEntries(int cacheMaxEntries) {
+			this.cacheMaxEntries = cacheMaxEntries;
+			return this;
+		}
+
+		Builder cacheTtl(Duration cacheTtl) {
+			this.cacheTtl = Objects.requireNonNull(cacheTtl);
+			return this;
+		}
+
+		Builder cacheNegativeTtl(Duration cacheNegativeTtl) {
+			this.cacheNegativeTtl = Objects.requireNonNull(cacheNegativeTtl);
+			return this;
+		}
+
+		ReadThroughProperties build() {
+			return new ReadThroughProperties(this);
+		}
+	}
+
+}
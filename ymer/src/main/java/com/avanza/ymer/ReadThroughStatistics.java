@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects {@link ReadThroughStatisticsMBean statistics} about objects of a single collection read through from mongo.
+ */
+final class ReadThroughStatistics implements ReadThroughStatisticsMBean {
+
+	private final LongAdder numIdLookups = new LongAdder();
+	private final LongAdder numQueries = new LongAdder();
+	private final LongAdder numUntranslatableQueries = new LongAdder();
+	private final LongAdder numObjectsRead = new LongAdder();
+
+	void idsLookedUp(int numIds) {
+		numIdLookups.add(numIds);
+	}
+
+	void queried() {
+		numQueries.increment();
+	}
+
+	void untranslatableQuery() {
+		numUntranslatableQueries.increment();
+	}
+
+	void objectsRead(int numObjects) {
+		numObjectsRead.add(numObjects);
+	}
+
+	@Override
+	public long getNumIdLookups() {
+		return numIdLookups.sum();
+	}
+
+	@Override
+	public long getNumQueries() {
+		return numQueries.sum();
+	}
+
+	@Override
+	public long getNumUntranslatableQueries() {
+		return numUntranslatableQueries.sum();
+	}
+
+	@Override
+	public long getNumObjectsRead() {
+		return numObjectsRead.sum();
+	}
+
+}
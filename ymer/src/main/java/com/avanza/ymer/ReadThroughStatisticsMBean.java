@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+/**
+ * Statistics about space objects of a single collection read through from mongo after InitialLoad, i.e. when
+ * GigaSpaces asks for objects missing in the space, for instance after they have been evicted from an LRU space.
+ */
+public interface ReadThroughStatisticsMBean {
+
+	/**
+	 * The number of ids looked up.
+	 */
+	long getNumIdLookups();
+
+	/**
+	 * The number of queries, including the ones that could not be translated into a mongo filter.
+	 */
+	long getNumQueries();
+
+	/**
+	 * The number of queries that could not be translated into a mongo filter, and hence read through no objects.
+	 * Should be zero, see the log for the queries that could not be translated.
+	 */
+	long getNumUntranslatableQueries();
+
+	/**
+	 * The number of objects read, for both id lookups and queries.
+	 */
+	long getNumObjectsRead();
+
+}
@@ -31,20 +31,15 @@ import com.mongodb.MongoSocketException;
  */
 class RethrowsTransientDocumentWriteExceptionHandler implements DocumentWriteExceptionHandler {
 
-	private final Set<Class<? extends Exception>> transientErrorClasses;
-	private final Set<String> transientErrorMessages;
+	private static final Set<Class<? extends Exception>> TRANSIENT_ERROR_CLASSES = new HashSet<>(Arrays.asList(
+			MongoSocketException.class,
+			MongoClientException.class,
+			MongoNotPrimaryException.class));
+	private static final Set<String> TRANSIENT_ERROR_MESSAGES = new HashSet<>(Arrays.asList("No replica set members available for query with",
+			"not master", "Command failed with error 13: 'not authorized on "));
 
 	private final Logger log = LoggerFactory.getLogger(RethrowsTransientDocumentWriteExceptionHandler.class);
 
-	public RethrowsTransientDocumentWriteExceptionHandler() {
-		this.transientErrorClasses = new HashSet<>(Arrays.asList(
-				MongoSocketException.class,
-				MongoClientException.class,
-				MongoNotPrimaryException.class));
-		this.transientErrorMessages = new HashSet<>(Arrays.asList("No replica set members available for query with",
-				"not master", "Command failed with error 13: 'not authorized on "));
-	}
-
 	@Override
 	public void handleException(Exception exception, String operationDescription) {
 		if (isTransient(exception)) {
@@ -55,13 +50,17 @@ class RethrowsTransientDocumentWriteExceptionHandler implements DocumentWriteExc
 		}
 	}
 
-	private boolean isTransient(Exception exception) {
-		for (Class<? extends Exception> exceptionClass : transientErrorClasses) {
+	/**
+	 * Whether the exception is caused by a condition expected to pass, such as a primary step down, so that
+	 * the failed write may succeed if attempted again.
+	 */
+	static boolean isTransient(Exception exception) {
+		for (Class<? extends Exception> exceptionClass : TRANSIENT_ERROR_CLASSES) {
 			if (exceptionClass.isAssignableFrom(exception.getClass())) {
 				return true;
 			}
 		}
-		for (String message : transientErrorMessages) {
+		for (String message : TRANSIENT_ERROR_MESSAGES) {
 			String exceptionMessage = exception.getMessage();
 			if (exceptionMessage != null && exceptionMessage.startsWith(message)) {
 				return true;
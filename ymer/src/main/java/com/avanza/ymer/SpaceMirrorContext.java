@@ -41,15 +41,22 @@ final class SpaceMirrorContext {
 	private final DocumentDb documentDb;
 	private final MirrorExceptionListener mirrorExceptionListener;
 	private final Plugins plugins;
-	private final int numParallelCollections;
+	private final InitialLoadProperties initialLoadProperties;
+	private final Map<String, InitialLoadStatistics> initialLoadStatisticsByCollectionName = new ConcurrentHashMap<>();
+	private final Map<String, ReadThroughStatistics> readThroughStatisticsByCollectionName = new ConcurrentHashMap<>();
+	private final Map<Class<?>, WriteDeduplicator> writeDeduplicatorByMirroredType = new ConcurrentHashMap<>();
 
 	SpaceMirrorContext(MirroredObjects mirroredObjects, DocumentConverter documentConverter, DocumentDb documentDb, MirrorExceptionListener mirrorExceptionListener, Plugins plugins, int numParallelCollections) {
+		this(mirroredObjects, documentConverter, documentDb, mirrorExceptionListener, plugins, InitialLoadProperties.builder().numParallelCollections(numParallelCollections).build());
+	}
+
+	SpaceMirrorContext(MirroredObjects mirroredObjects, DocumentConverter documentConverter, DocumentDb documentDb, MirrorExceptionListener mirrorExceptionListener, Plugins plugins, InitialLoadProperties initialLoadProperties) {
 		this.documentDb = Objects.requireNonNull(documentDb);
 		this.mirrorExceptionListener = Objects.requireNonNull(mirrorExceptionListener);
 		this.mirroredObjects = Objects.requireNonNull(mirroredObjects);
 		this.documentConverter = Objects.requireNonNull(documentConverter);
 		this.plugins = Objects.requireNonNull(plugins);
-		this.numParallelCollections = numParallelCollections;
+		this.initialLoadProperties = Objects.requireNonNull(initialLoadProperties);
 
 		for (MirroredObject<?> mirroredObject : mirroredObjects.getMirroredObjects()) {
 			DocumentCollection documentCollection = documentDb.getCollection(
@@ -84,7 +91,30 @@ final class SpaceMirrorContext {
 				document,
 				SpaceObjectFilter.partitionFilter(document, instanceId, partitionCount),
 				new MirrorContextProperties(partitionCount, instanceId),
-				plugins.getPostReadProcessing(document.getMirroredType()));
+				plugins.getPostReadProcessing(document.getMirroredType()),
+				initialLoadProperties,
+				getInitialLoadStatistics(document));
+	}
+
+	InitialLoadStatistics getInitialLoadStatistics(MirroredObject<?> document) {
+		return initialLoadStatisticsByCollectionName.computeIfAbsent(document.getCollectionName(), collectionName -> new InitialLoadStatistics());
+	}
+
+	ReadThroughStatistics getReadThroughStatistics(MirroredObject<?> document) {
+		return readThroughStatisticsByCollectionName.computeIfAbsent(document.getCollectionName(), collectionName -> new ReadThroughStatistics());
+	}
+
+	/**
+	 * Returns the tracker of written documents of the given type, or null unless
+	 * {@link MirroredObjectDefinition#skipUnchangedWrites(int) skipping unchanged writes}.
+	 */
+	WriteDeduplicator getWriteDeduplicator(Class<?> type) {
+		MirroredObject<?> mirroredObject = mirroredObjects.getMirroredObject(type);
+		if (mirroredObject.skipUnchangedWrites() == 0) {
+			return null;
+		}
+		return writeDeduplicatorByMirroredType.computeIfAbsent(type,
+				k -> new WriteDeduplicator(mirroredObject.skipUnchangedWrites(), mirroredObject.skipUnchangedWritesOffHeap()));
 	}
 
 	Collection<MirroredObject<?>> getMirroredDocuments() {
@@ -100,7 +130,11 @@ final class SpaceMirrorContext {
 	}
 
 	public int getNumParallelCollections() {
-		return numParallelCollections;
+		return initialLoadProperties.getNumParallelCollections();
+	}
+
+	InitialLoadProperties getInitialLoadProperties() {
+		return initialLoadProperties;
 	}
 
 	/**
@@ -115,6 +149,17 @@ final class SpaceMirrorContext {
 		return document;
 	}
 
+	/**
+	 * Converts a partially updated space object, see {@link MirroredObject#setPartialDocumentAttributes}. <p>
+	 */
+	<T> Document toPartialVersionedDocument(T spaceObject, InstanceMetadata metadata) {
+		@SuppressWarnings("unchecked")
+		MirroredObject<T> mirroredObject = (MirroredObject<T>) this.mirroredObjects.getMirroredObject(spaceObject.getClass());
+		Document document = this.documentConverter.convertToBsonDocument(spaceObject);
+		mirroredObject.setPartialDocumentAttributes(document, spaceObject, metadata);
+		return document;
+	}
+
 	<T> MirroredObject<T> getMirroredDocument(Class<T> type) {
 		return this.mirroredObjects.getMirroredObject(type);
 	}
@@ -93,7 +93,7 @@ final class SpaceObjectFilter<T> {
 			return this.document.getRoutingKey(spaceObject);
 		}
 
-		private boolean routesToThisPartition(Object routingKey) {
+		boolean routesToThisPartition(Object routingKey) {
 			return instanceId == getInstanceId(routingKey, partitionCount);
 		}
 
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Translates the where clause of a GigaSpaces SQLQuery into a mongo {@link Criteria}. <p>
+ *
+ * Supports comparisons (=, !=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=), [NOT] IN and IS [NOT] NULL on top level
+ * properties, combined using AND, OR and parentheses. Values are given either as ? parameters or as number,
+ * string, boolean or null literals. Anything else, such as LIKE, functions or nested properties, fails the
+ * translation with a {@link CouldNotCreateMongoQueryException}.
+ */
+final class SqlQueryTranslator {
+
+	private static final Pattern TOKEN = Pattern.compile(
+			"\\s*(?:(?<number>-?\\d+(?:\\.\\d+)?)|'(?<string>(?:[^']|'')*)'|(?<word>[A-Za-z_$][\\w$.]*)|(?<symbol><=|>=|<>|!=|[=<>(),?]))");
+	private static final Set<String> KEYWORDS = Set.of("AND", "OR", "NOT", "IN", "IS", "NULL", "TRUE", "FALSE", "LIKE", "BETWEEN", "WHERE");
+
+	private final UnaryOperator<String> fieldNames;
+	private final UnaryOperator<Object> values;
+
+	/**
+	 * @param fieldNames resolves the document field name of a property
+	 * @param values converts a parameter value to its mongo representation
+	 */
+	SqlQueryTranslator(UnaryOperator<String> fieldNames, UnaryOperator<Object> values) {
+		this.fieldNames = fieldNames;
+		this.values = values;
+	}
+
+	Criteria translate(String whereClause, @Nullable Object[] parameters) {
+		Parser parser = new Parser(whereClause, tokenize(whereClause), parameters != null ? parameters : new Object[0]);
+		return parser.parse();
+	}
+
+	private static List<Token> tokenize(String whereClause) {
+		List<Token> tokens = new ArrayList<>();
+		Matcher matcher = TOKEN.matcher(whereClause);
+		int position = 0;
+		while (position < whereClause.length()) {
+			matcher.region(position, whereClause.length());
+			if (!matcher.lookingAt()) {
+				if (whereClause.substring(position).isBlank()) {
+					break;
+				}
+				throw new CouldNotCreateMongoQueryException("Unsupported query syntax at position " + position + ": " + whereClause);
+			}
+			if (matcher.group("number") != null) {
+				tokens.add(new Token(TokenType.NUMBER, matcher.group("number")));
+			} else if (matcher.group("string") != null) {
+				tokens.add(new Token(TokenType.STRING, matcher.group("string").replace("''", "'")));
+			} else if (matcher.group("word") != null) {
+				tokens.add(new Token(TokenType.WORD, matcher.group("word")));
+			} else {
+				tokens.add(new Token(TokenType.SYMBOL, matcher.group("symbol")));
+			}
+			position = matcher.end();
+		}
+		return tokens;
+	}
+
+	private enum TokenType {
+		NUMBER, STRING, WORD, SYMBOL
+	}
+
+	private static final class Token {
+		private final TokenType type;
+		private final String text;
+
+		private Token(TokenType type, String text) {
+			this.type = type;
+			this.text = text;
+		}
+
+		private boolean isKeyword(String keyword) {
+			return type == TokenType.WORD && text.equalsIgnoreCase(keyword);
+		}
+
+		private boolean isSymbol(String symbol) {
+			return type == TokenType.SYMBOL && text.equals(symbol);
+		}
+	}
+
+	private final class Parser {
+		private final String whereClause;
+		private final List<Token> tokens;
+		private final Object[] parameters;
+		private int position = 0;
+		private int parameterIndex = 0;
+
+		private Parser(String whereClause, List<Token> tokens, Object[] parameters) {
+			this.whereClause = whereClause;
+			this.tokens = tokens;
+			this.parameters = parameters;
+		}
+
+		Criteria parse() {
+			accept(token -> token.isKeyword("WHERE"));
+			Criteria criteria = or();
+			if (position < tokens.size()) {
+				throw unsupported("Unexpected '" + tokens.get(position).text + "'");
+			}
+			return criteria;
+		}
+
+		private Criteria or() {
+			List<Criteria> operands = new ArrayList<>();
+			operands.add(and());
+			while (accept(token -> token.isKeyword("OR"))) {
+				operands.add(and());
+			}
+			return operands.size() == 1 ? operands.get(0) : new Criteria().orOperator(operands.toArray(new Criteria[0]));
+		}
+
+		private Criteria and() {
+			List<Criteria> operands = new ArrayList<>();
+			operands.add(primary());
+			while (accept(token -> token.isKeyword("AND"))) {
+				operands.add(primary());
+			}
+			return operands.size() == 1 ? operands.get(0) : new Criteria().andOperator(operands.toArray(new Criteria[0]));
+		}
+
+		private Criteria primary() {
+			if (accept(token -> token.isSymbol("("))) {
+				Criteria criteria = or();
+				expect(token -> token.isSymbol(")"), "')'");
+				return criteria;
+			}
+			return predicate();
+		}
+
+		private Criteria predicate() {
+			Token property = next();
+			if (property.type != TokenType.WORD || KEYWORDS.contains(property.text.toUpperCase(Locale.ROOT))) {
+				throw unsupported("Expected property but was '" + property.text + "'");
+			}
+			String field = fieldName(property.text);
+			if (accept(token -> token.isKeyword("IS"))) {
+				boolean not = accept(token -> token.isKeyword("NOT"));
+				expect(token -> token.isKeyword("NULL"), "NULL");
+				return not ? where(field).ne(null) : where(field).is(null);
+			}
+			boolean not = accept(token -> token.isKeyword("NOT"));
+			if (accept(token -> token.isKeyword("IN"))) {
+				List<Object> inValues = inValues();
+				// Unlike NOT IN in SQL, $nin also matches documents where the field is null or missing
+				return not ? where(field).ne(null).nin(inValues) : where(field).in(inValues);
+			}
+			if (not) {
+				throw unsupported("Expected IN after NOT");
+			}
+			Token operator = next();
+			if (operator.type != TokenType.SYMBOL) {
+				throw unsupported("Unsupported operator '" + operator.text + "'");
+			}
+			switch (operator.text) {
+				case "=":
+					return where(field).is(value());
+				case "!=":
+				case "<>":
+					// Unlike the SQL predicate, $ne also matches documents where the field is null or missing
+					return new Criteria().andOperator(where(field).ne(null), where(field).ne(value()));
+				case "<":
+					return where(field).lt(value());
+				case "<=":
+					return where(field).lte(value());
+				case ">":
+					return where(field).gt(value());
+				case ">=":
+					return where(field).gte(value());
+				default:
+					throw unsupported("Unsupported operator '" + operator.text + "'");
+			}
+		}
+
+		private List<Object> inValues() {
+			expect(token -> token.isSymbol("("), "'('");
+			List<Object> inValues = new ArrayList<>();
+			do {
+				Object value = value();
+				if (value instanceof Collection) {
+					inValues.addAll((Collection<?>) value);
+				} else {
+					inValues.add(value);
+				}
+			} while (accept(token -> token.isSymbol(",")));
+			expect(token -> token.isSymbol(")"), "')'");
+			return inValues;
+		}
+
+		@Nullable
+		private Object value() {
+			Token token = next();
+			switch (token.type) {
+				case NUMBER:
+					try {
+						return token.text.contains(".") ? (Object) Double.valueOf(token.text) : (Object) Long.valueOf(token.text);
+					} catch (NumberFormatException e) {
+						throw unsupported("Unsupported number '" + token.text + "'");
+					}
+				case STRING:
+					return token.text;
+				case SYMBOL:
+					if (token.isSymbol("?")) {
+						if (parameterIndex >= parameters.length) {
+							throw unsupported("Missing value of parameter " + (parameterIndex + 1));
+						}
+						Object parameter = parameters[parameterIndex++];
+						return parameter != null ? values.apply(parameter) : null;
+					}
+					break;
+				case WORD:
+					if (token.isKeyword("NULL")) {
+						return null;
+					}
+					if (token.isKeyword("TRUE") || token.isKeyword("FALSE")) {
+						return Boolean.valueOf(token.text);
+					}
+					break;
+			}
+			throw unsupported("Expected value but was '" + token.text + "'");
+		}
+
+		private String fieldName(String property) {
+			if (property.contains(".")) {
+				throw unsupported("Nested property '" + property + "' is not supported");
+			}
+			try {
+				return fieldNames.apply(property);
+			} catch (RuntimeException e) {
+				throw new CouldNotCreateMongoQueryException("Unknown property '" + property + "' in query: " + whereClause, e);
+			}
+		}
+
+		private Token next() {
+			if (position >= tokens.size()) {
+				throw unsupported("Unexpected end of query");
+			}
+			return tokens.get(position++);
+		}
+
+		private boolean accept(Predicate<Token> matches) {
+			if (position < tokens.size() && matches.test(tokens.get(position))) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(Predicate<Token> matches, String expected) {
+			if (!accept(matches)) {
+				throw unsupported("Expected " + expected);
+			}
+		}
+
+		private CouldNotCreateMongoQueryException unsupported(String message) {
+			return new CouldNotCreateMongoQueryException(message + " in query: " + whereClause);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks a 64 bit hash of the last document written by the mirror for each id of a single collection, so that
+ * updates writing an unchanged document can be skipped. Both ids and documents are hashed from their bson
+ * encoding, and kept in a {@link LongLongCache} of bounded size. <p>
+ *
+ * A document must be {@link #forget(Object) forgotten} whenever it may have changed without being tracked,
+ * i.e. when it is removed, partially updated, or when a write of it fails.
+ */
+final class WriteDeduplicator implements WriteDeduplicatorMBean {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteDeduplicator.class);
+
+	private final LongLongCache hashById;
+	private final LongAdder numSkippedWrites = new LongAdder();
+	private final LongAdder numChangedWrites = new LongAdder();
+
+	WriteDeduplicator(int maxTrackedDocuments, boolean offHeap) {
+		this.hashById = new LongLongCache(maxTrackedDocuments, offHeap);
+	}
+
+	/**
+	 * Returns true if the document is unchanged since it was last written, in which case the update may be
+	 * skipped. Otherwise the document is tracked as written.
+	 */
+	boolean isUnchanged(Document document) {
+		boolean unchanged;
+		try {
+			unchanged = hashById.put(idHash(document.get("_id")), hash(document));
+		} catch (RuntimeException e) {
+			log.debug("Failed to hash document, it is written", e);
+			forget(document.get("_id"));
+			unchanged = false;
+		}
+		(unchanged ? numSkippedWrites : numChangedWrites).increment();
+		return unchanged;
+	}
+
+	/**
+	 * Tracks the document as written, without counting it as an update.
+	 */
+	void written(Document document) {
+		try {
+			hashById.put(idHash(document.get("_id")), hash(document));
+		} catch (RuntimeException e) {
+			log.debug("Failed to hash document, it is not tracked", e);
+			forget(document.get("_id"));
+		}
+	}
+
+	void forget(Object id) {
+		hashById.remove(idHash(id));
+	}
+
+	static long idHash(Object id) {
+		return idHash(id, DocumentCodecs.DEFAULT);
+	}
+
+	/**
+	 * Hashes the given id as encoded by the given codec, which must encode ids as they are stored, for instance
+	 * UUIDs in the configured representation, when the hash is compared with hashes of stored ids.
+	 */
+	static long idHash(Object id, Codec<Document> documentCodec) {
+		return hash(new RawBsonDocument(new Document("_id", id), documentCodec).getByteBuffer().asNIO());
+	}
+
+	static long hash(Document document) {
+		return hash(new RawBsonDocument(document, DocumentCodecs.DEFAULT).getByteBuffer().asNIO());
+	}
+
+	/**
+	 * A 64 bit hash of the remaining bytes, processing eight bytes at a time. Not cryptographically secure.
+	 */
+	static long hash(ByteBuffer bytes) {
+		ByteBuffer buffer = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		long hash = 0x27D4EB2F165667C5L ^ buffer.remaining();
+		while (buffer.remaining() >= Long.BYTES) {
+			hash = mix(hash, buffer.getLong());
+		}
+		long tail = 0;
+		for (int shift = 0; buffer.hasRemaining(); shift += 8) {
+			tail |= (buffer.get() & 0xFFL) << shift;
+		}
+		return avalanche(mix(hash, tail));
+	}
+
+	private static long mix(long hash, long value) {
+		return Long.rotateLeft(hash ^ Long.rotateLeft(value * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL, 27) * 5 + 0x52DCE729;
+	}
+
+	private static long avalanche(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		return hash ^ hash >>> 33;
+	}
+
+	@Override
+	public long getNumSkippedWrites() {
+		return numSkippedWrites.sum();
+	}
+
+	@Override
+	public long getNumChangedWrites() {
+		return numChangedWrites.sum();
+	}
+
+	@Override
+	public int getNumTrackedDocuments() {
+		return hashById.size();
+	}
+
+	@Override
+	public int getMaxTrackedDocuments() {
+		return hashById.capacity();
+	}
+
+	@Override
+	public long getNumEvictions() {
+		return hashById.getNumEvictions();
+	}
+
+	@Override
+	public void clear() {
+		hashById.clear();
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+/**
+ * Statistics about mirrored writes of a single collection skipped because the written document was unchanged,
+ * see {@link MirroredObjectDefinition#skipUnchangedWrites(int)}.
+ */
+public interface WriteDeduplicatorMBean {
+
+	/**
+	 * The number of updates skipped since the document was unchanged since it was last written.
+	 */
+	long getNumSkippedWrites();
+
+	/**
+	 * The number of updates written since the document was changed, or not tracked.
+	 */
+	long getNumChangedWrites();
+
+	/**
+	 * The number of documents whose last written hash is currently tracked.
+	 */
+	int getNumTrackedDocuments();
+
+	/**
+	 * The maximum number of documents tracked at the same time.
+	 */
+	int getMaxTrackedDocuments();
+
+	/**
+	 * The number of tracked documents evicted to track another document.
+	 */
+	long getNumEvictions();
+
+	/**
+	 * Forgets all tracked documents, for instance after the collection was modified by someone other than
+	 * this mirror. The next update of each document is written.
+	 */
+	void clear();
+
+}
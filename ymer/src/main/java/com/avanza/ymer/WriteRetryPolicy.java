@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a failed mirrored write is attempted again, and backs off before it is. Only transient
+ * failures, see {@link RethrowsTransientDocumentWriteExceptionHandler#isTransient(Exception)}, are retried. <p>
+ *
+ * The backoff grows exponentially with the number of attempts, up to a maximum. Half of it is randomized, so that
+ * writers failing at the same time do not retry in lockstep.
+ */
+final class WriteRetryPolicy implements WriteRetryStatisticsMBean {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteRetryPolicy.class);
+
+	private final int maxAttempts;
+	private final long initialBackoffNanos;
+	private final long maxBackoffNanos;
+	private final LongAdder numRetries = new LongAdder();
+	private final LongAdder numExhaustedRetries = new LongAdder();
+	private final LongAdder backoffNanos = new LongAdder();
+
+	WriteRetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffNanos = initialBackoff.toNanos();
+		this.maxBackoffNanos = Math.max(maxBackoff.toNanos(), initialBackoffNanos);
+	}
+
+	/**
+	 * Runs the write, attempting it again after backing off while it fails with a transient failure and there
+	 * are attempts left. The last failure is rethrown.
+	 */
+	void run(Runnable write) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				write.run();
+				return;
+			} catch (RuntimeException e) {
+				if (!isRetryable(e, attempt)) {
+					throw e;
+				}
+				backoff(attempt, 1);
+			}
+		}
+	}
+
+	/**
+	 * Whether a write failing with the given exception on the given attempt, counting from 1, is attempted again.
+	 */
+	boolean isRetryable(Exception e, int attempt) {
+		if (maxAttempts == 1 || e instanceof TransientDocumentWriteException || !RethrowsTransientDocumentWriteExceptionHandler.isTransient(e)) {
+			return false;
+		}
+		if (attempt >= maxAttempts) {
+			numExhaustedRetries.increment();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Backs off before the given number of failed writes are attempted again, after the given attempt.
+	 *
+	 * @throws TransientDocumentWriteException if interrupted while backing off
+	 */
+	void backoff(int attempt, int numWrites) {
+		long nanos;
+		if (initialBackoffNanos == 0) {
+			nanos = 0;
+		} else if (attempt - 1 >= Long.numberOfLeadingZeros(initialBackoffNanos) - 1) {
+			// Doubling that many times would overflow
+			nanos = maxBackoffNanos;
+		} else {
+			nanos = Math.min(initialBackoffNanos << (attempt - 1), maxBackoffNanos);
+		}
+		long jitteredNanos = nanos / 2 + ThreadLocalRandom.current().nextLong(nanos / 2 + 1);
+		log.debug("Retrying {} failed writes in {} ms, after attempt {} of {}", numWrites, TimeUnit.NANOSECONDS.toMillis(jitteredNanos), attempt, maxAttempts);
+		numRetries.add(numWrites);
+		backoffNanos.add(jitteredNanos);
+		try {
+			TimeUnit.NANOSECONDS.sleep(jitteredNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TransientDocumentWriteException(e);
+		}
+	}
+
+	@Override
+	public long getNumRetries() {
+		return numRetries.sum();
+	}
+
+	@Override
+	public long getNumExhaustedRetries() {
+		return numExhaustedRetries.sum();
+	}
+
+	@Override
+	public long getBackoffMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(backoffNanos.sum());
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+/**
+ * Statistics about mirrored writes retried after transient failures, such as primary step downs and socket
+ * errors, before the failure is handed over to the DocumentWriteExceptionHandler.
+ */
+public interface WriteRetryStatisticsMBean {
+
+	/**
+	 * The number of writes retried, counting each attempt after the first.
+	 */
+	long getNumRetries();
+
+	/**
+	 * The number of writes that still failed with a transient failure after the last attempt.
+	 */
+	long getNumExhaustedRetries();
+
+	/**
+	 * The total time spent backing off before retrying writes.
+	 */
+	long getBackoffMillis();
+
+}
@@ -17,6 +17,7 @@ package com.avanza.ymer;
 
 import static java.util.Objects.requireNonNull;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
@@ -52,7 +53,9 @@ public final class YmerFactory implements ApplicationContextAware {
 	private ReadPreference readPreference = ReadPreference.primary();
 	private boolean exportExceptionHandleMBean = true;
 	private Set<Plugin> plugins = Collections.emptySet();
-	private int numParallelCollections = 1;
+	private final InitialLoadProperties.Builder initialLoadPropertiesBuilder = InitialLoadProperties.builder();
+	private final MirrorWriteProperties.Builder mirrorWritePropertiesBuilder = MirrorWriteProperties.builder();
+	private final ReadThroughProperties.Builder readThroughPropertiesBuilder = ReadThroughProperties.builder();
 	private ReloadableYmerProperties.ReloadablePropertiesBuilder ymerPropertiesBuilder = ReloadableYmerProperties.builder();
 
 	private final MirroredObjects mirroredObjects;
@@ -120,7 +123,351 @@ public final class YmerFactory implements ApplicationContextAware {
 		if (numParallelCollections < 1) {
 			throw new IllegalArgumentException("numParallelCollections must be a positive integer, was numParallelCollections=" + numParallelCollections + "!");
 		}
-		this.numParallelCollections = numParallelCollections;
+		initialLoadPropertiesBuilder.numParallelCollections(numParallelCollections);
+	}
+
+	/**
+	 * Sets the number of threads in the pool dedicated to patching and converting documents during InitialLoad.
+	 * The pool is shared by all collections that are loaded concurrently, see {@link #setNumParallelCollections(int)}.
+	 *
+	 * Default is the number of available processors.
+	 */
+	public void setInitialLoadParallelism(int initialLoadParallelism) {
+		if (initialLoadParallelism < 1) {
+			throw new IllegalArgumentException("initialLoadParallelism must be a positive integer, was initialLoadParallelism=" + initialLoadParallelism + "!");
+		}
+		initialLoadPropertiesBuilder.parallelism(initialLoadParallelism);
+	}
+
+	/**
+	 * Sets the priority of the threads patching and converting documents during InitialLoad.
+	 *
+	 * Default is {@link Thread#NORM_PRIORITY}.
+	 */
+	public void setInitialLoadThreadPriority(int initialLoadThreadPriority) {
+		if (initialLoadThreadPriority < Thread.MIN_PRIORITY || initialLoadThreadPriority > Thread.MAX_PRIORITY) {
+			throw new IllegalArgumentException("initialLoadThreadPriority must be between " + Thread.MIN_PRIORITY + " and " + Thread.MAX_PRIORITY
+					+ ", was initialLoadThreadPriority=" + initialLoadThreadPriority + "!");
+		}
+		initialLoadPropertiesBuilder.threadPriority(initialLoadThreadPriority);
+	}
+
+	/**
+	 * Sets the maximum number of documents buffered between the stages of InitialLoad, i.e. between reading documents
+	 * from mongo, patching and converting them, and writing them to the space. Bounds the memory used during InitialLoad.
+	 *
+	 * Default is 10000.
+	 */
+	public void setInitialLoadQueueCapacity(int initialLoadQueueCapacity) {
+		if (initialLoadQueueCapacity < 1) {
+			throw new IllegalArgumentException("initialLoadQueueCapacity must be a positive integer, was initialLoadQueueCapacity=" + initialLoadQueueCapacity + "!");
+		}
+		initialLoadPropertiesBuilder.queueCapacity(initialLoadQueueCapacity);
+	}
+
+	/**
+	 * Sets the maximum number of patched documents written back to mongo in a single bulk write during InitialLoad.
+	 * Only used for collections with {@link MirroredObjectDefinition#writeBackPatchedDocuments(boolean)} enabled.
+	 *
+	 * Default is 1000.
+	 */
+	public void setInitialLoadWriteBackBatchSize(int initialLoadWriteBackBatchSize) {
+		if (initialLoadWriteBackBatchSize < 1) {
+			throw new IllegalArgumentException("initialLoadWriteBackBatchSize must be a positive integer, was initialLoadWriteBackBatchSize=" + initialLoadWriteBackBatchSize + "!");
+		}
+		initialLoadPropertiesBuilder.writeBackBatchSize(initialLoadWriteBackBatchSize);
+	}
+
+	/**
+	 * Sets the maximum number of bulk writes of patched documents in progress at the same time during InitialLoad.
+	 * Loading is throttled when this many bulk writes are in progress.
+	 *
+	 * Default is 4.
+	 */
+	public void setInitialLoadWriteBackConcurrency(int initialLoadWriteBackConcurrency) {
+		if (initialLoadWriteBackConcurrency < 1) {
+			throw new IllegalArgumentException("initialLoadWriteBackConcurrency must be a positive integer, was initialLoadWriteBackConcurrency=" + initialLoadWriteBackConcurrency + "!");
+		}
+		initialLoadPropertiesBuilder.writeBackConcurrency(initialLoadWriteBackConcurrency);
+	}
+
+	/**
+	 * Sets the order in which collections are loaded during InitialLoad. Use {@link InitialLoadOrder#LARGEST_FIRST}
+	 * together with {@link #setNumParallelCollections(int)} to reduce the total time of the InitialLoad.
+	 *
+	 * Default is {@link InitialLoadOrder#ALPHABETICAL}.
+	 */
+	public void setInitialLoadOrder(InitialLoadOrder initialLoadOrder) {
+		initialLoadPropertiesBuilder.order(requireNonNull(initialLoadOrder));
+	}
+
+	/**
+	 * Sets whether all operations in a mirrored batch are written to mongo using a single unordered bulk write
+	 * per collection. Operations on the same document are still applied in the order they were mirrored, and
+	 * each failed operation is reported to the {@link MirrorExceptionListener} separately. When disabled, each
+	 * update and remove is written in a separate round trip.
+	 *
+	 * Default is false.
+	 */
+	public void setMirrorBulkWrite(boolean mirrorBulkWrite) {
+		mirrorWritePropertiesBuilder.bulkWrite(mirrorBulkWrite);
+	}
+
+	/**
+	 * Sets whether the operations on each space object within a mirrored batch are reduced to their net effect
+	 * before they are written to mongo. The last update of an object wins, a write followed by a remove is
+	 * not written at all and a remove followed by a write becomes a replace. Requires the space id of mirrored
+	 * objects to be available from the synchronization operations; other operations are written as they are.
+	 *
+	 * Default is false.
+	 */
+	public void setMirrorCoalesceOperations(boolean mirrorCoalesceOperations) {
+		mirrorWritePropertiesBuilder.coalesceOperations(mirrorCoalesceOperations);
+	}
+
+	/**
+	 * Sets the number of lanes used to write the operations of a mirrored batch to mongo concurrently.
+	 * Operations are assigned to a lane by collection and space id, so operations on the same space object
+	 * are always written in order. The batch completes once all lanes are written, and a transient failure
+	 * in any lane fails the whole batch so that it is retried.
+	 *
+	 * Default is 1, i.e. all operations are written in order on the mirror thread.
+	 */
+	public void setMirrorWriteLanes(int mirrorWriteLanes) {
+		if (mirrorWriteLanes < 1) {
+			throw new IllegalArgumentException("mirrorWriteLanes must be a positive integer, was mirrorWriteLanes=" + mirrorWriteLanes + "!");
+		}
+		mirrorWritePropertiesBuilder.numLanes(mirrorWriteLanes);
+	}
+
+	/**
+	 * Sets the number of threads used to convert the objects of large mirrored batches to documents concurrently,
+	 * including running any {@link com.avanza.ymer.plugin.PreWriteProcessor}, before they are written to mongo.
+	 * The documents are written in the same order as without concurrent conversion, and a failed conversion is
+	 * reported for the object that failed. See {@link #setMirrorParallelConversionThreshold(int)}.
+	 *
+	 * Default is 1, i.e. objects are converted on the writing thread.
+	 */
+	public void setMirrorConversionThreads(int mirrorConversionThreads) {
+		if (mirrorConversionThreads < 1) {
+			throw new IllegalArgumentException("mirrorConversionThreads must be a positive integer, was mirrorConversionThreads=" + mirrorConversionThreads + "!");
+		}
+		mirrorWritePropertiesBuilder.numConversionThreads(mirrorConversionThreads);
+	}
+
+	/**
+	 * Sets the minimum number of objects written together for them to be converted concurrently, see
+	 * {@link #setMirrorConversionThreads(int)}. Smaller batches are converted on the writing thread, since
+	 * handing them over to other threads costs more than it gains.
+	 *
+	 * Default is 256.
+	 */
+	public void setMirrorParallelConversionThreshold(int mirrorParallelConversionThreshold) {
+		if (mirrorParallelConversionThreshold < 1) {
+			throw new IllegalArgumentException("mirrorParallelConversionThreshold must be a positive integer, was mirrorParallelConversionThreshold="
+					+ mirrorParallelConversionThreshold + "!");
+		}
+		mirrorWritePropertiesBuilder.parallelConversionThreshold(mirrorParallelConversionThreshold);
+	}
+
+	/**
+	 * Sets the maximum number of documents written to a collection in a single request. Larger batches are
+	 * split into consecutive chunks, and a failing chunk is reported without failing the other chunks.
+	 *
+	 * Default is no limit, i.e. all documents of a batch are written in a single request per collection.
+	 */
+	public void setMirrorChunkMaxDocuments(int mirrorChunkMaxDocuments) {
+		if (mirrorChunkMaxDocuments < 1) {
+			throw new IllegalArgumentException("mirrorChunkMaxDocuments must be a positive integer, was mirrorChunkMaxDocuments=" + mirrorChunkMaxDocuments + "!");
+		}
+		mirrorWritePropertiesBuilder.maxChunkDocuments(mirrorChunkMaxDocuments);
+	}
+
+	/**
+	 * Sets the target size in bytes of the documents written to a collection in a single request, measured as
+	 * encoded bson. Measuring requires each written document to be encoded an extra time. A document larger
+	 * than the target size is written in a request of its own. See {@link #setMirrorChunkMaxDocuments(int)}.
+	 *
+	 * Default is no limit.
+	 */
+	public void setMirrorChunkMaxBytes(long mirrorChunkMaxBytes) {
+		if (mirrorChunkMaxBytes < 1) {
+			throw new IllegalArgumentException("mirrorChunkMaxBytes must be a positive integer, was mirrorChunkMaxBytes=" + mirrorChunkMaxBytes + "!");
+		}
+		mirrorWritePropertiesBuilder.maxChunkBytes(mirrorChunkMaxBytes);
+	}
+
+	/**
+	 * Sets the number of chunks of inserted documents written concurrently, see
+	 * {@link #setMirrorChunkMaxDocuments(int)}. Only applies to inserts when {@link #setMirrorBulkWrite(boolean)
+	 * bulk writes} are disabled, since the chunks of a bulk write may hold several operations on the same document
+	 * and are written in order.
+	 *
+	 * Default is 1.
+	 */
+	public void setMirrorConcurrentChunks(int mirrorConcurrentChunks) {
+		if (mirrorConcurrentChunks < 1) {
+			throw new IllegalArgumentException("mirrorConcurrentChunks must be a positive integer, was mirrorConcurrentChunks=" + mirrorConcurrentChunks + "!");
+		}
+		mirrorWritePropertiesBuilder.numConcurrentChunks(mirrorConcurrentChunks);
+	}
+
+	/**
+	 * Sets whether mirrored inserts are written as unordered replacements that insert the document if it does not
+	 * exist. Writing an insert again, for instance when a batch is redelivered after a mirror failover, then
+	 * replaces the document rather than failing with a duplicate key, so that the batch completes in a single
+	 * round trip. Note that an insert of a new object with the id of an existing document also replaces it.
+	 *
+	 * Default is false.
+	 */
+	public void setMirrorIdempotentInserts(boolean mirrorIdempotentInserts) {
+		mirrorWritePropertiesBuilder.idempotentInserts(mirrorIdempotentInserts);
+	}
+
+	/**
+	 * Sets the maximum number of times a mirrored write failing with a transient failure, such as a primary step
+	 * down or a socket error, is attempted before the failure is handed over to the DocumentWriteExceptionHandler.
+	 * That handler fails the whole batch with a {@link TransientDocumentWriteException}, so that GigaSpaces
+	 * redelivers it. Within a batch, only the failed writes are attempted again, along with any later writes of
+	 * the same documents. Retries are exported as a WriteRetryStatistics MBean. See
+	 * {@link #setMirrorWriteRetryBackoff(Duration, Duration)}.
+	 *
+	 * Default is 1, i.e. failed writes are not retried by the mirror.
+	 */
+	public void setMirrorWriteMaxAttempts(int mirrorWriteMaxAttempts) {
+		if (mirrorWriteMaxAttempts < 1) {
+			throw new IllegalArgumentException("mirrorWriteMaxAttempts must be a positive integer, was mirrorWriteMaxAttempts=" + mirrorWriteMaxAttempts + "!");
+		}
+		mirrorWritePropertiesBuilder.maxWriteAttempts(mirrorWriteMaxAttempts);
+	}
+
+	/**
+	 * Sets the backoff before a failed mirrored write is attempted again. The backoff doubles with each attempt,
+	 * starting at the initial backoff and limited to the max backoff, and is randomized by up to half. The initial
+	 * backoff must not be negative, and the max backoff must not be less than the initial backoff. An initial
+	 * backoff of zero attempts failed writes again without backing off.
+	 *
+	 * Default is an initial backoff of 100 ms and a max backoff of 5 s.
+	 */
+	public void setMirrorWriteRetryBackoff(Duration initialBackoff, Duration maxBackoff) {
+		requireNonNull(initialBackoff);
+		requireNonNull(maxBackoff);
+		if (initialBackoff.isNegative()) {
+			throw new IllegalArgumentException("initialBackoff must not be negative, was initialBackoff=" + initialBackoff + "!");
+		}
+		if (maxBackoff.compareTo(initialBackoff) < 0) {
+			throw new IllegalArgumentException("maxBackoff must not be less than initialBackoff, was initialBackoff=" + initialBackoff + ", maxBackoff=" + maxBackoff + "!");
+		}
+		mirrorWritePropertiesBuilder.retryBackoff(initialBackoff, maxBackoff);
+	}
+
+	/**
+	 * Sets the maximum number of ids looked up in a single query when GigaSpaces reads objects through from mongo
+	 * by id, for instance after they have been evicted from an LRU space. Larger lookups are split into
+	 * consecutive queries.
+	 *
+	 * Default is 1000.
+	 */
+	public void setReadThroughBatchSize(int readThroughBatchSize) {
+		if (readThroughBatchSize < 1) {
+			throw new IllegalArgumentException("readThroughBatchSize must be a positive integer, was readThroughBatchSize=" + readThroughBatchSize + "!");
+		}
+		readThroughPropertiesBuilder.batchSize(readThroughBatchSize);
+	}
+
+	/**
+	 * Sets the number of threads patching and converting the documents of large read through lookups
+	 * concurrently, see {@link #setReadThroughParallelConversionThreshold(int)}. The threads are created on
+	 * first use.
+	 *
+	 * Default is the number of available processors.
+	 */
+	public void setReadThroughConversionThreads(int readThroughConversionThreads) {
+		if (readThroughConversionThreads < 1) {
+			throw new IllegalArgumentException("readThroughConversionThreads must be a positive integer, was readThroughConversionThreads="
+					+ readThroughConversionThreads + "!");
+		}
+		readThroughPropertiesBuilder.numConversionThreads(readThroughConversionThreads);
+	}
+
+	/**
+	 * Sets the minimum number of documents read through together for them to be patched and converted
+	 * concurrently, see {@link #setReadThroughConversionThreads(int)}. Smaller lookups are patched and converted
+	 * on the reading thread.
+	 *
+	 * Default is 64.
+	 */
+	public void setReadThroughParallelConversionThreshold(int readThroughParallelConversionThreshold) {
+		if (readThroughParallelConversionThreshold < 1) {
+			throw new IllegalArgumentException("readThroughParallelConversionThreshold must be a positive integer, was readThroughParallelConversionThreshold="
+					+ readThroughParallelConversionThreshold + "!");
+		}
+		readThroughPropertiesBuilder.parallelConversionThreshold(readThroughParallelConversionThreshold);
+	}
+
+	/**
+	 * Sets the time that concurrent {@link SpaceObjectLoader#loadObject(Class, Object) loads of single objects} of
+	 * a type are collected, so that the whole batch is read using a single $in query rather than one query per
+	 * object. Reduces the load on mongo when many evicted objects are reloaded at the same time, at the cost of
+	 * delaying each load by up to the window. A batch is read as soon as it holds the number of ids given by
+	 * {@link #setReadThroughBatchSize(int)}. Concurrent loads of the same object share a single read, but each
+	 * caller still gets an object of its own.
+	 *
+	 * Default is zero, i.e. each object is read using a query of its own.
+	 */
+	public void setLoadObjectCoalescingWindow(Duration loadObjectCoalescingWindow) {
+		requireNonNull(loadObjectCoalescingWindow);
+		if (loadObjectCoalescingWindow.isNegative()) {
+			throw new IllegalArgumentException("loadObjectCoalescingWindow must not be negative, was loadObjectCoalescingWindow=" + loadObjectCoalescingWindow + "!");
+		}
+		readThroughPropertiesBuilder.loadObjectCoalescingWindow(loadObjectCoalescingWindow);
+	}
+
+	/**
+	 * Sets the maximum number of objects per type cached in front of {@link SpaceObjectLoader loads} of
+	 * objects, evicting the least recently used ones. Loads of single objects are served from the cache, including
+	 * ids that have no document, see {@link #setReadThroughCacheNegativeTtl(Duration)}. Objects loaded by template
+	 * are cached but always read from mongo. <br>
+	 * <br>
+	 * Objects are only cached while a mirror running in the same JVM writes their collection, which invalidates
+	 * the cached objects it writes, since a mirror in another JVM invalidates nothing. Otherwise only ids that
+	 * have no document are cached. Cached objects expire after {@link #setReadThroughCacheTtl(Duration)}.
+	 * Hit, miss and eviction statistics are exposed over JMX.
+	 *
+	 * Default is zero, i.e. no objects are cached.
+	 */
+	public void setReadThroughCacheMaxEntries(int readThroughCacheMaxEntries) {
+		if (readThroughCacheMaxEntries < 0) {
+			throw new IllegalArgumentException("readThroughCacheMaxEntries must not be negative, was readThroughCacheMaxEntries=" + readThroughCacheMaxEntries + "!");
+		}
+		readThroughPropertiesBuilder.cacheMaxEntries(readThroughCacheMaxEntries);
+	}
+
+	/**
+	 * Sets the time that a cached object is served before it is read from mongo again, see
+	 * {@link #setReadThroughCacheMaxEntries(int)}.
+	 *
+	 * Default is one minute.
+	 */
+	public void setReadThroughCacheTtl(Duration readThroughCacheTtl) {
+		if (readThroughCacheTtl.isNegative() || readThroughCacheTtl.isZero()) {
+			throw new IllegalArgumentException("readThroughCacheTtl must be positive, was readThroughCacheTtl=" + readThroughCacheTtl + "!");
+		}
+		readThroughPropertiesBuilder.cacheTtl(readThroughCacheTtl);
+	}
+
+	/**
+	 * Sets the time that an id without a document is served as missing before it is looked up in mongo again,
+	 * see {@link #setReadThroughCacheMaxEntries(int)}. Keep this short, since an object inserted by a mirror in
+	 * another JVM is not found until the entry expires.
+	 *
+	 * Default is ten seconds. Zero disables caching of missing objects.
+	 */
+	public void setReadThroughCacheNegativeTtl(Duration readThroughCacheNegativeTtl) {
+		if (readThroughCacheNegativeTtl.isNegative()) {
+			throw new IllegalArgumentException("readThroughCacheNegativeTtl must not be negative, was readThroughCacheNegativeTtl=" + readThroughCacheNegativeTtl + "!");
+		}
+		readThroughPropertiesBuilder.cacheNegativeTtl(readThroughCacheNegativeTtl);
 	}
 
 	/**
@@ -143,13 +490,15 @@ public final class YmerFactory implements ApplicationContextAware {
 	}
 
 	public SpaceDataSource createSpaceDataSource() {
-		return new YmerSpaceDataSource(createSpaceMirrorContext());
+		return new YmerSpaceDataSource(createSpaceMirrorContext(), readThroughPropertiesBuilder.build());
 	}
 
 	public SpaceSynchronizationEndpoint createSpaceSynchronizationEndpoint() {
+		MirrorWriteProperties mirrorWriteProperties = mirrorWritePropertiesBuilder.build();
 		YmerSpaceSynchronizationEndpoint ymerSpaceSynchronizationEndpoint = new YmerSpaceSynchronizationEndpoint(
 				createSpaceMirrorContext(),
-				ymerPropertiesBuilder.build()
+				ymerPropertiesBuilder.build(),
+				mirrorWriteProperties
 		);
 		if (this.exportExceptionHandleMBean) {
 			ymerSpaceSynchronizationEndpoint.registerExceptionHandlerMBean();
@@ -157,6 +506,12 @@ public final class YmerFactory implements ApplicationContextAware {
 		if (mirroredObjects.getMirroredObjects().stream().anyMatch(MirroredObject::persistInstanceId)) {
 			ymerSpaceSynchronizationEndpoint.registerPersistedInstanceIdCalculationServiceMBean();
 		}
+		if (mirrorWriteProperties.getMaxWriteAttempts() > 1) {
+			ymerSpaceSynchronizationEndpoint.registerWriteRetryStatisticsMBean();
+		}
+		if (mirroredObjects.getMirroredObjects().stream().anyMatch(mirroredObject -> mirroredObject.skipUnchangedWrites() > 0)) {
+			ymerSpaceSynchronizationEndpoint.registerWriteDeduplicatorMBeans();
+		}
 		if (applicationContext != null) {
 			ymerSpaceSynchronizationEndpoint.setApplicationContext(applicationContext);
 		}
@@ -170,7 +525,7 @@ public final class YmerFactory implements ApplicationContextAware {
 		if (mongoConverter.getMappingContext() instanceof ApplicationEventPublisherAware) {
 			((ApplicationEventPublisherAware)mongoConverter.getMappingContext()).setApplicationEventPublisher(null);
 		}
-		return new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, exceptionListener, new Plugins(plugins), numParallelCollections);
+		return new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, exceptionListener, new Plugins(plugins), initialLoadPropertiesBuilder.build());
 	}
 
 }
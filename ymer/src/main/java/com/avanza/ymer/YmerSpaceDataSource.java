@@ -16,52 +16,160 @@
 package com.avanza.ymer;
 
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import org.bson.Document;
 import org.openspaces.core.cluster.ClusterInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
+import com.avanza.ymer.PatchedDocumentWriteBack.CollectionWriteBack;
 import com.gigaspaces.datasource.DataIterator;
+import com.gigaspaces.datasource.DataSourceIdQuery;
+import com.gigaspaces.datasource.DataSourceIdsQuery;
+import com.gigaspaces.datasource.DataSourceQuery;
+import com.gigaspaces.datasource.DataSourceSQLQuery;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
 
-final class YmerSpaceDataSource extends AbstractSpaceDataSource {
+final class YmerSpaceDataSource extends AbstractSpaceDataSource implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(YmerSpaceDataSource.class);
 
     private final SpaceMirrorContext spaceMirrorContext;
+    private final ReadThroughProperties readThroughProperties;
+    private final MBeanRegistry mBeanRegistry = new MBeanRegistry();
     private ClusterInfo clusterInfo;
+    private ExecutorService readThroughExecutor;
+    private PatchedDocumentWriteBack readThroughWriteBack;
+    private boolean closed;
+    private final Map<Class<?>, MirroredObjectLoader<?>> readThroughLoaders = new ConcurrentHashMap<>();
+    private final Map<Class<?>, LoadObjectCoalescer<?>> loadObjectCoalescers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ReadThroughCache<?>> readThroughCaches = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ExistenceFilter> existenceFilters = new ConcurrentHashMap<>();
+    private final Map<Class<?>, CollectionWriteBack> readThroughCollectionWriteBacks = new ConcurrentHashMap<>();
 
     public YmerSpaceDataSource(SpaceMirrorContext spaceMirror) {
+        this(spaceMirror, ReadThroughProperties.defaults());
+    }
+
+    YmerSpaceDataSource(SpaceMirrorContext spaceMirror, ReadThroughProperties readThroughProperties) {
         this.spaceMirrorContext = spaceMirror;
+        this.readThroughProperties = Objects.requireNonNull(readThroughProperties);
     }
 
     @Override
     public DataIterator<Object> initialDataLoad() {
         InitialLoadCompleteDispatcher initialLoadCompleteDispatcher = new InitialLoadCompleteDispatcher();
 
-        Stream<Object> objectStream = spaceMirrorContext.getMirroredDocuments().stream()
+        InitialLoadProperties initialLoadProperties = spaceMirrorContext.getInitialLoadProperties();
+        List<MirroredObject<?>> mirroredObjects = spaceMirrorContext.getMirroredDocuments().stream()
                 .sorted(comparing(MirroredObject::getCollectionName)) // Make load order same for all partitions to reduce mongo cache misses
-                .collect(toList()).stream() // Pass through a list to make sorting not block the whole stream on iterator.next which will be called later
                 .filter(md -> !md.excludeFromInitialLoad())
-                .flatMap(mirroredObject -> load(mirroredObject, initialLoadCompleteDispatcher));
+                .collect(toList()); // Pass through a list to make sorting not block the whole stream on iterator.next which will be called later
+        if (initialLoadProperties.getOrder() == InitialLoadOrder.LARGEST_FIRST) {
+            mirroredObjects = largestFirst(mirroredObjects);
+        }
+        mirroredObjects.forEach(this::registerInitialLoadStatisticsMBean);
+
+        InitialLoadExecutor loaderExecutor = InitialLoadExecutor.create(initialLoadProperties);
+        PatchedDocumentWriteBack patchedDocumentWriteBack = PatchedDocumentWriteBack.create(initialLoadProperties);
+        initialLoadCompleteDispatcher.onInitialLoadComplete(() -> {
+            patchedDocumentWriteBack.drain();
+            patchedDocumentWriteBack.close();
+            loaderExecutor.close();
+            logger.info("Cpu time used by {} loader threads during initial load: {}", loaderExecutor.getParallelism(), loaderExecutor.cpuTimeSummary());
+        });
+
+        int numParallelCollections = initialLoadProperties.getNumParallelCollections();
+        if (numParallelCollections > 1 && mirroredObjects.size() > 1) {
+            logger.info("Loading {} collections using {} parallel collections", mirroredObjects.size(), numParallelCollections);
+            List<Supplier<Stream<?>>> collectionLoaders = mirroredObjects.stream()
+                    .<Supplier<Stream<?>>>map(mirroredObject -> () -> load(mirroredObject, initialLoadCompleteDispatcher, loaderExecutor, patchedDocumentWriteBack))
+                    .collect(toList());
+            ParallelCollectionLoader parallelCollectionLoader = new ParallelCollectionLoader(collectionLoaders, numParallelCollections, initialLoadProperties.getQueueCapacity());
+            return new IteratorAdapter(parallelCollectionLoader, initialLoadCompleteDispatcher::initialLoadComplete, () -> {
+                parallelCollectionLoader.close();
+                patchedDocumentWriteBack.close();
+                loaderExecutor.close();
+            });
+        }
+
+        Stream<Object> objectStream = mirroredObjects.stream()
+                .flatMap(mirroredObject -> load(mirroredObject, initialLoadCompleteDispatcher, loaderExecutor, patchedDocumentWriteBack));
 
-        return new IteratorAdapter(objectStream.iterator(), initialLoadCompleteDispatcher::initialLoadComplete);
+        return new IteratorAdapter(objectStream.iterator(), initialLoadCompleteDispatcher::initialLoadComplete, () -> {
+            objectStream.close();
+            patchedDocumentWriteBack.close();
+            loaderExecutor.close();
+        });
     }
 
-    <T> Stream<T> load(MirroredObject<T> mirroredObject, InitialLoadCompleteDispatcher initialLoadCompleteDispatcher) {
+    /**
+     * Orders the given collections by estimated data size, largest first. The sort is stable, so collections
+     * of the same size keep their relative order. If the collection statistics of any collection are
+     * unavailable all collections are ordered by estimated number of documents instead, and if no estimate
+     * can be made at all the given order is kept.
+     */
+    private List<MirroredObject<?>> largestFirst(List<MirroredObject<?>> mirroredObjects) {
+        Map<MirroredObject<?>, Long> dataSizes = new HashMap<>();
+        try {
+            List<String> withoutStatistics = new ArrayList<>();
+            for (MirroredObject<?> mirroredObject : mirroredObjects) {
+                OptionalLong dataSize = spaceMirrorContext.getDocumentCollection(mirroredObject).estimateDataSize();
+                dataSize.ifPresent(size -> dataSizes.put(mirroredObject, size));
+                if (!dataSize.isPresent()) {
+                    withoutStatistics.add(mirroredObject.getCollectionName());
+                }
+            }
+            if (!withoutStatistics.isEmpty()) {
+                // Data sizes and document counts cannot be compared, hence all collections are ordered by document count
+                logger.info("Collection statistics unavailable for {}, ordering collections by number of documents instead", withoutStatistics);
+                for (MirroredObject<?> mirroredObject : mirroredObjects) {
+                    dataSizes.put(mirroredObject, spaceMirrorContext.getDocumentCollection(mirroredObject).estimateDocumentCount());
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to estimate collection sizes, loading collections in alphabetical order instead", e);
+            return mirroredObjects;
+        }
+        List<MirroredObject<?>> ordered = mirroredObjects.stream()
+                .sorted(Comparator.<MirroredObject<?>>comparingLong(dataSizes::get).reversed())
+                .collect(toList());
+        logger.info("Loading collections largest first: {}", ordered.stream()
+                .map(mirroredObject -> mirroredObject.getCollectionName() + "=" + dataSizes.get(mirroredObject))
+                .collect(joining(", ")));
+        return ordered;
+    }
+
+    private <T> Stream<T> load(MirroredObject<T> mirroredObject,
+                               InitialLoadCompleteDispatcher initialLoadCompleteDispatcher,
+                               InitialLoadExecutor loaderExecutor,
+                               PatchedDocumentWriteBack patchedDocumentWriteBack) {
         logger.info("Loading all documents for type: {}", mirroredObject.getMirroredType().getName());
         MirroredObjectLoader<T> documentLoader = spaceMirrorContext.createDocumentLoader(
                 mirroredObject,
@@ -71,47 +179,154 @@ final class YmerSpaceDataSource extends AbstractSpaceDataSource {
         AtomicInteger counter = new AtomicInteger(0);
         long start = System.currentTimeMillis();
 
-        return documentLoader.streamAllObjects()
-                .map(createPatchedDocumentWriteBack(mirroredObject, initialLoadCompleteDispatcher))
+        Stream<LoadedDocument<T>> loadedDocuments = documentLoader.streamAllObjects(loaderExecutor);
+        if (mirroredObject.writeBackPatchedDocuments()) {
+            CollectionWriteBack collectionWriteBack = createPatchedDocumentWriteBack(mirroredObject, initialLoadCompleteDispatcher, patchedDocumentWriteBack);
+            loadedDocuments = loadedDocuments
+                    .peek(loadedDocument -> loadedDocument.getPatchedDocument().ifPresent(collectionWriteBack::add))
+                    .onClose(collectionWriteBack::flush);
+        }
+        return loadedDocuments
+                .map(LoadedDocument::getDocument)
                 .peek(d -> counter.incrementAndGet())
                 .onClose(() -> logger.info("Loaded {} documents from {} in {} milliseconds!", counter.get(), mirroredObject.getCollectionName(), System.currentTimeMillis() - start));
     }
 
-    private <T> Function<LoadedDocument<T>, T> createPatchedDocumentWriteBack(MirroredObject<T> document, InitialLoadCompleteDispatcher initialLoadCompleteDispatcher) {
-        AtomicInteger totalWritebackCount = new AtomicInteger(0);
-        initialLoadCompleteDispatcher.onInitialLoadComplete(() -> logger.debug("Updated {} documents in db for {}", totalWritebackCount.get(), document.getMirroredType().getName()));
-        return loadedDocument -> {
-            if (document.writeBackPatchedDocuments()) {
-                loadedDocument.getPatchedDocument().ifPresent(patchedDocument -> doWriteBackPatchedDocument(document, patchedDocument));
-                totalWritebackCount.incrementAndGet();
+    private <T> CollectionWriteBack createPatchedDocumentWriteBack(MirroredObject<T> document,
+                                                                   InitialLoadCompleteDispatcher initialLoadCompleteDispatcher,
+                                                                   PatchedDocumentWriteBack patchedDocumentWriteBack) {
+        CollectionWriteBack collectionWriteBack = patchedDocumentWriteBack.forCollection(
+                document.getCollectionName(),
+                spaceMirrorContext.getDocumentCollection(document),
+                spaceMirrorContext.getPreWriteProcessing(document.getMirroredType()),
+                spaceMirrorContext.getInitialLoadStatistics(document));
+        initialLoadCompleteDispatcher.onInitialLoadComplete(() -> {
+            if (collectionWriteBack.getNumFailed() > 0) {
+                logger.warn("Failed to update {} patched documents in db for {}", collectionWriteBack.getNumFailed(), document.getMirroredType().getName());
             }
-            return loadedDocument.getDocument();
-        };
+            logger.debug("Updated {} documents in db for {}", collectionWriteBack.getNumWritten(), document.getMirroredType().getName());
+        });
+        return collectionWriteBack;
     }
 
     private <T> PatchedDocument doWriteBackPatchedDocument(MirroredObject<T> document, PatchedDocument patchedDocument) {
         DocumentCollection documentCollection = spaceMirrorContext.getDocumentCollection(document);
         Document newVersion = spaceMirrorContext.getPreWriteProcessing(document.getMirroredType()).preWrite(patchedDocument.getNewVersion());
-        documentCollection.replace(patchedDocument.getOldVersion(), newVersion);
+        List<PatchedDocument> replacement = Collections.singletonList(new PatchedDocument(patchedDocument.getOldVersion(), newVersion));
+        ExistenceFilters.replaced(documentCollection, replacement);
+        try {
+            documentCollection.replace(patchedDocument.getOldVersion(), newVersion);
+        } finally {
+            ExistenceFilters.replaced(documentCollection, replacement);
+        }
         return patchedDocument;
     }
 
+    private void registerInitialLoadStatisticsMBean(MirroredObject<?> mirroredObject) {
+        String name = "se.avanzabank.space.mirror:type=InitialLoadStatistics,instanceId=" + getInstanceId() + ",name=collection_" + mirroredObject.getCollectionName();
+        mBeanRegistry.replace(spaceMirrorContext.getInitialLoadStatistics(mirroredObject), name);
+    }
+
+    private void registerReadThroughStatisticsMBean(MirroredObject<?> mirroredObject) {
+        String name = "se.avanzabank.space.mirror:type=ReadThroughStatistics,instanceId=" + getInstanceId() + ",name=collection_" + mirroredObject.getCollectionName();
+        mBeanRegistry.replace(spaceMirrorContext.getReadThroughStatistics(mirroredObject), name);
+    }
+
+    private <T> void createReadThroughCache(MirroredObject<T> mirroredObject) {
+        ReadThroughCache<T> cache = new ReadThroughCache<>(document -> getReadThroughLoader(mirroredObject).loadCached(document),
+                spaceMirrorContext.getDocumentCollection(mirroredObject).getNamespace(), spaceMirrorContext.getDocumentConverter(), readThroughProperties);
+        ReadThroughCache<?> replaced = readThroughCaches.put(mirroredObject.getMirroredType(), cache);
+        if (replaced != null) {
+            ReadThroughCaches.unregister(replaced);
+        }
+        ReadThroughCaches.register(cache);
+        String name = "se.avanzabank.space.mirror:type=ReadThroughCache,instanceId=" + getInstanceId() + ",name=collection_" + mirroredObject.getCollectionName();
+        mBeanRegistry.replace(cache, name);
+    }
+
+    private void createExistenceFilter(MirroredObject<?> mirroredObject) {
+        ExistenceFilter existenceFilter = new ExistenceFilter(spaceMirrorContext.getDocumentCollection(mirroredObject),
+                mirroredObject.existenceFilterFalsePositiveRate());
+        ExistenceFilter replaced = existenceFilters.put(mirroredObject.getMirroredType(), existenceFilter);
+        if (replaced != null) {
+            ExistenceFilters.unregister(replaced);
+        }
+        // Registered before it is built, so that ids written meanwhile are added
+        ExistenceFilters.register(existenceFilter);
+        String name = "se.avanzabank.space.mirror:type=ExistenceFilter,instanceId=" + getInstanceId() + ",name=collection_" + mirroredObject.getCollectionName();
+        mBeanRegistry.replace(existenceFilter, name);
+        // Only built while a mirror in this JVM writes the collection, otherwise once one registers
+        existenceFilter.rebuild();
+    }
+
     @Override
     public void setClusterInfo(ClusterInfo clusterInfo) {
         this.clusterInfo = clusterInfo;
+        readThroughLoaders.clear();
+        loadObjectCoalescers.clear();
+        spaceMirrorContext.getMirroredDocuments().forEach(this::registerReadThroughStatisticsMBean);
+        if (readThroughProperties.getCacheMaxEntries() > 0) {
+            spaceMirrorContext.getMirroredDocuments().forEach(this::createReadThroughCache);
+        }
+        spaceMirrorContext.getMirroredDocuments().stream()
+                .filter(mirroredObject -> mirroredObject.existenceFilterFalsePositiveRate() > 0)
+                .forEach(this::createExistenceFilter);
     }
 
     @Override
     public <T> T loadObject(Class<T> spaceType, Object documentId) {
         MirroredObject<T> mirroredObject = spaceMirrorContext.getMirroredDocument(spaceType);
-        MirroredObjectLoader<T> documentLoader = spaceMirrorContext.createDocumentLoader(mirroredObject, getInstanceId(), getPartitionCount());
-        Optional<LoadedDocument<T>> loadDocument = documentLoader.loadById(documentId);
+        ExistenceFilter existenceFilter = existenceFilters.get(spaceType);
+        if (existenceFilter != null && !existenceFilter.mightExist(getReadThroughLoader(mirroredObject).toDocumentId(documentId))) {
+            spaceMirrorContext.getReadThroughStatistics(mirroredObject).idsLookedUp(1);
+            return null;
+        }
+        ReadThroughCache<T> cache = getReadThroughCache(mirroredObject);
+        Optional<LoadedDocument<T>> loadDocument = cache != null
+                ? cache.loadById(getReadThroughLoader(mirroredObject).toDocumentId(documentId), () -> readById(mirroredObject, documentId))
+                : readById(mirroredObject, documentId);
+        spaceMirrorContext.getReadThroughStatistics(mirroredObject).idsLookedUp(1);
         writeBackPatchedDocuments(mirroredObject, loadDocument.map(Arrays::asList).orElse(Collections.emptyList()));
         return loadDocument
                 .map(LoadedDocument::getDocument)
                 .orElse(null);
     }
 
+    private <T> Optional<LoadedDocument<T>> readById(MirroredObject<T> mirroredObject, Object documentId) {
+        Optional<LoadedDocument<T>> loadDocument = readThroughProperties.getLoadObjectCoalescingWindow().isZero()
+                ? getReadThroughLoader(mirroredObject).loadById(documentId)
+                : getLoadObjectCoalescer(mirroredObject).loadById(documentId);
+        spaceMirrorContext.getReadThroughStatistics(mirroredObject).objectsRead(loadDocument.isPresent() ? 1 : 0);
+        ExistenceFilter existenceFilter = existenceFilters.get(mirroredObject.getMirroredType());
+        if (existenceFilter != null && loadDocument.isEmpty()) {
+            existenceFilter.notFound();
+        }
+        return loadDocument;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private <T> ReadThroughCache<T> getReadThroughCache(MirroredObject<T> mirroredObject) {
+        return (ReadThroughCache<T>) readThroughCaches.get(mirroredObject.getMirroredType());
+    }
+
+    /**
+     * Returns the loader reading through objects of the given type, which is created once since the cluster info was set.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> MirroredObjectLoader<T> getReadThroughLoader(MirroredObject<T> mirroredObject) {
+        return (MirroredObjectLoader<T>) readThroughLoaders.computeIfAbsent(mirroredObject.getMirroredType(),
+                type -> spaceMirrorContext.createDocumentLoader(mirroredObject, getInstanceId(), getPartitionCount()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> LoadObjectCoalescer<T> getLoadObjectCoalescer(MirroredObject<T> mirroredObject) {
+        return (LoadObjectCoalescer<T>) loadObjectCoalescers.computeIfAbsent(mirroredObject.getMirroredType(),
+                type -> new LoadObjectCoalescer<>(getReadThroughLoader(mirroredObject),
+                        readThroughProperties.getLoadObjectCoalescingWindow().toNanos(),
+                        readThroughProperties.getBatchSize()));
+    }
+
     private Integer getPartitionCount() {
         return clusterInfo.getNumberOfInstances();
     }
@@ -123,8 +338,11 @@ final class YmerSpaceDataSource extends AbstractSpaceDataSource {
     @Override
     public <T> Collection<T> loadObjects(Class<T> spaceType, T template) {
         MirroredObject<T> mirroredObject = spaceMirrorContext.getMirroredDocument(spaceType);
-        MirroredObjectLoader<T> documentLoader = spaceMirrorContext.createDocumentLoader(mirroredObject, getInstanceId(), getPartitionCount());
-        List<LoadedDocument<T>> loadedDocuments = documentLoader.loadByQuery(template);
+        MirroredObjectLoader<T> documentLoader = getReadThroughLoader(mirroredObject);
+        ReadThroughCache<T> cache = getReadThroughCache(mirroredObject);
+        List<LoadedDocument<T>> loadedDocuments = cache != null
+                ? cache.loadAll(() -> documentLoader.loadByQuery(template))
+                : documentLoader.loadByQuery(template);
         writeBackPatchedDocuments(mirroredObject, loadedDocuments);
         return loadedDocuments
                 .stream()
@@ -132,6 +350,159 @@ final class YmerSpaceDataSource extends AbstractSpaceDataSource {
                 .collect(toList());
     }
 
+    /**
+     * Reads through the object with the given id, i.e. loads it from mongo, when it is not found in the space.
+     * Returns null unless the object exists and belongs to this partition.
+     */
+    @Override
+    public Object getById(DataSourceIdQuery idQuery) {
+        MirroredObject<?> mirroredObject = getMirroredObject(idQuery.getTypeDescriptor());
+        if (mirroredObject == null) {
+            return null;
+        }
+        return loadByIds(mirroredObject, Collections.singletonList(idQuery.getId())).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Reads through the objects with the given ids, see {@link MirroredObjectLoader#loadByIds}. Ids without an
+     * object belonging to this partition are left out.
+     */
+    @Override
+    public DataIterator<Object> getDataIteratorByIds(DataSourceIdsQuery idsQuery) {
+        MirroredObject<?> mirroredObject = getMirroredObject(idsQuery.getTypeDescriptor());
+        List<?> objects = mirroredObject != null
+                ? loadByIds(mirroredObject, Arrays.asList(idsQuery.getIds()))
+                : Collections.emptyList();
+        return new IteratorAdapter(new ArrayList<Object>(objects).iterator(), () -> {}, () -> {});
+    }
+
+    private <T> List<T> loadByIds(MirroredObject<T> mirroredObject, Collection<?> ids) {
+        MirroredObjectLoader<T> documentLoader = getReadThroughLoader(mirroredObject);
+        ExistenceFilter existenceFilter = existenceFilters.get(mirroredObject.getMirroredType());
+        Collection<?> existingIds = existenceFilter != null
+                ? ids.stream().filter(id -> existenceFilter.mightExist(documentLoader.toDocumentId(id))).collect(toList())
+                : ids;
+        List<LoadedDocument<T>> loadedDocuments = existingIds.isEmpty()
+                ? Collections.emptyList()
+                : documentLoader.loadByIds(existingIds, readThroughProperties, getReadThroughExecutor());
+        ReadThroughStatistics readThroughStatistics = spaceMirrorContext.getReadThroughStatistics(mirroredObject);
+        readThroughStatistics.idsLookedUp(ids.size());
+        readThroughStatistics.objectsRead(loadedDocuments.size());
+        writeBackPatchedDocuments(mirroredObject, loadedDocuments);
+        return loadedDocuments
+                .stream()
+                .map(LoadedDocument::getDocument)
+                .collect(toList());
+    }
+
+    /**
+     * Reads through the objects matching the given query. Template queries and SQL queries are translated into
+     * mongo filters, see {@link SqlQueryTranslator}, and the objects are streamed from a cursor as they are
+     * consumed. A query that cannot be translated is logged and reads through no objects, since neither all
+     * objects of this partition nor any other superset of the matching objects may be returned.
+     */
+    @Override
+    public DataIterator<Object> getDataIterator(DataSourceQuery query) {
+        MirroredObject<?> mirroredObject = getMirroredObject(query.getTypeDescriptor());
+        if (mirroredObject == null) {
+            return new IteratorAdapter(Collections.emptyIterator(), () -> {}, () -> {});
+        }
+        return loadByQuery(mirroredObject, query);
+    }
+
+    private <T> DataIterator<Object> loadByQuery(MirroredObject<T> mirroredObject, DataSourceQuery query) {
+        ReadThroughStatistics readThroughStatistics = spaceMirrorContext.getReadThroughStatistics(mirroredObject);
+        readThroughStatistics.queried();
+        Document filter;
+        try {
+            filter = toFilter(mirroredObject, query);
+        } catch (CouldNotCreateMongoQueryException e) {
+            readThroughStatistics.untranslatableQuery();
+            logger.warn("Could not translate query for {} into a mongo filter, no objects are read through: {}",
+                    mirroredObject.getMirroredType().getName(), e.getMessage());
+            return new IteratorAdapter(Collections.emptyIterator(), () -> {}, () -> {});
+        }
+        MirroredObjectLoader<T> documentLoader = getReadThroughLoader(mirroredObject);
+        Stream<LoadedDocument<T>> loadedDocuments = documentLoader.streamByFilter(filter, query.getBatchSize());
+        CollectionWriteBack collectionWriteBack = mirroredObject.writeBackPatchedDocuments() ? getReadThroughWriteBack(mirroredObject) : null;
+        if (collectionWriteBack != null) {
+            // Written back in batches in the background, rather than one at a time while the objects are consumed
+            loadedDocuments = loadedDocuments
+                    .peek(loadedDocument -> loadedDocument.getPatchedDocument().ifPresent(collectionWriteBack::add))
+                    .onClose(collectionWriteBack::flush);
+        }
+        Stream<Object> objects = loadedDocuments
+                .<Object>map(LoadedDocument::getDocument)
+                .peek(object -> readThroughStatistics.objectsRead(1));
+        Runnable iterationDone = collectionWriteBack != null ? collectionWriteBack::flush : () -> {};
+        return new IteratorAdapter(objects.iterator(), iterationDone, objects::close);
+    }
+
+    /**
+     * Returns the background write back of documents of the given type patched when read through by query,
+     * created on first use, or null once this data source is closed. Patched documents that are not written back
+     * are patched again the next time they are read.
+     */
+    @Nullable
+    private CollectionWriteBack getReadThroughWriteBack(MirroredObject<?> mirroredObject) {
+        return readThroughCollectionWriteBacks.computeIfAbsent(mirroredObject.getMirroredType(), type -> {
+            PatchedDocumentWriteBack patchedDocumentWriteBack = getReadThroughWriteBack();
+            if (patchedDocumentWriteBack == null) {
+                return null;
+            }
+            // Not part of InitialLoad, hence not recorded in its statistics
+            return patchedDocumentWriteBack.forCollection(
+                    mirroredObject.getCollectionName(),
+                    spaceMirrorContext.getDocumentCollection(mirroredObject),
+                    spaceMirrorContext.getPreWriteProcessing(mirroredObject.getMirroredType()),
+                    new InitialLoadStatistics());
+        });
+    }
+
+    @Nullable
+    private synchronized PatchedDocumentWriteBack getReadThroughWriteBack() {
+        if (readThroughWriteBack == null && !closed) {
+            readThroughWriteBack = PatchedDocumentWriteBack.create(spaceMirrorContext.getInitialLoadProperties());
+        }
+        return readThroughWriteBack;
+    }
+
+    private Document toFilter(MirroredObject<?> mirroredObject, DataSourceQuery query) {
+        DocumentConverter documentConverter = spaceMirrorContext.getDocumentConverter();
+        if (query.supportsTemplateAsObject()) {
+            return documentConverter.toQuery(query.getTemplateAsObject()).getQueryObject();
+        }
+        if (query.supportsAsSQLQuery()) {
+            DataSourceSQLQuery sqlQuery = query.getAsSQLQuery();
+            return documentConverter.toQuery(mirroredObject.getMirroredType(), sqlQuery.getQuery(), sqlQuery.getQueryParameters()).getQueryObject();
+        }
+        throw new CouldNotCreateMongoQueryException("Query is neither a template nor an SQL query");
+    }
+
+    @Nullable
+    private MirroredObject<?> getMirroredObject(SpaceTypeDescriptor typeDescriptor) {
+        Class<?> type = typeDescriptor.getObjectClass();
+        if (type == null || !spaceMirrorContext.isMirroredType(type)) {
+            logger.debug("Not reading through objects of type {} since it is not mirrored", typeDescriptor.getTypeName());
+            return null;
+        }
+        return spaceMirrorContext.getMirroredDocument(type);
+    }
+
+    /**
+     * Returns the pool patching and converting large batches of read through documents, created on first use,
+     * or null if documents are converted on the reading thread.
+     */
+    @Nullable
+    synchronized ExecutorService getReadThroughExecutor() {
+        if (readThroughExecutor == null && !closed && readThroughProperties.getNumConversionThreads() > 1) {
+            readThroughExecutor = Executors.newFixedThreadPool(readThroughProperties.getNumConversionThreads(), new DaemonThreadFactory("Ymer-Read-Through-"));
+        }
+        return readThroughExecutor;
+    }
+
     private <T> void writeBackPatchedDocuments(MirroredObject<T> document, List<LoadedDocument<T>> loadedDocuments) {
         if (!document.writeBackPatchedDocuments()) {
             return;
@@ -143,21 +514,43 @@ final class YmerSpaceDataSource extends AbstractSpaceDataSource {
         logger.debug("Updated {} documents in db for {}", patchCount, document.getMirroredType().getName());
     }
 
+    /**
+     * Unregisters the MBeans of this data source, so that a redeployed space can register its own.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (readThroughExecutor != null) {
+                readThroughExecutor.shutdownNow();
+            }
+            if (readThroughWriteBack != null) {
+                readThroughWriteBack.close();
+            }
+        }
+        mBeanRegistry.close();
+    }
+
     // Helper classes
 
     private static class IteratorAdapter implements DataIterator<Object> {
         private final Iterator<Object> it;
         private final Runnable iterationDone;
+        private final Runnable closeCallback;
+        private boolean done;
 
-        public IteratorAdapter(Iterator<Object> it, Runnable itrationDoneCallback) {
+        public IteratorAdapter(Iterator<Object> it, Runnable itrationDoneCallback, Runnable closeCallback) {
             this.it = it;
             this.iterationDone = itrationDoneCallback;
+            this.closeCallback = closeCallback;
         }
 
         @Override
         public boolean hasNext() {
             boolean hasNext = it.hasNext();
-            if (!hasNext) {
+            if (!hasNext && !done) {
+                // GigaSpaces may ask again once the iterator is exhausted
+                done = true;
                 iterationDone.run();
             }
             return hasNext;
@@ -175,18 +568,25 @@ final class YmerSpaceDataSource extends AbstractSpaceDataSource {
 
         @Override
         public void close() {
+            closeCallback.run();
         }
     }
 
     static class InitialLoadCompleteDispatcher {
         private final List<Runnable> l = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean completed = new AtomicBoolean();
 
         public void onInitialLoadComplete(Runnable callback) {
             l.add(callback);
         }
 
+        /**
+         * Runs the callbacks the first time it is called, later calls are ignored.
+         */
         public void initialLoadComplete() {
-            l.forEach(Runnable::run);
+            if (completed.compareAndSet(false, true)) {
+                l.forEach(Runnable::run);
+            }
         }
     }
 }
@@ -17,18 +17,14 @@ package com.avanza.ymer;
 
 import static java.util.stream.Collectors.toList;
 
-import java.lang.management.ManagementFactory;
 import java.time.Duration;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
-import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,18 +50,22 @@ final class YmerSpaceSynchronizationEndpoint extends SpaceSynchronizationEndpoin
 	private final PersistedInstanceIdCalculationService persistedInstanceIdCalculationService;
 	private final SpaceMirrorContext spaceMirror;
 	private final ScheduledExecutorService scheduledExecutorService;
-	private final Set<ObjectName> registeredMbeans = new HashSet<>();
+	private final MBeanRegistry mBeanRegistry = new MBeanRegistry();
 	private final ReloadableYmerProperties ymerProperties;
 
 	private Integer currentNumberOfPartitions;
 	private ApplicationContext applicationContext;
 
 	public YmerSpaceSynchronizationEndpoint(SpaceMirrorContext spaceMirror, ReloadableYmerProperties ymerProperties) {
+		this(spaceMirror, ymerProperties, MirrorWriteProperties.defaults());
+	}
+
+	YmerSpaceSynchronizationEndpoint(SpaceMirrorContext spaceMirror, ReloadableYmerProperties ymerProperties, MirrorWriteProperties writeProperties) {
 		exceptionHandler = ToggleableDocumentWriteExceptionHandler.create(
 				new RethrowsTransientDocumentWriteExceptionHandler(),
 				new CatchesAllDocumentWriteExceptionHandler());
 		this.spaceMirror = spaceMirror;
-		this.mirroredObjectWriter = new MirroredObjectWriter(spaceMirror, exceptionHandler);
+		this.mirroredObjectWriter = new MirroredObjectWriter(spaceMirror, exceptionHandler, writeProperties);
 		this.persistedInstanceIdCalculationService = new PersistedInstanceIdCalculationService(spaceMirror, ymerProperties);
 		this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(THREAD_FACTORY);
 		this.ymerProperties = ymerProperties;
@@ -142,26 +142,28 @@ final class YmerSpaceSynchronizationEndpoint extends SpaceSynchronizationEndpoin
 				});
 	}
 
+	void registerWriteRetryStatisticsMBean() {
+		String name = "se.avanzabank.space.mirror:type=WriteRetryStatistics,name=writeRetryStatistics";
+		registerMbean(mirroredObjectWriter.getRetryStatistics(), name);
+	}
+
+	void registerWriteDeduplicatorMBeans() {
+		spaceMirror.getMirroredDocuments().stream()
+				.filter(mirroredObject -> mirroredObject.skipUnchangedWrites() > 0)
+				.forEach(mirroredObject -> {
+					String name = "se.avanzabank.space.mirror:type=WriteDeduplicator,name=collection_" + mirroredObject.getCollectionName();
+					registerMbean(spaceMirror.getWriteDeduplicator(mirroredObject.getMirroredType()), name);
+				});
+	}
+
 	private void registerMbean(Object object, String name) {
-		log.debug("Registering MBean with name {}", name);
-		try {
-			ObjectName objectName = ObjectName.getInstance(name);
-			ManagementFactory.getPlatformMBeanServer().registerMBean(object, objectName);
-			registeredMbeans.add(objectName);
-		} catch (Exception e) {
-			log.warn("Failed to register MBean with objectName='{}'", name, e);
-		}
+		mBeanRegistry.register(object, name);
 	}
 
 	@Override
 	public void close() {
+		mirroredObjectWriter.close();
 		scheduledExecutorService.shutdownNow();
-		for (ObjectName registeredMbean : registeredMbeans) {
-			try {
-				ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredMbean);
-			} catch (Exception e) {
-				log.warn("Failed to unregister MBean with objectName='{}'", registeredMbean, e);
-			}
-		}
+		mBeanRegistry.close();
 	}
 }
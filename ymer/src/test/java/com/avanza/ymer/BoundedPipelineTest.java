@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+
+public class BoundedPipelineTest {
+
+	private final InitialLoadExecutor workerExecutor = new InitialLoadExecutor(4, Thread.NORM_PRIORITY);
+
+	@After
+	public void shutdownWorkers() {
+		workerExecutor.close();
+	}
+
+	@Test
+	public void transformsAllElements() {
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(
+				IntStream.range(0, 1000).boxed(), i -> Optional.of(i * 2), workerExecutor, 4, 10, "test-");
+
+		List<Integer> result = new ArrayList<>();
+		pipeline.forEachRemaining(result::add);
+
+		assertThat(result, containsInAnyOrder(IntStream.range(0, 1000).map(i -> i * 2).boxed().toArray()));
+		assertThat(pipeline.getNumRead(), is(1000L));
+		assertThat(pipeline.getNumTransformed(), is(1000L));
+		assertThat(pipeline.getNumConsumed(), is(1000L));
+	}
+
+	@Test
+	public void dropsElementsWithoutTransformationResult() {
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(
+				IntStream.range(0, 100).boxed(), i -> i % 2 == 0 ? Optional.of(i) : Optional.empty(), workerExecutor, 2, 10, "test-");
+
+		List<Integer> result = new ArrayList<>();
+		pipeline.forEachRemaining(result::add);
+
+		assertThat(result, containsInAnyOrder(IntStream.range(0, 100).filter(i -> i % 2 == 0).boxed().toArray()));
+		assertThat(pipeline.getNumTransformed(), is(100L));
+	}
+
+	@Test
+	public void transformsElementsConcurrently() {
+		CountDownLatch allStarted = new CountDownLatch(3);
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(Stream.of(1, 2, 3), i -> {
+			allStarted.countDown();
+			try {
+				assertThat(allStarted.await(10, TimeUnit.SECONDS), is(true));
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return Optional.of(i);
+		}, workerExecutor, 3, 10, "test-");
+
+		List<Integer> result = new ArrayList<>();
+		pipeline.forEachRemaining(result::add);
+
+		assertThat(result, containsInAnyOrder(1, 2, 3));
+	}
+
+	@Test
+	public void stopsReadingFromSourceWhenConsumerIsSlow() {
+		AtomicInteger numReadFromSource = new AtomicInteger();
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(
+				IntStream.range(0, 10_000).boxed().peek(i -> numReadFromSource.incrementAndGet()), Optional::of, workerExecutor, 2, 10, "test-");
+
+		Awaitility.await().until(() -> pipeline.getOutputQueueDepth() == 10 && pipeline.getInputQueueDepth() == 10);
+
+		// Both queues are full, each worker holds one element and the reader holds one
+		assertThat(numReadFromSource.get(), lessThanOrEqualTo(10 + 10 + 2 + 1));
+		pipeline.close();
+	}
+
+	@Test
+	public void closesSourceWhenExhausted() {
+		LongAdder closed = new LongAdder();
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(
+				Stream.of(1, 2, 3).onClose(closed::increment), Optional::of, workerExecutor, 2, 10, "test-");
+
+		pipeline.forEachRemaining(ignore -> {});
+
+		Awaitility.await().until(closed::intValue, is(1));
+	}
+
+	@Test
+	public void rethrowsFailureFromTransformation() {
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(IntStream.range(0, 100).boxed(), i -> {
+			if (i == 50) {
+				throw new IllegalStateException("Failed to convert document");
+			}
+			return Optional.of(i);
+		}, workerExecutor, 2, 10, "test-");
+
+		assertThrows(IllegalStateException.class, () -> pipeline.forEachRemaining(ignore -> {}));
+	}
+
+	@Test
+	public void rethrowsFailureFromSource() {
+		BoundedPipeline<Integer, Integer> pipeline = new BoundedPipeline<>(Stream.of(1, 2, 3).map(i -> {
+			throw new IllegalStateException("Failed to read document");
+		}), Optional::of, workerExecutor, 2, 10, "test-");
+
+		assertThrows(IllegalStateException.class, () -> pipeline.forEachRemaining(ignore -> {}));
+	}
+
+}
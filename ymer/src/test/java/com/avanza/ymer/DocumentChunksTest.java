@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.bson.Document;
+import org.junit.Test;
+
+public class DocumentChunksTest {
+
+	@Test
+	public void splitsByNumberOfDocuments() {
+		List<Document> documents = documents(7, 10);
+
+		List<List<Document>> chunks = DocumentChunks.split(documents, Function.identity(), 3, Long.MAX_VALUE);
+
+		assertThat(chunks, contains(documents.subList(0, 3), documents.subList(3, 6), documents.subList(6, 7)));
+	}
+
+	@Test
+	public void splitsByEncodedSize() {
+		List<Document> documents = documents(6, 100);
+		int documentSize = DocumentChunks.encodedSize(documents.get(0));
+
+		List<List<Document>> chunks = DocumentChunks.split(documents, Function.identity(), Integer.MAX_VALUE, documentSize * 2 + 1);
+
+		assertThat(chunks, contains(documents.subList(0, 2), documents.subList(2, 4), documents.subList(4, 6)));
+	}
+
+	@Test
+	public void documentLargerThanMaxSizeIsWrittenInChunkOfItsOwn() {
+		List<Document> documents = List.of(document(0, 10), document(1, 1000), document(2, 10));
+
+		List<List<Document>> chunks = DocumentChunks.split(documents, Function.identity(), Integer.MAX_VALUE, 500);
+
+		assertThat(chunks, contains(documents.subList(0, 1), documents.subList(1, 2), documents.subList(2, 3)));
+	}
+
+	@Test
+	public void unboundedChunkHoldsAllDocuments() {
+		List<Document> documents = documents(1000, 10);
+
+		assertEquals(List.of(documents), DocumentChunks.split(documents, Function.identity(), Integer.MAX_VALUE, Long.MAX_VALUE));
+		assertThat(DocumentChunks.split(List.<Document>of(), Function.identity(), 1, 1), empty());
+	}
+
+	private static List<Document> documents(int numDocuments, int messageLength) {
+		return IntStream.range(0, numDocuments).mapToObj(id -> document(id, messageLength)).collect(toList());
+	}
+
+	private static Document document(int id, int messageLength) {
+		return new Document("_id", id).append("message", "x".repeat(messageLength));
+	}
+
+}
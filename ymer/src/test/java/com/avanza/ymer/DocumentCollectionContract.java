@@ -31,13 +31,16 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static org.springframework.data.domain.Sort.Direction.ASC;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.data.mongodb.core.index.IndexField;
@@ -145,6 +148,121 @@ public abstract class DocumentCollectionContract {
 		assertEquals("id_2", dbVersion.get("_id"));
 	}
 
+	@Test
+	public void replaceAllReplacesAllDocuments() throws Exception {
+		Document d1 = new Document("_id", "id_1").append("count", 21);
+		Document d2 = new Document("_id", "id_2").append("count", 22);
+		documentCollection.insertAll(d1, d2);
+
+		List<Exception> failures = new ArrayList<>();
+		documentCollection.replaceAll(List.of(
+				new PatchedDocument(d1, new Document(d1).append("count", 31)),
+				new PatchedDocument(d2, new Document(d2).append("_id", "id_3"))
+		), (patchedDocument, e) -> failures.add(e));
+
+		assertThat(failures, empty());
+		assertThat(documentCollection.findAll(), hasCount(2));
+		assertEquals(31, documentCollection.findById("id_1").get("count"));
+		assertNull(documentCollection.findById("id_2"));
+		assertEquals(22, documentCollection.findById("id_3").get("count"));
+	}
+
+	@Test
+	public void writeAllAppliesWritesToSameDocumentInOrder() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("count", 1));
+
+		List<Exception> failures = new ArrayList<>();
+		documentCollection.writeAll(List.of(
+				DocumentWrite.remove("id_1"),
+				DocumentWrite.insert(new Document("_id", "id_2").append("count", 2)),
+				DocumentWrite.insert(new Document("_id", "id_1").append("count", 11)),
+				DocumentWrite.update(new Document("_id", "id_1").append("count", 21)),
+				DocumentWrite.update(new Document("_id", "id_3").append("count", 3)),
+				DocumentWrite.remove("id_2")
+		), (write, e) -> failures.add(e));
+
+		assertThat(failures, empty());
+		assertThat(documentCollection.findAll(), hasCount(2));
+		assertEquals(21, documentCollection.findById("id_1").get("count"));
+		assertEquals(3, documentCollection.findById("id_3").get("count"));
+	}
+
+	@Test
+	public void writeAllReportsFailedWritesAndWritesTheRest() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("count", 1));
+
+		List<DocumentWrite> failed = new ArrayList<>();
+		DocumentWrite duplicateInsert = DocumentWrite.insert(new Document("_id", "id_1").append("count", 11));
+		documentCollection.writeAll(List.of(
+				duplicateInsert,
+				DocumentWrite.insert(new Document("_id", "id_2").append("count", 2))
+		), (write, e) -> failed.add(write));
+
+		assertThat(failed, contains(duplicateInsert));
+		assertEquals(1, documentCollection.findById("id_1").get("count"));
+		assertEquals(2, documentCollection.findById("id_2").get("count"));
+	}
+
+	@Test
+	public void writeAllUpsertingInsertReplacesExistingDocument() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("count", 1));
+
+		List<Exception> failures = new ArrayList<>();
+		documentCollection.writeAll(List.of(
+				DocumentWrite.upsert(new Document("_id", "id_1").append("count", 11)),
+				DocumentWrite.upsert(new Document("_id", "id_2").append("count", 2))
+		), (write, e) -> failures.add(e));
+
+		assertThat(failures, empty());
+		assertEquals(11, documentCollection.findById("id_1").get("count"));
+		assertEquals(2, documentCollection.findById("id_2").get("count"));
+	}
+
+	@Test
+	public void writeAllPartialUpdateOnlySetsGivenFields() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("_formatVersion", 2).append("message", "hello").append("extra", "kept"));
+
+		List<Exception> failures = new ArrayList<>();
+		documentCollection.writeAll(List.of(
+				DocumentWrite.partialUpdate(new Document("_id", "id_1").append("_formatVersion", 2).append("message", "updated"), document -> {
+					throw new AssertionError("Document of current version should not be patched");
+				})
+		), (write, e) -> failures.add(e));
+
+		assertThat(failures, empty());
+		assertEquals(new Document("_id", "id_1").append("_formatVersion", 2).append("message", "updated").append("extra", "kept"),
+				documentCollection.findById("id_1"));
+	}
+
+	@Test
+	public void writeAllPartialUpdatePatchesDocumentOfOlderVersion() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("message", "hello").append("extra", "old"));
+
+		List<Exception> failures = new ArrayList<>();
+		documentCollection.writeAll(List.of(
+				DocumentWrite.partialUpdate(new Document("_id", "id_1").append("_formatVersion", 2).append("message", "updated"), document -> {
+					document.put("extra", "patched_" + document.get("extra"));
+					document.put("_formatVersion", 2);
+					return document;
+				})
+		), (write, e) -> failures.add(e));
+
+		assertThat(failures, empty());
+		Document updated = documentCollection.findById("id_1");
+		assertEquals("updated", updated.get("message"));
+		assertEquals("patched_old", updated.get("extra"));
+		assertEquals(2, updated.get("_formatVersion"));
+	}
+
+	@Test
+	public void writeAllPartialUpdateInsertsMissingDocument() throws Exception {
+		Document fields = new Document("_id", "id_1").append("_formatVersion", 1).append("message", "updated");
+
+		documentCollection.writeAll(List.of(DocumentWrite.partialUpdate(fields, UnaryOperator.identity())), (write, e) -> fail(e.getMessage()));
+
+		assertEquals(fields, documentCollection.findById("id_1"));
+	}
+
 	@Test
 	public void findAllReturnsAllDocuments() throws Exception {
 		Document d1 = new Document();
@@ -186,6 +304,30 @@ public abstract class DocumentCollectionContract {
 		assertNull(documentCollection.findById("id_1"));
 	}
 
+	@Test
+	public void findByIdsReturnsExistingDocumentsWithGivenIds() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("count", 1));
+		documentCollection.insert(new Document("_id", "id_2").append("count", 2));
+		documentCollection.insert(new Document("_id", "id_3").append("count", 3));
+
+		List<Document> found = documentCollection.findByIds(List.of("id_1", "id_3", "id_4")).collect(toList());
+
+		assertThat(found.stream().map(document -> document.get("count")).collect(Collectors.toSet()), equalTo(Set.of(1, 3)));
+		assertThat(documentCollection.findByIds(List.of()), hasCount(0));
+	}
+
+	@Test
+	public void findRawByIdsReturnsExistingDocumentsWithGivenIds() throws Exception {
+		documentCollection.insert(new Document("_id", "id_1").append("count", 1));
+		documentCollection.insert(new Document("_id", "id_2").append("count", 2));
+		documentCollection.insert(new Document("_id", "id_3").append("count", 3));
+
+		List<RawBsonDocument> found = documentCollection.findRawByIds(List.of("id_1", "id_3", "id_4")).collect(toList());
+
+		assertThat(found.stream().map(document -> document.getInt32("count").getValue()).collect(Collectors.toSet()), equalTo(Set.of(1, 3)));
+		assertThat(documentCollection.findRawByIds(List.of()), hasCount(0));
+	}
+
 	@Test
 	public void deleteOnlyRequiresIdFieldToBeSet() throws Exception {
 		Document d1 = new Document();
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.awaitility.Awaitility;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.UuidCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.MongoClient;
+
+public class ExistenceFilterTest {
+
+	private final FakeDocumentCollection documentCollection = new FakeDocumentCollection();
+	private final ExistenceFilter existenceFilter = new ExistenceFilter(documentCollection, 0.01);
+	private final Object writer = new Object();
+
+	@Before
+	public void registerWriter() {
+		ExistenceFilters.registerWriter(documentCollection.getNamespace(), writer);
+	}
+
+	@After
+	public void unregisterWriter() {
+		ExistenceFilters.unregisterWriter(documentCollection.getNamespace(), writer);
+	}
+
+	@Test
+	public void allIdsMightExistUntilBuilt() {
+		assertFalse(existenceFilter.isBuilt());
+		assertTrue(existenceFilter.mightExist(1));
+		assertEquals(0, existenceFilter.getNumAbsentIds());
+	}
+
+	@Test
+	public void rulesOutIdsWithoutDocumentOnceBuilt() {
+		documentCollection.insert(new Document("_id", 1));
+		documentCollection.insert(new Document("_id", "two").append("message", "hello"));
+
+		existenceFilter.build();
+
+		assertTrue(existenceFilter.isBuilt());
+		assertTrue(existenceFilter.mightExist(1));
+		assertTrue(existenceFilter.mightExist("two"));
+		long numAbsent = IntStream.range(100, 1_100).filter(id -> !existenceFilter.mightExist(id)).count();
+		assertThat(numAbsent, greaterThan(950L));
+		assertEquals(numAbsent, existenceFilter.getNumAbsentIds());
+		assertEquals(2, existenceFilter.getNumIds());
+	}
+
+	@Test
+	public void hashesIdsAsEncodedByCodecRegistryOfCollection() {
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection(this.documentCollection.getNamespace()) {
+			@Override
+			public CodecRegistry getCodecRegistry() {
+				return CodecRegistries.fromRegistries(
+						CodecRegistries.fromCodecs(new UuidCodec(UuidRepresentation.STANDARD)),
+						MongoClient.getDefaultCodecRegistry());
+			}
+		};
+		UUID stored = UUID.randomUUID();
+		UUID added = UUID.randomUUID();
+		documentCollection.insert(new Document("_id", stored));
+		ExistenceFilter existenceFilter = new ExistenceFilter(documentCollection, 0.01);
+
+		existenceFilter.build();
+		existenceFilter.added(added);
+
+		assertTrue(existenceFilter.mightExist(stored));
+		assertTrue(existenceFilter.mightExist(added));
+		assertEquals(0, existenceFilter.getNumAbsentIds());
+	}
+
+	@Test
+	public void rulesOutNoIdsUnlessCollectionIsWrittenInThisJvm() {
+		documentCollection.insert(new Document("_id", 1));
+		existenceFilter.build();
+
+		ExistenceFilters.unregisterWriter(documentCollection.getNamespace(), writer);
+
+		assertTrue(existenceFilter.isBuilt());
+		assertFalse(existenceFilter.isActive());
+		assertTrue(IntStream.range(100, 1_100).allMatch(existenceFilter::mightExist));
+		assertEquals(0, existenceFilter.getNumAbsentIds());
+	}
+
+	@Test
+	public void rulesOutNoIdsWhenOnlyCollectionOfSameNameInOtherDatabaseIsWritten() {
+		ExistenceFilter existenceFilter = new ExistenceFilter(new FakeDocumentCollection("other_database.collection"), 0.01);
+		existenceFilter.build();
+		Object otherWriter = new Object();
+		ExistenceFilters.registerWriter("database.collection", otherWriter);
+		try {
+			assertFalse(existenceFilter.isActive());
+			assertTrue(existenceFilter.mightExist(1));
+		} finally {
+			ExistenceFilters.unregisterWriter("database.collection", otherWriter);
+		}
+	}
+
+	@Test
+	public void rebuildsFilterWhenFirstWriterRegisters() {
+		ExistenceFilters.unregisterWriter(documentCollection.getNamespace(), writer);
+		ExistenceFilters.register(existenceFilter);
+		try {
+			existenceFilter.build();
+			// Written by a mirror in another JVM
+			documentCollection.insert(new Document("_id", 1));
+
+			ExistenceFilters.registerWriter(documentCollection.getNamespace(), writer);
+
+			assertTrue(existenceFilter.mightExist(1));
+			Awaitility.await().until(existenceFilter::isActive);
+			assertTrue(existenceFilter.mightExist(1));
+			assertEquals(1, existenceFilter.getNumIds());
+		} finally {
+			ExistenceFilters.unregister(existenceFilter);
+		}
+	}
+
+	@Test
+	public void isNotBuiltUnlessCollectionIsWrittenInThisJvm() {
+		AtomicInteger numBuilds = new AtomicInteger();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection("database.unwritten_collection") {
+			@Override
+			public Stream<RawBsonDocument> findRawByQuery(Query query) {
+				numBuilds.incrementAndGet();
+				return super.findRawByQuery(query);
+			}
+		};
+		ExistenceFilter existenceFilter = new ExistenceFilter(documentCollection, 0.01);
+
+		existenceFilter.rebuild();
+
+		assertFalse(existenceFilter.isBuilt());
+		assertEquals(0, numBuilds.get());
+	}
+
+	@Test
+	public void discardsFilterWhenLastWriterUnregisters() {
+		ExistenceFilters.register(existenceFilter);
+		try {
+			existenceFilter.build();
+
+			ExistenceFilters.unregisterWriter(documentCollection.getNamespace(), writer);
+
+			assertFalse(existenceFilter.isBuilt());
+			assertEquals(0, existenceFilter.getSizeBytes());
+		} finally {
+			ExistenceFilters.unregister(existenceFilter);
+		}
+	}
+
+	@Test
+	public void discardsFilterInvalidatedWhileBuilding() {
+		ExistenceFilter[] existenceFilter = new ExistenceFilter[1];
+		AtomicInteger numBuilds = new AtomicInteger();
+		CountDownLatch rebuildAllowed = new CountDownLatch(1);
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection(this.documentCollection.getNamespace()) {
+			@Override
+			public Stream<RawBsonDocument> findRawByQuery(Query query) {
+				if (numBuilds.incrementAndGet() == 1) {
+					existenceFilter[0].invalidate();
+				} else {
+					awaitUninterruptibly(rebuildAllowed);
+				}
+				return super.findRawByQuery(query);
+			}
+		};
+		existenceFilter[0] = new ExistenceFilter(documentCollection, 0.01);
+
+		existenceFilter[0].build();
+
+		assertFalse(existenceFilter[0].isBuilt());
+		rebuildAllowed.countDown();
+		Awaitility.await().until(existenceFilter[0]::isBuilt);
+		assertEquals(2, numBuilds.get());
+	}
+
+	@Test
+	public void keepsIdsAddedWhileBuilding() {
+		ExistenceFilter[] existenceFilter = new ExistenceFilter[1];
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection(this.documentCollection.getNamespace()) {
+			@Override
+			public Stream<RawBsonDocument> findRawByQuery(Query query) {
+				existenceFilter[0].added(2);
+				return super.findRawByQuery(query);
+			}
+		};
+		documentCollection.insert(new Document("_id", 1));
+		existenceFilter[0] = new ExistenceFilter(documentCollection, 0.01);
+
+		existenceFilter[0].build();
+
+		assertTrue(existenceFilter[0].mightExist(1));
+		assertTrue(existenceFilter[0].mightExist(2));
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
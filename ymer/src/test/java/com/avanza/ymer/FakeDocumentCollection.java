@@ -15,6 +15,7 @@
  */
 package com.avanza.ymer;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.data.domain.Sort.Direction.ASC;
@@ -26,21 +27,26 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.index.IndexField;
 import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.data.mongodb.core.query.Query;
 
+import com.mongodb.MongoClient;
 import com.mongodb.client.model.IndexOptions;
 
 /**
@@ -50,14 +56,32 @@ import com.mongodb.client.model.IndexOptions;
  */
 class FakeDocumentCollection implements DocumentCollection {
 
+	private static final AtomicInteger NEXT_COLLECTION = new AtomicInteger();
+
 	private final ConcurrentLinkedQueue<Document> collection = new ConcurrentLinkedQueue<>();
 	private final Set<IndexInfo> indexes = ConcurrentHashMap.newKeySet();
 	private final AtomicInteger idGenerator = new AtomicInteger(0);
+	private final String namespace;
 
 	FakeDocumentCollection() {
+		this("fake.collection_" + NEXT_COLLECTION.incrementAndGet());
+	}
+
+	FakeDocumentCollection(String namespace) {
+		this.namespace = namespace;
 		indexes.add(new IndexInfo(singletonList(IndexField.create("_id", ASC)), "_id_", false, false, ""));
 	}
 
+	@Override
+	public String getNamespace() {
+		return namespace;
+	}
+
+	@Override
+	public CodecRegistry getCodecRegistry() {
+		return MongoClient.getDefaultCodecRegistry();
+	}
+
 	@Override
 	public Stream<Document> findAll(SpaceObjectFilter<?> objectFilter)  {
 		return new ArrayList<>(collection).stream();
@@ -77,6 +101,17 @@ class FakeDocumentCollection implements DocumentCollection {
 		collection.add(newVersion);
 	}
 
+	@Override
+	public void replaceAll(List<PatchedDocument> patchedDocuments, BiConsumer<PatchedDocument, RuntimeException> failureHandler) {
+		for (PatchedDocument patchedDocument : patchedDocuments) {
+			try {
+				replace(patchedDocument.getOldVersion(), patchedDocument.getNewVersion());
+			} catch (RuntimeException e) {
+				failureHandler.accept(patchedDocument, e);
+			}
+		}
+	}
+
 	@Override
 	public void update(Document newVersion) {
 		Iterator<Document> it = collection.iterator();
@@ -92,13 +127,43 @@ class FakeDocumentCollection implements DocumentCollection {
 		insert(newVersion);
 	}
 
+	@Override
+	public void writeAll(List<DocumentWrite> writes, BiConsumer<DocumentWrite, RuntimeException> failureHandler) {
+		for (DocumentWrite write : writes) {
+			try {
+				switch (write.getOperation()) {
+					case INSERT:
+						if (write.isUpsert()) {
+							update(write.getDocument());
+						} else {
+							insert(write.getDocument());
+						}
+						break;
+					case UPDATE:
+						if (write.isPartialUpdate()) {
+							Document stored = findById(write.getId());
+							update(stored == null ? write.getDocument() : write.applyPartialUpdate(new Document(stored)));
+						} else {
+							update(write.getDocument());
+						}
+						break;
+					case REMOVE:
+						delete(write.getDocument());
+						break;
+				}
+			} catch (RuntimeException e) {
+				failureHandler.accept(write, e);
+			}
+		}
+	}
+
 	@Override
 	public void bulkWrite(Consumer<BulkWriter> bulkWriter) {
 		bulkWriter.accept(new BulkWriter() {
 			@Override
 			public void updatePartialByIds(Set<Object> ids, Map<String, Object> fieldsToSet) {
 				ids.stream()
-						.map(document -> findById(document))
+						.map(document -> findStoredById(document))
 						.filter(Objects::nonNull)
 						.forEach(it -> it.putAll(fieldsToSet));
 			}
@@ -106,7 +171,7 @@ class FakeDocumentCollection implements DocumentCollection {
 			@Override
 			public void unsetFieldsPartialByIds(Set<Object> ids, Set<String> fieldsToUnset) {
 				ids.stream()
-						.map(document -> findById(document))
+						.map(document -> findStoredById(document))
 						.filter(Objects::nonNull)
 						.forEach(it -> fieldsToUnset.forEach(it::remove));
 			}
@@ -159,6 +224,18 @@ class FakeDocumentCollection implements DocumentCollection {
 		}
 	}
 
+	@Override
+	public void deleteAll(List<Object> ids) {
+		for (Object id : ids) {
+			removeById(new Document("_id", id));
+		}
+	}
+
+	@Override
+	public void deleteAll(List<Object> ids, Set<Object> existingIds) {
+		deleteAll(ids);
+	}
+
 	@Override
 	public void insertAll(Document... documents) {
 		for (Document document : documents) {
@@ -168,6 +245,13 @@ class FakeDocumentCollection implements DocumentCollection {
 
 	@Override
 	public Document findById(Object id) {
+		Document stored = findStoredById(id);
+		// A copy, just like a document read from mongo
+		return stored != null ? new Document(stored) : null;
+	}
+
+	@Nullable
+	private Document findStoredById(Object id) {
 		for (Document next : collection) {
 			if (next.get("_id").equals(id)) {
 				return next;
@@ -176,9 +260,30 @@ class FakeDocumentCollection implements DocumentCollection {
 		return null;
 	}
 
+	@Override
+	public Stream<Document> findByIds(List<Object> ids) {
+		return findAll()
+				.filter(document -> ids.contains(document.get("_id")))
+				.map(Document::new);
+	}
+
+	@Override
+	public Stream<RawBsonDocument> findRawByIds(List<Object> ids) {
+		return findByIds(ids).map(document -> new RawBsonDocument(document, getCodecRegistry().get(Document.class)));
+	}
+
 	@Override
 	public Stream<Document> findByQuery(Query query) {
-		throw new UnsupportedOperationException();
+		// Only queries matching all documents are supported
+		if (!query.getQueryObject().isEmpty()) {
+			throw new UnsupportedOperationException();
+		}
+		return findAll().map(Document::new);
+	}
+
+	@Override
+	public Stream<RawBsonDocument> findRawByQuery(Query query) {
+		return findByQuery(query).map(document -> new RawBsonDocument(document, getCodecRegistry().get(Document.class)));
 	}
 
 	@Override
@@ -186,6 +291,21 @@ class FakeDocumentCollection implements DocumentCollection {
 		throw new UnsupportedOperationException();
 	}
 
+	@Override
+	public List<Object> findIdSplitPoints(int numRanges) {
+		return emptyList();
+	}
+
+	@Override
+	public OptionalLong estimateDataSize() {
+		return OptionalLong.of(collection.size());
+	}
+
+	@Override
+	public long estimateDocumentCount() {
+		return collection.size();
+	}
+
 	@Override
 	public Stream<IndexInfo> getIndexes() {
 		return indexes.stream();
@@ -16,16 +16,20 @@
 package com.avanza.ymer;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.mongodb.ReadPreference;
 
 public class FakeDocumentDb implements DocumentDb.Provider {
 
+	private static final AtomicInteger NEXT_DATABASE = new AtomicInteger();
+
 	private final ConcurrentHashMap<String, FakeDocumentCollection> collectionByName = new ConcurrentHashMap<>();
+	private final String databaseName = "fake_" + NEXT_DATABASE.incrementAndGet();
 	
 	@Override
 	public DocumentCollection get(String name, ReadPreference readPreference) {
-		FakeDocumentCollection documentCollection = new FakeDocumentCollection();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection(databaseName + "." + name);
 		collectionByName.putIfAbsent(name, documentCollection);
 		return collectionByName.get(name);
 	}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+public class IdBloomFilterTest {
+
+	@Test
+	public void containsAllAddedIds() {
+		IdBloomFilter filter = new IdBloomFilter(10_000, 0.01);
+		ObjectId objectId = new ObjectId();
+		filter.add(objectId);
+		filter.add("id");
+		filter.add(new Document("a", 1).append("b", "2"));
+		IntStream.range(0, 10_000).forEach(filter::add);
+
+		assertTrue(filter.mightContain(objectId));
+		assertTrue(filter.mightContain("id"));
+		assertTrue(filter.mightContain(new Document("a", 1).append("b", "2")));
+		assertTrue(IntStream.range(0, 10_000).allMatch(filter::mightContain));
+		assertEquals(10_003, filter.getNumAddedIds());
+	}
+
+	@Test
+	public void ruleOutMissingIdsAtRoughlyTheGivenFalsePositiveRate() {
+		IdBloomFilter filter = new IdBloomFilter(10_000, 0.01);
+		IntStream.range(0, 10_000).forEach(filter::add);
+
+		long falsePositives = IntStream.range(10_000, 110_000).filter(filter::mightContain).count();
+
+		assertThat(falsePositives, lessThan(2_000L));
+		assertEquals(7, filter.getNumHashFunctions());
+		assertThat(filter.getSizeBytes(), lessThan(12_100L));
+	}
+
+	@Test
+	public void rejectsInvalidFalsePositiveRate() {
+		assertThrows(IllegalArgumentException.class, () -> new IdBloomFilter(10, 0));
+		assertThrows(IllegalArgumentException.class, () -> new IdBloomFilter(10, 1));
+	}
+
+}
@@ -15,6 +15,7 @@
  */
 package com.avanza.ymer;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
@@ -22,6 +23,9 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.List;
+import java.util.Set;
+
 import org.bson.Document;
 import org.junit.After;
 import org.junit.Before;
@@ -142,6 +146,46 @@ public class IdValidatorImplTest {
 		verify(idValidator).warnAboutNoDocumentMatch(eq("delete"), eq("does-not-exist"));
 	}
 
+	@Test
+	public void shouldWarnAboutMissingIdsWhenDeletingSeveralObjects() {
+		// Arrange
+		collection.insert(createNewObject("id1"));
+		collection.insert(createNewObject("id2"));
+
+		// Act
+		collection.deleteAll(List.of("id1", "does-not-exist", "id2"));
+
+		// Assert
+		verify(idValidator).warnAboutNoDocumentsMatch(eq("delete"), eq(List.of("does-not-exist")));
+		assertEquals(0, collection.findAll().count());
+	}
+
+	@Test
+	public void shouldNotWarnWhenDeletingSeveralExistingObjects() {
+		// Arrange
+		collection.insert(createNewObject("id1"));
+		collection.insert(createNewObject("id2"));
+
+		// Act
+		collection.deleteAll(List.of("id1", "id2"));
+
+		// Assert
+		verify(idValidator, never()).warnAboutNoDocumentsMatch(any(), any());
+	}
+
+	@Test
+	public void shouldOnlyWarnAboutIdsNotKnownToExistWhenDeletingSeveralObjects() {
+		// Arrange
+		collection.insert(createNewObject("id1"));
+
+		// Act
+		collection.deleteAll(List.of("id1", "id2", "does-not-exist"), Set.of("id1", "id2"));
+
+		// Assert
+		verify(idValidator).warnAboutNoDocumentsMatch(eq("delete"), eq(List.of("does-not-exist")));
+		assertEquals(0, collection.findAll().count());
+	}
+
 	private Document createNewObject(String id) {
 		return new Document("_id", id);
 	}
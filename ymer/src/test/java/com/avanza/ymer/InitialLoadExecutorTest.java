@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+
+public class InitialLoadExecutorTest {
+
+	private final InitialLoadExecutor executor = new InitialLoadExecutor(2, Thread.MIN_PRIORITY);
+
+	@After
+	public void shutdown() {
+		executor.close();
+	}
+
+	@Test
+	public void runsTasksOnNamedThreadsWithConfiguredPriority() throws Exception {
+		CompletableFuture<Thread> thread = CompletableFuture.supplyAsync(Thread::currentThread, executor);
+
+		assertThat(thread.get(10, TimeUnit.SECONDS).getName(), startsWith(InitialLoadExecutor.THREAD_NAME_PREFIX));
+		assertThat(thread.get().getPriority(), is(Thread.MIN_PRIORITY));
+		assertThat(thread.get().isDaemon(), is(true));
+	}
+
+	@Test
+	public void accountsCpuTimePerThread() throws Exception {
+		assumeTrue(ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported());
+
+		CompletableFuture<String> threadName = CompletableFuture.supplyAsync(() -> {
+			long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+			while (System.nanoTime() < end) {
+				Thread.onSpinWait();
+			}
+			return Thread.currentThread().getName();
+		}, executor);
+
+		String name = threadName.get(10, TimeUnit.SECONDS);
+		Awaitility.await().until(executor::getCpuTimeNanos, greaterThan(0L));
+		assertThat(executor.getCpuTimeNanosByThread(), hasEntry(is(name), greaterThan(0L)));
+	}
+
+	@Test
+	public void parallelismMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () -> new InitialLoadExecutor(0, Thread.NORM_PRIORITY));
+	}
+
+}
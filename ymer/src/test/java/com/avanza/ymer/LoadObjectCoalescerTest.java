@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
+
+public class LoadObjectCoalescerTest {
+
+	private final List<List<Object>> queriedIds = new CopyOnWriteArrayList<>();
+	private final DocumentCollection documentCollection = new FakeDocumentCollection() {
+		@Override
+		public Stream<RawBsonDocument> findRawByIds(List<Object> ids) {
+			queriedIds.add(ids);
+			return super.findRawByIds(ids);
+		}
+	};
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void readsFullBatchOfConcurrentLoadsUsingSingleQueryWithoutWaitingForWindow() throws Exception {
+		for (int id = 0; id < 10; id++) {
+			documentCollection.insert(new Document("_id", id).append("versionID", 1));
+		}
+		LoadObjectCoalescer<TestReloadableSpaceObject> coalescer = new LoadObjectCoalescer<>(loader(mirroredObject(), SpaceObjectFilter.acceptAll()), Duration.ofSeconds(30).toNanos(), 10);
+
+		long start = System.nanoTime();
+		List<Future<Optional<LoadedDocument<TestReloadableSpaceObject>>>> loads = IntStream.range(0, 10)
+				.mapToObj(id -> executor.submit(() -> coalescer.loadById(id)))
+				.collect(toList());
+		List<Integer> loadedIds = loads.stream()
+				.map(load -> getUnchecked(load).orElseThrow().getDocument().getId())
+				.collect(toList());
+
+		assertThat(System.nanoTime() - start, lessThan(Duration.ofSeconds(10).toNanos()));
+		assertThat(loadedIds, containsInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+		assertThat(queriedIds, hasSize(1));
+	}
+
+	@Test
+	public void concurrentLoadsOfSameIdShareReadButGetObjectsOfTheirOwn() throws Exception {
+		documentCollection.insert(new Document("_id", 1).append("versionID", 1));
+		documentCollection.insert(new Document("_id", 2).append("versionID", 1));
+		LoadObjectCoalescer<TestReloadableSpaceObject> coalescer = new LoadObjectCoalescer<>(loader(mirroredObject(), SpaceObjectFilter.acceptAll()), Duration.ofMillis(500).toNanos(), 100);
+
+		List<Future<Optional<LoadedDocument<TestReloadableSpaceObject>>>> loads = Stream.of(1, 1, 2)
+				.map(id -> executor.submit(() -> coalescer.loadById(id)))
+				.collect(toList());
+		LoadedDocument<TestReloadableSpaceObject> first = getUnchecked(loads.get(0)).orElseThrow();
+		LoadedDocument<TestReloadableSpaceObject> second = getUnchecked(loads.get(1)).orElseThrow();
+		getUnchecked(loads.get(2)).orElseThrow();
+
+		assertThat(queriedIds, hasSize(1));
+		assertThat(queriedIds.get(0), containsInAnyOrder(1, 2));
+		assertEquals(first.getDocument(), second.getDocument());
+		assertThat(first.getDocument(), not(sameInstance(second.getDocument())));
+		assertTrue(first.getDocument().isPatched() && second.getDocument().isPatched());
+		assertEquals("Patched document is written back by one of the callers only", 1,
+				Stream.of(first, second).filter(loaded -> loaded.getPatchedDocument().isPresent()).count());
+	}
+
+	@Test
+	public void loadsLikeLoadById() throws Exception {
+		documentCollection.insert(new Document("_id", 1).append("versionID", 1));
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = mirroredObject();
+		LoadObjectCoalescer<TestReloadableSpaceObject> coalescer = new LoadObjectCoalescer<>(
+				loader(mirroredObject, SpaceObjectFilter.create(spaceObject -> spaceObject.getId() != 1)), Duration.ofMillis(1).toNanos(), 100);
+
+		assertFalse(coalescer.loadById(2).isPresent());
+		assertThrows(IllegalArgumentException.class, () -> coalescer.loadById(1));
+	}
+
+	private MirroredObjectLoader<TestReloadableSpaceObject> loader(MirroredObject<TestReloadableSpaceObject> mirroredObject, SpaceObjectFilter<TestReloadableSpaceObject> filter) {
+		return new MirroredObjectLoader<>(
+				documentCollection,
+				TestSpaceObjectFakeConverter.create(),
+				mirroredObject,
+				filter,
+				new MirrorContextProperties(1, 1),
+				postRead -> postRead);
+	}
+
+	private static MirroredObject<TestReloadableSpaceObject> mirroredObject() {
+		return MirroredObjectDefinition.create(TestReloadableSpaceObject.class)
+				.documentPatches(new PatchedFieldPatch())
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+	}
+
+	private static <V> V getUnchecked(Future<V> future) {
+		try {
+			return future.get();
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static class PatchedFieldPatch implements BsonDocumentPatch {
+
+		@Override
+		public void apply(Document document) {
+			document.put("patched", true);
+		}
+
+		@Override
+		public int patchedVersion() {
+			return 1;
+		}
+
+	}
+
+}
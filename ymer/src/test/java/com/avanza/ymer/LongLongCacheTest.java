@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LongLongCacheTest {
+
+	@Test
+	public void putReturnsWhetherKeyWasAlreadyMappedToValue() {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			LongLongCache cache = new LongLongCache(16, offHeap);
+
+			assertFalse(cache.put(2, 10));
+			assertTrue(cache.put(2, 10));
+			assertFalse(cache.put(2, 11));
+			assertTrue(cache.put(2, 11));
+			assertFalse(cache.put(0, 0));
+			assertTrue(cache.put(0, 0));
+			assertEquals(2, cache.size());
+		}
+	}
+
+	@Test
+	public void removedKeyIsNoLongerMapped() {
+		LongLongCache cache = new LongLongCache(16, false);
+		cache.put(42, 10);
+
+		cache.remove(42);
+		cache.remove(43);
+
+		assertEquals(0, cache.size());
+		assertFalse(cache.put(42, 10));
+	}
+
+	@Test
+	public void evictsEntriesWhenFull() {
+		LongLongCache cache = new LongLongCache(10, false);
+		for (long key = 1; key <= 1000; key++) {
+			cache.put(key, key);
+		}
+
+		assertEquals(16, cache.capacity());
+		assertTrue(cache.size() <= 16);
+		assertEquals(1000 - cache.size(), cache.getNumEvictions());
+	}
+
+	@Test
+	public void clearRemovesAllEntries() {
+		LongLongCache cache = new LongLongCache(16, true);
+		cache.put(1, 10);
+		cache.put(2, 20);
+
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertFalse(cache.put(1, 10));
+	}
+
+	@Test
+	public void capacityMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () -> new LongLongCache(0, false));
+	}
+
+}
@@ -15,16 +15,27 @@
  */
 package com.avanza.ymer;
 
+import static java.util.Collections.synchronizedList;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.bson.Document;
 import org.junit.After;
@@ -47,8 +58,11 @@ public class MirroredObjectLoaderTest {
 
 	private final DocumentCollection documentCollection = new MongoDocumentCollection(mirrorEnvironment.getMongoTemplate().getCollection("document-collection"));
 
+	private final InitialLoadExecutor loaderExecutor = new InitialLoadExecutor(2, Thread.NORM_PRIORITY);
+
 	@After
 	public void tearDown() {
+		loaderExecutor.close();
 		mirrorEnvironment.reset();
 	}
 
@@ -83,12 +97,13 @@ public class MirroredObjectLoaderTest {
 				contextProperties,
 				noOpPostReadProcessor());
 
-		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects().stream()
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects(loaderExecutor).stream()
 																 .map(LoadedDocument::getDocument)
 																 .collect(toList());
-		assertEquals(2, loadedSpaceObjects.size());
-		assertEquals(new FakeSpaceObject(22, 2, true), loadedSpaceObjects.get(0));
-		assertEquals(new FakeSpaceObject(33, 2, false), loadedSpaceObjects.get(1));
+		assertThat(loadedSpaceObjects, containsInAnyOrder(
+				new FakeSpaceObject(22, 2, true),
+				new FakeSpaceObject(33, 2, false)
+		));
 	}
 
 	@Test
@@ -131,7 +146,7 @@ public class MirroredObjectLoaderTest {
 				contextProperties,
 				noOpPostReadProcessor());
 
-		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.streamAllObjects()
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.streamAllObjects(loaderExecutor)
 				.map(LoadedDocument::getDocument)
 				.collect(toList());
 		assertThat(loadedSpaceObjects, containsInAnyOrder(
@@ -140,6 +155,294 @@ public class MirroredObjectLoaderTest {
 		));
 	}
 
+	@Test
+	public void loadsAllObjectsUsingParallelIdRanges() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.loadDocumentsInIdRanges(4)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		documentCollection.insertAll(IntStream.range(0, 1000)
+				.mapToObj(id -> new Document("_id", id))
+				.toArray(Document[]::new));
+
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.acceptAll(),
+				contextProperties,
+				noOpPostReadProcessor());
+
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects(loaderExecutor).stream()
+				.map(LoadedDocument::getDocument)
+				.collect(toList());
+		assertThat(loadedSpaceObjects, containsInAnyOrder(IntStream.range(0, 1000)
+				.mapToObj(id -> new FakeSpaceObject(id, 0, true))
+				.toArray()));
+	}
+
+	@Test
+	public void streamsAndPatchesObjectsMatchingFilter() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		documentCollection.insertAll(IntStream.range(0, 100)
+				.mapToObj(id -> new Document("_id", id))
+				.toArray(Document[]::new));
+
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.acceptAll(),
+				contextProperties,
+				noOpPostReadProcessor());
+
+		List<FakeSpaceObject> loadedSpaceObjects;
+		try (Stream<LoadedDocument<FakeSpaceObject>> loadedDocuments = documentLoader.streamByFilter(new Document("_id", new Document("$gte", 90)), 3)) {
+			loadedSpaceObjects = loadedDocuments.map(LoadedDocument::getDocument).collect(toList());
+		}
+		assertThat(loadedSpaceObjects, containsInAnyOrder(IntStream.range(90, 100)
+				.mapToObj(id -> new FakeSpaceObject(id, 0, true))
+				.toArray()));
+	}
+
+	@Test
+	public void loadsAllObjectsRoutedToCurrentPartitionByPersistedInstanceIdUsingParallelIdRanges() {
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.persistInstanceId(true)
+				.loadDocumentsInIdRanges(3)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		String documentInstanceIdField = PersistedInstanceIdUtil.getInstanceIdFieldName(contextProperties.getPartitionCount());
+		documentCollection.createIndex(new Document(documentInstanceIdField, 1), new IndexOptions());
+		documentCollection.insertAll(IntStream.range(0, 300)
+				.mapToObj(id -> new Document("_id", id).append(documentInstanceIdField, id % 2 + 1))
+				.toArray(Document[]::new));
+
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.acceptAll(),
+				contextProperties,
+				noOpPostReadProcessor());
+
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.streamAllObjects(loaderExecutor)
+				.map(LoadedDocument::getDocument)
+				.collect(toList());
+		assertThat(loadedSpaceObjects, containsInAnyOrder(IntStream.range(0, 300)
+				.filter(id -> id % 2 + 1 == contextProperties.getInstanceId())
+				.mapToObj(id -> new FakeSpaceObject(id, 0, false))
+				.toArray()));
+	}
+
+	@Test
+	public void loadsAndPatchesObjectsUsingLazyDocumentDecoding() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.persistInstanceId(true)
+				.lazyDocumentDecoding(true)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		Document doc1 = new Document("_id", 5);
+		Document doc2 = new Document("_id", 7).append("patched", false);
+		mirroredObject.setDocumentVersion(doc2, mirroredObject.getCurrentVersion());
+		documentCollection.insertAll(doc1, doc2);
+
+		InitialLoadStatistics statistics = new InitialLoadStatistics();
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.partitionFilter(mirroredObject, contextProperties.getInstanceId(), contextProperties.getPartitionCount()),
+				contextProperties,
+				noOpPostReadProcessor(),
+				InitialLoadProperties.defaults(),
+				statistics);
+
+		List<LoadedDocument<FakeSpaceObject>> loadedDocuments = documentLoader.loadAllObjects(loaderExecutor);
+		assertThat(loadedDocuments.stream().map(LoadedDocument::getDocument).collect(toList()), containsInAnyOrder(
+				new FakeSpaceObject(5, 0, true),
+				new FakeSpaceObject(7, 0, false)
+		));
+		List<PatchedDocument> patchedDocuments = loadedDocuments.stream()
+				.flatMap(loadedDocument -> loadedDocument.getPatchedDocument().stream())
+				.collect(toList());
+		assertEquals(1, patchedDocuments.size());
+		assertEquals(doc1, patchedDocuments.get(0).getOldVersion());
+		assertEquals(mirroredObject.patch(new Document(doc1)), patchedDocuments.get(0).getNewVersion());
+		assertThat(statistics.getNumBytesRead(), greaterThan(0L));
+	}
+
+	@Test
+	public void lazyDocumentDecodingSkipsDocumentsWithRoutingKeyForOtherPartitionsWithoutDecodingThem() {
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.persistInstanceId(true)
+				.lazyDocumentDecoding(true)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		documentCollection.insertAll(
+				// Routing key is trusted over the actual id, which is routed to this partition
+				new Document("_id", 3).append(MirroredObject.DOCUMENT_ROUTING_KEY, 4),
+				new Document("_id", 5).append(MirroredObject.DOCUMENT_ROUTING_KEY, 5),
+				new Document("_id", 7),
+				new Document("_id", 8));
+
+		List<Object> decodedIds = synchronizedList(new ArrayList<>());
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.partitionFilter(mirroredObject, contextProperties.getInstanceId(), contextProperties.getPartitionCount()),
+				contextProperties,
+				postRead -> {
+					decodedIds.add(postRead.get("_id"));
+					return postRead;
+				});
+
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects(loaderExecutor).stream()
+				.map(LoadedDocument::getDocument)
+				.collect(toList());
+		assertThat(loadedSpaceObjects, containsInAnyOrder(
+				new FakeSpaceObject(5, 0, false),
+				new FakeSpaceObject(7, 0, false)
+		));
+		// Without a routing key the document is decoded and then rejected by the partition filter
+		assertThat(decodedIds, containsInAnyOrder(5, 7, 8));
+	}
+
+	@Test
+	public void lazyDocumentDecodingReadsDecodedDocumentsWhenMongoFiltersOnPartition() {
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.loadDocumentsRouted(true)
+				.lazyDocumentDecoding(true)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		documentCollection.insertAll(
+				new Document("_id", 4).append(MirroredObject.DOCUMENT_ROUTING_KEY, 4),
+				new Document("_id", 5).append(MirroredObject.DOCUMENT_ROUTING_KEY, 5));
+
+		InitialLoadStatistics statistics = new InitialLoadStatistics();
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.partitionFilter(mirroredObject, contextProperties.getInstanceId(), contextProperties.getPartitionCount()),
+				contextProperties,
+				noOpPostReadProcessor(),
+				InitialLoadProperties.defaults(),
+				statistics);
+
+		assertThat(documentLoader.loadAllObjects(loaderExecutor).stream().map(LoadedDocument::getDocument).collect(toList()),
+				contains(new FakeSpaceObject(5, 0, false)));
+		assertEquals(0, statistics.getNumBytesRead());
+	}
+
+	@Test
+	public void convertsDocumentsWithoutCopyingThemWhenPatchedDocumentsAreNotWrittenBack() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.writeBackPatchedDocuments(false)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		Document doc1 = new Document("_id", 1);
+		Document doc2 = new Document("_id", 2);
+		mirroredObject.setDocumentVersion(doc2, mirroredObject.getCurrentVersion());
+		DocumentCollection documentCollection = mock(DocumentCollection.class);
+		when(documentCollection.findByQuery(any())).thenReturn(Stream.of(doc1, doc2));
+
+		List<Document> convertedDocuments = synchronizedList(new ArrayList<>());
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.createConverterRecordingDocuments(convertedDocuments),
+				mirroredObject,
+				SpaceObjectFilter.acceptAll(),
+				contextProperties,
+				noOpPostReadProcessor());
+
+		List<LoadedDocument<FakeSpaceObject>> loadedDocuments = documentLoader.loadAllObjects(loaderExecutor);
+
+		assertThat(loadedDocuments.stream().map(LoadedDocument::getDocument).collect(toList()), containsInAnyOrder(
+				new FakeSpaceObject(1, 0, true),
+				new FakeSpaceObject(2, 0, false)
+		));
+		assertThat(convertedDocuments, containsInAnyOrder(sameInstance(doc1), sameInstance(doc2)));
+		assertTrue(loadedDocuments.stream().allMatch(loadedDocument -> loadedDocument.getPatchedDocument().isEmpty()));
+	}
+
+	@Test
+	public void copiesOnlyPatchedDocumentsWhenPatchedDocumentsAreWrittenBack() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		Document doc1 = new Document("_id", 1);
+		Document doc2 = new Document("_id", 2);
+		mirroredObject.setDocumentVersion(doc2, mirroredObject.getCurrentVersion());
+		DocumentCollection documentCollection = mock(DocumentCollection.class);
+		when(documentCollection.findByQuery(any())).thenReturn(Stream.of(doc1, doc2));
+
+		List<Document> convertedDocuments = synchronizedList(new ArrayList<>());
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.createConverterRecordingDocuments(convertedDocuments),
+				mirroredObject,
+				SpaceObjectFilter.acceptAll(),
+				contextProperties,
+				noOpPostReadProcessor());
+
+		List<PatchedDocument> patchedDocuments = documentLoader.loadAllObjects(loaderExecutor).stream()
+				.flatMap(loadedDocument -> loadedDocument.getPatchedDocument().stream())
+				.collect(toList());
+
+		assertEquals(1, patchedDocuments.size());
+		assertThat(patchedDocuments.get(0).getOldVersion(), sameInstance(doc1));
+		assertEquals(new Document("_id", 1), doc1);
+		assertThat(convertedDocuments, containsInAnyOrder(sameInstance(patchedDocuments.get(0).getNewVersion()), sameInstance(doc2)));
+	}
+
+	@Test
+	public void recordsInitialLoadStatistics() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		Document doc1 = new Document("_id", 1);
+		Document doc2 = new Document("_id", 2);
+		Document doc3 = new Document("_id", 3);
+		mirroredObject.setDocumentVersion(doc3, mirroredObject.getCurrentVersion());
+		documentCollection.insertAll(doc1, doc2, doc3);
+
+		InitialLoadStatistics statistics = new InitialLoadStatistics();
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.create(),
+				mirroredObject,
+				SpaceObjectFilter.create(spaceObject -> spaceObject.getId() != 2),
+				contextProperties,
+				noOpPostReadProcessor(),
+				InitialLoadProperties.defaults(),
+				statistics);
+
+		assertEquals(2, documentLoader.loadAllObjects(loaderExecutor).size());
+		assertEquals(3, statistics.getNumDocumentsRead());
+		assertEquals(Map.of(1, 2L), statistics.getNumDocumentsPatchedByVersion());
+		assertEquals(1, statistics.getNumDocumentsRejectedByFilter());
+		assertThat(statistics.getPatchNanos(), greaterThan(0L));
+		assertThat(statistics.getConvertNanos(), greaterThan(0L));
+		assertThat(statistics.getFilterNanos(), greaterThan(0L));
+		assertThat(statistics.getCursorWaitNanos(), greaterThan(0L));
+	}
+
 	@Test
 	public void pendingPatchesDocumentsReturnsAllDocumentsThatWasPatched() {
 		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
@@ -163,7 +466,7 @@ public class MirroredObjectLoaderTest {
 						|| spaceObject.getId() == doc3.getInteger("_id", -1);
 
 		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(documentCollection, FakeMirroredDocumentConverter.create(), mirroredObject, SpaceObjectFilter.create(filterImpl), contextProperties, noOpPostReadProcessor());
-		List<PatchedDocument> patchedDocuments = documentLoader.loadAllObjects().stream()
+		List<PatchedDocument> patchedDocuments = documentLoader.loadAllObjects(loaderExecutor).stream()
 																 .flatMap(loadedDocument -> loadedDocument.getPatchedDocument().stream())
 																 .collect(toList());
 
@@ -193,6 +496,36 @@ public class MirroredObjectLoaderTest {
 	}
 
 
+	@Test
+	public void copiesDocumentLoadedByIdOnlyWhenPatchedAndWrittenBack() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<FakeSpaceObject> mirroredObject = MirroredObjectDefinition.create(FakeSpaceObject.class)
+				.documentPatches(patches)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+
+		Document doc1 = new Document("_id", 1);
+		Document doc2 = new Document("_id", 2);
+		mirroredObject.setDocumentVersion(doc2, mirroredObject.getCurrentVersion());
+		DocumentCollection documentCollection = mock(DocumentCollection.class);
+		when(documentCollection.findById(1)).thenReturn(doc1);
+		when(documentCollection.findById(2)).thenReturn(doc2);
+		List<Document> convertedDocuments = synchronizedList(new ArrayList<>());
+		MirroredObjectLoader<FakeSpaceObject> documentLoader = new MirroredObjectLoader<>(
+				documentCollection,
+				FakeMirroredDocumentConverter.createConverterRecordingDocuments(convertedDocuments),
+				mirroredObject,
+				SpaceObjectFilter.acceptAll(),
+				contextProperties,
+				noOpPostReadProcessor());
+
+		Optional<PatchedDocument> patchedDocument = documentLoader.loadById(1).flatMap(LoadedDocument::getPatchedDocument);
+		assertTrue(documentLoader.loadById(2).flatMap(LoadedDocument::getPatchedDocument).isEmpty());
+
+		assertThat(patchedDocument.get().getOldVersion(), sameInstance(doc1));
+		assertEquals(new Document("_id", 1), doc1);
+		assertThat(convertedDocuments, contains(sameInstance(patchedDocument.get().getNewVersion()), sameInstance(doc2)));
+	}
+
 	@Test
 	public void loadByIdThrowsIllegalArgumentExceptionIfSpaceObjectNotAcceptedByFilter() throws Exception {
 		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
@@ -378,6 +711,16 @@ public class MirroredObjectLoaderTest {
 			return toType.cast(spaceObject);
 		}
 
+		public static DocumentConverter createConverterRecordingDocuments(List<Document> convertedDocuments) {
+			return DocumentConverter.create(new FakeMirroredDocumentConverter() {
+				@Override
+				public <T> T convert(Class<T> toType, Document document) {
+					convertedDocuments.add(document);
+					return super.convert(toType, document);
+				}
+			});
+		}
+
 		public static DocumentConverter createConverterWhichThrowsException() {
 			return DocumentConverter.create(new FakeMirroredDocumentConverter() {
 				@Override
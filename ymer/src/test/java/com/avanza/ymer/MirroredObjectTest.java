@@ -422,6 +422,83 @@ public class MirroredObjectTest {
 		assertFalse(definition.buildMirroredDocument(fromSystemProperties()).persistInstanceId());
 	}
 
+	@Test
+	public void canOverrideLoadDocumentsInIdRanges() throws Exception {
+		MirroredObjectDefinition<MirroredType> definition = MirroredObjectDefinition.create(MirroredType.class)
+				.loadDocumentsInIdRanges(4);
+		String property = "ymer.com.avanza.ymer.MirroredObjectTest.MirroredType.loadDocumentsInIdRanges";
+		try {
+			System.setProperty(property, "8");
+			assertEquals(8, definition.buildMirroredDocument(fromSystemProperties()).loadDocumentsInIdRanges());
+
+			System.setProperty(property, "0");
+			assertEquals(4, definition.buildMirroredDocument(fromSystemProperties()).loadDocumentsInIdRanges());
+		} finally {
+			System.clearProperty(property);
+		}
+	}
+
+	@Test
+	public void canOverrideLazyDocumentDecoding() throws Exception {
+		MirroredObjectDefinition<MirroredType> definition = MirroredObjectDefinition.create(MirroredType.class);
+		String property = "ymer.com.avanza.ymer.MirroredObjectTest.MirroredType.lazyDocumentDecoding";
+		try {
+			System.setProperty(property, "true");
+			assertTrue(definition.buildMirroredDocument(fromSystemProperties()).lazyDocumentDecoding());
+		} finally {
+			System.clearProperty(property);
+		}
+	}
+
+	@Test
+	public void canOverridePartialUpdateFields() throws Exception {
+		MirroredObjectDefinition<MirroredType> definition = MirroredObjectDefinition.create(MirroredType.class);
+		String property = "ymer.com.avanza.ymer.MirroredObjectTest.MirroredType.partialUpdateFields";
+		try {
+			System.setProperty(property, "true");
+			assertTrue(definition.buildMirroredDocument(fromSystemProperties()).partialUpdateFields());
+		} finally {
+			System.clearProperty(property);
+		}
+	}
+
+	@Test
+	public void canOverrideSkipUnchangedWrites() throws Exception {
+		MirroredObjectDefinition<MirroredType> definition = MirroredObjectDefinition.create(MirroredType.class)
+				.skipUnchangedWrites(1000);
+		String maxTrackedDocumentsProperty = "ymer.com.avanza.ymer.MirroredObjectTest.MirroredType.skipUnchangedWrites";
+		String offHeapProperty = "ymer.com.avanza.ymer.MirroredObjectTest.MirroredType.skipUnchangedWritesOffHeap";
+		try {
+			System.setProperty(maxTrackedDocumentsProperty, "0");
+			System.setProperty(offHeapProperty, "true");
+			MirroredObject<MirroredType> mirroredObject = definition.buildMirroredDocument(fromSystemProperties());
+			assertEquals(0, mirroredObject.skipUnchangedWrites());
+			assertTrue(mirroredObject.skipUnchangedWritesOffHeap());
+
+			System.setProperty(maxTrackedDocumentsProperty, "-1");
+			assertEquals(1000, definition.buildMirroredDocument(fromSystemProperties()).skipUnchangedWrites());
+		} finally {
+			System.clearProperty(maxTrackedDocumentsProperty);
+			System.clearProperty(offHeapProperty);
+		}
+	}
+
+	@Test
+	public void canOverrideExistenceFilter() throws Exception {
+		MirroredObjectDefinition<MirroredType> definition = MirroredObjectDefinition.create(MirroredType.class)
+				.existenceFilter(0.01);
+		String property = "ymer.com.avanza.ymer.MirroredObjectTest.MirroredType.existenceFilter";
+		try {
+			System.setProperty(property, "0.001");
+			assertEquals(0.001, definition.buildMirroredDocument(fromSystemProperties()).existenceFilterFalsePositiveRate(), 0);
+
+			System.setProperty(property, "1.5");
+			assertEquals(0.01, definition.buildMirroredDocument(fromSystemProperties()).existenceFilterFalsePositiveRate(), 0);
+		} finally {
+			System.clearProperty(property);
+		}
+	}
+
 	private static void assertNoInstanceIdFieldsAreSet(Document document) {
 		Set<String> fields = document.keySet().stream().filter(it -> it.startsWith(MirroredObject.DOCUMENT_INSTANCE_ID_PREFIX)).collect(Collectors.toSet());
 		assertTrue("Expected no instance id fields to exist, but found " + fields, fields.isEmpty());
@@ -17,26 +17,49 @@ package com.avanza.ymer;
 
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.bson.Document;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.data.mongodb.core.query.Query;
 
+import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
 import com.avanza.ymer.YmerInitialLoadIntegrationTest.TestSpaceObjectV1Patch;
+import com.avanza.ymer.plugin.Plugin;
+import com.avanza.ymer.plugin.PostReadProcessor;
+import com.avanza.ymer.plugin.PreWriteProcessor;
 import com.gigaspaces.document.SpaceDocument;
 import com.gigaspaces.metadata.SpaceTypeDescriptor;
 import com.gigaspaces.sync.DataSyncOperation;
 import com.gigaspaces.sync.DataSyncOperationType;
 import com.gigaspaces.sync.OperationsBatchData;
 import com.gigaspaces.sync.SynchronizationSourceDetails;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
 
 public class MirroredObjectWriterTest {
 
@@ -107,6 +130,89 @@ public class MirroredObjectWriterTest {
 		assertEquals(3, persisted.size());
 	}
 
+	@Test
+	public void invalidatesReadThroughCachesOfWrittenObjects() throws Exception {
+		ReadThroughCache<TestReloadableSpaceObject> cache = new ReadThroughCache<>(TestReloadableSpaceObject.class,
+				documentDb.getCollection(mirroredReloadableDocument.getCollectionName()).getNamespace(), documentConverter,
+				ReadThroughProperties.builder().cacheMaxEntries(10).build());
+		TestReloadableSpaceObject spaceObject = new TestReloadableSpaceObject(1, 1, false, 2, 1);
+		TestReloadableSpaceObject spaceObject2 = new TestReloadableSpaceObject(2, 1, false, 2, 1);
+		cache.loadAll(() -> List.of(new LoadedDocument<>(spaceObject, null), new LoadedDocument<>(spaceObject2, null)));
+		ReadThroughCaches.register(cache);
+		try {
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(new FakeBulkItem(spaceObject, DataSyncOperationType.UPDATE, 1)));
+		} finally {
+			ReadThroughCaches.unregister(cache);
+		}
+
+		assertEquals(1, cache.getNumInvalidations());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void addsWrittenIdsToExistenceFilters() throws Exception {
+		ExistenceFilter existenceFilter = new ExistenceFilter(documentDb.getCollection(mirroredReloadableDocument.getCollectionName()), 0.01);
+		existenceFilter.build();
+		ExistenceFilters.register(existenceFilter);
+		try {
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestReloadableSpaceObject(1, 1, false, 2, 1), DataSyncOperationType.WRITE, 1),
+					new FakeBulkItem(new TestReloadableSpaceObject(2, 1, false, 2, 1), DataSyncOperationType.UPDATE)));
+		} finally {
+			ExistenceFilters.unregister(existenceFilter);
+		}
+
+		assertThat(existenceFilter.mightExist(1), equalTo(true));
+		assertThat(existenceFilter.mightExist(2), equalTo(true));
+	}
+
+	@Test
+	public void reportsUnconvertibleObjectPerOperationWhenAddingToExistenceFilters() throws Exception {
+		DocumentConverter fakeConverter = TestSpaceObjectFakeConverter.create();
+		documentConverter = DocumentConverter.create(new DocumentConverter.Provider() {
+			@Override
+			public Document convertToBsonDocument(Object type) {
+				if (type instanceof TestSpaceObject && "unconvertible".equals(((TestSpaceObject) type).getId())) {
+					throw new IllegalArgumentException("Unconvertible");
+				}
+				return fakeConverter.convertToBsonDocument(type);
+			}
+
+			@Override
+			public <T> T convert(Class<T> toType, Document document) {
+				return fakeConverter.convert(toType, document);
+			}
+
+			@Override
+			public Object convert(Object type) {
+				return fakeConverter.convertToMongoObject(type);
+			}
+
+			@Override
+			public Query toQuery(Object template) {
+				return fakeConverter.toQuery(template);
+			}
+		});
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler);
+		ExistenceFilter existenceFilter = new ExistenceFilter(new FakeDocumentCollection(documentDb.getCollection(mirroredObject.getCollectionName()).getNamespace()), 0.01);
+		existenceFilter.build();
+		ExistenceFilters.register(existenceFilter);
+		try {
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("unconvertible", "hello"), DataSyncOperationType.WRITE),
+					new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE),
+					new FakeBulkItem(new TestSpaceOtherObject("2", "hello"), DataSyncOperationType.WRITE)));
+		} finally {
+			ExistenceFilters.unregister(existenceFilter);
+		}
+
+		assertEquals(IllegalArgumentException.class, mirrorExceptionSpy.lastException.getClass());
+		assertNotNull(documentDb.getCollection(mirroredObject.getCollectionName()).findById("1"));
+		assertNotNull(documentDb.getCollection(anotherMirroredDocument.getCollectionName()).findById("2"));
+		assertThat(existenceFilter.mightExist("1"), equalTo(true));
+	}
+
 	@Test
 	public void writesCurrentInstanceId() throws Exception {
 		TestSpaceOtherObject item = new TestSpaceOtherObject("1", "message");
@@ -190,6 +296,38 @@ public class MirroredObjectWriterTest {
 		assertEquals(0, persisted.size());
 	}
 
+	@Test
+	public void removesConsecutiveObjectsInSingleRequest() throws Exception {
+		List<List<Object>> deletedIds = new ArrayList<>();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void deleteAll(List<Object> ids) {
+				deletedIds.add(ids);
+				super.deleteAll(ids);
+			}
+
+			@Override
+			public void delete(Document document) {
+				deletedIds.add(List.of(document.get("_id")));
+				super.delete(document);
+			}
+		};
+		documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler);
+		IntStream.rangeClosed(1, 3).forEach(id -> documentCollection.insert(documentConverter.convertToBsonDocument(new TestSpaceObject(String.valueOf(id), "hello"))));
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.REMOVE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.REMOVE),
+				new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("3", "hello"), DataSyncOperationType.REMOVE)));
+
+		assertThat(deletedIds, contains(List.of("1", "2"), List.of("3")));
+		assertThat(documentCollection.findAll().map(document -> document.get("_id")).collect(toList()), contains("1"));
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
 	@Test
 	public void removesDocumentFromDb3() throws Exception {
 		TestSpaceObject item1 = new TestSpaceObject("1", "hello");
@@ -263,6 +401,43 @@ public class MirroredObjectWriterTest {
 		assertThrows(TransientDocumentWriteException.class, () -> mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(bulkItem)));
 	}
 
+	@Test
+	public void initializesMirroredTypesBeforeConvertingConcurrently() throws Exception {
+		DocumentConverter fakeConverter = TestSpaceObjectFakeConverter.create();
+		Set<Class<?>> initializedTypes = ConcurrentHashMap.newKeySet();
+		documentConverter = DocumentConverter.create(new DocumentConverter.Provider() {
+			@Override
+			public Document convertToBsonDocument(Object type) {
+				return fakeConverter.convertToBsonDocument(type);
+			}
+
+			@Override
+			public <T> T convert(Class<T> toType, Document document) {
+				return fakeConverter.convert(toType, document);
+			}
+
+			@Override
+			public Object convert(Object type) {
+				return fakeConverter.convertToMongoObject(type);
+			}
+
+			@Override
+			public Query toQuery(Object template) {
+				return fakeConverter.toQuery(template);
+			}
+
+			@Override
+			public void initialize(Class<?> type) {
+				initializedTypes.add(type);
+			}
+		});
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+
+		try (MirroredObjectWriter writer = new MirroredObjectWriter(mirror, exceptionHandler, MirrorWriteProperties.builder().numConversionThreads(4).build())) {
+			assertEquals(Set.of(TestSpaceObject.class, TestSpaceOtherObject.class, TestReloadableSpaceObject.class), initializedTypes);
+		}
+	}
+
 	@Test
 	public void exceptionThrownDuringConversionToMongoDbObjectAreNotPropagated() throws Exception {
 		documentConverter = DocumentConverter.create(new DocumentConverter.Provider() {
@@ -323,6 +498,555 @@ public class MirroredObjectWriterTest {
 		assertEquals(3, persisted.get(1).get("_id"));
 	}
 
+	@Test
+	public void bulkWriteAppliesAllOperationsInOrder() throws Exception {
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, MirrorWriteProperties.builder().bulkWrite(true).build());
+		TestSpaceObject item1 = new TestSpaceObject("1", "hello");
+		TestSpaceObject item2 = new TestSpaceObject("2", "hello");
+		documentDb.getCollection(mirroredObject.getCollectionName()).insert(documentConverter.convertToBsonDocument(item2));
+		TestSpaceObject updatedItem1 = new TestSpaceObject("1", "updated");
+		TestReloadableSpaceObject reloadable = new TestReloadableSpaceObject(2, 1, false, 2, 1);
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(item1, DataSyncOperationType.WRITE),
+				new FakeBulkItem(reloadable, DataSyncOperationType.WRITE),
+				new FakeBulkItem(item2, DataSyncOperationType.REMOVE),
+				new FakeBulkItem(updatedItem1, DataSyncOperationType.UPDATE)));
+
+		Document expected = documentConverter.convertToBsonDocument(updatedItem1);
+		mirroredObject.setDocumentVersion(expected, mirroredObject.getCurrentVersion());
+		List<Document> persisted = documentDb.getCollection(mirroredObject.getCollectionName()).findAll().collect(toList());
+		assertThat(persisted, contains(expected));
+		assertThat(documentDb.getCollection(mirroredReloadableDocument.getCollectionName()).findAll().collect(toList()), hasSize(1));
+	}
+
+	@Test
+	public void bulkWriteReportsEachFailedOperation() throws Exception {
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, MirrorWriteProperties.builder().bulkWrite(true).build());
+		TestSpaceObject existing = new TestSpaceObject("1", "hello");
+		documentDb.getCollection(mirroredObject.getCollectionName()).insert(documentConverter.convertToBsonDocument(existing));
+		TestSpaceObject item2 = new TestSpaceObject("2", "hello");
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(existing, DataSyncOperationType.WRITE),
+				new FakeBulkItem(item2, DataSyncOperationType.WRITE)));
+
+		assertEquals(DuplicateDocumentKeyException.class, mirrorExceptionSpy.lastException.getClass());
+		assertEquals(
+				"Operation: INSERT, objects: {TestSpaceObject=[TestSpaceObject [id=1, message=hello]]}",
+				exceptionHandler.getLastOperationDescription()
+		);
+		assertNotNull(documentDb.getCollection(mirroredObject.getCollectionName()).findById("2"));
+	}
+
+	@Test
+	public void bulkWritePropagatesExceptionFromExceptionHandler() throws Exception {
+		documentDb = DocumentDb.create((name, readPreference) -> new FakeDocumentCollection() {
+			@Override
+			public void writeAll(List<DocumentWrite> writes, BiConsumer<DocumentWrite, RuntimeException> failureHandler) {
+				throw new RuntimeException();
+			}
+		});
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, new FakeDocumentWriteExceptionHandler(
+				new TransientDocumentWriteException(new Exception())), MirrorWriteProperties.builder().bulkWrite(true).build());
+
+		TestSpaceObject item1 = new TestSpaceObject("1", "hello");
+		FakeBulkItem bulkItem = new FakeBulkItem(item1, DataSyncOperationType.UPDATE);
+		assertThrows(TransientDocumentWriteException.class, () -> mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(bulkItem)));
+		assertEquals(RuntimeException.class, mirrorExceptionSpy.lastException.getClass());
+	}
+
+	@Test
+	public void coalescesOperationsOnSameObject() throws Exception {
+		List<Document> written = new ArrayList<>();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void insert(Document document) {
+				written.add(document);
+				super.insert(document);
+			}
+
+			@Override
+			public void update(Document document) {
+				written.add(document);
+				super.update(document);
+			}
+
+			@Override
+			public void delete(Document document) {
+				written.add(document);
+				super.delete(document);
+			}
+		};
+		documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, MirrorWriteProperties.builder().coalesceOperations(true).build());
+
+		TestSpaceObject item1 = new TestSpaceObject("1", "hello");
+		TestSpaceObject updatedItem1 = new TestSpaceObject("1", "updated");
+		TestSpaceObject item2 = new TestSpaceObject("2", "hello");
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(item1, DataSyncOperationType.WRITE, "1"),
+				new FakeBulkItem(item2, DataSyncOperationType.WRITE, "2"),
+				new FakeBulkItem(item1, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(updatedItem1, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(item2, DataSyncOperationType.REMOVE, "2")));
+
+		Document expected = documentConverter.convertToBsonDocument(updatedItem1);
+		mirroredObject.setDocumentVersion(expected, mirroredObject.getCurrentVersion());
+		assertThat(written, contains(expected));
+		assertThat(documentCollection.findAll().collect(toList()), contains(expected));
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void writesOperationsOnSameObjectInOrderWhenWritingInLanes() throws Exception {
+		FakeBulkItem[] bulkItems = new FakeBulkItem[300];
+		for (int i = 0; i < 100; i++) {
+			String id = Integer.toString(i);
+			bulkItems[3 * i] = new FakeBulkItem(new TestSpaceObject(id, "first"), DataSyncOperationType.WRITE, id);
+			bulkItems[3 * i + 1] = new FakeBulkItem(new TestSpaceObject(id, "second"), DataSyncOperationType.UPDATE, id);
+			bulkItems[3 * i + 2] = new FakeBulkItem(new TestSpaceObject(id, "last"), DataSyncOperationType.UPDATE, id);
+		}
+
+		try (MirroredObjectWriter writer = new MirroredObjectWriter(mirror, exceptionHandler, MirrorWriteProperties.builder().numLanes(4).build())) {
+			writer.executeBulk(testMetadata, FakeBatchData.create(bulkItems));
+		}
+
+		List<Document> persisted = documentDb.getCollection(mirroredObject.getCollectionName()).findAll().collect(toList());
+		assertThat(persisted, hasSize(100));
+		assertThat(persisted.stream().map(document -> document.get("message")).distinct().collect(toList()), contains("last"));
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void transientFailureInAnyLaneFailsWholeBatch() throws Exception {
+		documentDb = throwsOnUpdateDocumentDb();
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		FakeBatchData batch = FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE, "1"),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE, "2"),
+				new FakeBulkItem(new TestSpaceObject("3", "hello"), DataSyncOperationType.UPDATE, "3"));
+
+		try (MirroredObjectWriter writer = new MirroredObjectWriter(mirror, new FakeDocumentWriteExceptionHandler(
+				new TransientDocumentWriteException(new Exception())), MirrorWriteProperties.builder().numLanes(4).build())) {
+			assertThrows(TransientDocumentWriteException.class, () -> writer.executeBulk(testMetadata, batch));
+		}
+	}
+
+	@Test
+	public void partialUpdatesOnlySetUpdatedFieldsWhenEnabled() throws Exception {
+		for (MirrorWriteProperties writeProperties : List.of(MirrorWriteProperties.defaults(), MirrorWriteProperties.builder().bulkWrite(true).build())) {
+			MirroredObject<TestSpaceObject> partiallyUpdated = MirroredObjectDefinition.create(TestSpaceObject.class)
+					.documentPatches(new TestSpaceObjectV1Patch())
+					.partialUpdateFields(true)
+					.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+			documentDb = FakeDocumentDb.create();
+			mirror = new SpaceMirrorContext(new MirroredObjects(partiallyUpdated), documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+			mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, writeProperties);
+			DocumentCollection documentCollection = documentDb.getCollection(partiallyUpdated.getCollectionName());
+			documentCollection.insert(new Document("_id", "1").append("_formatVersion", 2).append("message", "hello").append("extra", "kept"));
+
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("1", "updated"), DataSyncOperationType.PARTIAL_UPDATE)));
+
+			assertEquals(new Document("_id", "1").append("_formatVersion", 2).append("message", "updated").append("extra", "kept"),
+					documentCollection.findById("1"));
+		}
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void skipsUpdatesOfUnchangedDocumentsWhenEnabled() throws Exception {
+		for (MirrorWriteProperties writeProperties : List.of(MirrorWriteProperties.defaults(), MirrorWriteProperties.builder().bulkWrite(true).build())) {
+			List<Document> updated = new ArrayList<>();
+			FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+				@Override
+				public void update(Document document) {
+					updated.add(document);
+					super.update(document);
+				}
+			};
+			MirroredObject<TestSpaceObject> deduplicated = MirroredObjectDefinition.create(TestSpaceObject.class)
+					.skipUnchangedWrites(100)
+					.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+			mirror = new SpaceMirrorContext(new MirroredObjects(deduplicated), documentConverter, DocumentDb.create((name, readPreference) -> documentCollection),
+					mirrorExceptionSpy, Plugins.empty(), 1);
+			mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, writeProperties);
+
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE),
+					new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE)));
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.UPDATE),
+					new FakeBulkItem(new TestSpaceObject("2", "updated"), DataSyncOperationType.UPDATE)));
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("2", "updated"), DataSyncOperationType.UPDATE)));
+
+			assertThat(updated, hasSize(1));
+			assertEquals("updated", updated.get(0).get("message"));
+			WriteDeduplicator writeDeduplicator = mirror.getWriteDeduplicator(TestSpaceObject.class);
+			assertEquals(2, writeDeduplicator.getNumSkippedWrites());
+			assertEquals(1, writeDeduplicator.getNumChangedWrites());
+		}
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void writesUnchangedDocumentAgainAfterFailedWrite() throws Exception {
+		for (MirrorWriteProperties writeProperties : List.of(MirrorWriteProperties.defaults(), MirrorWriteProperties.builder().bulkWrite(true).build())) {
+			List<Document> updated = new ArrayList<>();
+			FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+				@Override
+				public void update(Document document) {
+					updated.add(document);
+					if (updated.size() == 1) {
+						throw new RuntimeException("Failed to update document");
+					}
+					super.update(document);
+				}
+			};
+			MirroredObject<TestSpaceObject> deduplicated = MirroredObjectDefinition.create(TestSpaceObject.class)
+					.skipUnchangedWrites(100)
+					.skipUnchangedWritesOffHeap(true)
+					.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+			mirror = new SpaceMirrorContext(new MirroredObjects(deduplicated), documentConverter, DocumentDb.create((name, readPreference) -> documentCollection),
+					mirrorExceptionSpy, Plugins.empty(), 1);
+			mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, writeProperties);
+
+			FakeBulkItem update = new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.UPDATE);
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(update));
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(update));
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(update));
+
+			assertThat(updated, hasSize(2));
+			assertEquals(1, mirror.getWriteDeduplicator(TestSpaceObject.class).getNumSkippedWrites());
+		}
+	}
+
+	@Test
+	public void tracksInsertedDocumentsOfTypesSharingCollection() throws Exception {
+		List<Document> updated = new ArrayList<>();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void update(Document document) {
+				updated.add(document);
+				super.update(document);
+			}
+		};
+		MirroredObject<TestSpaceOtherObject> other = MirroredObjectDefinition.create(TestSpaceOtherObject.class)
+				.collectionName("shared")
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		MirroredObject<TestSpaceObject> deduplicated = MirroredObjectDefinition.create(TestSpaceObject.class)
+				.collectionName("shared")
+				.skipUnchangedWrites(100)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		mirror = new SpaceMirrorContext(new MirroredObjects(other, deduplicated), documentConverter, DocumentDb.create((name, readPreference) -> documentCollection),
+				mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler);
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceOtherObject("1", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE)));
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.UPDATE)));
+
+		assertThat(updated, hasSize(0));
+		assertEquals(1, mirror.getWriteDeduplicator(TestSpaceObject.class).getNumSkippedWrites());
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void forgetsRemovedDocumentsOfTypesSharingCollection() throws Exception {
+		List<Document> updated = new ArrayList<>();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void update(Document document) {
+				updated.add(document);
+				super.update(document);
+			}
+		};
+		MirroredObject<TestSpaceOtherObject> other = MirroredObjectDefinition.create(TestSpaceOtherObject.class)
+				.collectionName("shared")
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		MirroredObject<TestSpaceObject> deduplicated = MirroredObjectDefinition.create(TestSpaceObject.class)
+				.collectionName("shared")
+				.skipUnchangedWrites(100)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		mirror = new SpaceMirrorContext(new MirroredObjects(other, deduplicated), documentConverter, DocumentDb.create((name, readPreference) -> documentCollection),
+				mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler);
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceOtherObject("1", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE)));
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceOtherObject("1", "hello"), DataSyncOperationType.REMOVE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.REMOVE)));
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.UPDATE)));
+
+		assertThat(updated, hasSize(1));
+		assertEquals(0, mirror.getWriteDeduplicator(TestSpaceObject.class).getNumSkippedWrites());
+		assertEquals(1, documentCollection.findAll().count());
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void convertsLargeBatchesConcurrentlyInOrder() throws Exception {
+		for (MirrorWriteProperties.Builder writeProperties : List.of(MirrorWriteProperties.builder(), MirrorWriteProperties.builder().bulkWrite(true))) {
+			Set<String> convertingThreads = ConcurrentHashMap.newKeySet();
+			documentDb = FakeDocumentDb.create();
+			mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy,
+					pluginsWithPreWriteProcessor(document -> convertingThreads.add(Thread.currentThread().getName())), 1);
+			try (MirroredObjectWriter writer = new MirroredObjectWriter(mirror, exceptionHandler,
+					writeProperties.numConversionThreads(4).parallelConversionThreshold(10).build())) {
+				writer.executeBulk(testMetadata, FakeBatchData.create(IntStream.range(0, 100)
+						.mapToObj(id -> new FakeBulkItem(new TestSpaceObject(String.valueOf(id), "hello"), DataSyncOperationType.WRITE))
+						.toArray(FakeBulkItem[]::new)));
+			}
+
+			List<Object> writtenIds = documentDb.getCollection(mirroredObject.getCollectionName()).findAll().map(document -> document.get("_id")).collect(toList());
+			assertEquals(IntStream.range(0, 100).mapToObj(String::valueOf).collect(toList()), writtenIds);
+			assertThat(convertingThreads, everyItem(startsWith("Ymer-Mirror-Converter-")));
+		}
+		assertNull(exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void reportsObjectFailingConcurrentConversion() throws Exception {
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy,
+				pluginsWithPreWriteProcessor(document -> {
+					if ("fail".equals(document.get("message"))) {
+						throw new IllegalStateException("Failed to convert");
+					}
+				}), 1);
+		try (MirroredObjectWriter writer = new MirroredObjectWriter(mirror, exceptionHandler,
+				MirrorWriteProperties.builder().bulkWrite(true).numConversionThreads(4).parallelConversionThreshold(10).build())) {
+			writer.executeBulk(testMetadata, FakeBatchData.create(IntStream.range(0, 100)
+					.mapToObj(id -> new FakeBulkItem(new TestSpaceObject(String.valueOf(id), id == 50 ? "fail" : "hello"), DataSyncOperationType.WRITE))
+					.toArray(FakeBulkItem[]::new)));
+		}
+
+		assertEquals(99, documentDb.getCollection(mirroredObject.getCollectionName()).findAll().count());
+		assertEquals(IllegalStateException.class, mirrorExceptionSpy.lastException.getClass());
+		assertEquals("Operation: INSERT, objects: {TestSpaceObject=[TestSpaceObject [id=50, message=fail]]}", exceptionHandler.getLastOperationDescription());
+	}
+
+	@Test
+	public void insertsLargeBatchesInChunksReportingFailedChunksOnly() throws Exception {
+		List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void insertAll(Document... documents) {
+				chunkSizes.add(documents.length);
+				if (Stream.of(documents).anyMatch(document -> "fail".equals(document.get("message")))) {
+					throw new RuntimeException("Failed to insert chunk");
+				}
+				super.insertAll(documents);
+			}
+		};
+		documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		try (MirroredObjectWriter writer = new MirroredObjectWriter(mirror, exceptionHandler,
+				MirrorWriteProperties.builder().maxChunkDocuments(10).numConcurrentChunks(3).build())) {
+			writer.executeBulk(testMetadata, FakeBatchData.create(IntStream.range(0, 95)
+					.mapToObj(id -> new FakeBulkItem(new TestSpaceObject(String.valueOf(id), id == 42 ? "fail" : "hello"), DataSyncOperationType.WRITE))
+					.toArray(FakeBulkItem[]::new)));
+		}
+
+		assertThat(chunkSizes, containsInAnyOrder(10, 10, 10, 10, 10, 10, 10, 10, 10, 5));
+		assertEquals(85, documentCollection.findAll().count());
+		assertNull(documentCollection.findById("40"));
+		assertNotNull(documentCollection.findById("50"));
+		assertThat(exceptionHandler.getLastOperationDescription(), startsWith("Operation: INSERT, objects: {TestSpaceObject=[TestSpaceObject [id=40,"));
+	}
+
+	@Test
+	public void redeliveredInsertsCompleteWhenIdempotent() throws Exception {
+		for (MirrorWriteProperties.Builder writeProperties : List.of(MirrorWriteProperties.builder(), MirrorWriteProperties.builder().bulkWrite(true))) {
+			documentDb = FakeDocumentDb.create();
+			mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+			mirroredObjectWriter = new MirroredObjectWriter(mirror, exceptionHandler, writeProperties.idempotentInserts(true).build());
+			FakeBatchData batch = FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE),
+					new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE));
+
+			mirroredObjectWriter.executeBulk(testMetadata, batch);
+			mirroredObjectWriter.executeBulk(testMetadata, batch);
+
+			assertEquals(2, documentDb.getCollection(mirroredObject.getCollectionName()).findAll().count());
+		}
+		assertNull(exceptionHandler.getLastOperationDescription());
+		assertNull(mirrorExceptionSpy.lastException);
+	}
+
+	@Test
+	public void retriesWritesFailingWithTransientFailures() throws Exception {
+		for (MirrorWriteProperties.Builder writeProperties : List.of(MirrorWriteProperties.builder(), MirrorWriteProperties.builder().bulkWrite(true))) {
+			AtomicInteger numUpdates = new AtomicInteger();
+			FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+				@Override
+				public void update(Document document) {
+					if (numUpdates.incrementAndGet() == 1) {
+						throw new MongoSocketException("Connection reset", new ServerAddress());
+					}
+					super.update(document);
+				}
+			};
+			documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+			mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+			mirroredObjectWriter = new MirroredObjectWriter(mirror, new RethrowsTransientDocumentWriteExceptionHandler(),
+					writeProperties.maxWriteAttempts(3).retryBackoff(Duration.ofMillis(1), Duration.ofMillis(1)).build());
+
+			mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.UPDATE),
+					new FakeBulkItem(new TestSpaceObject("1", "updated"), DataSyncOperationType.UPDATE),
+					new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.UPDATE)));
+
+			assertEquals("updated", documentCollection.findById("1").get("message"));
+			assertNotNull(documentCollection.findById("2"));
+			assertThat(mirroredObjectWriter.getRetryStatistics().getNumRetries(), greaterThan(0L));
+			assertNull(mirrorExceptionSpy.lastException);
+		}
+	}
+
+	@Test
+	public void escalatesTransientFailureWhenAttemptsAreExhausted() throws Exception {
+		for (MirrorWriteProperties.Builder writeProperties : List.of(MirrorWriteProperties.builder(), MirrorWriteProperties.builder().bulkWrite(true))) {
+			FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+				@Override
+				public void update(Document document) {
+					throw new MongoSocketException("Connection reset", new ServerAddress());
+				}
+			};
+			documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+			mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+			mirroredObjectWriter = new MirroredObjectWriter(mirror, new RethrowsTransientDocumentWriteExceptionHandler(),
+					writeProperties.maxWriteAttempts(2).retryBackoff(Duration.ofMillis(1), Duration.ofMillis(1)).build());
+
+			assertThrows(TransientDocumentWriteException.class, () -> mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+					new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.UPDATE))));
+
+			assertEquals(1, mirroredObjectWriter.getRetryStatistics().getNumRetries());
+			assertEquals(1, mirroredObjectWriter.getRetryStatistics().getNumExhaustedRetries());
+		}
+	}
+
+	@Test
+	public void retriesOnlyDocumentsNotInsertedByFailedInsert() throws Exception {
+		AtomicInteger numInserts = new AtomicInteger();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void insert(Document document) {
+				if (numInserts.incrementAndGet() == 3) {
+					throw new MongoSocketException("Connection reset", new ServerAddress());
+				}
+				super.insert(document);
+			}
+		};
+		documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, new RethrowsTransientDocumentWriteExceptionHandler(),
+				MirrorWriteProperties.builder().maxWriteAttempts(3).retryBackoff(Duration.ofMillis(1), Duration.ofMillis(1)).build());
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("3", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("4", "hello"), DataSyncOperationType.WRITE)));
+
+		assertEquals(4, documentCollection.findAll().count());
+		assertEquals(5, numInserts.get());
+		assertNull(mirrorExceptionSpy.lastException);
+	}
+
+	@Test
+	public void doesNotRetryInsertsAppliedByFailedBulkWrite() throws Exception {
+		AtomicInteger numBulkWrites = new AtomicInteger();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public void writeAll(List<DocumentWrite> writes, BiConsumer<DocumentWrite, RuntimeException> failureHandler) {
+				if (numBulkWrites.incrementAndGet() == 1) {
+					super.writeAll(writes.subList(0, 2), failureHandler);
+					throw new MongoSocketException("Connection reset", new ServerAddress());
+				}
+				super.writeAll(writes, failureHandler);
+			}
+		};
+		documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, new RethrowsTransientDocumentWriteExceptionHandler(),
+				MirrorWriteProperties.builder().bulkWrite(true).maxWriteAttempts(3).retryBackoff(Duration.ofMillis(1), Duration.ofMillis(1)).build());
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.WRITE),
+				new FakeBulkItem(new TestSpaceObject("3", "hello"), DataSyncOperationType.WRITE)));
+
+		assertEquals(3, documentCollection.findAll().count());
+		assertEquals(2, numBulkWrites.get());
+		assertNull(mirrorExceptionSpy.lastException);
+	}
+
+	@Test
+	public void retriesOnlyDocumentsNotDeletedByFailedDelete() throws Exception {
+		List<List<Object>> deletedIds = new ArrayList<>();
+		AtomicInteger numLookups = new AtomicInteger();
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection() {
+			@Override
+			public Stream<Document> findByIds(List<Object> ids) {
+				numLookups.incrementAndGet();
+				return super.findByIds(ids);
+			}
+
+			@Override
+			public void deleteAll(List<Object> ids) {
+				deletedIds.add(ids);
+				if (deletedIds.size() == 1) {
+					super.deleteAll(ids.subList(0, 1));
+					throw new MongoSocketException("Connection reset", new ServerAddress());
+				}
+				super.deleteAll(ids);
+			}
+		};
+		documentCollection.insert(new Document("_id", "1"));
+		documentCollection.insert(new Document("_id", "2"));
+		documentCollection.insert(new Document("_id", "3"));
+		documentDb = DocumentDb.create((name, readPreference) -> documentCollection);
+		mirror = new SpaceMirrorContext(mirroredObjects, documentConverter, documentDb, mirrorExceptionSpy, Plugins.empty(), 1);
+		mirroredObjectWriter = new MirroredObjectWriter(mirror, new RethrowsTransientDocumentWriteExceptionHandler(),
+				MirrorWriteProperties.builder().maxWriteAttempts(3).retryBackoff(Duration.ofMillis(1), Duration.ofMillis(1)).build());
+
+		mirroredObjectWriter.executeBulk(testMetadata, FakeBatchData.create(
+				new FakeBulkItem(new TestSpaceObject("1", "hello"), DataSyncOperationType.REMOVE),
+				new FakeBulkItem(new TestSpaceObject("2", "hello"), DataSyncOperationType.REMOVE),
+				new FakeBulkItem(new TestSpaceObject("3", "hello"), DataSyncOperationType.REMOVE)));
+
+		assertEquals(List.of(List.of("1", "2", "3"), List.of("2", "3")), deletedIds);
+		assertEquals(1, numLookups.get());
+		assertEquals(0, documentCollection.findAll().count());
+		assertNull(mirrorExceptionSpy.lastException);
+	}
+
+	private static Plugins pluginsWithPreWriteProcessor(Consumer<Document> preWrite) {
+		return new Plugins(Set.of(new Plugin() {
+			@Override
+			public Optional<PostReadProcessor> createPostReadProcessor(Class<?> spaceClass) {
+				return Optional.empty();
+			}
+
+			@Override
+			public Optional<PreWriteProcessor> createPreWriteProcessor(Class<?> spaceClass) {
+				return Optional.of(document -> {
+					preWrite.accept(document);
+					return document;
+				});
+			}
+		}));
+	}
+
 	private DocumentDb throwsOnUpdateDocumentDb() {
 		return DocumentDb.create((name, readPreference) -> new FakeDocumentCollection() {
 			@Override
@@ -371,10 +1095,16 @@ public class MirroredObjectWriterTest {
 
 		private final Object item;
 		private final DataSyncOperationType operation;
+		private final Object spaceId;
 
 		public FakeBulkItem(Object item, DataSyncOperationType operation) {
+			this(item, operation, null);
+		}
+
+		public FakeBulkItem(Object item, DataSyncOperationType operation, Object spaceId) {
 			this.item = item;
 			this.operation = operation;
+			this.spaceId = spaceId;
 		}
 
 		@Override
@@ -389,7 +1119,7 @@ public class MirroredObjectWriterTest {
 
 		@Override
 		public Object getSpaceId() {
-			return null;
+			return spaceId;
 		}
 
 		@Override
@@ -414,7 +1144,7 @@ public class MirroredObjectWriterTest {
 
 		@Override
 		public boolean supportsGetSpaceId() {
-			return false;
+			return spaceId != null;
 		}
 
 		@Override
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+
+public class MongoCursorSpliteratorTest {
+
+	@Test
+	public void splitsOffOneBatchAtATime() {
+		MongoCursorSpliterator<Integer> spliterator = new MongoCursorSpliterator<>(cursor(10), 4, null);
+
+		Spliterator<Integer> first = spliterator.trySplit();
+		Spliterator<Integer> second = spliterator.trySplit();
+		Spliterator<Integer> third = spliterator.trySplit();
+
+		assertThat(first.estimateSize(), is(4L));
+		assertTrue(first.hasCharacteristics(Spliterator.SIZED));
+		assertThat(second.estimateSize(), is(4L));
+		assertThat(third.estimateSize(), is(2L));
+		assertThat(spliterator.trySplit(), nullValue());
+
+		List<Integer> elements = new ArrayList<>();
+		first.forEachRemaining(elements::add);
+		second.forEachRemaining(elements::add);
+		third.forEachRemaining(elements::add);
+		assertThat(elements, contains(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+	}
+
+	@Test
+	public void estimatesRemainingSizeFromEstimatedNumberOfDocuments() {
+		MongoCursorSpliterator<Integer> spliterator = new MongoCursorSpliterator<>(cursor(10), 4, () -> 10);
+
+		assertThat(spliterator.estimateSize(), is(10L));
+		spliterator.tryAdvance(ignore -> {});
+		assertThat(spliterator.estimateSize(), is(9L));
+		spliterator.trySplit();
+		assertThat(spliterator.estimateSize(), is(5L));
+		assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+	}
+
+	@Test
+	public void doesNotRequestEstimatedNumberOfDocumentsUnlessSizeIsRequested() {
+		MongoCursorSpliterator<Integer> spliterator = new MongoCursorSpliterator<>(cursor(3), 4, () -> {
+			throw new AssertionError("Size should not be estimated");
+		});
+
+		assertThat(StreamSupport.stream(spliterator, false).collect(toList()), contains(0, 1, 2));
+	}
+
+	@Test
+	public void sizeIsUnknownWithoutEstimatedNumberOfDocuments() {
+		MongoCursorSpliterator<Integer> spliterator = new MongoCursorSpliterator<>(cursor(3), 4, null);
+
+		assertThat(spliterator.estimateSize(), is(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void parallelStreamConsumesAllDocuments() {
+		MongoCursorSpliterator<Integer> spliterator = new MongoCursorSpliterator<>(cursor(10_000), 100, () -> 10_000);
+
+		List<Integer> elements = StreamSupport.stream(spliterator, true).collect(toList());
+
+		assertThat(elements.stream().sorted().collect(toList()), is(IntStream.range(0, 10_000).boxed().collect(toList())));
+	}
+
+	private static MongoCursor<Integer> cursor(int numDocuments) {
+		Iterator<Integer> documents = IntStream.range(0, numDocuments).iterator();
+		return new MongoCursor<>() {
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public boolean hasNext() {
+				return documents.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				return documents.next();
+			}
+
+			@Override
+			public Integer tryNext() {
+				return documents.hasNext() ? documents.next() : null;
+			}
+
+			@Override
+			public ServerCursor getServerCursor() {
+				return null;
+			}
+
+			@Override
+			public ServerAddress getServerAddress() {
+				return null;
+			}
+		};
+	}
+
+}
@@ -18,18 +18,27 @@ package com.avanza.ymer;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.samePropertyValuesAs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
 import org.junit.After;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -39,6 +48,8 @@ import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
 import com.avanza.ymer.plugin.PostReadProcessor;
 import com.gigaspaces.annotation.pojo.SpaceId;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
 
 /**
  *
@@ -54,8 +65,11 @@ public class MongoDocumentCollectionTest extends DocumentCollectionContract {
 
 	private final InstanceMetadata metadata = new InstanceMetadata(2, null);
 
+	private final InitialLoadExecutor loaderExecutor = new InitialLoadExecutor(2, Thread.NORM_PRIORITY);
+
 	@After
 	public void cleanDatabase() {
+		loaderExecutor.close();
 		mirrorEnvironment.reset();
 	}
 
@@ -104,7 +118,7 @@ public class MongoDocumentCollectionTest extends DocumentCollectionContract {
 				new MirrorContextProperties(2, 2),
 				noOpPostReadProcessor());
 
-		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects()
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects(loaderExecutor)
 					  .stream()
 					  .map(LoadedDocument::getDocument)
 					  .collect(Collectors.toList());
@@ -155,7 +169,7 @@ public class MongoDocumentCollectionTest extends DocumentCollectionContract {
 				new MirrorContextProperties(2, 1),
 				noOpPostReadProcessor());
 
-		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects()
+		List<FakeSpaceObject> loadedSpaceObjects = documentLoader.loadAllObjects(loaderExecutor)
 				  .stream()
 				  .map(LoadedDocument::getDocument)
 				  .collect(Collectors.toList());
@@ -187,6 +201,105 @@ public class MongoDocumentCollectionTest extends DocumentCollectionContract {
 		assertThat(results, contains(samePropertyValuesAs(d1)));
 	}
 
+	@Test
+	public void replaceAllReportsFailuresPerDocumentAndReplacesRemainingDocuments() {
+		DocumentCollection documentCollection = createEmptyCollection();
+		documentCollection.createIndex(new Document("name", 1), new IndexOptions().unique(true));
+		Document d1 = new Document("_id", 1).append("name", "a");
+		Document d2 = new Document("_id", 2).append("name", "b");
+		Document d3 = new Document("_id", 3).append("name", "c");
+		documentCollection.insertAll(d1, d2, d3);
+
+		Document d2WithDuplicateName = new Document(d2).append("name", "a");
+		List<PatchedDocument> failed = new ArrayList<>();
+		documentCollection.replaceAll(List.of(
+				new PatchedDocument(d1, new Document(d1).append("patched", true)),
+				new PatchedDocument(d2, d2WithDuplicateName),
+				new PatchedDocument(d3, new Document(d3).append("patched", true))
+		), (patchedDocument, e) -> failed.add(patchedDocument));
+
+		assertThat(failed, hasSize(1));
+		assertEquals(d2WithDuplicateName, failed.get(0).getNewVersion());
+		assertEquals(true, documentCollection.findById(1).get("patched"));
+		assertEquals(d2, documentCollection.findById(2));
+		assertEquals(true, documentCollection.findById(3).get("patched"));
+	}
+
+	@Test
+	public void findAllEstimatesNumberOfDocuments() {
+		DocumentCollection documentCollection = createEmptyCollection();
+		documentCollection.insertAll(IntStream.range(0, 10).mapToObj(i -> new Document("_id", i)).toArray(Document[]::new));
+
+		try (Stream<Document> documents = documentCollection.findAll()) {
+			assertEquals(10, documents.spliterator().estimateSize());
+		}
+		try (Stream<Document> documents = documentCollection.findAll()) {
+			assertEquals(10, documents.parallel().count());
+		}
+	}
+
+	@Test
+	public void findRawByQueryReturnsMatchingDocumentsAsRawBson() {
+		DocumentCollection documentCollection = createEmptyCollection();
+		Document d1 = new Document("_id", "id_1").append("count", 21);
+		Document d2 = new Document("_id", "id_2").append("count", 55);
+		documentCollection.insertAll(d1, d2);
+
+		List<RawBsonDocument> results = documentCollection.findRawByQuery(query(where("count").is(55))).collect(toList());
+
+		assertThat(results, hasSize(1));
+		assertEquals(d2, results.get(0).decode(new DocumentCodec()));
+	}
+
+	@Test
+	public void findIdSplitPointsReturnsAscendingIdsWithinCollection() {
+		DocumentCollection documentCollection = createEmptyCollection();
+		documentCollection.insertAll(IntStream.range(0, 1000)
+				.mapToObj(id -> new Document("_id", id))
+				.toArray(Document[]::new));
+
+		List<Integer> splitPoints = documentCollection.findIdSplitPoints(4).stream()
+				.map(Integer.class::cast)
+				.collect(toList());
+
+		assertThat(splitPoints, hasSize(3));
+		assertThat(splitPoints.get(0), greaterThan(0));
+		assertThat(splitPoints.get(1), greaterThan(splitPoints.get(0)));
+		assertThat(splitPoints.get(2), greaterThan(splitPoints.get(1)));
+		assertThat(splitPoints.get(2), lessThan(1000));
+	}
+
+	@Test
+	public void findIdSplitPointsReturnsEmptyListWhenCollectionIsTooSmallToSplit() {
+		DocumentCollection documentCollection = createEmptyCollection();
+		documentCollection.insertAll(new Document("_id", 1), new Document("_id", 2));
+
+		assertThat(documentCollection.findIdSplitPoints(4), empty());
+	}
+
+	@Test
+	public void namespaceHoldsDatabaseAndCollectionName() {
+		MongoDatabase database = mirrorEnvironment.getMongoTemplate().getDb();
+		DocumentCollection documentCollection = new MongoDocumentCollection(database.getCollection("some-collection"));
+
+		assertEquals(database.getName() + ".some-collection", documentCollection.getNamespace());
+	}
+
+	@Test
+	public void estimatesLargerDataSizeForLargerCollection() {
+		DocumentCollection small = createEmptyCollection();
+		small.insertAll(new Document("_id", 1));
+		DocumentCollection large = new MongoDocumentCollection(mirrorEnvironment.getMongoTemplate().getCollection("large-collection"));
+		large.insertAll(IntStream.range(0, 100)
+				.mapToObj(id -> new Document("_id", id))
+				.toArray(Document[]::new));
+
+		if (large.estimateDataSize().isPresent() && small.estimateDataSize().isPresent()) {
+			assertThat(large.estimateDataSize().getAsLong(), greaterThan(small.estimateDataSize().getAsLong()));
+		}
+		assertThat(large.estimateDocumentCount(), greaterThan(small.estimateDocumentCount()));
+	}
+
 	static class FakeSpaceObject {
 		private final Integer id;
 		private final String value;
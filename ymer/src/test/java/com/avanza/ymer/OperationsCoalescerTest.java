@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avanza.ymer.MirroredObjectWriterTest.FakeBulkItem;
+import com.gigaspaces.sync.DataSyncOperation;
+import com.gigaspaces.sync.DataSyncOperationType;
+
+public class OperationsCoalescerTest {
+
+	private final TestSpaceObject v1 = new TestSpaceObject("1", "v1");
+	private final TestSpaceObject v2 = new TestSpaceObject("1", "v2");
+	private final TestSpaceObject v3 = new TestSpaceObject("1", "v3");
+
+	@Test
+	public void lastUpdateWins() {
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(v2, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(v3, DataSyncOperationType.UPDATE, "1")));
+
+		assertThat(types(coalesced), contains(DataSyncOperationType.UPDATE));
+		assertThat(coalesced.get(0).getDataAsObject(), sameInstance(v3));
+	}
+
+	@Test
+	public void writeFollowedByUpdatesBecomesWriteOfLastUpdate() {
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.WRITE, "1"),
+				new FakeBulkItem(v2, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(v3, DataSyncOperationType.UPDATE, "1")));
+
+		assertThat(types(coalesced), contains(DataSyncOperationType.WRITE));
+		assertThat(coalesced.get(0).getDataAsObject(), sameInstance(v3));
+	}
+
+	@Test
+	public void writeFollowedByRemoveCancelsOut() {
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.WRITE, "1"),
+				new FakeBulkItem(v2, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(v2, DataSyncOperationType.REMOVE, "1")));
+
+		assertThat(coalesced, empty());
+	}
+
+	@Test
+	public void removeFollowedByWriteBecomesReplace() {
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.REMOVE, "1"),
+				new FakeBulkItem(v2, DataSyncOperationType.WRITE, "1")));
+
+		assertThat(types(coalesced), contains(DataSyncOperationType.UPDATE));
+		assertThat(coalesced.get(0).getDataAsObject(), sameInstance(v2));
+	}
+
+	@Test
+	public void keepsOperationsOnDifferentObjectsAndWithoutSpaceId() {
+		TestSpaceObject other = new TestSpaceObject("2", "other");
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.UPDATE),
+				new FakeBulkItem(other, DataSyncOperationType.UPDATE, "2"),
+				new FakeBulkItem(v2, DataSyncOperationType.UPDATE),
+				new FakeBulkItem(v3, DataSyncOperationType.UPDATE, "1")));
+
+		assertThat(coalesced.stream().map(DataSyncOperation::getDataAsObject).collect(toList()), contains(v1, other, v2, v3));
+	}
+
+	@Test
+	public void placesCoalescedOperationAtPositionOfLastOperationOnObject() {
+		TestSpaceObject other = new TestSpaceObject("2", "other");
+		TestSpaceObject otherRemoved = new TestSpaceObject("2", "other");
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.UPDATE, "1"),
+				new FakeBulkItem(other, DataSyncOperationType.UPDATE, "2"),
+				new FakeBulkItem(v2, DataSyncOperationType.PARTIAL_UPDATE, "1"),
+				new FakeBulkItem(otherRemoved, DataSyncOperationType.REMOVE, "2"),
+				new FakeBulkItem(v3, DataSyncOperationType.UPDATE, "1")));
+
+		assertThat(coalesced.stream().map(DataSyncOperation::getDataAsObject).collect(toList()), contains(otherRemoved, v3));
+	}
+
+	@Test
+	public void keepsUncoalescedOperationsAtTheirPositions() {
+		TestSpaceObject other = new TestSpaceObject("2", "other");
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.WRITE, "1"),
+				new FakeBulkItem(other, DataSyncOperationType.UPDATE, "2"),
+				new FakeBulkItem(v2, DataSyncOperationType.PARTIAL_UPDATE, "1")));
+
+		assertThat(coalesced.stream().map(DataSyncOperation::getDataAsObject).collect(toList()), contains(v1, other, v2));
+	}
+
+	@Test
+	public void partialUpdatesAreNotReplacedByLaterPartialUpdates() {
+		List<DataSyncOperation> coalesced = OperationsCoalescer.coalesce(List.of(
+				new FakeBulkItem(v1, DataSyncOperationType.PARTIAL_UPDATE, "1"),
+				new FakeBulkItem(v2, DataSyncOperationType.PARTIAL_UPDATE, "1")));
+
+		assertThat(types(coalesced), contains(DataSyncOperationType.PARTIAL_UPDATE, DataSyncOperationType.PARTIAL_UPDATE));
+	}
+
+	private static List<DataSyncOperationType> types(List<DataSyncOperation> operations) {
+		return operations.stream().map(DataSyncOperation::getDataSyncOperationType).collect(toList());
+	}
+
+}
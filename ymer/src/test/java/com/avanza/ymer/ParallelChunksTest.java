@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelChunksTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void returnsResultsInOrderOfElements() throws Exception {
+		List<Integer> elements = IntStream.range(0, 101).boxed().collect(toList());
+
+		List<Integer> result = ParallelChunks.map(elements, chunk -> chunk.stream().map(i -> i * 2).collect(toList()), executor, 2);
+
+		assertThat(result, is(elements.stream().map(i -> i * 2).collect(toList())));
+	}
+
+	@Test
+	public void mapsNoElements() throws Exception {
+		assertThat(ParallelChunks.map(List.<Integer>of(), chunk -> chunk, executor, 2), is(empty()));
+	}
+
+	@Test
+	public void rethrowsFailureMappingChunk() {
+		List<Integer> elements = IntStream.range(0, 10).boxed().collect(toList());
+
+		IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> ParallelChunks.<Integer, Integer>map(elements, chunk -> {
+			if (chunk.contains(5)) {
+				throw new IllegalArgumentException("Unconvertible");
+			}
+			return chunk;
+		}, executor, 2));
+
+		assertThat(thrown.getMessage(), is("Unconvertible"));
+	}
+
+}
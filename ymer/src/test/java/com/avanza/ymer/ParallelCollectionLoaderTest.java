@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class ParallelCollectionLoaderTest {
+
+	@Test
+	public void returnsObjectsFromAllCollections() {
+		List<Supplier<Stream<?>>> loaders = List.of(
+				() -> IntStream.range(0, 1000).boxed(),
+				() -> IntStream.range(1000, 1500).boxed(),
+				() -> Stream.empty(),
+				() -> IntStream.range(1500, 2000).boxed()
+		);
+
+		List<Object> loaded = new ArrayList<>();
+		new ParallelCollectionLoader(loaders, 2, 10).forEachRemaining(loaded::add);
+
+		assertThat(loaded, hasSize(2000));
+		assertThat(loaded, containsInAnyOrder(IntStream.range(0, 2000).boxed().toArray()));
+	}
+
+	@Test
+	public void loadsCollectionsConcurrently() throws Exception {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		Supplier<Stream<?>> awaitOther = () -> {
+			bothStarted.countDown();
+			try {
+				assertThat(bothStarted.await(10, TimeUnit.SECONDS), is(true));
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return Stream.of("loaded");
+		};
+
+		List<Object> loaded = new ArrayList<>();
+		new ParallelCollectionLoader(List.of(awaitOther, awaitOther), 2).forEachRemaining(loaded::add);
+
+		assertThat(loaded, is(List.of("loaded", "loaded")));
+	}
+
+	@Test
+	public void closesEachCollectionStream() {
+		LongAdder closed = new LongAdder();
+		List<Supplier<Stream<?>>> loaders = List.of(
+				() -> Stream.of(1, 2).onClose(closed::increment),
+				() -> Stream.of(3).onClose(closed::increment),
+				() -> Stream.of(4).onClose(closed::increment)
+		);
+
+		List<Object> loaded = new ArrayList<>();
+		new ParallelCollectionLoader(loaders, 2).forEachRemaining(loaded::add);
+
+		assertThat(loaded, containsInAnyOrder(1, 2, 3, 4));
+		assertThat(closed.intValue(), is(3));
+	}
+
+	@Test
+	public void rethrowsFailureFromCollectionLoad() {
+		List<Supplier<Stream<?>>> loaders = List.of(
+				() -> IntStream.range(0, 100).boxed(),
+				() -> Stream.of(1, 2, 3).map(i -> {
+					throw new IllegalStateException("Failed to load document");
+				})
+		);
+
+		ParallelCollectionLoader loader = new ParallelCollectionLoader(loaders, 2, 10);
+
+		assertThrows(IllegalStateException.class, () -> loader.forEachRemaining(ignore -> {}));
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static java.util.Collections.synchronizedList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.ymer.PatchedDocumentWriteBack.CollectionWriteBack;
+import com.avanza.ymer.plugin.PreWriteProcessor;
+
+public class PatchedDocumentWriteBackTest {
+
+	private final PatchedDocumentWriteBack patchedDocumentWriteBack = new PatchedDocumentWriteBack(3, 2);
+	private final DocumentCollection documentCollection = mock(DocumentCollection.class);
+	private final InitialLoadStatistics statistics = new InitialLoadStatistics();
+	private final List<List<PatchedDocument>> writtenBatches = synchronizedList(new ArrayList<>());
+
+	@After
+	public void close() {
+		patchedDocumentWriteBack.close();
+	}
+
+	@Test
+	public void writesPatchedDocumentsInBatches() {
+		recordWrittenBatches();
+		CollectionWriteBack collectionWriteBack = patchedDocumentWriteBack.forCollection("collection", documentCollection, noOpPreWriteProcessor(), statistics);
+
+		for (int i = 0; i < 7; i++) {
+			collectionWriteBack.add(patchedDocument(i));
+		}
+		patchedDocumentWriteBack.drain();
+
+		assertThat(writtenBatches.stream().map(List::size).collect(toList()), containsInAnyOrder(3, 3, 1));
+		assertThat(collectionWriteBack.getNumWritten(), is(7L));
+		assertThat(collectionWriteBack.getNumFailed(), is(0L));
+	}
+
+	@Test
+	public void appliesPreWriteProcessorToNewVersion() {
+		recordWrittenBatches();
+		CollectionWriteBack collectionWriteBack = patchedDocumentWriteBack.forCollection("collection", documentCollection,
+				preWrite -> preWrite.append("preWritten", true), statistics);
+
+		collectionWriteBack.add(patchedDocument(1));
+		patchedDocumentWriteBack.drain();
+
+		PatchedDocument written = writtenBatches.get(0).get(0);
+		assertThat(written.getOldVersion(), hasEntry("_id", 1));
+		assertThat(written.getNewVersion(), hasEntry("preWritten", true));
+	}
+
+	@Test
+	public void reportsFailuresPerDocument() {
+		doAnswer(invocation -> {
+			List<PatchedDocument> batch = invocation.getArgument(0);
+			BiConsumer<PatchedDocument, RuntimeException> failureHandler = invocation.getArgument(1);
+			failureHandler.accept(batch.get(1), new IllegalStateException("Duplicate key"));
+			return null;
+		}).when(documentCollection).replaceAll(any(), any());
+		CollectionWriteBack collectionWriteBack = patchedDocumentWriteBack.forCollection("collection", documentCollection, noOpPreWriteProcessor(), statistics);
+
+		for (int i = 0; i < 3; i++) {
+			collectionWriteBack.add(patchedDocument(i));
+		}
+		patchedDocumentWriteBack.drain();
+
+		assertThat(collectionWriteBack.getNumWritten(), is(2L));
+		assertThat(collectionWriteBack.getNumFailed(), is(1L));
+		assertThat(statistics.getNumDocumentsWrittenBack(), is(2L));
+		assertThat(statistics.getNumWriteBackFailures(), is(1L));
+		assertThat(statistics.getNumWriteBackBatches(), is(1L));
+	}
+
+	@Test
+	public void countsAllDocumentsInBatchAsFailedWhenBatchCannotBeWritten() {
+		doThrow(new IllegalStateException("Connection refused")).when(documentCollection).replaceAll(any(), any());
+		CollectionWriteBack collectionWriteBack = patchedDocumentWriteBack.forCollection("collection", documentCollection, noOpPreWriteProcessor(), statistics);
+
+		for (int i = 0; i < 5; i++) {
+			collectionWriteBack.add(patchedDocument(i));
+		}
+		patchedDocumentWriteBack.drain();
+
+		assertThat(collectionWriteBack.getNumWritten(), is(0L));
+		assertThat(collectionWriteBack.getNumFailed(), is(5L));
+	}
+
+	@Test
+	public void drainsAllCollections() {
+		recordWrittenBatches();
+		CollectionWriteBack first = patchedDocumentWriteBack.forCollection("first", documentCollection, noOpPreWriteProcessor(), statistics);
+		CollectionWriteBack second = patchedDocumentWriteBack.forCollection("second", documentCollection, noOpPreWriteProcessor(), statistics);
+
+		first.add(patchedDocument(1));
+		second.add(patchedDocument(2));
+		second.add(patchedDocument(3));
+		patchedDocumentWriteBack.drain();
+
+		assertThat(writtenBatches.stream().map(List::size).collect(toList()), containsInAnyOrder(1, 2));
+		assertThat(first.getNumWritten() + second.getNumWritten(), is(3L));
+	}
+
+	@Test
+	public void addsChangedIdsToExistenceFilters() {
+		FakeDocumentCollection documentCollection = new FakeDocumentCollection();
+		documentCollection.insert(new Document("_id", 1));
+		Object writer = new Object();
+		ExistenceFilters.registerWriter(documentCollection.getNamespace(), writer);
+		ExistenceFilter existenceFilter = new ExistenceFilter(documentCollection, 0.01);
+		ExistenceFilters.register(existenceFilter);
+		try {
+			existenceFilter.build();
+			CollectionWriteBack collectionWriteBack = patchedDocumentWriteBack.forCollection("collection", documentCollection, noOpPreWriteProcessor(), statistics);
+
+			collectionWriteBack.add(new PatchedDocument(new Document("_id", 1), new Document("_id", "one")));
+			patchedDocumentWriteBack.drain();
+
+			assertThat(collectionWriteBack.getNumWritten(), is(1L));
+			assertTrue(existenceFilter.mightExist("one"));
+		} finally {
+			ExistenceFilters.unregister(existenceFilter);
+			ExistenceFilters.unregisterWriter(documentCollection.getNamespace(), writer);
+		}
+	}
+
+	@Test
+	public void rejectsInvalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> new PatchedDocumentWriteBack(0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new PatchedDocumentWriteBack(1, 0));
+	}
+
+	private void recordWrittenBatches() {
+		doAnswer(invocation -> {
+			writtenBatches.add(new ArrayList<>(invocation.<List<PatchedDocument>>getArgument(0)));
+			return null;
+		}).when(documentCollection).replaceAll(any(), any());
+	}
+
+	private static PatchedDocument patchedDocument(int id) {
+		return new PatchedDocument(new Document("_id", id), new Document("_id", id).append("patched", true));
+	}
+
+	private static PreWriteProcessor noOpPreWriteProcessor() {
+		return preWrite -> preWrite;
+	}
+
+}
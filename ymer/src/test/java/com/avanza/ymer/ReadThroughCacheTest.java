@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avanza.ymer.MirroredObjectLoader.LoadedDocument;
+
+public class ReadThroughCacheTest {
+
+	private static final long TTL = TimeUnit.SECONDS.toNanos(60);
+	private static final long NEGATIVE_TTL = TimeUnit.SECONDS.toNanos(10);
+
+	private final AtomicLong nanoTime = new AtomicLong();
+	private final AtomicInteger numLoads = new AtomicInteger();
+	private final String namespace = new FakeDocumentCollection().getNamespace();
+	private final Object writer = new Object();
+	private final MirroredObjectLoader<TestReloadableSpaceObject> loader = new MirroredObjectLoader<>(new FakeDocumentCollection(),
+			TestSpaceObjectFakeConverter.create(),
+			MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride()),
+			SpaceObjectFilter.acceptAll(),
+			new MirrorContextProperties(1, 1),
+			postRead -> postRead);
+	private final ReadThroughCache<TestReloadableSpaceObject> cache = new ReadThroughCache<>(loader::loadCached,
+			namespace, TestSpaceObjectFakeConverter.create(), 2, TTL, NEGATIVE_TTL, nanoTime::get);
+
+	@Before
+	public void registerWriter() {
+		ExistenceFilters.registerWriter(namespace, writer);
+	}
+
+	@After
+	public void unregisterWriter() {
+		ExistenceFilters.unregisterWriter(namespace, writer);
+	}
+
+	@Test
+	public void servesCachedObjectsAsCopiesThatNeedNotBeWrittenBack() {
+		TestReloadableSpaceObject loaded = cache.loadById(1, load(object(1))).get().getDocument();
+		Optional<LoadedDocument<TestReloadableSpaceObject>> cached = cache.loadById(1, load(object(1)));
+
+		assertEquals(1, numLoads.get());
+		assertEquals(loaded, cached.get().getDocument());
+		assertThat(cached.get().getDocument(), not(sameInstance(loaded)));
+		assertFalse(cached.get().getPatchedDocument().isPresent());
+		assertEquals(1, cache.getNumHits());
+		assertEquals(1, cache.getNumMisses());
+	}
+
+	@Test
+	public void marksCachedObjectsReloaded() {
+		cache.loadById(1, load(object(1)));
+		TestReloadableSpaceObject cached = cache.loadById(1, load(object(1))).get().getDocument();
+
+		assertEquals(1, cache.getNumHits());
+		assertTrue(ReloadableSpaceObjectUtil.isReloaded(cached));
+	}
+
+	@Test
+	public void servesMissingObjectsUntilNegativeTtlHasPassed() {
+		cache.loadById(1, load(null));
+		nanoTime.addAndGet(NEGATIVE_TTL - 1);
+		assertFalse(cache.loadById(1, load(object(1))).isPresent());
+
+		nanoTime.addAndGet(1);
+		assertTrue(cache.loadById(1, load(object(1))).isPresent());
+		assertEquals(2, numLoads.get());
+		assertEquals(1, cache.getNumNegativeHits());
+		assertEquals(1, cache.getNumExpirations());
+	}
+
+	@Test
+	public void readsObjectsAgainWhenTtlHasPassed() {
+		cache.loadById(1, load(object(1)));
+		nanoTime.addAndGet(TTL);
+		cache.loadById(1, load(object(1)));
+
+		assertEquals(2, numLoads.get());
+		assertEquals(0, cache.getNumHits());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedObjects() {
+		cache.loadById(1, load(object(1)));
+		cache.loadById(2, load(object(2)));
+		cache.loadById(1, load(object(1)));
+		cache.loadById(3, load(object(3)));
+
+		cache.loadById(1, load(object(1)));
+		cache.loadById(2, load(object(2)));
+
+		assertEquals(4, numLoads.get());
+		assertEquals(2, cache.getSize());
+		assertEquals(2, cache.getNumEvictions());
+	}
+
+	@Test
+	public void doesNotCacheFailedLoads() {
+		assertThrows(IllegalArgumentException.class, () -> cache.loadById(1, () -> {
+			throw new IllegalArgumentException("Space object not accepted by filter (id=1)");
+		}));
+
+		cache.loadById(1, load(object(1)));
+		assertEquals(1, numLoads.get());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void doesNotCacheObjectsReadWhileInvalidated() {
+		cache.loadById(1, () -> {
+			ReadThroughCaches.register(cache);
+			ReadThroughCaches.invalidate(namespace, 1);
+			return Optional.of(new LoadedDocument<>(object(1), null));
+		});
+		cache.loadById(1, load(object(1)));
+
+		assertEquals(1, numLoads.get());
+		assertEquals(1, cache.getNumInvalidations());
+		ReadThroughCaches.unregister(cache);
+	}
+
+	@Test
+	public void cachesOnlyMissingObjectsUnlessCollectionIsWrittenInThisJvm() {
+		ExistenceFilters.unregisterWriter(namespace, writer);
+
+		cache.loadById(1, load(object(1)));
+		cache.loadById(1, load(object(1)));
+		cache.loadAll(() -> List.of(new LoadedDocument<>(object(2), null)));
+		cache.loadById(3, load(null));
+		cache.loadById(3, load(object(3)));
+
+		assertEquals(3, numLoads.get());
+		assertEquals(1, cache.getSize());
+		assertEquals(1, cache.getNumNegativeHits());
+	}
+
+	@Test
+	public void readsCachedObjectsAgainOnceNoMirrorInThisJvmWritesCollection() {
+		cache.loadById(1, load(object(1)));
+
+		ExistenceFilters.unregisterWriter(namespace, writer);
+		cache.loadById(1, load(object(1)));
+
+		assertEquals(2, numLoads.get());
+		assertEquals(0, cache.getNumHits());
+	}
+
+	@Test
+	public void isNotInvalidatedByWritesToCollectionOfSameNameInOtherDatabase() {
+		ReadThroughCache<TestReloadableSpaceObject> cache = new ReadThroughCache<>(loader::loadCached,
+				"database.collection", TestSpaceObjectFakeConverter.create(), 2, TTL, NEGATIVE_TTL, nanoTime::get);
+		ReadThroughCaches.register(cache);
+		try {
+			ReadThroughCaches.invalidate("other_database.collection", 1);
+			ReadThroughCaches.invalidateAll("other_database.collection");
+
+			assertEquals(0, cache.getNumInvalidations());
+		} finally {
+			ReadThroughCaches.unregister(cache);
+		}
+	}
+
+	@Test
+	public void cachesObjectsLoadedByTemplate() {
+		cache.loadAll(() -> List.of(new LoadedDocument<>(object(1), null), new LoadedDocument<>(object(2), null)));
+
+		assertTrue(cache.loadById(1, load(object(1))).isPresent());
+		assertTrue(cache.loadById(2, load(object(2))).isPresent());
+		assertEquals(0, numLoads.get());
+
+		cache.invalidate(1);
+		cache.loadById(1, load(object(1)));
+		assertEquals(1, numLoads.get());
+	}
+
+	private Supplier<Optional<LoadedDocument<TestReloadableSpaceObject>>> load(TestReloadableSpaceObject object) {
+		return () -> {
+			numLoads.incrementAndGet();
+			return Optional.ofNullable(object).map(o -> new LoadedDocument<>(o, null));
+		};
+	}
+
+	private static TestReloadableSpaceObject object(int id) {
+		return new TestReloadableSpaceObject(id, id, true, 1, null);
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+public class SqlQueryTranslatorTest {
+
+	private final SqlQueryTranslator translator = new SqlQueryTranslator(
+			propertyName -> {
+				if (propertyName.equals("unknown")) {
+					throw new IllegalArgumentException("No property " + propertyName);
+				}
+				return propertyName.equals("id") ? "_id" : propertyName;
+			},
+			UnaryOperator.identity());
+
+	@Test
+	public void translatesComparisonsCombinedWithAnd() {
+		assertEquals(new Document("$and", List.of(
+						new Document("message", "hello"),
+						new Document("count", new Document("$gt", 3)),
+						new Document("count", new Document("$lte", 7L)))),
+				translate("message = ? AND count > ? and count <= 7", "hello", 3));
+	}
+
+	@Test
+	public void translatesInAndNullChecksCombinedWithOrAndParentheses() {
+		assertEquals(new Document("$or", List.of(
+						new Document("_id", new Document("$in", List.of("a", "b"))),
+						new Document("$and", List.of(
+								new Document("message", null),
+								new Document("count", new Document("$ne", null).append("$nin", List.of(1L, 2L))))))),
+				translate("id IN (?, ?) OR (message IS NULL AND count NOT IN (1, 2))", "a", "b"));
+		assertEquals(new Document("message", new Document("$ne", null)), translate("message is not null"));
+	}
+
+	@Test
+	public void translatesLiterals() {
+		assertEquals(new Document("$and", List.of(
+						new Document("$and", List.of(
+								new Document("message", new Document("$ne", null)),
+								new Document("message", new Document("$ne", "it's")))),
+						new Document("ratio", new Document("$lt", -1.5)),
+						new Document("active", true))),
+				translate("message <> 'it''s' AND ratio < -1.5 AND active = TRUE"));
+	}
+
+	@Test
+	public void excludesNullAndMissingFieldsFromNotEqualAndNotIn() {
+		Document notEqual = new Document("$and", List.of(
+				new Document("count", new Document("$ne", null)),
+				new Document("count", new Document("$ne", 3))));
+		assertEquals(notEqual, translate("count <> ?", 3));
+		assertEquals(notEqual, translate("count != ?", 3));
+		assertEquals(new Document("message", new Document("$ne", null).append("$nin", List.of("a", "b"))),
+				translate("message NOT IN (?, ?)", "a", "b"));
+	}
+
+	@Test
+	public void expandsCollectionParameterOfIn() {
+		assertEquals(new Document("_id", new Document("$in", List.of("a", "b", "c"))), translate("id IN (?, ?)", List.of("a", "b"), "c"));
+	}
+
+	@Test
+	public void failsToTranslateUnsupportedQueries() {
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("message LIKE 'hel%'"));
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("address.city = ?", "Stockholm"));
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("unknown = ?", 1));
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("count = ? AND message = ?", 1));
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("count = 1 ORDER BY message"));
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("(count = 1"));
+		assertThrows(CouldNotCreateMongoQueryException.class, () -> translate("count = 99999999999999999999"));
+	}
+
+	@Test
+	public void resolvesFieldNamesOfMirroredType() {
+		MongoQueryFactory mongoQueryFactory = new MongoQueryFactory(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+
+		assertEquals(new Document("$and", List.of(new Document("_id", "id_1"), new Document("message", "hello"))),
+				mongoQueryFactory.createMongoQueryFromSql(TestSpaceObject.class, "id = ? AND message = ?", new Object[] { "id_1", "hello" }).getQueryObject());
+	}
+
+	private Document translate(String whereClause, Object... parameters) {
+		return translator.translate(whereClause, parameters).getCriteriaObject();
+	}
+
+}
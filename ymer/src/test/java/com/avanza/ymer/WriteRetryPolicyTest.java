@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.ymer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
+
+public class WriteRetryPolicyTest {
+
+	private final WriteRetryPolicy retryPolicy = new WriteRetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(2));
+
+	@Test
+	public void retriesTransientFailuresUntilWriteSucceeds() {
+		AtomicInteger attempts = new AtomicInteger();
+
+		retryPolicy.run(() -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw socketException();
+			}
+		});
+
+		assertEquals(3, attempts.get());
+		assertEquals(2, retryPolicy.getNumRetries());
+		assertEquals(0, retryPolicy.getNumExhaustedRetries());
+	}
+
+	@Test
+	public void rethrowsTransientFailureWhenAttemptsAreExhausted() {
+		AtomicInteger attempts = new AtomicInteger();
+		MongoSocketException failure = socketException();
+
+		RuntimeException thrown = assertThrows(RuntimeException.class, () -> retryPolicy.run(() -> {
+			attempts.incrementAndGet();
+			throw failure;
+		}));
+
+		assertSame(failure, thrown);
+		assertEquals(3, attempts.get());
+		assertEquals(1, retryPolicy.getNumExhaustedRetries());
+	}
+
+	@Test
+	public void doesNotRetryOtherFailures() {
+		AtomicInteger attempts = new AtomicInteger();
+
+		assertThrows(IllegalStateException.class, () -> retryPolicy.run(() -> {
+			attempts.incrementAndGet();
+			throw new IllegalStateException();
+		}));
+
+		assertEquals(1, attempts.get());
+		assertFalse(retryPolicy.isRetryable(new TransientDocumentWriteException(socketException()), 1));
+		assertTrue(retryPolicy.isRetryable(socketException(), 2));
+		assertEquals(0, retryPolicy.getNumRetries());
+	}
+
+	@Test
+	public void neverRetriesWithSingleAttempt() {
+		WriteRetryPolicy noRetries = new WriteRetryPolicy(1, Duration.ofMillis(1), Duration.ofMillis(1));
+
+		assertFalse(noRetries.isRetryable(socketException(), 1));
+		assertEquals(0, noRetries.getNumExhaustedRetries());
+	}
+
+	@Test
+	public void doesNotBackOffWithZeroInitialBackoff() {
+		WriteRetryPolicy noBackoff = new WriteRetryPolicy(3, Duration.ZERO, Duration.ofSeconds(10));
+
+		noBackoff.backoff(1, 1);
+		noBackoff.backoff(2, 1);
+
+		assertEquals(2, noBackoff.getNumRetries());
+		assertEquals(0, noBackoff.getBackoffMillis());
+	}
+
+	@Test
+	public void limitsBackoffToMaxBackoffWhenShiftOverflows() {
+		retryPolicy.backoff(50, 1);
+
+		assertTrue(retryPolicy.getBackoffMillis() <= 2);
+	}
+
+	private static MongoSocketException socketException() {
+		return new MongoSocketException("Connection reset", new ServerAddress());
+	}
+
+}
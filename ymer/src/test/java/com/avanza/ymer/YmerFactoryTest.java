@@ -17,12 +17,14 @@ package com.avanza.ymer;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -56,6 +58,26 @@ public class YmerFactoryTest {
 		when(db.getCollection("testSpaceObject")).thenReturn(testSpaceObjectCollection);
 	}
 
+	@Test
+	public void rejectsInvalidMirrorWriteRetryBackoff() {
+		YmerFactory factory = new YmerFactory(() -> db, mock(MongoConverter.class), new ArrayList<>());
+
+		assertThrows(NullPointerException.class, () -> factory.setMirrorWriteRetryBackoff(null, Duration.ofSeconds(1)));
+		assertThrows(NullPointerException.class, () -> factory.setMirrorWriteRetryBackoff(Duration.ofSeconds(1), null));
+		assertThrows(IllegalArgumentException.class, () -> factory.setMirrorWriteRetryBackoff(Duration.ofMillis(-1), Duration.ofSeconds(1)));
+		assertThrows(IllegalArgumentException.class, () -> factory.setMirrorWriteRetryBackoff(Duration.ofSeconds(2), Duration.ofSeconds(1)));
+		factory.setMirrorWriteRetryBackoff(Duration.ZERO, Duration.ZERO);
+	}
+
+	@Test
+	public void rejectsInvalidLoadObjectCoalescingWindow() {
+		YmerFactory factory = new YmerFactory(() -> db, mock(MongoConverter.class), new ArrayList<>());
+
+		assertThrows(NullPointerException.class, () -> factory.setLoadObjectCoalescingWindow(null));
+		assertThrows(IllegalArgumentException.class, () -> factory.setLoadObjectCoalescingWindow(Duration.ofMillis(-1)));
+		factory.setLoadObjectCoalescingWindow(Duration.ZERO);
+	}
+
 	@Test
 	public void shouldSetReadPreferenceOnCreatedDocumentCollections() {
 		// Arrange
@@ -15,15 +15,29 @@
  */
 package com.avanza.ymer;
 
-import static com.avanza.ymer.StreamMatchers.hasCount;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
-
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.LogEvent;
@@ -42,6 +56,11 @@ import org.springframework.data.mongodb.core.query.Query;
 import com.avanza.ymer.YmerSpaceDataSource.InitialLoadCompleteDispatcher;
 import com.gigaspaces.annotation.pojo.SpaceRouting;
 import com.gigaspaces.datasource.DataIterator;
+import com.gigaspaces.datasource.DataSourceIdQuery;
+import com.gigaspaces.datasource.DataSourceIdsQuery;
+import com.gigaspaces.datasource.DataSourceQuery;
+import com.gigaspaces.datasource.DataSourceSQLQuery;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
 import com.mongodb.BasicDBObject;
 
 public class YmerSpaceDataSourceTest {
@@ -62,7 +81,6 @@ public class YmerSpaceDataSourceTest {
 
 	private final Integer instanceId = 1;
 	private final int numberOfInstances = 2;
-	InitialLoadCompleteDispatcher doneDistpacher = new InitialLoadCompleteDispatcher();
 
 	@Test
 	public void documentsMustNotBeWrittenToDbBeforeAllElementsAreLoaded() throws Exception {
@@ -91,8 +109,130 @@ public class YmerSpaceDataSourceTest {
 		documentCollection.insert(doc3);
 
 
-		Stream<FakeSpaceObject> loadInitialLoadData = ymerSpaceDataSource.load(patchedMirroredDocument, doneDistpacher);
-		assertThat(loadInitialLoadData, hasCount(1));
+		List<Object> loaded = new ArrayList<>();
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.initialDataLoad();
+		while (objectDataIterator.hasNext()) {
+			loaded.add(objectDataIterator.next());
+		}
+		assertThat(loaded, hasSize(1));
+	}
+
+	@Test
+	public void loadsCollectionsInParallel() {
+		MirroredObject<TestSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		MirroredObject<TestReloadableSpaceObject> otherMirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject, otherMirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				2);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+
+		DocumentCollection documentCollection = documentDb.getCollection(mirroredObject.getCollectionName());
+		DocumentCollection otherDocumentCollection = documentDb.getCollection(otherMirroredObject.getCollectionName());
+		for (int i = 0; i < 100; i++) {
+			documentCollection.insert(new Document("_id", "id_" + i));
+			otherDocumentCollection.insert(new Document("_id", i).append("versionID", 1));
+		}
+
+		long numLoaded = 0;
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.initialDataLoad();
+		while (objectDataIterator.hasNext()) {
+			objectDataIterator.next();
+			numLoaded++;
+		}
+
+		assertThat(numLoaded, is(200L));
+	}
+
+	@Test
+	public void loadsLargestCollectionFirstWhenOrderingBySize() {
+		MirroredObject<TestSpaceObject> largeMirroredObject = MirroredObjectDefinition.create(TestSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		MirroredObject<TestReloadableSpaceObject> smallMirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(largeMirroredObject, smallMirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				InitialLoadProperties.builder().order(InitialLoadOrder.LARGEST_FIRST).build());
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+
+		DocumentCollection largeDocumentCollection = documentDb.getCollection(largeMirroredObject.getCollectionName());
+		DocumentCollection smallDocumentCollection = documentDb.getCollection(smallMirroredObject.getCollectionName());
+		for (int i = 0; i < 10; i++) {
+			largeDocumentCollection.insert(new Document("_id", "id_" + i));
+		}
+		smallDocumentCollection.insert(new Document("_id", 1).append("versionID", 1));
+
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.initialDataLoad();
+		Object firstLoaded = objectDataIterator.next();
+		while (objectDataIterator.hasNext()) {
+			objectDataIterator.next();
+		}
+
+		assertThat(smallMirroredObject.getCollectionName().compareTo(largeMirroredObject.getCollectionName()), lessThan(0));
+		assertThat(firstLoaded, instanceOf(TestSpaceObject.class));
+	}
+
+	@Test
+	public void writesBackPatchedDocumentsBeforeInitialLoadCompletes() {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).documentPatches(patches).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				InitialLoadProperties.builder().writeBackBatchSize(7).build());
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+
+		DocumentCollection documentCollection = documentDb.getCollection(mirroredObject.getCollectionName());
+		for (int i = 0; i < 100; i++) {
+			documentCollection.insert(new Document("_id", i).append("versionID", 1));
+		}
+
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.initialDataLoad();
+		while (objectDataIterator.hasNext()) {
+			objectDataIterator.next();
+		}
+
+		assertThat(documentCollection.findAll().filter(mirroredObject::requiresPatching).count(), is(0L));
+	}
+
+	@Test
+	public void registersInitialLoadStatisticsMBeanForEachLoadedCollection() throws Exception {
+		MirroredObject<TestSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		for (int i = 0; i < 10; i++) {
+			documentDb.getCollection(mirroredObject.getCollectionName()).insert(new Document("_id", "id_" + i));
+		}
+
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.initialDataLoad();
+		while (objectDataIterator.hasNext()) {
+			objectDataIterator.next();
+		}
+
+		ObjectName name = ObjectName.getInstance("se.avanzabank.space.mirror:type=InitialLoadStatistics,instanceId=1,name=collection_" + mirroredObject.getCollectionName());
+		assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "NumDocumentsRead"), is(10L));
 	}
 
 	@Test
@@ -135,6 +275,298 @@ public class YmerSpaceDataSourceTest {
 		assertFalse(mirroredObject.requiresPatching(new Document(dbObject)));
 	}
 
+	@Test
+	public void readsThroughObjectsByIdsInBatchesAndWritesBackPatchedDocuments() throws Exception {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).documentPatches(patches).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror, ReadThroughProperties.builder()
+				.batchSize(7)
+				.numConversionThreads(4)
+				.parallelConversionThreshold(10)
+				.build());
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+
+		DocumentCollection documentCollection = documentDb.getCollection(mirroredObject.getCollectionName());
+		Object[] ids = new Object[101];
+		for (int i = 0; i < 100; i++) {
+			documentCollection.insert(new Document("_id", i).append("versionID", 1));
+			ids[i] = i;
+		}
+		ids[100] = 1000;
+		SpaceTypeDescriptor typeDescriptor = typeDescriptor(TestReloadableSpaceObject.class);
+		DataSourceIdsQuery idsQuery = mock(DataSourceIdsQuery.class);
+		when(idsQuery.getTypeDescriptor()).thenReturn(typeDescriptor);
+		when(idsQuery.getIds()).thenReturn(ids);
+
+		List<Object> loaded = new ArrayList<>();
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.getDataIteratorByIds(idsQuery);
+		while (objectDataIterator.hasNext()) {
+			loaded.add(objectDataIterator.next());
+		}
+
+		assertThat(loaded, hasSize(100));
+		assertThat(loaded.stream().allMatch(object -> ((TestReloadableSpaceObject) object).isPatched()), is(true));
+		assertThat(documentCollection.findAll().filter(mirroredObject::requiresPatching).count(), is(0L));
+	}
+
+	@Test
+	public void servesLoadedObjectsFromReadThroughCache() throws Exception {
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror, ReadThroughProperties.builder()
+				.cacheMaxEntries(10)
+				.build());
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		DocumentCollection documentCollection = documentDb.getCollection(mirroredObject.getCollectionName());
+		documentCollection.insert(new Document("_id", 1).append("versionID", 1));
+		// Objects are only cached while a mirror in this JVM writes the collection
+		try (MirroredObjectWriter mirroredObjectWriter = new MirroredObjectWriter(spaceMirror, new RethrowsTransientDocumentWriteExceptionHandler())) {
+			assertNotNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 1));
+			assertNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 2));
+			documentCollection.delete(new Document("_id", 1));
+			documentCollection.insert(new Document("_id", 2).append("versionID", 1));
+
+			assertNotNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 1));
+			assertNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 2));
+			assertThat(spaceMirror.getReadThroughStatistics(mirroredObject).getNumObjectsRead(), is(1L));
+		}
+	}
+
+	@Test
+	public void answersIdsRuledOutByExistenceFilterWithoutReadingThem() throws Exception {
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class)
+				.excludeFromInitialLoad(true)
+				.existenceFilter(0.0001)
+				.buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		DocumentCollection documentCollection = documentDb.getCollection(mirroredObject.getCollectionName());
+		documentCollection.insert(new Document("_id", 1).append("versionID", 1));
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		ObjectName existenceFilter = ObjectName.getInstance("se.avanzabank.space.mirror:type=ExistenceFilter,instanceId=1,name=collection_" + mirroredObject.getCollectionName());
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try (MirroredObjectWriter mirroredObjectWriter = new MirroredObjectWriter(spaceMirror, new RethrowsTransientDocumentWriteExceptionHandler())) {
+			Awaitility.await().until(() -> (Boolean) mBeanServer.getAttribute(existenceFilter, "Active"));
+			// Written behind the back of the filter, hence not found
+			documentCollection.insert(new Document("_id", 2).append("versionID", 1));
+
+			assertNotNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 1));
+			assertNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 2));
+			assertNull(ymerSpaceDataSource.getById(idQuery(TestReloadableSpaceObject.class, 2)));
+			assertThat(mBeanServer.getAttribute(existenceFilter, "NumAbsentIds"), is(2L));
+		}
+		// Without a mirror in this JVM, ids written by a mirror in another JVM must be found
+		assertNotNull(ymerSpaceDataSource.loadObject(TestReloadableSpaceObject.class, 2));
+	}
+
+	@Test
+	public void runsInitialLoadCompleteCallbacksOnce() throws Exception {
+		InitialLoadCompleteDispatcher dispatcher = new InitialLoadCompleteDispatcher();
+		AtomicInteger numCallbacks = new AtomicInteger();
+		dispatcher.onInitialLoadComplete(numCallbacks::incrementAndGet);
+
+		dispatcher.initialLoadComplete();
+		dispatcher.initialLoadComplete();
+
+		assertThat(numCallbacks.get(), is(1));
+	}
+
+	@Test
+	public void unregistersMBeansWhenClosed() throws Exception {
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				FakeDocumentDb.create(),
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		ObjectName readThroughStatistics = ObjectName.getInstance("se.avanzabank.space.mirror:type=ReadThroughStatistics,instanceId=1,name=collection_" + mirroredObject.getCollectionName());
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(readThroughStatistics), is(true));
+
+		ymerSpaceDataSource.close();
+
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(readThroughStatistics), is(false));
+	}
+
+	@Test
+	public void shutsDownReadThroughThreadsWhenClosed() {
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				FakeDocumentDb.create(),
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror, ReadThroughProperties.builder()
+				.numConversionThreads(4)
+				.build());
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		ExecutorService readThroughExecutor = ymerSpaceDataSource.getReadThroughExecutor();
+
+		ymerSpaceDataSource.close();
+
+		assertThat(readThroughExecutor.isShutdown(), is(true));
+		assertThat(ymerSpaceDataSource.getReadThroughExecutor(), sameInstance(readThroughExecutor));
+	}
+
+	@Test
+	public void readsThroughSingleObjectById() throws Exception {
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		documentDb.getCollection(mirroredObject.getCollectionName()).insert(new Document("_id", 1).append("versionID", 1));
+
+		assertThat(ymerSpaceDataSource.getById(idQuery(TestReloadableSpaceObject.class, 1)), instanceOf(TestReloadableSpaceObject.class));
+		assertNull(ymerSpaceDataSource.getById(idQuery(TestReloadableSpaceObject.class, 2)));
+		assertNull(ymerSpaceDataSource.getById(idQuery(FakeSpaceObject.class, 1)));
+	}
+
+	@Test
+	public void readsThroughNoObjectsWhenQueryCannotBeTranslated() throws Exception {
+		MirroredObject<TestSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestSpaceObject.class).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				TestSpaceObjectFakeConverter.create(),
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		for (int i = 0; i < 3; i++) {
+			documentDb.getCollection(mirroredObject.getCollectionName()).insert(new Document("_id", "id_" + i).append("message", "message_" + i));
+		}
+		SpaceTypeDescriptor typeDescriptor = typeDescriptor(TestSpaceObject.class);
+		DataSourceSQLQuery sqlQuery = mock(DataSourceSQLQuery.class);
+		when(sqlQuery.getQuery()).thenReturn("message = ?");
+		when(sqlQuery.getQueryParameters()).thenReturn(new Object[] { "message_1" });
+		DataSourceQuery query = mock(DataSourceQuery.class);
+		when(query.getTypeDescriptor()).thenReturn(typeDescriptor);
+		when(query.supportsAsSQLQuery()).thenReturn(true);
+		when(query.getAsSQLQuery()).thenReturn(sqlQuery);
+
+		List<Object> loaded = new ArrayList<>();
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.getDataIterator(query);
+		while (objectDataIterator.hasNext()) {
+			loaded.add(objectDataIterator.next());
+		}
+		objectDataIterator.close();
+
+		assertThat(loaded, hasSize(0));
+		ReadThroughStatistics readThroughStatistics = spaceMirror.getReadThroughStatistics(mirroredObject);
+		assertThat(readThroughStatistics.getNumQueries(), is(1L));
+		assertThat(readThroughStatistics.getNumUntranslatableQueries(), is(1L));
+		assertThat(readThroughStatistics.getNumObjectsRead(), is(0L));
+	}
+
+	@Test
+	public void writesBackDocumentsPatchedWhenReadThroughByQueryInBackground() throws Exception {
+		DocumentPatch[] patches = { new FakeSpaceObjectV1Patch() };
+		MirroredObject<TestReloadableSpaceObject> mirroredObject = MirroredObjectDefinition.create(TestReloadableSpaceObject.class).documentPatches(patches).buildMirroredDocument(MirroredObjectDefinitionsOverride.noOverride());
+		DocumentConverter testConverter = TestSpaceObjectFakeConverter.create();
+		DocumentConverter matchingAllConverter = DocumentConverter.create(new DocumentConverter.Provider() {
+			@Override
+			public <T> T convert(Class<T> toType, Document document) {
+				return testConverter.convert(toType, document);
+			}
+
+			@Override
+			public Document convertToBsonDocument(Object type) {
+				return testConverter.convertToBsonDocument(type);
+			}
+
+			@Override
+			public Object convert(Object type) {
+				return testConverter.convertToMongoObject(type);
+			}
+
+			@Override
+			public Query toQuery(Object template) {
+				return new Query();
+			}
+		});
+		DocumentDb documentDb = FakeDocumentDb.create();
+		SpaceMirrorContext spaceMirror = new SpaceMirrorContext(
+				new MirroredObjects(mirroredObject),
+				matchingAllConverter,
+				documentDb,
+				SpaceMirrorContext.NO_EXCEPTION_LISTENER,
+				Plugins.empty(),
+				1);
+		YmerSpaceDataSource ymerSpaceDataSource = new YmerSpaceDataSource(spaceMirror);
+		ymerSpaceDataSource.setClusterInfo(new ClusterInfo("", 1, null, 1, 0));
+		DocumentCollection documentCollection = documentDb.getCollection(mirroredObject.getCollectionName());
+		for (int i = 0; i < 10; i++) {
+			documentCollection.insert(new Document("_id", i).append("versionID", 1));
+		}
+		SpaceTypeDescriptor typeDescriptor = typeDescriptor(TestReloadableSpaceObject.class);
+		DataSourceQuery query = mock(DataSourceQuery.class);
+		when(query.getTypeDescriptor()).thenReturn(typeDescriptor);
+		when(query.supportsTemplateAsObject()).thenReturn(true);
+		when(query.getTemplateAsObject()).thenReturn(new TestReloadableSpaceObject());
+
+		List<Object> loaded = new ArrayList<>();
+		DataIterator<Object> objectDataIterator = ymerSpaceDataSource.getDataIterator(query);
+		while (objectDataIterator.hasNext()) {
+			loaded.add(objectDataIterator.next());
+		}
+		objectDataIterator.close();
+
+		assertThat(loaded, hasSize(10));
+		assertThat(loaded.stream().allMatch(object -> ((TestReloadableSpaceObject) object).isPatched()), is(true));
+		Awaitility.await().until(() -> documentCollection.findAll().noneMatch(mirroredObject::requiresPatching));
+		ymerSpaceDataSource.close();
+	}
+
+	private static DataSourceIdQuery idQuery(Class<?> type, Object id) {
+		SpaceTypeDescriptor typeDescriptor = typeDescriptor(type);
+		DataSourceIdQuery idQuery = mock(DataSourceIdQuery.class);
+		when(idQuery.getTypeDescriptor()).thenReturn(typeDescriptor);
+		when(idQuery.getId()).thenReturn(id);
+		return idQuery;
+	}
+
+	private static SpaceTypeDescriptor typeDescriptor(Class<?> type) {
+		SpaceTypeDescriptor typeDescriptor = mock(SpaceTypeDescriptor.class);
+		doReturn(type).when(typeDescriptor).getObjectClass();
+		when(typeDescriptor.getTypeName()).thenReturn(type.getName());
+		return typeDescriptor;
+	}
 
 	@Test
 	public void testLoggning(){